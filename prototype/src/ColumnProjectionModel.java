@@ -0,0 +1,168 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+
+/**
+ * Filtered view of the grade book that shows a subset of its columns.
+ *
+ * The view holds no cells of its own. It keeps an int[] mapping from each
+ * shown column to the grade book column behind it, and every call the table
+ * makes is forwarded through that mapping. Hiding or showing columns only
+ * rebuilds the mapping, so applying or clearing a filter costs time in the
+ * number of columns no matter how many students there are.
+ */
+public class ColumnProjectionModel extends AbstractTableModel
+      implements TableModelListener {
+
+   private final GradeBookTableModel source;
+
+   /* Whether each grade book column is shown */
+   private boolean[] shown;
+
+   /* Grade book column behind each shown column */
+   private int[] viewToModel;
+
+   /* Shown column of each grade book column, or -1 if hidden */
+   private int[] modelToView;
+
+   public ColumnProjectionModel(GradeBookTableModel source) {
+      this.source = source;
+      shown = new boolean[source.getColumnCount()];
+      Arrays.fill(shown, true);
+      rebuild();
+      source.addTableModelListener(this);
+   }
+
+   public GradeBookTableModel getSource() {
+      return source;
+   }
+
+   public boolean isColumnShown(int modelColumn) {
+      return shown[modelColumn];
+   }
+
+   /**
+    * Shows or hides one grade book column. Takes effect on apply().
+    * @param modelColumn column of the grade book.
+    * @param visible whether to show it.
+    */
+   public void setColumnShown(int modelColumn, boolean visible) {
+      shown[modelColumn] = visible;
+   }
+
+   /**
+    * Tells whether any assignment of a category is shown.
+    * @param category name of the category.
+    * @return true if at least one of its assignment columns is shown.
+    */
+   public boolean isCategoryShown(String category) {
+      for (int a = 0; a < source.getAssignmentCount(); a++) {
+         if (source.getCategoryName(a).equals(category) &&
+               shown[GradeBookTableModel.FIRST_ASMT_COL + a]) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Shows or hides every assignment of a category. Takes effect on apply().
+    * @param category name of the category.
+    * @param visible whether to show its assignments.
+    */
+   public void setCategoryShown(String category, boolean visible) {
+      for (int a = 0; a < source.getAssignmentCount(); a++) {
+         if (source.getCategoryName(a).equals(category)) {
+            shown[GradeBookTableModel.FIRST_ASMT_COL + a] = visible;
+         }
+      }
+   }
+
+   /**
+    * Rebuilds the column mapping and tells the table the columns changed.
+    */
+   public void apply() {
+      rebuild();
+      fireTableStructureChanged();
+   }
+
+   /**
+    * Shows every column again.
+    */
+   public void clear() {
+      Arrays.fill(shown, true);
+      apply();
+   }
+
+   /**
+    * Maps a column of this view to the grade book column behind it.
+    * @param viewColumn column of this view.
+    * @return grade book column, or -1 if viewColumn is out of range.
+    */
+   public int toModelColumn(int viewColumn) {
+      return viewColumn < 0 || viewColumn >= viewToModel.length ? -1 :
+            viewToModel[viewColumn];
+   }
+
+   private void rebuild() {
+      if (shown.length != source.getColumnCount()) {
+         int old = shown.length;
+         shown = Arrays.copyOf(shown, source.getColumnCount());
+         Arrays.fill(shown, old, shown.length, true);
+      }
+      viewToModel = new int[shown.length];
+      modelToView = new int[shown.length];
+      int count = 0;
+      for (int c = 0; c < shown.length; c++) {
+         modelToView[c] = shown[c] ? count : -1;
+         if (shown[c]) {
+            viewToModel[count++] = c;
+         }
+      }
+      viewToModel = Arrays.copyOf(viewToModel, count);
+   }
+
+   public void tableChanged(TableModelEvent e) {
+      if (e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+            source.getColumnCount() != shown.length) {
+         apply();
+      }
+      else if (e.getColumn() == TableModelEvent.ALL_COLUMNS) {
+         fireTableChanged(new TableModelEvent(this, e.getFirstRow(),
+               e.getLastRow(), TableModelEvent.ALL_COLUMNS, e.getType()));
+      }
+      else if (modelToView[e.getColumn()] >= 0) {
+         fireTableChanged(new TableModelEvent(this, e.getFirstRow(),
+               e.getLastRow(), modelToView[e.getColumn()], e.getType()));
+      }
+   }
+
+   public int getRowCount() {
+      return source.getRowCount();
+   }
+
+   public int getColumnCount() {
+      return viewToModel.length;
+   }
+
+   public String getColumnName(int column) {
+      return source.getColumnName(viewToModel[column]);
+   }
+
+   public Class getColumnClass(int column) {
+      return source.getColumnClass(viewToModel[column]);
+   }
+
+   public boolean isCellEditable(int row, int column) {
+      return source.isCellEditable(row, viewToModel[column]);
+   }
+
+   public Object getValueAt(int row, int column) {
+      return source.getValueAt(row, viewToModel[column]);
+   }
+
+   public void setValueAt(Object value, int row, int column) {
+      source.setValueAt(value, row, viewToModel[column]);
+   }
+}
@@ -4,7 +4,12 @@ import java.awt.event.*;
 
 public class DeleteStudentUI extends JDialog {
 
-	public DeleteStudentUI() {
+    private final GradeBookTableModel model;
+    private final int student;
+
+	public DeleteStudentUI(GradeBookTableModel model, int student) {
+        this.model = model;
+        this.student = student;
         initUI();
 	}
 
@@ -21,7 +26,8 @@ public class DeleteStudentUI extends JDialog {
         studentDeletePanel.setAlignmentX(Component.CENTER_ALIGNMENT);
         studentDeletePanel.setLayout(new BoxLayout(studentDeletePanel, BoxLayout.X_AXIS));
 
-        studentDeletePanel.add(new JLabel("Are you sure you want to delete this student?"));
+        studentDeletePanel.add(new JLabel("Are you sure you want to delete " +
+              model.getStudentName(student) + "?"));
         studentDeletePanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
         panel.add(studentDeletePanel);
@@ -32,6 +38,7 @@ public class DeleteStudentUI extends JDialog {
 		addStudentButton.setBounds(0, 0, 80, 30);
 		addStudentButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent event) {
+            model.removeStudent(student);
             dispose();
 			}
 		});
@@ -61,8 +68,9 @@ public class DeleteStudentUI extends JDialog {
 		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
     }
 
-    public static void showDeleteStudentUI() {
-        DeleteStudentUI catFrame = new DeleteStudentUI();
+    public static void showDeleteStudentUI(GradeBookTableModel model,
+          int student) {
+        DeleteStudentUI catFrame = new DeleteStudentUI(model, student);
         catFrame.setVisible(true);
     }
 }
\ No newline at end of file
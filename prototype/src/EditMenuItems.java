@@ -7,8 +7,10 @@ import java.util.ArrayList;
 public class EditMenuItems implements  MenuItemProvider {
 
     private ArrayList<JMenuItem> editMenuItems;
+    private GraderMasterPanel masterPanel;
 
-    public EditMenuItems() {
+    public EditMenuItems(GraderMasterPanel masterPanel) {
+        this.masterPanel = masterPanel;
         editMenuItems = new ArrayList<JMenuItem>();
         createMenuItems();
     }
@@ -38,7 +40,7 @@ public class EditMenuItems implements  MenuItemProvider {
             // named classes in production code.
             public void actionPerformed(ActionEvent e)
             {
-                //add code here to pull up accroding menu
+                masterPanel.undo();
             }
         });
 
@@ -57,7 +59,7 @@ public class EditMenuItems implements  MenuItemProvider {
             // named classes in production code.
             public void actionPerformed(ActionEvent e)
             {
-                ///add code here to pull up accroding menu
+                masterPanel.redo();
             }
         });
 
@@ -114,7 +116,7 @@ public class EditMenuItems implements  MenuItemProvider {
             // named classes in production code.
             public void actionPerformed(ActionEvent e)
             {
-                //add code here to pull up accroding menu
+                masterPanel.pasteScores();
             }
         });
 
@@ -152,7 +154,7 @@ public class EditMenuItems implements  MenuItemProvider {
             // named classes in production code.
             public void actionPerformed(ActionEvent e)
             {
-                //add code here to pull up accroding menu
+                masterPanel.find();
             }
         });
 
@@ -191,7 +193,7 @@ public class EditMenuItems implements  MenuItemProvider {
             public void actionPerformed(ActionEvent e)
             {
                 //add code here to pull up accroding menu
-                FilterUI.showFilterUI();
+                FilterUI.showFilterUI(masterPanel.getColumnProjection());
             }
         });
 
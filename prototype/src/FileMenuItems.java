@@ -7,8 +7,10 @@ import java.util.ArrayList;
 public class FileMenuItems implements MenuItemProvider {
 
    private ArrayList<JMenuItem> fileMenuItems;
+   private GraderMasterPanel masterPanel;
 
-   public FileMenuItems() {
+   public FileMenuItems(GraderMasterPanel masterPanel) {
+      this.masterPanel = masterPanel;
       fileMenuItems = new ArrayList<JMenuItem>();
       createMenuItems();
    }
@@ -44,7 +46,7 @@ public class FileMenuItems implements MenuItemProvider {
          // Anonymous inner classes are used here for brevity, but should be
          // named classes in production code.
          public void actionPerformed(ActionEvent e) {
-            ///add code here to pull up accroding menu
+            masterPanel.publishGrades();
          }
       });
 
@@ -1,16 +1,22 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;   
+import java.util.ArrayList;
+import java.util.List;
 
 public class FilterUI extends JDialog {
 
-	public FilterUI() {
+    private ColumnProjectionModel projection;
+
+	public FilterUI(ColumnProjectionModel projection) {
+        this.projection = projection;
         initUI();
 	}
 
     private final void initUI() {
 		JPanel panel = new JPanel();
         getContentPane().add(panel);
+        final GradeBookTableModel grades = projection.getSource();
 
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.add(Box.createVerticalGlue());
@@ -24,8 +30,9 @@ public class FilterUI extends JDialog {
         studentPanel.add(new JLabel("Student"));
         studentPanel.add(Box.createRigidArea(new Dimension(15, 0)));
 
-        JCheckBox studentField = new JCheckBox();
-        studentField.setSelected(true);
+        final JCheckBox studentField = new JCheckBox();
+        studentField.setSelected(projection.isColumnShown(GradeBookTableModel.NAME_COL) ||
+            projection.isColumnShown(GradeBookTableModel.EMPL_ID_COL));
         studentField.setMaximumSize(studentField.getPreferredSize());
 
         studentPanel.add(studentField);
@@ -42,8 +49,8 @@ public class FilterUI extends JDialog {
         studentNamePanel.add(new JLabel("Student Name"));
         studentNamePanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JCheckBox studentNameField = new JCheckBox();
-        studentNameField.setSelected(true);
+        final JCheckBox studentNameField = new JCheckBox();
+        studentNameField.setSelected(projection.isColumnShown(GradeBookTableModel.NAME_COL));
         studentNameField.setMaximumSize(studentNameField.getPreferredSize());
 
         studentNamePanel.add(studentNameField);
@@ -60,8 +67,8 @@ public class FilterUI extends JDialog {
         emplPanel.add(new JLabel("Student ID"));
         emplPanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JCheckBox emplField = new JCheckBox();
-        emplField.setSelected(true);
+        final JCheckBox emplField = new JCheckBox();
+        emplField.setSelected(projection.isColumnShown(GradeBookTableModel.EMPL_ID_COL));
         emplField.setMaximumSize(emplField.getPreferredSize());
 
         emplPanel.add(emplField);
@@ -77,8 +84,8 @@ public class FilterUI extends JDialog {
         categoryPanel.add(new JLabel("Category"));
         categoryPanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JCheckBox categoryField = new JCheckBox();
-        categoryField.setSelected(true);
+        final JCheckBox categoryField = new JCheckBox();
+        categoryField.setSelected(anyAssignmentShown());
         categoryField.setMaximumSize(categoryField.getPreferredSize());
 
         categoryPanel.add(categoryField);
@@ -87,6 +94,37 @@ public class FilterUI extends JDialog {
 
         panel.add(Box.createRigidArea(new Dimension(0, 10)));
 
+        // One box per category, under Category as Student Name is under
+        // Student
+        final List<String> categories = new ArrayList<String>();
+        for (int a = 0; a < grades.getAssignmentCount(); a++) {
+            if (!categories.contains(grades.getCategoryName(a))) {
+                categories.add(grades.getCategoryName(a));
+            }
+        }
+        final JCheckBox[] categoryFields = new JCheckBox[categories.size()];
+        for (int i = 0; i < categoryFields.length; i++) {
+            JPanel namePanel = new JPanel();
+            namePanel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            namePanel.setLayout(new BoxLayout(namePanel, BoxLayout.X_AXIS));
+
+            namePanel.add(Box.createRigidArea(new Dimension(10, 0)));
+            namePanel.add(new JLabel(categories.get(i)));
+            namePanel.add(Box.createRigidArea(new Dimension(10, 0)));
+
+            categoryFields[i] = new JCheckBox();
+            categoryFields[i].setSelected(
+                  projection.isCategoryShown(categories.get(i)));
+            categoryFields[i].setMaximumSize(
+                  categoryFields[i].getPreferredSize());
+
+            namePanel.add(categoryFields[i]);
+
+            panel.add(namePanel);
+
+            panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        }
+
         JPanel gradePanel = new JPanel();
         gradePanel.setAlignmentX(Component.CENTER_ALIGNMENT);
         gradePanel.setLayout(new BoxLayout(gradePanel, BoxLayout.X_AXIS));
@@ -95,8 +133,9 @@ public class FilterUI extends JDialog {
         gradePanel.add(new JLabel("Grades"));
         gradePanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JCheckBox gradeField = new JCheckBox();
-        gradeField.setSelected(true);
+        final JCheckBox gradeField = new JCheckBox();
+        gradeField.setSelected(projection.isColumnShown(grades.getPercentColumn()) ||
+            projection.isColumnShown(grades.getLetterColumn()));
         gradeField.setMaximumSize(gradeField.getPreferredSize());
 
         gradePanel.add(gradeField);
@@ -113,8 +152,8 @@ public class FilterUI extends JDialog {
         rawPanel.add(new JLabel("Raw Score"));
         rawPanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JCheckBox rawField = new JCheckBox();
-        rawField.setSelected(true);
+        final JCheckBox rawField = new JCheckBox();
+        rawField.setSelected(projection.isColumnShown(grades.getPercentColumn()));
         rawField.setMaximumSize(rawField.getPreferredSize());
 
         rawPanel.add(rawField);
@@ -131,8 +170,8 @@ public class FilterUI extends JDialog {
         letterPanel.add(new JLabel("Letter Grade"));
         letterPanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JCheckBox letterField = new JCheckBox();
-        letterField.setSelected(true);
+        final JCheckBox letterField = new JCheckBox();
+        letterField.setSelected(projection.isColumnShown(grades.getLetterColumn()));
         letterField.setMaximumSize(letterField.getPreferredSize());
 
         letterPanel.add(letterField);
@@ -147,13 +186,38 @@ public class FilterUI extends JDialog {
         addStudentButton.setBounds(0, 0, 80, 30);
         addStudentButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent event) {
-               // System.exit(0);
+               boolean student = studentField.isSelected();
+               boolean grade = gradeField.isSelected();
+               projection.setColumnShown(GradeBookTableModel.NAME_COL,
+                     student && studentNameField.isSelected());
+               projection.setColumnShown(GradeBookTableModel.EMPL_ID_COL,
+                     student && emplField.isSelected());
+               for (int i = 0; i < categoryFields.length; i++) {
+                  projection.setCategoryShown(categories.get(i),
+                        categoryField.isSelected() &&
+                        categoryFields[i].isSelected());
+               }
+               projection.setColumnShown(grades.getPercentColumn(),
+                     grade && rawField.isSelected());
+               projection.setColumnShown(grades.getLetterColumn(),
+                     grade && letterField.isSelected());
+               projection.apply();
             dispose();
             }
         });
 
         bottom.add(addStudentButton);
 
+        JButton showAllButton = new JButton("Show All");
+        showAllButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+               projection.clear();
+               dispose();
+            }
+        });
+
+        bottom.add(showAllButton);
+
         JButton cancelButton = new JButton("Cancel");
         cancelButton.setBounds(0, 0, 80, 30);
         cancelButton.addActionListener(new ActionListener() {
@@ -173,13 +237,24 @@ public class FilterUI extends JDialog {
         setTitle("Filter");
         setModal(true);
         setResizable(false);
-        setSize(300, 380);
+        setSize(340, 380 + 30 * categories.size());
         setLocationRelativeTo(null);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
     }
 
-    public static void showFilterUI() {  
-        FilterUI catFrame = new FilterUI();
+    private boolean anyAssignmentShown() {
+        GradeBookTableModel grades = projection.getSource();
+        for (int a = 0; a < grades.getAssignmentCount(); a++) {
+            if (projection.isColumnShown(
+                  GradeBookTableModel.FIRST_ASMT_COL + a)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void showFilterUI(ColumnProjectionModel projection) {
+        FilterUI catFrame = new FilterUI(projection);
         catFrame.setVisible(true);
     }
 
@@ -0,0 +1,153 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * Finds students by name or EMPL ID, and assignments by name, as the user
+ * types, and selects the chosen one in the grade book.
+ *
+ * Every keystroke asks the model's search index for the best matches, so
+ * the list keeps up however many students there are. The dialog is
+ * modeless; the matches are looked up again whenever the grade book
+ * changes, since a removed student moves the others down one index.
+ */
+public class FindUI extends JDialog {
+
+   private static final int MAX_MATCHES = 20;
+
+   private final GraderMasterPanel masterPanel;
+   private final GradeBookTableModel model;
+
+   private final JTextField queryField = new JTextField(20);
+   private final DefaultListModel<String> matchNames =
+         new DefaultListModel<String>();
+   private final JList<String> matchList = new JList<String>(matchNames);
+
+   /* Students, then assignments, listed in matchList */
+   private int[] students = new int[0];
+   private int[] assignments = new int[0];
+
+   private final TableModelListener modelListener = new TableModelListener() {
+      public void tableChanged(TableModelEvent e) {
+         search();
+      }
+   };
+
+   public FindUI(GraderMasterPanel masterPanel, GradeBookTableModel model) {
+      this.masterPanel = masterPanel;
+      this.model = model;
+      initUI();
+   }
+
+   private void initUI() {
+      JPanel panel = new JPanel();
+      getContentPane().add(panel);
+      panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+      panel.add(Box.createRigidArea(new Dimension(0, 10)));
+
+      queryField.setMaximumSize(queryField.getPreferredSize());
+      queryField.getDocument().addDocumentListener(new DocumentListener() {
+         // Anonymous inner classes are used here for brevity, but should be
+         // named classes in production code.
+         public void insertUpdate(DocumentEvent e) {
+            search();
+         }
+
+         public void removeUpdate(DocumentEvent e) {
+            search();
+         }
+
+         public void changedUpdate(DocumentEvent e) {
+            search();
+         }
+      });
+      queryField.addActionListener(new ActionListener() {
+         public void actionPerformed(ActionEvent event) {
+            if (matchNames.size() > 0) {
+               matchList.setSelectedIndex(0);
+            }
+         }
+      });
+      panel.add(queryField);
+      panel.add(Box.createRigidArea(new Dimension(0, 10)));
+
+      matchList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+      matchList.addListSelectionListener(new ListSelectionListener() {
+         public void valueChanged(ListSelectionEvent e) {
+            if (!e.getValueIsAdjusting()) {
+               showSelected();
+            }
+         }
+      });
+      JScrollPane scrollPane = new JScrollPane(matchList);
+      scrollPane.setPreferredSize(new Dimension(300, 200));
+      panel.add(scrollPane);
+
+      JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+      JButton closeButton = new JButton("Close");
+      closeButton.addActionListener(new ActionListener() {
+         public void actionPerformed(ActionEvent event) {
+            dispose();
+         }
+      });
+      bottom.add(closeButton);
+      panel.add(bottom);
+
+      model.addTableModelListener(modelListener);
+
+      setTitle("Find");
+      setModal(false);
+      setResizable(false);
+      setSize(340, 320);
+      setLocationRelativeTo(null);
+      setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+   }
+
+   public void dispose() {
+      model.removeTableModelListener(modelListener);
+      super.dispose();
+   }
+
+   /* Lists the best matches for the text typed so far. */
+   private void search() {
+      String query = queryField.getText();
+      students = model.findStudents(query, MAX_MATCHES);
+      assignments = model.findAssignments(query,
+            MAX_MATCHES - students.length);
+      matchNames.clear();
+      for (int student : students) {
+         matchNames.addElement(model.getStudentName(student) + " (" +
+               model.getStudentId(student) + ")");
+      }
+      for (int assignment : assignments) {
+         matchNames.addElement("Assignment: " +
+               model.getAssignmentName(assignment));
+      }
+   }
+
+   private void showSelected() {
+      int selected = matchList.getSelectedIndex();
+      if (selected < 0) {
+         return;
+      }
+      if (selected < students.length) {
+         masterPanel.showStudent(students[selected]);
+      }
+      else {
+         masterPanel.showAssignment(assignments[selected - students.length]);
+      }
+   }
+
+   public static void showFindUI(GraderMasterPanel masterPanel,
+         GradeBookTableModel model) {
+      FindUI dialog = new FindUI(masterPanel, model);
+      dialog.setVisible(true);
+   }
+}
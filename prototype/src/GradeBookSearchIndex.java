@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Prefix index over the student names, EMPL IDs and assignment names of the
+ * grade book, so Find and Manage Students can list matches as the user
+ * types instead of scanning every student on each keystroke.
+ *
+ * Words are kept lower-cased in a sorted map, so the words starting with a
+ * typed prefix are one contiguous range of it. A query matches a student or
+ * assignment when every word of the query is a prefix of one of its words.
+ * Matches are ranked by which words they hit and how closely, then by the
+ * order they were indexed. Students are indexed by their key in
+ * GradeBookTableModel, which removing another student does not shift; the
+ * model keeps the index current as students are added, renamed and removed.
+ */
+public class GradeBookSearchIndex {
+
+   /* Rank of a match on an EMPL ID, on a name, and the extra rank when a
+      query word is a whole indexed word */
+   private static final int EMPL_ID_WEIGHT = 4;
+   private static final int NAME_WEIGHT = 3;
+   private static final int EXACT_BONUS = 4;
+
+   private final Terms students = new Terms();
+   private final Terms assignments = new Terms();
+
+   /**
+    * Indexes a student under their name and EMPL ID, replacing whatever
+    * they were indexed under before.
+    * @param key key of the student.
+    * @param name full name of the student.
+    * @param emplId EMPL ID of the student.
+    */
+   public void putStudent(int key, String name, String emplId) {
+      students.remove(key);
+      students.add(key, name, NAME_WEIGHT);
+      students.add(key, emplId, EMPL_ID_WEIGHT);
+   }
+
+   public void removeStudent(int key) {
+      students.remove(key);
+   }
+
+   /**
+    * Indexes an assignment under its name, replacing any name it was
+    * indexed under before.
+    * @param assignment index of the assignment.
+    * @param name name of the assignment.
+    */
+   public void putAssignment(int assignment, String name) {
+      assignments.remove(assignment);
+      assignments.add(assignment, name, NAME_WEIGHT);
+   }
+
+   /**
+    * Finds the best-ranked students matching a query.
+    * @param query words typed so far.
+    * @param limit most matches to return.
+    * @return keys of the matching students, best first; empty for a blank
+    *    query.
+    */
+   public int[] findStudents(String query, int limit) {
+      return students.find(query, limit);
+   }
+
+   /**
+    * Finds the best-ranked assignments matching a query.
+    * @param query words typed so far.
+    * @param limit most matches to return.
+    * @return indexes of the matching assignments, best first.
+    */
+   public int[] findAssignments(String query, int limit) {
+      return assignments.find(query, limit);
+   }
+
+   /* Splits text into lower-cased words of letters and digits. */
+   static List<String> words(String text) {
+      List<String> words = new ArrayList<String>();
+      if (text == null) {
+         return words;
+      }
+      int start = -1;
+      for (int i = 0; i <= text.length(); i++) {
+         boolean inWord = i < text.length() &&
+               Character.isLetterOrDigit(text.charAt(i));
+         if (inWord && start < 0) {
+            start = i;
+         }
+         else if (!inWord && start >= 0) {
+            words.add(text.substring(start, i).toLowerCase());
+            start = -1;
+         }
+      }
+      return words;
+   }
+
+   /* One indexed word of one target. */
+   private static class Posting {
+      final int target;
+      final String word;
+      final int weight;
+
+      Posting(int target, String word, int weight) {
+         this.target = target;
+         this.word = word;
+         this.weight = weight;
+      }
+   }
+
+   /* Rank of a target for the query words matched so far. */
+   private static class Match {
+      final int target;
+      int score;
+      int matchedWords;
+      int lastRank;
+
+      Match(int target) {
+         this.target = target;
+      }
+
+      boolean betterThan(Match other) {
+         return score != other.score ? score > other.score :
+               target < other.target;
+      }
+   }
+
+   /* Sorted word index over one kind of target. */
+   private static class Terms {
+      final TreeMap<String, List<Posting>> byWord =
+            new TreeMap<String, List<Posting>>();
+      final Map<Integer, List<Posting>> byTarget =
+            new HashMap<Integer, List<Posting>>();
+
+      void add(int target, String text, int weight) {
+         List<Posting> own = byTarget.get(target);
+         if (own == null) {
+            own = new ArrayList<Posting>(4);
+            byTarget.put(target, own);
+         }
+         for (String word : words(text)) {
+            Posting posting = new Posting(target, word, weight);
+            own.add(posting);
+            List<Posting> bucket = byWord.get(word);
+            if (bucket == null) {
+               bucket = new ArrayList<Posting>(1);
+               byWord.put(word, bucket);
+            }
+            bucket.add(posting);
+         }
+      }
+
+      void remove(int target) {
+         List<Posting> own = byTarget.remove(target);
+         if (own == null) {
+            return;
+         }
+         for (Posting posting : own) {
+            List<Posting> bucket = byWord.get(posting.word);
+            bucket.remove(posting);
+            if (bucket.isEmpty()) {
+               byWord.remove(posting.word);
+            }
+         }
+      }
+
+      int[] find(String query, int limit) {
+         List<String> queryWords = words(query);
+         if (queryWords.isEmpty() || limit <= 0) {
+            return new int[0];
+         }
+
+         // Longest word first keeps the candidate set small.
+         Collections.sort(queryWords, new Comparator<String>() {
+            public int compare(String a, String b) {
+               return b.length() - a.length();
+            }
+         });
+         Map<Integer, Match> matches = null;
+         for (int w = 0; w < queryWords.size(); w++) {
+            String word = queryWords.get(w);
+            Map<Integer, Match> next = new HashMap<Integer, Match>();
+            for (List<Posting> bucket : byWord.subMap(word, true,
+                  word + Character.MAX_VALUE, true).values()) {
+               for (Posting posting : bucket) {
+                  Match match;
+                  if (matches == null) {
+                     match = next.get(posting.target);
+                     if (match == null) {
+                        match = new Match(posting.target);
+                     }
+                  }
+                  else {
+                     match = matches.get(posting.target);
+                     if (match == null) {
+                        continue;
+                     }
+                  }
+                  int rank = posting.weight +
+                        (posting.word.length() == word.length() ?
+                        EXACT_BONUS : 0);
+                  if (match.matchedWords == w) {
+                     match.matchedWords = w + 1;
+                     match.score += rank;
+                     match.lastRank = rank;
+                  }
+                  else if (rank > match.lastRank) {
+                     match.score += rank - match.lastRank;
+                     match.lastRank = rank;
+                  }
+                  next.put(posting.target, match);
+               }
+            }
+            matches = next;
+            if (matches.isEmpty()) {
+               break;
+            }
+         }
+
+         // Worst of the best kept at the head, so it is the one evicted.
+         PriorityQueue<Match> best = new PriorityQueue<Match>(
+               Math.min(limit, matches.size()) + 1,
+               new Comparator<Match>() {
+                  public int compare(Match a, Match b) {
+                     return a.betterThan(b) ? 1 : b.betterThan(a) ? -1 : 0;
+                  }
+               });
+         for (Match match : matches.values()) {
+            if (best.size() < limit) {
+               best.add(match);
+            }
+            else if (match.betterThan(best.peek())) {
+               best.poll();
+               best.add(match);
+            }
+         }
+         int[] found = new int[best.size()];
+         for (int i = found.length - 1; i >= 0; i--) {
+            found[i] = best.poll().target;
+         }
+         return found;
+      }
+   }
+}
@@ -0,0 +1,586 @@
+import javax.swing.event.UndoableEditListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.UndoableEditSupport;
+import java.util.Arrays;
+
+/**
+ * Table model for the grade book that reads every cell lazily from
+ * primitive arrays instead of holding an <code>Object[][]</code> grid.
+ *
+ * Row 0 holds the assignment names under each category header; every other
+ * row is one student. Columns are the student name, the EMPL ID, one column
+ * per assignment, then the percent and letter grade, which are derived from
+ * the scores when a cell is painted. Edits fire cell-level update events so
+ * only the touched cells are repainted.
+ *
+ * Scores typed into a cell or pasted as a range go through applyScores(),
+ * which posts one undoable edit and fires one update event per batch.
+ * Removing a student moves the students after it down one index, so undo
+ * entries name students by a key that is never reused, and skip students
+ * removed since. The search index behind Find and Manage Students uses the
+ * same keys, and is updated along with every change to a name or EMPL ID.
+ */
+public class GradeBookTableModel extends AbstractTableModel {
+
+   public static final int ASMT_ROW = 0;
+   public static final int NAME_COL = 0;
+   public static final int EMPL_ID_COL = 1;
+   public static final int FIRST_ASMT_COL = 2;
+
+   private static final int INITIAL_CAPACITY = 16;
+
+   /* Shared strings for every whole percentage, so painting does not
+      allocate. */
+   private static final String[] PERCENT_TEXT = new String[101];
+
+   static {
+      for (int i = 0; i < PERCENT_TEXT.length; i++) {
+         PERCENT_TEXT[i] = i + "%";
+      }
+   }
+
+   private String[] categoryNames;
+   private String[] assignmentNames;
+   private int[] maxPoints;
+
+   private String[] studentNames = new String[INITIAL_CAPACITY];
+   private String[] studentIds = new String[INITIAL_CAPACITY];
+   private int studentCount;
+
+   /* Key of every student, and the index of the student with each key, or
+      -1 once they are removed. Keys are handed out in order from 0. */
+   private int[] studentKeys = new int[INITIAL_CAPACITY];
+   private int[] indexOfKey = new int[INITIAL_CAPACITY];
+   private int nextKey;
+
+   private final GradeBookSearchIndex searchIndex =
+         new GradeBookSearchIndex();
+
+   /* Scores, indexed by assignment then student. */
+   private int[][] scores;
+
+   /* Sum of the scores of every student, kept current by ScoreEdit. */
+   private int[] totals = new int[INITIAL_CAPACITY];
+   private int totalMaxPoints;
+
+   /* Orders the students can be listed in, and the one shown */
+   private final StudentOrder order = new StudentOrder(this);
+   private int viewOrder = StudentOrder.INSERTION;
+
+   /* Position of every student in the order shown, unless it is insertion
+      order */
+   private int[] positionOf = new int[INITIAL_CAPACITY];
+
+   private final UndoableEditSupport undoSupport =
+         new UndoableEditSupport(this);
+
+   /* What students see: each student's scores, then their percentage, as of
+      the last publication; null until grades are first published */
+   private int[][] publishedViews;
+
+   public GradeBookTableModel(String[] categoryNames, String[] assignmentNames,
+         int[] maxPoints) {
+      this.categoryNames = categoryNames.clone();
+      this.assignmentNames = assignmentNames.clone();
+      this.maxPoints = maxPoints.clone();
+      scores = new int[assignmentNames.length][INITIAL_CAPACITY];
+      for (int points : maxPoints) {
+         totalMaxPoints += points;
+      }
+      for (int a = 0; a < assignmentNames.length; a++) {
+         searchIndex.putAssignment(a, assignmentNames[a]);
+      }
+   }
+
+   /**
+    * Creates the sample grade book shown by the prototype.
+    * @return model with two assignments and two students.
+    */
+   public static GradeBookTableModel createSample() {
+      GradeBookTableModel model = new GradeBookTableModel(
+            new String[] {"Project", "Test"},
+            new String[] {"Capstone", "Final Exam"},
+            new int[] {100, 100});
+      model.addStudent("John Doe", "00000001");
+      model.addStudent("Jane Doe", "00000002");
+      return model;
+   }
+
+   /**
+    * Appends a student with every score at zero.
+    * @param name full name of the student.
+    * @param emplId EMPL ID of the student.
+    */
+   public void addStudent(String name, String emplId) {
+      if (studentCount == studentNames.length) {
+         int capacity = studentCount * 2;
+         studentNames = Arrays.copyOf(studentNames, capacity);
+         studentIds = Arrays.copyOf(studentIds, capacity);
+         studentKeys = Arrays.copyOf(studentKeys, capacity);
+         totals = Arrays.copyOf(totals, capacity);
+         positionOf = Arrays.copyOf(positionOf, capacity);
+         for (int a = 0; a < scores.length; a++) {
+            scores[a] = Arrays.copyOf(scores[a], capacity);
+         }
+      }
+      if (nextKey == indexOfKey.length) {
+         indexOfKey = Arrays.copyOf(indexOfKey, nextKey * 2);
+      }
+      studentNames[studentCount] = name;
+      studentIds[studentCount] = emplId;
+      studentKeys[studentCount] = nextKey;
+      indexOfKey[nextKey++] = studentCount;
+      searchIndex.putStudent(studentKeys[studentCount], name, emplId);
+      studentCount++;
+      order.studentAdded(studentCount - 1);
+      if (viewOrder == StudentOrder.INSERTION) {
+         fireTableRowsInserted(studentCount, studentCount);
+      }
+      else {
+         updatePositions();
+         fireTableDataChanged();
+      }
+   }
+
+   /**
+    * Removes a student. Students after it move down one index, and the
+    * orders are kept sorted without sorting again.
+    * @param student index of the student.
+    */
+   public void removeStudent(int student) {
+      int row = rowOfStudent(student);
+      int after = studentCount - student - 1;
+      System.arraycopy(studentNames, student + 1, studentNames, student,
+            after);
+      System.arraycopy(studentIds, student + 1, studentIds, student, after);
+      System.arraycopy(totals, student + 1, totals, student, after);
+      for (int a = 0; a < scores.length; a++) {
+         System.arraycopy(scores[a], student + 1, scores[a], student, after);
+      }
+      indexOfKey[studentKeys[student]] = -1;
+      searchIndex.removeStudent(studentKeys[student]);
+      System.arraycopy(studentKeys, student + 1, studentKeys, student, after);
+      for (int s = student; s < student + after; s++) {
+         indexOfKey[studentKeys[s]] = s;
+      }
+      studentCount--;
+      studentNames[studentCount] = null;
+      studentIds[studentCount] = null;
+      order.studentRemoved(student);
+      updatePositions();
+      fireTableRowsDeleted(row, row);
+   }
+
+   public int getViewOrder() {
+      return viewOrder;
+   }
+
+   /**
+    * Lists the students in another order. The order is already kept sorted,
+    * so this only swaps which permutation rows are read through.
+    * @param newOrder one of the StudentOrder constants.
+    */
+   public void setViewOrder(int newOrder) {
+      viewOrder = newOrder;
+      updatePositions();
+      fireTableRowsUpdated(1, studentCount);
+   }
+
+   /**
+    * Moves the Name column to its next order: insertion, first name, last
+    * name, then the pinned score column if there is one.
+    */
+   public void cycleNameOrder() {
+      int next = viewOrder + 1;
+      if (next > StudentOrder.SCORE ||
+            (next == StudentOrder.SCORE && order.getPinnedAssignment() < 0)) {
+         next = StudentOrder.INSERTION;
+      }
+      setViewOrder(next);
+   }
+
+   /**
+    * Lists the students by their score on an assignment, highest first.
+    * @param assignment index of the assignment.
+    */
+   public void pinScoreOrder(int assignment) {
+      order.pin(assignment);
+      setViewOrder(StudentOrder.SCORE);
+   }
+
+   public int getStudentCount() {
+      return studentCount;
+   }
+
+   public int getAssignmentCount() {
+      return assignmentNames.length;
+   }
+
+   public String getStudentName(int student) {
+      return studentNames[student];
+   }
+
+   public String getStudentId(int student) {
+      return studentIds[student];
+   }
+
+   public String getAssignmentName(int assignment) {
+      return assignmentNames[assignment];
+   }
+
+   public String getCategoryName(int assignment) {
+      return categoryNames[assignment];
+   }
+
+   public int getMaxPoints(int assignment) {
+      return maxPoints[assignment];
+   }
+
+   public int getScore(int student, int assignment) {
+      return scores[assignment][student];
+   }
+
+   /**
+    * Copies the scores of one assignment, for work off the event thread.
+    * @param assignment index of the assignment.
+    * @return score of every student, in student order.
+    */
+   public int[] copyScores(int assignment) {
+      return Arrays.copyOf(scores[assignment], studentCount);
+   }
+
+   /**
+    * Sets a batch of scores as one undoable edit. Totals and the score order
+    * are brought up to date once for the whole batch, and one event repaints
+    * the rows it touched.
+    * @param cells (student, assignment, score) triples.
+    * @param count number of triples in cells.
+    */
+   public void applyScores(int[] cells, int count) {
+      // Keep the old score of each cell beside the new one for undo, with
+      // the student's key in place of their index
+      int[] edits = new int[count * 4];
+      int changed = 0;
+      for (int i = 0; i < count; i++) {
+         int student = cells[i * 3];
+         int assignment = cells[i * 3 + 1];
+         int score = cells[i * 3 + 2];
+         if (scores[assignment][student] != score) {
+            edits[changed * 4] = studentKeys[student];
+            edits[changed * 4 + 1] = assignment;
+            edits[changed * 4 + 2] = scores[assignment][student];
+            edits[changed * 4 + 3] = score;
+            changed++;
+         }
+      }
+      if (changed == 0) {
+         return;
+      }
+      ScoreEdit edit = new ScoreEdit(Arrays.copyOf(edits, changed * 4),
+            changed);
+      edit.write(3);
+      undoSupport.postEdit(edit);
+   }
+
+   /**
+    * Finds the students whose name or EMPL ID match what has been typed.
+    * @param query words typed so far; each must start a word of the name
+    *    or the EMPL ID.
+    * @param limit most matches to return.
+    * @return indexes of the matching students, best first.
+    */
+   public int[] findStudents(String query, int limit) {
+      int[] found = searchIndex.findStudents(query, limit);
+      for (int i = 0; i < found.length; i++) {
+         found[i] = indexOfKey[found[i]];
+      }
+      return found;
+   }
+
+   /**
+    * Finds the assignments whose name matches what has been typed.
+    * @param query words typed so far.
+    * @param limit most matches to return.
+    * @return indexes of the matching assignments, best first.
+    */
+   public int[] findAssignments(String query, int limit) {
+      return searchIndex.findAssignments(query, limit);
+   }
+
+   /**
+    * Replaces every published view at once.
+    * @param views score on each assignment then the percentage, by student.
+    */
+   public void setPublishedViews(int[][] views) {
+      publishedViews = views;
+   }
+
+   public void addUndoableEditListener(UndoableEditListener listener) {
+      undoSupport.addUndoableEditListener(listener);
+   }
+
+   public void removeUndoableEditListener(UndoableEditListener listener) {
+      undoSupport.removeUndoableEditListener(listener);
+   }
+
+   /**
+    * Returns the whole percentage a student has earned.
+    * @param student index of the student.
+    * @return percentage from 0 up.
+    */
+   public int getPercent(int student) {
+      return totalMaxPoints == 0 ? 0 : 100 * totals[student] / totalMaxPoints;
+   }
+
+   /**
+    * Returns the letter grade for a whole percentage.
+    * @param percent percentage to convert.
+    * @return letter grade.
+    */
+   public static String letterOf(int percent) {
+      if (percent >= 90) {
+         return "A";
+      }
+      if (percent >= 80) {
+         return "B";
+      }
+      if (percent >= 70) {
+         return "C";
+      }
+      if (percent >= 60) {
+         return "D";
+      }
+      return "F";
+   }
+
+   public static String percentText(int percent) {
+      return PERCENT_TEXT[Math.max(0, Math.min(100, percent))];
+   }
+
+   public int getPercentColumn() {
+      return FIRST_ASMT_COL + assignmentNames.length;
+   }
+
+   public int getLetterColumn() {
+      return getPercentColumn() + 1;
+   }
+
+   public int rowOfStudent(int student) {
+      return viewOrder == StudentOrder.INSERTION ? student + 1 :
+            positionOf[student] + 1;
+   }
+
+   public int studentOfRow(int row) {
+      return viewOrder == StudentOrder.INSERTION ? row - 1 :
+            order.getPermutation(viewOrder)[row - 1];
+   }
+
+   private void updatePositions() {
+      if (viewOrder != StudentOrder.INSERTION) {
+         int[] permutation = order.getPermutation(viewOrder);
+         for (int i = 0; i < studentCount; i++) {
+            positionOf[permutation[i]] = i;
+         }
+      }
+   }
+
+   /* Repaints the rows between where a student was shown and where their
+      new name or score puts them. */
+   private void studentMoved(int student) {
+      int oldRow = rowOfStudent(student);
+      updatePositions();
+      int newRow = rowOfStudent(student);
+      fireTableRowsUpdated(Math.min(oldRow, newRow),
+            Math.max(oldRow, newRow));
+   }
+
+   public int getRowCount() {
+      return studentCount + 1;
+   }
+
+   public int getColumnCount() {
+      return getLetterColumn() + 1;
+   }
+
+   public String getColumnName(int column) {
+      if (column < FIRST_ASMT_COL) {
+         return "Student";
+      }
+      if (column < getPercentColumn()) {
+         return categoryNames[column - FIRST_ASMT_COL];
+      }
+      return "Grade";
+   }
+
+   public Class getColumnClass(int column) {
+      return column == NAME_COL ? String.class : Object.class;
+   }
+
+   public boolean isCellEditable(int row, int column) {
+      return column < getPercentColumn() &&
+            (row != ASMT_ROW || column >= FIRST_ASMT_COL);
+   }
+
+   public Object getValueAt(int row, int column) {
+      if (row == ASMT_ROW) {
+         if (column == NAME_COL) {
+            return "Name";
+         }
+         if (column == EMPL_ID_COL) {
+            return "ID";
+         }
+         if (column < getPercentColumn()) {
+            return assignmentNames[column - FIRST_ASMT_COL];
+         }
+         return column == getPercentColumn() ? "Percent" : "Letter";
+      }
+
+      int student = studentOfRow(row);
+      if (column == NAME_COL) {
+         return studentNames[student];
+      }
+      if (column == EMPL_ID_COL) {
+         return studentIds[student];
+      }
+      if (column < getPercentColumn()) {
+         // Integer.valueOf hands out cached instances for typical scores.
+         return Integer.valueOf(scores[column - FIRST_ASMT_COL][student]);
+      }
+      int percent = getPercent(student);
+      return column == getPercentColumn() ? percentText(percent) :
+            letterOf(percent);
+   }
+
+   public void setValueAt(Object value, int row, int column) {
+      if (row == ASMT_ROW) {
+         assignmentNames[column - FIRST_ASMT_COL] = String.valueOf(value);
+         searchIndex.putAssignment(column - FIRST_ASMT_COL,
+               assignmentNames[column - FIRST_ASMT_COL]);
+         fireTableCellUpdated(row, column);
+         return;
+      }
+
+      int student = studentOfRow(row);
+      if (column == NAME_COL) {
+         studentNames[student] = String.valueOf(value);
+         searchIndex.putStudent(studentKeys[student], studentNames[student],
+               studentIds[student]);
+         order.nameChanged(student);
+         if (viewOrder == StudentOrder.FIRST_NAME ||
+               viewOrder == StudentOrder.LAST_NAME) {
+            studentMoved(student);
+         }
+         else {
+            fireTableCellUpdated(row, column);
+         }
+      }
+      else if (column == EMPL_ID_COL) {
+         studentIds[student] = String.valueOf(value);
+         searchIndex.putStudent(studentKeys[student], studentNames[student],
+               studentIds[student]);
+         fireTableCellUpdated(row, column);
+      }
+      else {
+         try {
+            applyScores(new int[] {student, column - FIRST_ASMT_COL,
+                  Integer.parseInt(String.valueOf(value).trim())}, 1);
+         }
+         catch (NumberFormatException e) {
+            // not a score; keep the old value
+         }
+      }
+   }
+
+   /**
+    * Scores changed together by one typed cell or one paste, undone and
+    * redone as a unit.
+    */
+   private class ScoreEdit extends AbstractUndoableEdit {
+
+      /* (student key, assignment, old score, new score) per cell */
+      private final int[] cells;
+      private final int count;
+
+      ScoreEdit(int[] cells, int count) {
+         this.cells = cells;
+         this.count = count;
+      }
+
+      public String getPresentationName() {
+         return count == 1 ? "Score" : "Paste";
+      }
+
+      public void undo() {
+         super.undo();
+         write(2);
+      }
+
+      public void redo() {
+         super.redo();
+         write(3);
+      }
+
+      /* Writes the old (2) or new (3) score of every cell whose student is
+         still in the grade book, then repaints the rows touched in one
+         event. */
+      void write(int which) {
+         int[] students = new int[count];
+         int live = 0;
+         int pinned = order.getPinnedAssignment();
+         int pinnedCells = 0;
+         for (int i = 0; i < count; i++) {
+            int student = indexOfKey[cells[i * 4]];
+            students[i] = student;
+            if (student < 0) {
+               continue;
+            }
+            live++;
+            int assignment = cells[i * 4 + 1];
+            int score = cells[i * 4 + which];
+            totals[student] += score - scores[assignment][student];
+            scores[assignment][student] = score;
+            if (assignment == pinned) {
+               pinnedCells++;
+            }
+         }
+
+         // One cell moves incrementally; more are cheaper to re-sort once.
+         boolean moved = pinnedCells > 0 && viewOrder == StudentOrder.SCORE;
+         if (pinnedCells == 1) {
+            for (int i = 0; i < count; i++) {
+               if (students[i] >= 0 && cells[i * 4 + 1] == pinned) {
+                  order.scoreChanged(students[i], pinned);
+               }
+            }
+         }
+         else if (pinnedCells > 1) {
+            order.pin(pinned);
+         }
+         if (live == 0) {
+            return;
+         }
+
+         int firstRow = Integer.MAX_VALUE;
+         int lastRow = 0;
+         for (int i = 0; i < count; i++) {
+            if (students[i] >= 0) {
+               int row = rowOfStudent(students[i]);
+               firstRow = Math.min(firstRow, row);
+               lastRow = Math.max(lastRow, row);
+            }
+         }
+         if (moved) {
+            updatePositions();
+            for (int i = 0; i < count; i++) {
+               if (students[i] >= 0) {
+                  int row = rowOfStudent(students[i]);
+                  firstRow = Math.min(firstRow, row);
+                  lastRow = Math.max(lastRow, row);
+               }
+            }
+         }
+         fireTableRowsUpdated(firstRow, lastRow);
+      }
+   }
+}
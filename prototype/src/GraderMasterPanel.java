@@ -5,6 +5,20 @@
  */
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoManager;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.io.Reader;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 
@@ -19,6 +33,8 @@ public class GraderMasterPanel extends javax.swing.JPanel {
      */
     public GraderMasterPanel() {
         initComponents();
+        initStatistics();
+        initEditing();
     }
 
     /**
@@ -38,7 +54,7 @@ public class GraderMasterPanel extends javax.swing.JPanel {
         jPanel4 = new javax.swing.JPanel();
         jScrollPane2 = new javax.swing.JScrollPane();
         statsTable = new javax.swing.JTable();
-        trendGraphsPanel = new javax.swing.JPanel();
+        trendGraphsPanel = new TrendGraphPanel();
         quickMenuPanel = new javax.swing.JPanel();
         addNewButton = new javax.swing.JButton();
         selectCategoryCombo = new javax.swing.JComboBox();
@@ -48,26 +64,8 @@ public class GraderMasterPanel extends javax.swing.JPanel {
 
         gradeBookTable.addMouseListener(tableMouseListener);
         gradeBookTable.getTableHeader().addMouseListener(headerMouseListener);
-        gradeBookTable.setModel(new javax.swing.table.DefaultTableModel(
-            new Object [][] {
-                {"Name", "ID", "Capstone", "Final Exam", "Percent", "Letter"},
-                {"John Doe", "00000001", 0, 0, "0%", "F"},
-                {"Jane Doe", "00000002", 0, 0, "0%", "F"}
-            },
-            new String [] {
-                "Student", "Student", "Project", "Test", "Grade", "Grade"
-            }
-        ) {
-            Class[] types = new Class [] {
-                java.lang.String.class, java.lang.Object.class,
-                java.lang.Object.class, java.lang.Object.class,
-                java.lang.Object.class, java.lang.Object.class
-            };
-
-            public Class getColumnClass(int columnIndex) {
-                return types [columnIndex];
-            }
-        });
+        gradeBookTable.setModel(gradeBookView);
+        gradeBookTable.setDefaultRenderer(Object.class, new ScoreCellRenderer());
        jScrollPane1.setViewportView(gradeBookTable);
 
         javax.swing.GroupLayout jPanel3Layout = new javax.swing.GroupLayout(jPanel3);
@@ -177,6 +175,11 @@ public class GraderMasterPanel extends javax.swing.JPanel {
         });
 
         jButton2.setText("Publish Grades");
+        jButton2.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jButton2ActionPerformed(evt);
+            }
+        });
 
        jComboBox2.setModel(new javax.swing.DefaultComboBoxModel(new String[]{"Seletect Target ...", "to Students", "to School" }));
         jComboBox2.addActionListener(new java.awt.event.ActionListener() {
@@ -254,6 +257,10 @@ public class GraderMasterPanel extends javax.swing.JPanel {
         // TODO add your handling code here:
     }//GEN-LAST:event_jComboBox2ActionPerformed
 
+    private void jButton2ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton2ActionPerformed
+        publishGrades();
+    }//GEN-LAST:event_jButton2ActionPerformed
+
     private void jButton3ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton3ActionPerformed
         // TODO add your handling code here:
     }//GEN-LAST:event_jButton3ActionPerformed
@@ -276,7 +283,7 @@ public class GraderMasterPanel extends javax.swing.JPanel {
     private javax.swing.JPanel quickMenuPanel;
     private javax.swing.JComboBox selectCategoryCombo;
     private javax.swing.JTable statsTable;
-    private javax.swing.JPanel trendGraphsPanel;
+    private TrendGraphPanel trendGraphsPanel;
     // End of variables declaration//GEN-END:variables
 
 
@@ -287,15 +294,280 @@ public class GraderMasterPanel extends javax.swing.JPanel {
    private static final int PROJ_COL = 2;
    private static final int TEST_COL = 3;
 
+   /* Grade book contents, read lazily by the table as cells are painted */
+   private final GradeBookTableModel gradeBookModel =
+         GradeBookTableModel.createSample();
+
+   /* Columns of the grade book left visible by Edit > Filter */
+   private final ColumnProjectionModel gradeBookView =
+         new ColumnProjectionModel(gradeBookModel);
+
    private JPopupMenu contextMenu = new JPopupMenu("Context Menu");
 
+   /* Recomputes statsTable and the trend graphs off the event thread */
+   private StatisticsPipeline statisticsPipeline;
+
+   private static final int STAT_FIRST_ASMT_COL = 2;
+
+   private void initStatistics() {
+      statisticsPipeline = new StatisticsPipeline(gradeBookModel,
+            new StatisticsPipeline.Listener() {
+               public void statisticsComputed(StatisticsPipeline.Result r) {
+                  showStatistics(r);
+               }
+            });
+      gradeBookModel.addTableModelListener(new TableModelListener() {
+         public void tableChanged(TableModelEvent e) {
+            statisticsPipeline.requestRecompute();
+         }
+      });
+      statisticsPipeline.requestRecompute();
+   }
+
+   private void showStatistics(StatisticsPipeline.Result result) {
+      TableModel stats = statsTable.getModel();
+      int assignments = gradeBookModel.getAssignmentCount();
+      for (int row = 0; row < stats.getRowCount(); row++) {
+         for (int a = 0; a < assignments; a++) {
+            stats.setValueAt((int) Math.round(result.get(row, a)), row,
+                  STAT_FIRST_ASMT_COL + a);
+         }
+         int percent = (int) Math.round(result.getPercent(row));
+         stats.setValueAt(GradeBookTableModel.percentText(percent), row,
+               STAT_FIRST_ASMT_COL + assignments);
+         stats.setValueAt(GradeBookTableModel.letterOf(percent), row,
+               STAT_FIRST_ASMT_COL + assignments + 1);
+      }
+      trendGraphsPanel.setStatistics(result);
+   }
+
+   /* Undo history of score edits made in gradeBookTable */
+   private final UndoManager undoManager = new UndoManager();
+
+   private void initEditing() {
+      gradeBookModel.addUndoableEditListener(undoManager);
+      // Replace the table's own paste, which would set one cell from the
+      // whole clipboard text.
+      gradeBookTable.getActionMap().put(
+            TransferHandler.getPasteAction().getValue(Action.NAME),
+            new AbstractAction() {
+               public void actionPerformed(java.awt.event.ActionEvent evt) {
+                  pasteScores();
+               }
+            });
+   }
+
+   /**
+    * Pastes a tab-separated range of scores from the system clipboard with
+    * its top-left cell at the selected cell. Cells that land outside the
+    * score columns, or are not numbers, are left alone. The range is set as
+    * one edit, so one undo takes all of it back.
+    */
+   public void pasteScores() {
+      int anchorRow = gradeBookTable.getSelectedRow();
+      int anchorCol = gradeBookTable.getSelectedColumn();
+      if (anchorRow < 0 || anchorCol < 0) {
+         return;
+      }
+      if (gradeBookTable.isEditing()) {
+         gradeBookTable.getCellEditor().cancelCellEditing();
+      }
+
+      PastedScores pasted;
+      try {
+         pasted = readClipboard();
+      }
+      catch (IOException | UnsupportedFlavorException
+            | IllegalStateException e) {
+         Toolkit.getDefaultToolkit().beep();
+         return;
+      }
+      if (pasted == null || pasted.getCount() == 0) {
+         return;
+      }
+
+      // Map each pasted cell through the row order and column filter shown
+      int[] modelColumns = new int[pasted.getColumnCount()];
+      for (int c = 0; c < modelColumns.length; c++) {
+         int viewCol = anchorCol + c;
+         modelColumns[c] = viewCol >= gradeBookTable.getColumnCount() ? -1 :
+               gradeBookView.toModelColumn(
+                     gradeBookTable.convertColumnIndexToModel(viewCol));
+      }
+      int[] cells = new int[pasted.getCount() * 3];
+      int count = 0;
+      for (int i = 0; i < pasted.getCount(); i++) {
+         int row = anchorRow + pasted.getRow(i);
+         int col = modelColumns[pasted.getColumn(i)];
+         if (row == ASMT_ROW || row >= gradeBookModel.getRowCount() ||
+               col < GradeBookTableModel.FIRST_ASMT_COL ||
+               col >= gradeBookModel.getPercentColumn()) {
+            continue;
+         }
+         cells[count * 3] = gradeBookModel.studentOfRow(row);
+         cells[count * 3 + 1] = col - GradeBookTableModel.FIRST_ASMT_COL;
+         cells[count * 3 + 2] = pasted.getScore(i);
+         count++;
+      }
+      gradeBookModel.applyScores(cells, count);
+   }
+
+   /* Parses the clipboard text as it is read, without copying it into one
+      String first when the clipboard offers a text stream. */
+   private PastedScores readClipboard()
+         throws IOException, UnsupportedFlavorException {
+      Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+      Transferable contents = clipboard.getContents(null);
+      if (contents == null) {
+         return null;
+      }
+      DataFlavor flavor = DataFlavor.selectBestTextFlavor(
+            contents.getTransferDataFlavors());
+      if (flavor == null) {
+         if (!contents.isDataFlavorSupported(DataFlavor.stringFlavor)) {
+            return null;
+         }
+         flavor = DataFlavor.stringFlavor;
+      }
+      Reader in = flavor.getReaderForText(contents);
+      try {
+         return PastedScores.read(in);
+      }
+      finally {
+         in.close();
+      }
+   }
+
+   /**
+    * Takes back the last score edit or paste.
+    */
+   public void undo() {
+      try {
+         undoManager.undo();
+      }
+      catch (CannotUndoException e) {
+         Toolkit.getDefaultToolkit().beep();
+      }
+   }
+
+   /**
+    * Makes the last undone score edit or paste again.
+    */
+   public void redo() {
+      try {
+         undoManager.redo();
+      }
+      catch (CannotRedoException e) {
+         Toolkit.getDefaultToolkit().beep();
+      }
+   }
+
+   /**
+    * Asks to publish the grade book for students to view, then publishes it
+    * in the background with a progress bar and Cancel.
+    */
+   public void publishGrades() {
+      if (gradeBookTable.isEditing()) {
+         gradeBookTable.getCellEditor().stopCellEditing();
+      }
+      PublishGradesUI.showPublishGradesUI(gradeBookModel);
+   }
+
+   /**
+    * Asks to delete the student in the selected row, then removes them from
+    * the grade book.
+    */
+   public void deleteStudent() {
+      int row = gradeBookTable.getSelectedRow();
+      if (row <= ASMT_ROW) {
+         Toolkit.getDefaultToolkit().beep();
+         return;
+      }
+      if (gradeBookTable.isEditing()) {
+         gradeBookTable.getCellEditor().cancelCellEditing();
+      }
+      DeleteStudentUI.showDeleteStudentUI(gradeBookModel,
+            gradeBookModel.studentOfRow(row));
+   }
+
+   /**
+    * Opens Find, which searches the students and assignments as the user
+    * types.
+    */
+   public void find() {
+      FindUI.showFindUI(this, gradeBookModel);
+   }
+
+   /**
+    * Opens Manage Students, which searches the students by name or EMPL ID.
+    */
+   public void manageStudents() {
+      if (gradeBookTable.isEditing()) {
+         gradeBookTable.getCellEditor().stopCellEditing();
+      }
+      ModifyStudentUI.showAddStudentUI(gradeBookModel);
+   }
+
+   /**
+    * Selects a student's row and scrolls it into view.
+    * @param student index of the student.
+    */
+   public void showStudent(int student) {
+      gradeBookTable.changeSelection(gradeBookModel.rowOfStudent(student),
+            gradeBookTable.convertColumnIndexToView(NAME_COL), false, false);
+   }
+
+   /**
+    * Selects the name cell of an assignment and scrolls it into view, unless
+    * Edit > Filter hides it.
+    * @param assignment index of the assignment.
+    */
+   public void showAssignment(int assignment) {
+      int modelCol = GradeBookTableModel.FIRST_ASMT_COL + assignment;
+      for (int col = 0; col < gradeBookView.getColumnCount(); col++) {
+         if (gradeBookView.toModelColumn(col) == modelCol) {
+            gradeBookTable.changeSelection(ASMT_ROW,
+                  gradeBookTable.convertColumnIndexToView(col), false, false);
+            return;
+         }
+      }
+      Toolkit.getDefaultToolkit().beep();
+   }
+
+   public ColumnProjectionModel getColumnProjection() {
+      return gradeBookView;
+   }
+
+   /* Grade book column under a point, whatever columns are filtered out */
+   private int modelColumnAt(Point point) {
+      int col = gradeBookTable.columnAtPoint(point);
+      return col < 0 ? -1 : gradeBookView.toModelColumn(
+            gradeBookTable.convertColumnIndexToModel(col));
+   }
+
+   /**
+    * Shows the distribution of percent grades in the trend graph panel.
+    */
+   public void showHistogram() {
+      trendGraphsPanel.setMode(TrendGraphPanel.HISTOGRAM);
+      statisticsPipeline.requestRecompute();
+   }
+
+   /**
+    * Shows the distribution of letter grades in the trend graph panel.
+    */
+   public void showPieChart() {
+      trendGraphsPanel.setMode(TrendGraphPanel.PIE_CHART);
+      statisticsPipeline.requestRecompute();
+   }
+
    /* Listener to respond to mouse clicks on the table */
    private MouseAdapter tableMouseListener = new MouseAdapter()
    {
       public void mouseReleased(MouseEvent ev)
       {
          // obtain the selected cell coordinates
-         int col = gradeBookTable.columnAtPoint(ev.getPoint());
+         int col = modelColumnAt(ev.getPoint());
          int row = gradeBookTable.rowAtPoint(ev.getPoint());
          // Is it a right mouse click?
          if (SwingUtilities.isRightMouseButton(ev))
@@ -310,11 +582,13 @@ public class GraderMasterPanel extends javax.swing.JPanel {
                }
                contextMenu.show(ev.getComponent(), ev.getX(), ev.getY());
             }
-            else if (row != ASMT_ROW && (col == NAME_COL ||
+            else if (row > ASMT_ROW && (col == NAME_COL ||
                   col == EMPL_ID_COL)) {
+               // Delete Student acts on the selected row
+               gradeBookTable.setRowSelectionInterval(row, row);
                contextMenu = new JPopupMenu("Context: Student");
-               for (JMenuItem item : new StudentMenuItems().
-                     getContextMenuItems()) {
+               for (JMenuItem item : new StudentMenuItems(
+                     GraderMasterPanel.this).getContextMenuItems()) {
                   contextMenu.add(item);
                }
                contextMenu.show(ev.getComponent(), ev.getX(), ev.getY());
@@ -330,7 +604,18 @@ public class GraderMasterPanel extends javax.swing.JPanel {
       public void mouseReleased(MouseEvent ev)
       {
          // obtain the selected cell coordinates
-         int col = gradeBookTable.columnAtPoint(ev.getPoint());
+         int col = modelColumnAt(ev.getPoint());
+         if (SwingUtilities.isLeftMouseButton(ev))
+         {
+            if (col == NAME_COL) {
+               gradeBookModel.cycleNameOrder();
+            }
+            else if (col >= GradeBookTableModel.FIRST_ASMT_COL &&
+                  col < gradeBookModel.getPercentColumn()) {
+               gradeBookModel.pinScoreOrder(
+                     col - GradeBookTableModel.FIRST_ASMT_COL);
+            }
+         }
          // Is it a right mouse click?
          if (SwingUtilities.isRightMouseButton(ev))
          {
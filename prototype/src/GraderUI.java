@@ -5,12 +5,12 @@ import java.awt.event.KeyEvent;
 public class GraderUI extends JFrame {
 
    private JMenuBar menuBar;
-   private JPanel masterPanel;
+   private GraderMasterPanel masterPanel;
 
    public GraderUI() throws HeadlessException {
       setupFrame();
-      constructMenuBar();
       constructTopLevelPanels();
+      constructMenuBar();
 
       setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
       setLocationRelativeTo(null);
@@ -39,11 +39,11 @@ public class GraderUI extends JFrame {
       JMenu help = new JMenu("Help");
       help.setMnemonic(KeyEvent.VK_H);
 
-      addAllMenuItems(file, new FileMenuItems());
-      addAllMenuItems(edit, new EditMenuItems());
+      addAllMenuItems(file, new FileMenuItems(masterPanel));
+      addAllMenuItems(edit, new EditMenuItems(masterPanel));
       addAllMenuItems(course, new ClassMenuItems());
-      addAllMenuItems(student, new StudentMenuItems());
-      addAllMenuItems(graph, new GraphMenuItems());
+      addAllMenuItems(student, new StudentMenuItems(masterPanel));
+      addAllMenuItems(graph, new GraphMenuItems(masterPanel));
       addAllMenuItems(assignment, new AssignmentMenuItems());
       addAllMenuItems(help, new HelpMenuItems());
 
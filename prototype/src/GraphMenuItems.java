@@ -6,8 +6,10 @@ import java.util.ArrayList;
 public class GraphMenuItems implements MenuItemProvider {
 
    private ArrayList<JMenuItem> graphMenuItems;
+   private GraderMasterPanel masterPanel;
 
-   public GraphMenuItems() {
+   public GraphMenuItems(GraderMasterPanel masterPanel) {
+      this.masterPanel = masterPanel;
       graphMenuItems = new ArrayList<JMenuItem>();
       createMenuItems();
    }
@@ -26,8 +28,7 @@ public class GraphMenuItems implements MenuItemProvider {
          // Anonymous inner classes are used here for brevity, but should be
          // named classes in production code.
          public void actionPerformed(ActionEvent e) {
-            //add code here to pull up accroding menu
-            System.out.println("Histogram Clicked");
+            masterPanel.showHistogram();
          }
       });
 
@@ -43,8 +44,7 @@ public class GraphMenuItems implements MenuItemProvider {
          // Anonymous inner classes are used here for brevity, but should be
          // named classes in production code.
          public void actionPerformed(ActionEvent e) {
-            ///add code here to pull up accroding menu
-            System.out.println("Pie Chart Clicked");
+            masterPanel.showPieChart();
          }
       });
 
@@ -2,10 +2,29 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
+/**
+ * Manage Students: finds a student by name or EMPL ID through the grade
+ * book's search index as the user types, and edits their name and EMPL ID.
+ */
 public class ModifyStudentUI extends JDialog {
 
-	public ModifyStudentUI() {
+    private static final int MAX_MATCHES = 20;
+
+    private final GradeBookTableModel model;
+
+    /* Students listed after "Select Student..." in studentSelectBox */
+    private int[] matches = new int[0];
+
+    private JComboBox studentSelectBox;
+    private JTextField studentSelectField;
+    private JTextField studentNameField;
+    private JTextField emplField;
+
+	public ModifyStudentUI(GradeBookTableModel model) {
+        this.model = model;
         initUI();
 	}
 
@@ -22,12 +41,31 @@ public class ModifyStudentUI extends JDialog {
         studentSelectPanel.setAlignmentX(Component.CENTER_ALIGNMENT);
         studentSelectPanel.setLayout(new BoxLayout(studentSelectPanel, BoxLayout.X_AXIS));
 
-        String[] studentNames = {"Select Student...", "John Doe", "Jane Doe"};
-        JComboBox studentSelectBox = new JComboBox(studentNames);
+        studentSelectBox = new JComboBox();
+        studentSelectBox.setPrototypeDisplayValue("Select Student...........");
         studentSelectBox.setMaximumSize(studentSelectBox.getPreferredSize());
+        studentSelectBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                showSelected();
+            }
+        });
 
-        JTextField studentSelectField = new JTextField("Search...");
+        studentSelectField = new JTextField("Search...");
         studentSelectField.setMaximumSize(new Dimension(200, 100));
+        studentSelectField.getDocument().addDocumentListener(
+              new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                search();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                search();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                search();
+            }
+        });
 
         studentSelectPanel.add(studentSelectBox);
         studentSelectPanel.add(studentSelectField);
@@ -43,7 +81,7 @@ public class ModifyStudentUI extends JDialog {
         studentNamePanel.add(new JLabel("Student Name:"));
         studentNamePanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JTextField studentNameField = new JTextField(15);
+        studentNameField = new JTextField(15);
         studentNameField.setMaximumSize(studentNameField.getPreferredSize());
 
         studentNamePanel.add(studentNameField);
@@ -60,7 +98,7 @@ public class ModifyStudentUI extends JDialog {
         emplPanel.add(new JLabel("EMPL ID:"));
         emplPanel.add(Box.createRigidArea(new Dimension(10, 0)));
 
-        JTextField emplField = new JTextField(15);
+        emplField = new JTextField(15);
         emplField.setMaximumSize(emplField.getPreferredSize());
 
         emplPanel.add(emplField);
@@ -143,7 +181,7 @@ public class ModifyStudentUI extends JDialog {
 		addStudentButton.setBounds(0, 0, 80, 30);
 		addStudentButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent event) {
-			   // System.exit(0);
+            saveSelected();
             dispose();
 			}
 		});
@@ -166,6 +204,8 @@ public class ModifyStudentUI extends JDialog {
 
 		panel.add(bottom);
 
+        search();
+
 		setTitle("Modify Student");
 		setModal(true);
 		setResizable(false);
@@ -174,8 +214,58 @@ public class ModifyStudentUI extends JDialog {
 		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
     }
 
-    public static void showAddStudentUI() {  
-        ModifyStudentUI catFrame = new ModifyStudentUI();
+    /* Lists the best matches for the search text, or every student up to
+       MAX_MATCHES while it still reads "Search..." */
+    private void search() {
+        String query = studentSelectField.getText();
+        if (query.equals("Search...")) {
+            matches = new int[Math.min(MAX_MATCHES, model.getStudentCount())];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = i;
+            }
+        }
+        else {
+            matches = model.findStudents(query, MAX_MATCHES);
+        }
+        studentSelectBox.removeAllItems();
+        studentSelectBox.addItem("Select Student...");
+        for (int student : matches) {
+            studentSelectBox.addItem(model.getStudentName(student));
+        }
+    }
+
+    private int selectedStudent() {
+        int selected = studentSelectBox.getSelectedIndex();
+        return selected < 1 ? -1 : matches[selected - 1];
+    }
+
+    private void showSelected() {
+        int student = selectedStudent();
+        studentNameField.setText(student < 0 ? "" :
+              model.getStudentName(student));
+        emplField.setText(student < 0 ? "" : model.getStudentId(student));
+    }
+
+    /* Writes back a changed name or EMPL ID of the selected student */
+    private void saveSelected() {
+        int student = selectedStudent();
+        if (student < 0) {
+            return;
+        }
+        // A new name can move the student's row, so look it up each time
+        if (!studentNameField.getText().equals(
+              model.getStudentName(student))) {
+            model.setValueAt(studentNameField.getText(),
+                  model.rowOfStudent(student), GradeBookTableModel.NAME_COL);
+        }
+        if (!emplField.getText().equals(model.getStudentId(student))) {
+            model.setValueAt(emplField.getText(), model.rowOfStudent(student),
+                  GradeBookTableModel.EMPL_ID_COL);
+        }
+    }
+
+    public static void showAddStudentUI(GradeBookTableModel model) {
+        ModifyStudentUI catFrame = new ModifyStudentUI(model);
         catFrame.setVisible(true);
     }
 }
\ No newline at end of file
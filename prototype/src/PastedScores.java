@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A rectangular range of scores pasted from a spreadsheet as tab-separated
+ * text.
+ *
+ * read() streams the text through a small char buffer and parses each cell
+ * straight into an int, without building a String per line or per cell.
+ * Cells that are empty or not a number are skipped, so a pasted column of
+ * names next to a column of scores only fills in the scores. Decimals are
+ * rounded to the nearest whole point.
+ */
+public class PastedScores {
+
+   private static final int BUFFER_CHARS = 8192;
+
+   /* Offset of each parsed cell from the top-left cell of the range */
+   private int[] rows = new int[64];
+   private int[] columns = new int[64];
+   private int[] scores = new int[64];
+   private int count;
+
+   private int rowCount;
+   private int columnCount;
+
+   /**
+    * Parses tab-separated text.
+    * @param in text to parse; not closed.
+    * @return every numeric cell of the text.
+    * @throws IOException if the text cannot be read.
+    */
+   public static PastedScores read(Reader in) throws IOException {
+      PastedScores pasted = new PastedScores();
+      char[] buffer = new char[BUFFER_CHARS];
+      int row = 0;
+      int column = 0;
+
+      // State of the cell being read
+      long value = 0;
+      int digits = 0;
+      boolean negative = false;
+      boolean fraction = false;
+      boolean roundUp = false;
+      boolean rounded = false;
+      boolean valid = true;
+      boolean empty = true;
+
+      // A final pass with read < 0 ends the last cell as if by a newline
+      int read;
+      while (true) {
+         read = in.read(buffer);
+         int end = read < 0 ? 1 : read;
+         for (int i = 0; i < end; i++) {
+            char c = read < 0 ? '\n' : buffer[i];
+            if (c == '\t' || c == '\n') {
+               if (!empty) {
+                  if (valid && digits > 0) {
+                     long score = negative ? -value : value;
+                     if (roundUp) {
+                        score += negative ? -1 : 1;
+                     }
+                     pasted.add(row, column,
+                           (int) Math.max(Integer.MIN_VALUE + 1,
+                                 Math.min(Integer.MAX_VALUE, score)));
+                  }
+                  pasted.columnCount = Math.max(pasted.columnCount,
+                        column + 1);
+                  pasted.rowCount = row + 1;
+               }
+               value = 0;
+               digits = 0;
+               negative = false;
+               fraction = false;
+               roundUp = false;
+               rounded = false;
+               valid = true;
+               empty = true;
+               if (c == '\t') {
+                  column++;
+               }
+               else {
+                  row++;
+                  column = 0;
+               }
+            }
+            else if (c == '\r' || c == ' ') {
+               // ignored
+            }
+            else {
+               empty = false;
+               if (c >= '0' && c <= '9') {
+                  if (!fraction) {
+                     if (value < Integer.MAX_VALUE) {
+                        value = value * 10 + (c - '0');
+                     }
+                  }
+                  else if (!rounded) {
+                     // Only the first decimal place decides the rounding
+                     roundUp = c >= '5';
+                     rounded = true;
+                  }
+                  digits++;
+               }
+               else if (c == '-' && digits == 0 && !negative && !fraction) {
+                  negative = true;
+               }
+               else if (c == '.' && !fraction) {
+                  fraction = true;
+               }
+               else {
+                  valid = false;
+               }
+            }
+         }
+         if (read < 0) {
+            break;
+         }
+      }
+      return pasted;
+   }
+
+   private void add(int row, int column, int score) {
+      if (count == rows.length) {
+         rows = Arrays.copyOf(rows, count * 2);
+         columns = Arrays.copyOf(columns, count * 2);
+         scores = Arrays.copyOf(scores, count * 2);
+      }
+      rows[count] = row;
+      columns[count] = column;
+      scores[count] = score;
+      count++;
+   }
+
+   /* Number of numeric cells parsed */
+   public int getCount() {
+      return count;
+   }
+
+   /* Lines in the pasted range */
+   public int getRowCount() {
+      return rowCount;
+   }
+
+   /* Widest line in the pasted range, in cells */
+   public int getColumnCount() {
+      return columnCount;
+   }
+
+   public int getRow(int cell) {
+      return rows[cell];
+   }
+
+   public int getColumn(int cell) {
+      return columns[cell];
+   }
+
+   public int getScore(int cell) {
+      return scores[cell];
+   }
+}
@@ -0,0 +1,188 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Confirms and runs a publication of the grade book for students to view.
+ *
+ * The scores are copied when Confirm is pressed. The view of each student
+ * is then built in batches on a SwingWorker while the progress bar follows
+ * along. The dialog is modeless, so the grade book stays usable meanwhile;
+ * scores changed after Confirm go into the next publication. The new views
+ * replace the published ones all at once, and only when every batch is
+ * built; pressing Cancel before then, or a failure, leaves the previous
+ * publication exactly as it was.
+ */
+public class PublishGradesUI extends JDialog {
+
+   private static final int BATCH_SIZE = 100;
+
+   private final GradeBookTableModel model;
+
+   private final JLabel message = new JLabel("Publish grades to students?");
+   private final JProgressBar progressBar = new JProgressBar();
+   private final JButton confirmButton = new JButton("Confirm");
+   private final JButton cancelButton = new JButton("Cancel");
+
+   private PublishWorker worker;
+
+   public PublishGradesUI(GradeBookTableModel model) {
+      this.model = model;
+      initUI();
+   }
+
+   private void initUI() {
+      JPanel panel = new JPanel();
+      getContentPane().add(panel);
+      panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+      panel.add(Box.createRigidArea(new Dimension(0, 25)));
+
+      message.setAlignmentX(Component.CENTER_ALIGNMENT);
+      panel.add(message);
+      panel.add(Box.createRigidArea(new Dimension(0, 10)));
+
+      progressBar.setStringPainted(true);
+      progressBar.setVisible(false);
+      progressBar.setMaximumSize(new Dimension(300, 20));
+      progressBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+      panel.add(progressBar);
+
+      JPanel bottom = new JPanel(new FlowLayout(FlowLayout.CENTER));
+      confirmButton.addActionListener(new ActionListener() {
+         // Anonymous inner classes are used here for brevity, but should be
+         // named classes in production code.
+         public void actionPerformed(ActionEvent event) {
+            start();
+         }
+      });
+      bottom.add(confirmButton);
+
+      cancelButton.addActionListener(new ActionListener() {
+         public void actionPerformed(ActionEvent event) {
+            if (worker != null && !worker.isDone()) {
+               worker.cancel(false);
+            }
+            else {
+               dispose();
+            }
+         }
+      });
+      bottom.add(cancelButton);
+      panel.add(Box.createRigidArea(new Dimension(0, 10)));
+      panel.add(bottom);
+
+      setTitle("Publish Grades");
+      setModal(false);
+      setResizable(false);
+      setSize(380, 190);
+      setLocationRelativeTo(null);
+      setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+   }
+
+   private void start() {
+      confirmButton.setEnabled(false);
+      message.setText("Publishing grades...");
+      progressBar.setMaximum(Math.max(1, model.getStudentCount()));
+      progressBar.setValue(0);
+      progressBar.setVisible(true);
+      worker = new PublishWorker();
+      worker.execute();
+   }
+
+   private void finished(boolean published) {
+      if (published) {
+         progressBar.setValue(progressBar.getMaximum());
+         message.setText("Grades published.");
+      }
+      else {
+         message.setText("Publishing cancelled; students still see the " +
+               "previous grades.");
+      }
+      confirmButton.setVisible(false);
+      cancelButton.setText("OK");
+   }
+
+   private void failed(Throwable cause) {
+      finished(false);
+      message.setText("Publishing failed; students still see the " +
+            "previous grades.");
+      JOptionPane.showMessageDialog(this,
+            "The grades could not be published:\n" + cause,
+            "Publish Grades", JOptionPane.ERROR_MESSAGE);
+   }
+
+   /* Builds the view of every student from a copy of the scores; each view
+      is the score on every assignment followed by the percentage. */
+   private class PublishWorker extends SwingWorker<int[][], Integer> {
+
+      private final int[][] scores;
+      private final int studentCount;
+      private final int totalMaxPoints;
+
+      PublishWorker() {
+         studentCount = model.getStudentCount();
+         scores = new int[model.getAssignmentCount()][];
+         int maxPoints = 0;
+         for (int a = 0; a < scores.length; a++) {
+            scores[a] = model.copyScores(a);
+            maxPoints += model.getMaxPoints(a);
+         }
+         totalMaxPoints = maxPoints;
+      }
+
+      protected int[][] doInBackground() {
+         int[][] views = new int[studentCount][];
+         for (int start = 0; start < studentCount; start += BATCH_SIZE) {
+            if (isCancelled()) {
+               return null;
+            }
+            int end = Math.min(studentCount, start + BATCH_SIZE);
+            for (int s = start; s < end; s++) {
+               int[] view = new int[scores.length + 1];
+               int total = 0;
+               for (int a = 0; a < scores.length; a++) {
+                  view[a] = scores[a][s];
+                  total += scores[a][s];
+               }
+               view[scores.length] = totalMaxPoints == 0 ? 0 :
+                     100 * total / totalMaxPoints;
+               views[s] = view;
+            }
+            publish(end);
+         }
+         return views;
+      }
+
+      protected void process(List<Integer> staged) {
+         progressBar.setValue(staged.get(staged.size() - 1));
+      }
+
+      protected void done() {
+         // Runs on the event thread, like Cancel, so a cancel either comes
+         // before this and nothing is published, or after and is too late.
+         if (isCancelled()) {
+            finished(false);
+            return;
+         }
+         try {
+            model.setPublishedViews(get());
+            finished(true);
+         }
+         catch (ExecutionException e) {
+            failed(e.getCause());
+         }
+         catch (InterruptedException e) {
+            // get() does not wait once the worker is done
+            failed(e);
+         }
+      }
+   }
+
+   public static void showPublishGradesUI(GradeBookTableModel model) {
+      PublishGradesUI dialog = new PublishGradesUI(model);
+      dialog.setVisible(true);
+   }
+}
@@ -0,0 +1,30 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Renders grade book cells, painting small integer scores from a table of
+ * shared strings so that scrolling does not allocate a string per cell.
+ */
+public class ScoreCellRenderer extends DefaultTableCellRenderer {
+
+   private static final String[] SCORE_TEXT = new String[1001];
+
+   static {
+      for (int i = 0; i < SCORE_TEXT.length; i++) {
+         SCORE_TEXT[i] = Integer.toString(i);
+      }
+   }
+
+   protected void setValue(Object value) {
+      if (value instanceof Integer) {
+         int score = (Integer) value;
+         setHorizontalAlignment(SwingConstants.RIGHT);
+         setText(score >= 0 && score < SCORE_TEXT.length ?
+               SCORE_TEXT[score] : Integer.toString(score));
+      }
+      else {
+         setHorizontalAlignment(SwingConstants.LEADING);
+         setText(value == null ? "" : value.toString());
+      }
+   }
+}
@@ -0,0 +1,224 @@
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recomputes grade book statistics, the percentage histogram and the letter
+ * distribution on a background thread, so a large roster does not freeze
+ * score entry.
+ *
+ * requestRecompute() is called on the event dispatch thread whenever the
+ * grade book changes. It copies the scores and hands them to a single worker
+ * thread; requests that arrive while the worker is busy replace each other,
+ * so only the newest scores are ever computed. Finished results are handed
+ * back to the listener by a Swing timer, at most once per frame.
+ */
+public class StatisticsPipeline {
+
+   /**
+    * Receives finished statistics on the event dispatch thread.
+    */
+   public interface Listener {
+      void statisticsComputed(Result result);
+   }
+
+   /**
+    * Statistics computed from one copy of the grade book.
+    */
+   public static class Result {
+      public static final int MEDIAN = 0;
+      public static final int MEAN = 1;
+      public static final int MIN = 2;
+      public static final int MAX = 3;
+
+      /* [statistic][assignment], plus a last column for the percent grade */
+      private final double[][] values;
+      private final int[] percentCounts;
+      private final int[] letterCounts;
+
+      Result(double[][] values, int[] percentCounts, int[] letterCounts) {
+         this.values = values;
+         this.percentCounts = percentCounts;
+         this.letterCounts = letterCounts;
+      }
+
+      public double get(int statistic, int assignment) {
+         return values[statistic][assignment];
+      }
+
+      public double getPercent(int statistic) {
+         double[] row = values[statistic];
+         return row[row.length - 1];
+      }
+
+      /* Number of students at each whole percentage from 0 to 100 */
+      public int[] getPercentCounts() {
+         return percentCounts;
+      }
+
+      /* Number of students with an A, B, C, D and F */
+      public int[] getLetterCounts() {
+         return letterCounts;
+      }
+   }
+
+   /* Scores copied on the event dispatch thread for the worker */
+   private static class Input {
+      final int[][] scores;
+      final int[] maxPoints;
+      final int studentCount;
+
+      Input(int[][] scores, int[] maxPoints, int studentCount) {
+         this.scores = scores;
+         this.maxPoints = maxPoints;
+         this.studentCount = studentCount;
+      }
+   }
+
+   /* Milliseconds in one frame at 60 frames per second */
+   private static final int FRAME_MILLIS = 16;
+
+   private static final String LETTERS = "ABCDF";
+
+   private final GradeBookTableModel model;
+   private final Listener listener;
+   private final AtomicReference<Input> pendingInput =
+         new AtomicReference<Input>();
+   private final AtomicReference<Result> pendingResult =
+         new AtomicReference<Result>();
+   private final ExecutorService worker;
+   private final Timer publishTimer;
+
+   public StatisticsPipeline(GradeBookTableModel model, Listener listener) {
+      this.model = model;
+      this.listener = listener;
+
+      worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "statistics-pipeline");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+         }
+      });
+
+      publishTimer = new Timer(FRAME_MILLIS, new ActionListener() {
+         public void actionPerformed(ActionEvent e) {
+            publish();
+         }
+      });
+      publishTimer.setRepeats(false);
+      publishTimer.setCoalesce(true);
+   }
+
+   /**
+    * Schedules a recomputation from the current contents of the model. Must
+    * be called on the event dispatch thread.
+    */
+   public void requestRecompute() {
+      int students = model.getStudentCount();
+      int[][] scores = new int[model.getAssignmentCount()][];
+      int[] maxPoints = new int[scores.length];
+      for (int a = 0; a < scores.length; a++) {
+         scores[a] = model.copyScores(a);
+         maxPoints[a] = model.getMaxPoints(a);
+      }
+
+      // Only the first request since the worker last took its input needs a
+      // task; later ones just replace the input that task will pick up.
+      if (pendingInput.getAndSet(new Input(scores, maxPoints, students)) ==
+            null) {
+         worker.execute(new Runnable() {
+            public void run() {
+               Input input = pendingInput.getAndSet(null);
+               if (input != null) {
+                  resultReady(compute(input));
+               }
+            }
+         });
+      }
+   }
+
+   /**
+    * Stops the worker thread. Pending results are dropped.
+    */
+   public void shutdown() {
+      worker.shutdownNow();
+      publishTimer.stop();
+   }
+
+   private void resultReady(Result result) {
+      if (pendingResult.getAndSet(result) == null) {
+         SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+               if (!publishTimer.isRunning()) {
+                  publishTimer.start();
+               }
+            }
+         });
+      }
+   }
+
+   private void publish() {
+      Result result = pendingResult.getAndSet(null);
+      if (result != null) {
+         listener.statisticsComputed(result);
+      }
+   }
+
+   private static Result compute(Input input) {
+      int students = input.studentCount;
+      int assignments = input.scores.length;
+      double[][] values = new double[4][assignments + 1];
+
+      int totalMaxPoints = 0;
+      int[] totals = new int[students];
+      for (int a = 0; a < assignments; a++) {
+         int[] column = input.scores[a];
+         for (int s = 0; s < students; s++) {
+            totals[s] += column[s];
+         }
+         totalMaxPoints += input.maxPoints[a];
+         summarize(column, students, values, a);
+      }
+
+      int[] percents = new int[students];
+      int[] percentCounts = new int[101];
+      int[] letterCounts = new int[LETTERS.length()];
+      for (int s = 0; s < students; s++) {
+         int percent = totalMaxPoints == 0 ? 0 :
+               100 * totals[s] / totalMaxPoints;
+         percents[s] = percent;
+         percentCounts[Math.max(0, Math.min(100, percent))]++;
+         letterCounts[LETTERS.indexOf(
+               GradeBookTableModel.letterOf(percent))]++;
+      }
+      summarize(percents, students, values, assignments);
+
+      return new Result(values, percentCounts, letterCounts);
+   }
+
+   /* Sorts the first count entries of data in place and stores its median,
+      mean, min and max in column c of values. */
+   private static void summarize(int[] data, int count, double[][] values,
+         int c) {
+      if (count == 0) {
+         return;
+      }
+      Arrays.sort(data, 0, count);
+      long sum = 0;
+      for (int i = 0; i < count; i++) {
+         sum += data[i];
+      }
+      values[Result.MEDIAN][c] = count % 2 == 1 ? data[count / 2] :
+            (data[count / 2 - 1] + data[count / 2]) / 2.0;
+      values[Result.MEAN][c] = (double) sum / count;
+      values[Result.MIN][c] = data[0];
+      values[Result.MAX][c] = data[count - 1];
+   }
+}
@@ -8,8 +8,10 @@ public class StudentMenuItems implements MenuItemProvider {
 
    private ArrayList<JMenuItem> studentMenuItems;
    private ArrayList<JMenuItem> studentContextMenuItems;
+   private GraderMasterPanel masterPanel;
 
-   public StudentMenuItems() {
+   public StudentMenuItems(GraderMasterPanel masterPanel) {
+      this.masterPanel = masterPanel;
       studentMenuItems = new ArrayList<JMenuItem>();
       studentContextMenuItems = new ArrayList<JMenuItem>();
 
@@ -67,7 +69,7 @@ public class StudentMenuItems implements MenuItemProvider {
          // Anonymous inner classes are used here for brevity, but should be
          // named classes in production code.
          public void actionPerformed(ActionEvent e) {
-            ModifyStudentUI.showAddStudentUI();
+            masterPanel.manageStudents();
          }
       });
 
@@ -83,7 +85,7 @@ public class StudentMenuItems implements MenuItemProvider {
          // Anonymous inner classes are used here for brevity, but should be
          // named classes in production code.
          public void actionPerformed(ActionEvent e) {
-            DeleteStudentUI.showDeleteStudentUI();
+            masterPanel.deleteStudent();
          }
       });
 
@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * The orders the grade book can list its students in, each kept as an int[]
+ * permutation of student indexes.
+ *
+ * Insertion order is the identity. First-name order, last-name order and
+ * the order of one pinned score column are kept sorted as students are
+ * added, removed, renamed or regraded: each change is a binary search and
+ * one array shift, so switching the order shown never sorts anything.
+ */
+public class StudentOrder {
+
+   public static final int INSERTION = 0;
+   public static final int FIRST_NAME = 1;
+   public static final int LAST_NAME = 2;
+   public static final int SCORE = 3;
+
+   private final GradeBookTableModel model;
+
+   /* Lower-cased sort keys of every student */
+   private String[] firstKeys = new String[16];
+   private String[] lastKeys = new String[16];
+
+   private int[] byFirst = new int[16];
+   private int[] byLast = new int[16];
+   private int[] byScore = new int[16];
+   private int count;
+
+   /* Assignment whose scores order byScore, or -1 */
+   private int pinned = -1;
+
+   public StudentOrder(GradeBookTableModel model) {
+      this.model = model;
+   }
+
+   public int getPinnedAssignment() {
+      return pinned;
+   }
+
+   /**
+    * Returns the permutation for an order. Entry i is the index of the
+    * i-th student in that order. Only the first getStudentCount() entries
+    * are used, and the array must not be changed.
+    * @param order one of FIRST_NAME, LAST_NAME or SCORE.
+    * @return live permutation array.
+    */
+   public int[] getPermutation(int order) {
+      switch (order) {
+         case FIRST_NAME:
+            return byFirst;
+         case LAST_NAME:
+            return byLast;
+         case SCORE:
+            return byScore;
+         default:
+            throw new IllegalArgumentException("no permutation for " + order);
+      }
+   }
+
+   /**
+    * Adds the student last added to the model to every order.
+    * @param student index of the student.
+    */
+   public void studentAdded(int student) {
+      if (count == byFirst.length) {
+         int capacity = count * 2;
+         firstKeys = Arrays.copyOf(firstKeys, capacity);
+         lastKeys = Arrays.copyOf(lastKeys, capacity);
+         byFirst = Arrays.copyOf(byFirst, capacity);
+         byLast = Arrays.copyOf(byLast, capacity);
+         byScore = Arrays.copyOf(byScore, capacity);
+      }
+      setKeys(student);
+      count++;
+      insert(byFirst, FIRST_NAME, student);
+      insert(byLast, LAST_NAME, student);
+      if (pinned >= 0) {
+         insert(byScore, SCORE, student);
+      }
+   }
+
+   /**
+    * Drops a student from every order. Students after it in the model move
+    * down one index, and so do their entries here.
+    * @param student index of the removed student.
+    */
+   public void studentRemoved(int student) {
+      remove(byFirst, student);
+      remove(byLast, student);
+      if (pinned >= 0) {
+         remove(byScore, student);
+      }
+      count--;
+      System.arraycopy(firstKeys, student + 1, firstKeys, student,
+            count - student);
+      System.arraycopy(lastKeys, student + 1, lastKeys, student,
+            count - student);
+      renumber(byFirst, student);
+      renumber(byLast, student);
+      if (pinned >= 0) {
+         renumber(byScore, student);
+      }
+   }
+
+   /**
+    * Moves a renamed student to their new place in the name orders.
+    * @param student index of the student.
+    */
+   public void nameChanged(int student) {
+      remove(byFirst, student);
+      remove(byLast, student);
+      setKeys(student);
+      insert(byFirst, FIRST_NAME, student);
+      insert(byLast, LAST_NAME, student);
+   }
+
+   /**
+    * Moves a regraded student to their new place in the score order.
+    * @param student index of the student.
+    * @param assignment index of the regraded assignment.
+    * @return true if the score order changed.
+    */
+   public boolean scoreChanged(int student, int assignment) {
+      if (assignment != pinned) {
+         return false;
+      }
+      remove(byScore, student);
+      insert(byScore, SCORE, student);
+      return true;
+   }
+
+   /**
+    * Pins an assignment as the score order, highest score first. This sorts
+    * once; later regrades keep it sorted incrementally.
+    * @param assignment index of the assignment, or -1 to unpin.
+    */
+   public void pin(int assignment) {
+      pinned = assignment;
+      if (assignment < 0) {
+         return;
+      }
+      // Sort (negated score, index) pairs packed into longs, so equal scores
+      // stay in insertion order without boxing a comparator's arguments.
+      long[] keys = new long[count];
+      for (int s = 0; s < count; s++) {
+         keys[s] = (long) -model.getScore(s, assignment) << 32 | s;
+      }
+      Arrays.sort(keys);
+      for (int i = 0; i < count; i++) {
+         byScore[i] = (int) keys[i];
+      }
+   }
+
+   private void setKeys(int student) {
+      String name = model.getStudentName(student).trim().toLowerCase();
+      int space = name.lastIndexOf(' ');
+      firstKeys[student] = space < 0 ? name : name.substring(0, space);
+      lastKeys[student] = space < 0 ? "" : name.substring(space + 1);
+   }
+
+   /* Inserts student into the first count - 1 entries of perm, which holds
+      every other student in the given order. */
+   private void insert(int[] perm, int order, int student) {
+      int low = 0;
+      int high = count - 1;
+      while (low < high) {
+         int mid = (low + high) >>> 1;
+         if (compare(order, perm[mid], student) < 0) {
+            low = mid + 1;
+         }
+         else {
+            high = mid;
+         }
+      }
+      System.arraycopy(perm, low, perm, low + 1, count - 1 - low);
+      perm[low] = student;
+   }
+
+   private void remove(int[] perm, int student) {
+      for (int i = 0; i < count; i++) {
+         if (perm[i] == student) {
+            System.arraycopy(perm, i + 1, perm, i, count - 1 - i);
+            return;
+         }
+      }
+   }
+
+   private void renumber(int[] perm, int removed) {
+      for (int i = 0; i < count; i++) {
+         if (perm[i] > removed) {
+            perm[i]--;
+         }
+      }
+   }
+
+   private int compare(int order, int a, int b) {
+      int result;
+      if (order == SCORE) {
+         result = model.getScore(b, pinned) - model.getScore(a, pinned);
+      }
+      else if (order == FIRST_NAME) {
+         result = firstKeys[a].compareTo(firstKeys[b]);
+         if (result == 0) {
+            result = lastKeys[a].compareTo(lastKeys[b]);
+         }
+      }
+      else {
+         result = lastKeys[a].compareTo(lastKeys[b]);
+         if (result == 0) {
+            result = firstKeys[a].compareTo(firstKeys[b]);
+         }
+      }
+      return result != 0 ? result : a - b;
+   }
+}
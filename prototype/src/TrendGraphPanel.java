@@ -0,0 +1,100 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Draws the grade distribution of the class, either as a histogram of
+ * percent grades in ten-point bins or as a pie chart of letter grades.
+ * The counts come precomputed from a <code>StatisticsPipeline</code>, so
+ * painting only draws.
+ */
+public class TrendGraphPanel extends JPanel {
+
+   public static final int HISTOGRAM = 0;
+   public static final int PIE_CHART = 1;
+
+   private static final String[] LETTERS = {"A", "B", "C", "D", "F"};
+   private static final Color[] SLICE_COLORS = {
+         new Color(0x4CAF50), new Color(0x8BC34A), new Color(0xFFC107),
+         new Color(0xFF9800), new Color(0xF44336)
+   };
+
+   private int mode = HISTOGRAM;
+
+   /* Students per ten-point bin; the last bin holds 90 through 100 */
+   private int[] bins = new int[10];
+   private int[] letterCounts = new int[LETTERS.length];
+
+   public void setMode(int mode) {
+      this.mode = mode;
+      repaint();
+   }
+
+   /**
+    * Replaces the data being drawn.
+    * @param result statistics to draw.
+    */
+   public void setStatistics(StatisticsPipeline.Result result) {
+      int[] percents = result.getPercentCounts();
+      int[] newBins = new int[bins.length];
+      for (int p = 0; p < percents.length; p++) {
+         newBins[Math.min(p / 10, newBins.length - 1)] += percents[p];
+      }
+      bins = newBins;
+      letterCounts = result.getLetterCounts().clone();
+      repaint();
+   }
+
+   protected void paintComponent(Graphics g) {
+      super.paintComponent(g);
+      Insets insets = getInsets();
+      int x = insets.left + 8;
+      int y = insets.top + 8;
+      int width = getWidth() - insets.left - insets.right - 16;
+      int height = getHeight() - insets.top - insets.bottom - 16;
+      if (width <= 0 || height <= 0) {
+         return;
+      }
+
+      if (mode == PIE_CHART) {
+         paintPieChart(g, x, y, width, height);
+      }
+      else {
+         paintHistogram(g, x, y, width, height);
+      }
+   }
+
+   private void paintHistogram(Graphics g, int x, int y, int width,
+         int height) {
+      int max = 1;
+      for (int count : bins) {
+         max = Math.max(max, count);
+      }
+      int barWidth = Math.max(1, width / bins.length);
+      g.setColor(getForeground());
+      for (int b = 0; b < bins.length; b++) {
+         int barHeight = height * bins[b] / max;
+         g.fillRect(x + b * barWidth, y + height - barHeight,
+               Math.max(1, barWidth - 2), barHeight);
+      }
+   }
+
+   private void paintPieChart(Graphics g, int x, int y, int width,
+         int height) {
+      int total = 0;
+      for (int count : letterCounts) {
+         total += count;
+      }
+      if (total == 0) {
+         return;
+      }
+      int size = Math.min(width, height);
+      int start = 90;
+      for (int l = 0; l < letterCounts.length; l++) {
+         int arc = l == letterCounts.length - 1 ? 90 + 360 - start :
+               360 * letterCounts[l] / total;
+         g.setColor(SLICE_COLORS[l]);
+         g.fillArc(x, y, size, size, start, arc);
+         start += arc;
+      }
+   }
+}
@@ -1,7 +1,12 @@
 package admin;
 
+import java.util.Collection;
+
 /**
  * All possible permissions in this program.
+ *                                                                           <p>
+ * Each permission owns one bit of a <code>long</code>, so a set of
+ * permissions can be held and tested as a single bitmask.
  */
 public enum Permission
 {
@@ -138,5 +143,26 @@ public enum Permission
     /**
      * The permission that allows a user to change the student roster
      */
-   UPDATE_STUDENT_ROSTER
+   UPDATE_STUDENT_ROSTER;
+
+   /**
+    * Accessor for the bit of this permission.
+    * @return bitmask with only this permission set.
+    */
+   public long mask() {
+      return 1L << ordinal();
+   }
+
+   /**
+    * Compiles a collection of permissions into a bitmask.
+    * @param permissions permissions to compile.
+    * @return bitmask with the bit of every given permission set.
+    */
+   public static long maskOf(Collection<Permission> permissions) {
+      long mask = 0;
+      for (Permission permission : permissions) {
+         mask |= permission.mask();
+      }
+      return mask;
+   }
 }
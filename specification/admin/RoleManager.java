@@ -1,10 +1,24 @@
 package admin;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages user role assignments. Used by CommandTarget to authorize users
  * who issue commands.
+ *                                                                           <p>
+ * <code>hasPermission()</code> answers from a bitmask of the user's
+ * effective permissions, cached per <code>Session</code> by this manager
+ * only, so a session checked against the roles of several courses gets
+ * each course's own answer. Every change to a role assignment or role
+ * permission bumps <code>version</code>, which makes each session's mask be
+ * recompiled on the next check. The changes go
+ * through <code>assign()</code>, <code>revoke()</code>,
+ * <code>grantRolePerm()</code> and <code>revokeRolePerm()</code>, which are
+ * final and bump the version themselves, so an implementation only stores
+ * the change and cannot forget to invalidate the masks.
  */
 public abstract class RoleManager {
 
@@ -36,20 +50,120 @@ public abstract class RoleManager {
     */
    Collection<RolePermission> rolePermissioncollection;
 
+   /**
+    * Number of changes made to role assignments and role permissions.
+    */
+   final AtomicLong version = new AtomicLong();
+
+   /**
+    * Permission mask compiled for a session, with the user and version it
+    * was compiled for.
+    */
+   private static class CompiledPermissions {
+      User user;
+      long version = -1;
+      long mask;
+   }
+
+   /**
+    * Masks compiled by <code>hasPermission()</code>, by session. Sessions
+    * that are no longer used are dropped with their masks.
+    */
+   private final Map<Session, CompiledPermissions> compiled =
+         new WeakHashMap<Session, CompiledPermissions>();
+
+   /**
+    * Records that role assignments or role permissions changed, so that
+    * cached permission masks are recompiled. Called by <code>assign</code>,
+    * <code>revoke</code>, <code>grantRolePerm</code> and
+    * <code>revokeRolePerm</code> once the change is stored; an
+    * implementation that changes roles or permissions any other way must
+    * call it too.
+
+      post:
+         version' == version + 1
+    */
+   protected void permissionsChanged() {
+      version.incrementAndGet();
+   }
+
+   /**
+    * Checks whether the user of a session has a permission. The user's
+    * effective permissions are compiled into a bitmask once and cached for
+    * the session by this manager until the user or the role setup changes.
+    * A session may be checked from several threads at once, e.g. by a
+    * server; the cache is updated under its lock, and the version is read
+    * before the permissions, so a change made while compiling is seen next
+    * time.
+    * @param session session of the user to check.
+    * @param perm <code>Permission</code> to check for.
+    * @return <code>true</code> if the current user has the permission.
+
+      pre:
+         session != null && session.currentUser != null && perm != null
+      post:
+         return == getPerms(session.currentUser).contains(perm)
+    */
+   public boolean hasPermission(Session session, Permission perm) {
+      synchronized (compiled) {
+         CompiledPermissions cached = compiled.get(session);
+         if (cached == null) {
+            cached = new CompiledPermissions();
+            compiled.put(session, cached);
+         }
+         long current = version.get();
+         if (cached.version != current ||
+               cached.user != session.currentUser) {
+            cached.user = session.currentUser;
+            cached.version = current;
+            cached.mask = Permission.maskOf(getPerms(session.currentUser));
+         }
+         return (cached.mask & perm.mask()) != 0;
+      }
+   }
+
 
    /**
     * Assigns a <code>Role</code> to a <code>User</code>.
     * @param role <code>Role</code> to assign.
     * @param user <code>User</code> to assign to.
+
+      post:
+         version' == version + 1
     */
-   abstract void assign(Role role, User user);
+   final void assign(Role role, User user) {
+      storeAssignment(role, user);
+      permissionsChanged();
+   }
 
    /**
     * Revokes a <code>Role</code> from a <code>User</code>.
     * @param role <code>Role</code> to revoke.
     * @param user <code>User</code> to revoke from.
+
+      post:
+         version' == version + 1
     */
-   abstract void revoke(Role role, User user);
+   final void revoke(Role role, User user) {
+      removeAssignment(role, user);
+      permissionsChanged();
+   }
+
+   /**
+    * Stores the assignment of a <code>Role</code> to a <code>User</code>,
+    * for <code>assign()</code>.
+    * @param role <code>Role</code> to assign.
+    * @param user <code>User</code> to assign to.
+    */
+   abstract void storeAssignment(Role role, User user);
+
+   /**
+    * Removes the assignment of a <code>Role</code> to a <code>User</code>,
+    * for <code>revoke()</code>.
+    * @param role <code>Role</code> to revoke.
+    * @param user <code>User</code> to revoke from.
+    */
+   abstract void removeAssignment(Role role, User user);
 
    /**
     * Accessor for <code>User</code>-<code>Role</code> assignments.
@@ -99,13 +213,41 @@ public abstract class RoleManager {
     * Grants a <code>Permission</code> to the given <code>Role</code>.
     * @param role <code>Role</code> to grant <code>Permission</code> to.
     * @param perm <code>Permission</code> to grant.
+
+      post:
+         version' == version + 1
     */
-   abstract void grantRolePerm(Role role, Permission perm);
+   final void grantRolePerm(Role role, Permission perm) {
+      storeRolePerm(role, perm);
+      permissionsChanged();
+   }
 
    /**
     * Revokes a <code>Permission</code> from the given <code>Role</code>.
     * @param role <code>Role</code> to revoke <code>Permission</code> from.
+    * @param perm <code>Permission</code> to revoke.
+
+      post:
+         version' == version + 1
+    */
+   final void revokeRolePerm(Role role, Permission perm) {
+      removeRolePerm(role, perm);
+      permissionsChanged();
+   }
+
+   /**
+    * Stores the grant of a <code>Permission</code> to a <code>Role</code>,
+    * for <code>grantRolePerm()</code>.
+    * @param role <code>Role</code> to grant <code>Permission</code> to.
+    * @param perm <code>Permission</code> to grant.
+    */
+   abstract void storeRolePerm(Role role, Permission perm);
+
+   /**
+    * Removes the grant of a <code>Permission</code> to a <code>Role</code>,
+    * for <code>revokeRolePerm()</code>.
+    * @param role <code>Role</code> to revoke <code>Permission</code> from.
     * @param perm <code>Permission</code> to revoke.
     */
-   abstract void revokeRolePerm(Role role, Permission perm);
+   abstract void removeRolePerm(Role role, Permission perm);
 }
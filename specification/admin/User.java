@@ -38,7 +38,7 @@ public abstract class User implements GraderObject {
      post:
         (id' == id)
     */
-   abstract String getId();
+   public abstract String getId();
 
    /**
     * Accessor for every <code>Identity</code> for this <code>User</code>.
@@ -48,7 +48,7 @@ public abstract class User implements GraderObject {
       post:
          (id' == id)
     */
-   abstract Collection<Identity> getIdentities();
+   public abstract Collection<Identity> getIdentities();
 
    /**
     * Accessor for the <code>firstName</code> for this <code>User</code>.
@@ -58,7 +58,7 @@ public abstract class User implements GraderObject {
       post:
          (id' == id)
     */
-   abstract String getFirstName();
+   public abstract String getFirstName();
 
    /**
     * Accessor for the <code>lastName</code> for this <code>User</code>.
@@ -68,5 +68,5 @@ public abstract class User implements GraderObject {
       post:
          (id' == id)
     */
-   abstract String getLastName();
+   public abstract String getLastName();
 }
\ No newline at end of file
@@ -10,7 +10,9 @@ import java.util.Collection;
  */
 
 public interface Assignment extends GraderObject {
+   String getName();
    AssignmentCategory getCategory();
    Collection<AssignmentSubmission> getSubmissions();
    Collection<AssignmentGrade> getGrades();
+   int getMaxPoints();
 }
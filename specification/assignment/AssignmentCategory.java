@@ -26,4 +26,50 @@ public abstract class AssignmentCategory implements GraderObject {
     * Assignments that fall under this category.
     */
    Collection<Assignment> assignments;
+
+   /**
+    * Weight of this category in the grade of its parent, or in the course
+    * grade if it has no parent.
+    */
+   double weight;
+
+   /**
+    * Accessor for the parent of this category.
+    * @return parent category, or <code>null</code> for a top-level category.
+    */
+   public AssignmentCategory getParent() {
+      return parent;
+   }
+
+   /**
+    * Accessor for the subcategories of this category.
+    * @return subcategories of this category.
+    */
+   public Collection<AssignmentCategory> getSubcategories() {
+      return subcategories;
+   }
+
+   /**
+    * Accessor for the assignments directly under this category.
+    * @return assignments of this category.
+    */
+   public Collection<Assignment> getAssignments() {
+      return assignments;
+   }
+
+   /**
+    * Accessor for the weight of this category.
+    * @return weight of this category.
+    */
+   public double getWeight() {
+      return weight;
+   }
+
+   /**
+    * Sets the weight of this category.
+    * @param weight new weight of this category.
+    */
+   public void setWeight(double weight) {
+      this.weight = weight;
+   }
 }
@@ -16,4 +16,16 @@ public abstract class AssignmentGrade implements GraderObject {
    LetterGrade letter;
 
    public abstract Assignment getAssignment();
+
+   /**
+    * Accessor for the student this grade was given to.
+    * @return student <code>User</code> who earned this grade.
+    */
+   public abstract User getStudent();
+
+   /**
+    * Accessor for the points earned on the assignment.
+    * @return raw score of this grade.
+    */
+   public abstract int getRawScore();
 }
@@ -17,4 +17,28 @@ public class AssignmentSubmission implements GraderObject {
    User student;
    Assignment assignment;
    Date timestamp;
+
+   /**
+    * Accessor for the student who made this submission.
+    * @return student <code>User</code> of this submission.
+    */
+   public User getStudent() {
+      return student;
+   }
+
+   /**
+    * Accessor for the assignment this submission was made for.
+    * @return <code>Assignment</code> of this submission.
+    */
+   public Assignment getAssignment() {
+      return assignment;
+   }
+
+   /**
+    * Accessor for the time of this submission.
+    * @return date and time of this submission.
+    */
+   public Date getTimestamp() {
+      return timestamp;
+   }
 }
@@ -73,8 +73,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            )
+         roleManager.hasPermission(session,
+               Permission.ACCESS_COURSE_NAME)
       post:
          name' == name
     */
@@ -88,7 +88,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(PERMISSION_UPDATE_COURSE_NAME )
+         roleManager.hasPermission(session,
+               Permission.UPDATE_COURSE_NAME)
       post:
          name' == n
     */
@@ -102,8 +103,8 @@ public abstract class AbstractCourse implements Course {
       pre: session != null &&
          session.currentUser != null &&
          gradeSchema != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_COURSE_GRADE_SCHEMA)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_COURSE_GRADE_SCHEMA)
       post:
          (gradeSchema' == gradeSchema)
     */
@@ -117,8 +118,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.UPDATE_COURSE_GRADE_SCHEMA)
+         roleManager.hasPermission(session,
+               Permission.UPDATE_COURSE_GRADE_SCHEMA)
       post:
          gradeSchema' == g
     */
@@ -133,8 +134,8 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          session.currentUser != null &&
          latePolicy != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_COURSE_LATE_POLICY)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_COURSE_LATE_POLICY)
       post:
          (latePolicy' == latePolicy)
     */
@@ -147,8 +148,8 @@ public abstract class AbstractCourse implements Course {
        pre:
            session != null &&
            session.currentUser != null &&
-           roleManager.getPerms(session.currentUser).contains(
-           Permission.UPDATE_COURSE_LATE_POLICY)
+           roleManager.hasPermission(session,
+               Permission.UPDATE_COURSE_LATE_POLICY)
        post:
            latePolicy' == l
     */
@@ -163,10 +164,10 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          studentRecords != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_STUDENT_GRADE) &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_STUDENT_PERSONAL_DATA)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_STUDENT_GRADE) &&
+         roleManager.hasPermission(session,
+               Permission.ACCESS_STUDENT_PERSONAL_DATA)
       post:
           studentRecords' == studentRecord
     */
@@ -181,9 +182,9 @@ public abstract class AbstractCourse implements Course {
          session != null && session.currentUser != null &&
          studentRecords != null && (studentRecords.size() > 0) &&
          (student.equals(session.currentUser) ||
-            (roleManager.getPerms(session.currentUser).contains(
+            (roleManager.hasPermission(session,
                Permission.ACCESS_STUDENT_GRADE) &&
-            roleManager.getPerms(session.currentUser).contains(
+            roleManager.hasPermission(session,
                Permission.ACCESS_STUDENT_PERSONAL_DATA)))
       post:
          studentRecord' == studentRecord
@@ -200,8 +201,8 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          session.currentUser != null &&
          assignmentCategories != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_ASSIGNMENT)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_ASSIGNMENT)
       post:
     */
    public abstract Collection<Assignment> getAssignments();
@@ -215,8 +216,8 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          session.currentUser != null &&
          assignmentCategories != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_ASSIGNMENT_CATEGORY)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_ASSIGNMENT_CATEGORY)
       post:
          assignmentCategories' == assignmentCategories
     */
@@ -233,8 +234,8 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          session.currentUser != null &&
          assignment != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_ASSIGNMENT_SUBMISSION)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_ASSIGNMENT_SUBMISSION)
       post:
          // none
     */
@@ -254,7 +255,7 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          session.currentUser != null &&
          (session.currentUser.equals(student) ||
-            roleManager.getPerms(session.currentUser).contains(
+            roleManager.hasPermission(session,
                Permission.ACCESS_ASSIGNMENT_SUBMISSION))
       post:
          // none
@@ -271,8 +272,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         (roleManager.getPerms(session.currentUser).contains(
-            Permission.ACCESS_ASSIGNMENT_GRADE))
+         (roleManager.hasPermission(session,
+               Permission.ACCESS_ASSIGNMENT_GRADE))
       post:
          // none
     */
@@ -289,7 +290,8 @@ public abstract class AbstractCourse implements Course {
          session != null &&
          session.currentUser != null &&
          (
-            roleManager.getPerms(session.currentUser).contains(ACCESS_ASSIGNMENT_GRADE_PERMISSION) ||
+            roleManager.hasPermission(session,
+               Permission.ACCESS_ASSIGNMENT_GRADE) ||
             (
                session.currentUser.equals(student) &&
                roleManager.getRoles(session.currentUser).contains(STUDENT_ROLE)
@@ -308,8 +310,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.CREATE_COURSE_SNAPSHOT)
+         roleManager.hasPermission(session,
+               Permission.CREATE_COURSE_SNAPSHOT)
       post:
          roleManage.equals(snapShot.roleManager) &&
          gradeSchema.equals(snapShot.gradeSchema) &&
@@ -334,8 +336,8 @@ public abstract class AbstractCourse implements Course {
       pre:
           session != null &&
           session.currentUser != null &&
-          roleManager.getPerms(session.currentUser).contains(
-             Permission.ADD_ASSIGNMENT)
+          roleManager.hasPermission(session,
+               Permission.ADD_ASSIGNMENT)
       post:
     */
    public abstract void addAssignment(Assignment assignment);
@@ -347,8 +349,8 @@ public abstract class AbstractCourse implements Course {
       pre:
           session != null &&
           session.currentUser != null &&
-          roleManager.getPerms(session.currentUser).contains(
-             Permission.UPDATE_ASSIGNMENT)
+          roleManager.hasPermission(session,
+               Permission.UPDATE_ASSIGNMENT)
       post:
     */
    public abstract void updateAssignment(Assignment assignment);
@@ -361,8 +363,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.ADD_ASSIGNMENT_CATEGORY)
+         roleManager.hasPermission(session,
+               Permission.ADD_ASSIGNMENT_CATEGORY)
       post:
          // none
     */
@@ -377,8 +379,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(
-            Permission.UPDATE_ASSIGNMENT_CATEGORY)
+         roleManager.hasPermission(session,
+               Permission.UPDATE_ASSIGNMENT_CATEGORY)
       post:
          // none
     */
@@ -397,7 +399,8 @@ public abstract class AbstractCourse implements Course {
             session.currentUser.equals(submission.student) &&
             roleManager.getRoles(session.currentUser).contains(STUDENT_ROLE)
          ) ||
-         roleManager.getPerms(session.currentUser).contains(PERMISSION_ADD_ASSIGNMENT_SUBMISSION)
+         roleManager.hasPermission(session,
+               Permission.ADD_ASSIGNMENT_SUBMISSION)
       post:
          // none
     */
@@ -405,6 +408,27 @@ public abstract class AbstractCourse implements Course {
       AssignmentSubmission submission);
 
 
+   /**
+    * Adds every given <code>AssignmentSubmission</code> as one batch. The
+    * caller is authorized once for the whole batch, and either every
+    * submission is added or, if one does not belong to this course, none is.
+    * @param submissions <code>AssignmentSubmission</code>s to add.
+    * <p/>
+    *
+      pre:
+         session != null &&
+         session.currentUser != null &&
+         submissions != null &&
+         roleManager.hasPermission(session,
+               Permission.ADD_ASSIGNMENT_SUBMISSION)
+      post:
+         forall (AssignmentSubmission s; submissions.contains(s);
+            getAssignmentSubmission(s.getAssignment(), s.getStudent()) == s)
+    */
+   public abstract void addAssignmentSubmissions(
+      Collection<AssignmentSubmission> submissions);
+
+
    /**
     * Updates the <code>AssignmentSubmission</code> as the given one.
     * @param submission new <code>AssignmentSubmission</code>.
@@ -425,9 +449,10 @@ public abstract class AbstractCourse implements Course {
          )
             submission.student != null &&
             submission.student.equals(session.currentUser) &&
-            roleManager.getPerms(session.currentUser).contains(PERMISSION_UPDATE_ASSIGNMENT_SUBMISSION)
+            roleManager.hasPermission(session,
+               Permission.UPDATE_ASSIGNMENT_SUBMISSION)
          else
-            roleManager.getPerms(session.currentUser).contains(
+            roleManager.hasPermission(session,
                Permission.UPDATE_ASSIGNMENT_SUBMISSION))
       post:
          // none
@@ -444,7 +469,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(PERMISSION_UPDATE_ASSIGNMENT_GRADE)
+         roleManager.hasPermission(session,
+               Permission.UPDATE_ASSIGNMENT_GRADE)
       post:
          // none
     */
@@ -452,6 +478,30 @@ public abstract class AbstractCourse implements Course {
       AssignmentGrade assignmentGrade);
 
 
+   /**
+    * Updates every given <code>AssignmentGrade</code> as one batch, e.g. a
+    * pasted or imported column of scores. The caller is authorized once for
+    * the whole batch, and either every grade is updated or, if one does not
+    * belong to this course, none is.
+    * @param assignmentGrades new <code>AssignmentGrade</code>s.
+    * <p/>
+
+      pre:
+         session != null &&
+         session.currentUser != null &&
+         assignmentGrades != null &&
+         roleManager.hasPermission(session,
+               Permission.UPDATE_ASSIGNMENT_GRADE)
+      post:
+         forall (AssignmentGrade g; assignmentGrades.contains(g) &&
+            g is the last grade for its cell in assignmentGrades;
+            getAssignmentGrade(g.getAssignment(), g.getStudent())
+               .getRawScore() == g.getRawScore())
+    */
+   public abstract void updateAssignmentGrades(
+      Collection<AssignmentGrade> assignmentGrades);
+
+
    /**
     * Gets the current <code>AbstractCourseSnapshot</code>.
     * @return a snapshot for the current course
@@ -461,7 +511,8 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(PERMISSION_ACCESS_COURSE_SNAPSHOT)
+         roleManager.hasPermission(session,
+               Permission.ACCESS_COURSE_SNAPSHOT)
       post:
          snapShot == snapShot'
     */
@@ -477,13 +528,29 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(PERMISSION_ADD_STUDENT)
+         roleManager.hasPermission(session, Permission.ADD_STUDENT)
       post:
          studentRecords.size() == studentRecords'.size() - 1 &&
          exists (AbstractStudentRecord rec; rec.getStudentUserInfo(student))
     */
    public abstract void addStudent(User student);
 
+   /**
+    * Adds every given student as one batch, e.g. an imported roster.
+    * Students already enrolled are skipped.
+    * @param students student <code>User</code>s to add to this course.
+    * <p/>
+
+      pre:
+         session != null &&
+         session.currentUser != null &&
+         students != null &&
+         roleManager.hasPermission(session, Permission.ADD_STUDENT)
+      post:
+         forall (User s; students.contains(s); getStudentRecord(s) != null)
+    */
+   public abstract void addStudents(Collection<User> students);
+
    /**
     * Removes a student from the student record this <code>AbstractCourse</code>
     * holds.
@@ -494,7 +561,7 @@ public abstract class AbstractCourse implements Course {
       pre:
          session != null &&
          session.currentUser != null &&
-         roleManager.getPerms(session.currentUser).contains(PERMISSION_REMOVE_STUDENT)
+         roleManager.hasPermission(session, Permission.REMOVE_STUDENT)
       post:
          studentRecords.size() == studentRecords'.size() + 1 &&
          !exists (AbstractStudentRecord rec; rec.getStudentUserInfo(student))
@@ -502,7 +569,17 @@ public abstract class AbstractCourse implements Course {
    public abstract boolean removeStudent(User student);
 
    /**
-    * Updates the student roster.
+    * Updates the student roster to match the registrar's: students the
+    * registrar added are added, students it dropped are removed, and
+    * students whose names changed are renamed.
+    * <p/>
+
+      pre:
+         session != null &&
+         session.currentUser != null &&
+         roleManager.hasPermission(session, Permission.UPDATE_STUDENT_ROSTER)
+      post:
+         // the roster matches the registrar's
     */
    public abstract void updateStudentRoster();
 
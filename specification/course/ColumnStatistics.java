@@ -0,0 +1,301 @@
+package course;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running statistics of one grade book column: count, mean, median, minimum
+ * and maximum.
+ *                                                                           <p>
+ * Values are non-negative integers, such as raw scores, or percentages
+ * stored in fixed point. The sum is kept as a running total. The values
+ * themselves are kept in a Fenwick tree over the value range, so adding,
+ * removing or changing a value and finding any order statistic all take
+ * logarithmic time. A single grade edit never rescans the column.
+ *                                                                           <p>
+ * The tree grows with the largest value up to <code>MAX_RANGE</code>.
+ * Larger values, which only a stray score or percentage would reach, are
+ * counted in a sorted map instead, so no value can make the tree grow out
+ * of bounds.
+ */
+public class ColumnStatistics {
+   /**
+    * Initial size of the value range; always a power of two.
+    */
+   static final int INITIAL_RANGE = 128;
+
+   /**
+    * Largest size of the value range; always a power of two.
+    */
+   static final int MAX_RANGE = 1 << 16;
+
+   /**
+    * Number of stored units per reported point, e.g. 100 for percentages
+    * stored in hundredths.
+    */
+   final int unitsPerPoint;
+
+   /**
+    * Number of occurrences of every value.
+    */
+   int[] counts = new int[INITIAL_RANGE];
+
+   /**
+    * Fenwick tree over <code>counts</code>, 1-based.
+    */
+   int[] tree = new int[INITIAL_RANGE + 1];
+
+   /**
+    * Number of occurrences of every value of at least <code>MAX_RANGE</code>.
+    */
+   final TreeMap<Integer, Integer> large = new TreeMap<Integer, Integer>();
+
+   /**
+    * Number of values in <code>large</code>.
+    */
+   int largeCount;
+
+   /**
+    * Number of values.
+    */
+   int count;
+
+   /**
+    * Sum of all values.
+    */
+   long sum;
+
+   /**
+    * Creates statistics reporting values as they are stored.
+    */
+   public ColumnStatistics() {
+      this(1);
+   }
+
+   /**
+    * Creates statistics reporting values divided by
+    * <code>unitsPerPoint</code>.
+    * @param unitsPerPoint number of stored units per reported point.
+    */
+   public ColumnStatistics(int unitsPerPoint) {
+      this.unitsPerPoint = unitsPerPoint;
+   }
+
+   /**
+    * Accessor for the number of stored units per reported point.
+    * @return units per point.
+    */
+   public int getUnitsPerPoint() {
+      return unitsPerPoint;
+   }
+
+   /**
+    * Replaces one value with another. Either side may be
+    * <code>GradeMatrix.NO_SCORE</code> to add or remove a value.
+    * @param oldValue value to remove, or <code>NO_SCORE</code>.
+    * @param newValue value to add, or <code>NO_SCORE</code>.
+
+      pre:
+         (oldValue == GradeMatrix.NO_SCORE || oldValue >= 0) &&
+         (newValue == GradeMatrix.NO_SCORE || newValue >= 0)
+      post:
+         // none
+    */
+   public void update(int oldValue, int newValue) {
+      if (oldValue == newValue) {
+         return;
+      }
+      if (oldValue != GradeMatrix.NO_SCORE) {
+         remove(oldValue);
+      }
+      if (newValue != GradeMatrix.NO_SCORE) {
+         add(newValue);
+      }
+   }
+
+   /**
+    * Adds a value.
+    * @param value value to add.
+
+      pre:
+         value >= 0
+      post:
+         getCount()' == getCount() + 1
+    */
+   public void add(int value) {
+      checkValue(value);
+      if (value >= MAX_RANGE) {
+         Integer occurrences = large.get(value);
+         large.put(value, occurrences == null ? 1 : occurrences + 1);
+         largeCount++;
+      }
+      else {
+         if (value >= counts.length) {
+            grow(value);
+         }
+         counts[value]++;
+         bump(value, 1);
+      }
+      count++;
+      sum += value;
+   }
+
+   /**
+    * Removes a value.
+    * @param value value to remove.
+
+      pre:
+         value >= 0 && value has been added and not yet removed
+      post:
+         getCount()' == getCount() - 1
+    */
+   public void remove(int value) {
+      checkValue(value);
+      if (value >= MAX_RANGE) {
+         Integer occurrences = large.get(value);
+         if (occurrences == null) {
+            throw new IllegalArgumentException("no value " + value);
+         }
+         if (occurrences == 1) {
+            large.remove(value);
+         }
+         else {
+            large.put(value, occurrences - 1);
+         }
+         largeCount--;
+      }
+      else {
+         if (value >= counts.length || counts[value] == 0) {
+            throw new IllegalArgumentException("no value " + value);
+         }
+         counts[value]--;
+         bump(value, -1);
+      }
+      count--;
+      sum -= value;
+   }
+
+   /**
+    * Removes every value.
+    */
+   public void clear() {
+      Arrays.fill(counts, 0);
+      Arrays.fill(tree, 0);
+      large.clear();
+      largeCount = 0;
+      count = 0;
+      sum = 0;
+   }
+
+   /**
+    * Accessor for the number of values.
+    * @return number of values.
+    */
+   public int getCount() {
+      return count;
+   }
+
+   /**
+    * Accessor for the mean of the values.
+    * @return mean, in points; 0 if there are no values.
+    */
+   public double getMean() {
+      return count == 0 ? 0 : (double) sum / count / unitsPerPoint;
+   }
+
+   /**
+    * Accessor for the median of the values. With an even number of values
+    * the two middle values are averaged.
+    * @return median, in points; 0 if there are no values.
+    */
+   public double getMedian() {
+      if (count == 0) {
+         return 0;
+      }
+      int lower = select((count + 1) / 2);
+      int upper = select(count / 2 + 1);
+      return (lower + upper) / 2.0 / unitsPerPoint;
+   }
+
+   /**
+    * Accessor for the smallest value.
+    * @return minimum, in points; 0 if there are no values.
+    */
+   public double getMin() {
+      return count == 0 ? 0 : (double) select(1) / unitsPerPoint;
+   }
+
+   /**
+    * Accessor for the largest value.
+    * @return maximum, in points; 0 if there are no values.
+    */
+   public double getMax() {
+      return count == 0 ? 0 : (double) select(count) / unitsPerPoint;
+   }
+
+   /**
+    * Finds the <code>rank</code>-th smallest stored value.
+    * @param rank 1-based rank of the value.
+    * @return stored value of that rank.
+
+      pre:
+         1 <= rank && rank <= getCount()
+      post:
+         // none
+    */
+   public int select(int rank) {
+      if (rank > count - largeCount) {
+         rank -= count - largeCount;
+         for (Map.Entry<Integer, Integer> entry : large.entrySet()) {
+            if (rank <= entry.getValue()) {
+               return entry.getKey();
+            }
+            rank -= entry.getValue();
+         }
+      }
+      int position = 0;
+      for (int step = counts.length; step > 0; step >>= 1) {
+         int next = position + step;
+         if (next <= counts.length && tree[next] < rank) {
+            position = next;
+            rank -= tree[next];
+         }
+      }
+      return position;
+   }
+
+   private void bump(int value, int delta) {
+      for (int i = value + 1; i <= counts.length; i += i & -i) {
+         tree[i] += delta;
+      }
+   }
+
+   private static void checkValue(int value) {
+      if (value < 0) {
+         throw new IllegalArgumentException("negative value " + value);
+      }
+   }
+
+   /**
+    * Doubles the value range until it holds <code>value</code>.
+
+      pre:
+         counts.length <= value && value < MAX_RANGE
+    */
+   private void grow(int value) {
+      int range = counts.length;
+      while (range <= value) {
+         range *= 2;
+      }
+      counts = Arrays.copyOf(counts, range);
+      tree = new int[range + 1];
+      for (int i = 1; i <= range; i++) {
+         tree[i] += counts[i - 1];
+         int parent = i + (i & -i);
+         if (parent <= range) {
+            tree[parent] += tree[i];
+         }
+      }
+   }
+}
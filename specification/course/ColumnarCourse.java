@@ -0,0 +1,1950 @@
+package course;
+
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import assignment.AssignmentGrade;
+import assignment.AssignmentSubmission;
+import persistence.MutationLog;
+import persistence.MutationType;
+import user.student.StudentRecord;
+import util.GraderObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An <code>AbstractCourse</code> whose grades live in a
+ * <code>GradeMatrix</code> instead of a collection of
+ * <code>AssignmentGrade</code> objects.
+ *                                                                           <p>
+ * Every student and assignment added to the course is given a dense integer
+ * id that addresses its row or column in the matrix. Grade accessors hand out
+ * light <code>AssignmentGrade</code> views over the matrix cells only when
+ * asked; nothing is materialized per cell.
+ *                                                                           <p>
+ * Records, assignments and submissions are also kept in a
+ * <code>GradebookIndex</code>, which every mutation below keeps consistent,
+ * so accessors are hash probes rather than walks over the grade book.
+ *                                                                           <p>
+ * When a <code>MutationLog</code> is attached, every
+ * <code>CourseModifier</code> operation, and every deletion, restore and
+ * discard made by the <code>edit</code> package, appends one record to it
+ * before the change is applied. Each of them checks its arguments in full
+ * first and throws <code>IllegalArgumentException</code> without logging
+ * anything if they do not fit the course, so the log only holds changes
+ * that can be made again. A record holds everything needed to make
+ * the change again; objects only the concrete course can build, such as
+ * assignments and students, are written and read back by
+ * <code>writeObject()</code> and <code>readObject()</code>. A change whose
+ * record cannot be written is not applied. <code>openMutationLog()</code>
+ * rebuilds a course from its log, and <code>checkpoint()</code> saves the
+ * whole course so the log can start over.
+ */
+public abstract class ColumnarCourse extends AbstractCourse {
+   /**
+    * Raw scores of every student on every assignment.
+    */
+   GradeMatrix grades = new GradeMatrix();
+
+   /**
+    * Dense id of every student in the course.
+    */
+   Map<User, Integer> studentIds = new HashMap<User, Integer>();
+
+   /**
+    * Students indexed by their dense id.
+    */
+   ArrayList<User> studentsById = new ArrayList<User>();
+
+   /**
+    * First and last name of every student by dense id, as of enrollment or
+    * the last rename. Renaming changes the <code>User</code> in place, so
+    * snapshots read names from here instead.
+    */
+   ArrayList<String[]> namesById = new ArrayList<String[]>();
+
+   /**
+    * Student of every deleted row that has not been discarded, i.e. that
+    * <code>restoreStudent()</code> may still bring back, by dense id.
+    */
+   Map<Integer, User> deletedStudents = new HashMap<Integer, User>();
+
+   /**
+    * Row of every student in <code>deletedStudents</code> that has an EMPL
+    * ID, by EMPL ID.
+    */
+   Map<String, Integer> deletedEmplIds = new HashMap<String, Integer>();
+
+   /**
+    * Dense id of every assignment in the course.
+    */
+   Map<Assignment, Integer> assignmentIds = new HashMap<Assignment, Integer>();
+
+   /**
+    * Assignments indexed by their dense id.
+    */
+   ArrayList<Assignment> assignmentsById = new ArrayList<Assignment>();
+
+   /**
+    * Maximum points of every assignment, by dense id, as last seen by
+    * <code>addAssignment()</code> or <code>updateAssignment()</code>.
+    */
+   int[] maxPoints = new int[GradeMatrix.INITIAL_CAPACITY];
+
+   /**
+    * Whether the id maps and lists above are shared with a snapshot and must
+    * be copied before they change.
+    */
+   boolean rosterShared;
+
+   /**
+    * Latest snapshot of this course, or <code>null</code>.
+    */
+   ColumnarCourseSnapshot snapshot;
+
+   /**
+    * Log every change is appended to, or <code>null</code>.
+    */
+   MutationLog log;
+
+   /**
+    * Lookup index over the records, assignments and submissions.
+    */
+   GradebookIndex index = new GradebookIndex();
+
+   /**
+    * Prefix index of student and assignment names for find-as-you-type.
+    */
+   StudentSearchIndex searchIndex = new StudentSearchIndex();
+
+   /**
+    * Hash summary of the students, compared against the registrar's by
+    * <code>updateStudentRoster()</code>.
+    */
+   RosterDigest rosterDigest = new RosterDigest();
+
+   /**
+    * Registrar roster read by <code>updateStudentRoster()</code>, or
+    * <code>null</code>.
+    */
+   RosterSource rosterSource;
+
+   /**
+    * Histogram of the raw percentage of every student.
+    */
+   ScoreHistogram histogram = new ScoreHistogram();
+
+   /**
+    * Statistics of the raw scores in every assignment column, by dense id.
+    */
+   ArrayList<ColumnStatistics> assignmentStatistics =
+         new ArrayList<ColumnStatistics>();
+
+   /**
+    * Parent of every category as of when it was added or last updated, so
+    * that <code>updateAssignmentCategory()</code> can tell that it moved.
+    */
+   Map<AssignmentCategory, AssignmentCategory> categoryParents =
+         new HashMap<AssignmentCategory, AssignmentCategory>();
+
+   /**
+    * Statistics of the category percentages of every student graded in the
+    * category, in hundredths of a percent.
+    */
+   Map<AssignmentCategory, ColumnStatistics> categoryStatistics =
+         new HashMap<AssignmentCategory, ColumnStatistics>();
+
+   /**
+    * Statistics of the raw percentage of every student, in hundredths of a
+    * percent.
+    */
+   ColumnStatistics percentageStatistics =
+         new ColumnStatistics(HUNDREDTHS);
+
+   /**
+    * Fixed-point units per percentage point in the percentage statistics.
+    */
+   static final int HUNDREDTHS = 100;
+
+   /**
+    * Largest raw score a cell may hold. Scores above the points of an
+    * assignment are allowed, for extra credit, but not without bound.
+    */
+   public static final int MAX_RAW_SCORE = 1000000;
+
+   /**
+    * Creates an empty <code>ColumnarCourse</code>. The inherited
+    * <code>studentRecords</code> is a live view of the index.
+    */
+   protected ColumnarCourse() {
+      studentRecords = index.byUser.values();
+      assignmentCategories = new ArrayList<AssignmentCategory>();
+   }
+
+   /**
+    * Creates the <code>StudentRecord</code> kept for a newly added student.
+    * @param student student <code>User</code> being added.
+    * @return new record for the student.
+    */
+   protected abstract StudentRecord createStudentRecord(User student);
+
+   /**
+    * Copies the names the registrar has for an enrolled student onto the
+    * student's <code>User</code>, keeping its identity, record and
+    * submissions.
+    * @param student enrolled student <code>User</code>.
+    * @param registrarInfo registrar's <code>User</code> for the same EMPL ID.
+
+      pre:
+         student.getId().equals(registrarInfo.getId())
+      post:
+         student.getFirstName().equals(registrarInfo.getFirstName()) &&
+         student.getLastName().equals(registrarInfo.getLastName())
+    */
+   protected abstract void updateStudentInfo(User student, User registrarInfo);
+
+   /**
+    * Creates a snapshot of the current state of this course, normally by
+    * calling the constructor of a <code>ColumnarCourseSnapshot</code>.
+    * @return new snapshot.
+    */
+   protected abstract ColumnarCourseSnapshot newSnapshot();
+
+   /**
+    * Writes everything needed to rebuild a grade schema, late policy,
+    * category, assignment, student <code>User</code> or submission of this
+    * course, for the mutation log and its checkpoints. Other objects of the
+    * course are written by id, e.g. the category of an assignment with
+    * <code>getCategoryId()</code> and the student of a submission with
+    * <code>getStudentId()</code>.
+    * @param object object to write.
+    * @param out stream to write to.
+    * @throws IOException if the stream cannot be written.
+
+      pre:
+         object != null
+      post:
+         // none
+    */
+   protected abstract void writeObject(GraderObject object, DataOutput out)
+         throws IOException;
+
+   /**
+    * Reads an object written by <code>writeObject()</code>. Ids are resolved
+    * with <code>getCategory()</code>, <code>getStudent()</code> and
+    * <code>getAssignment()</code>, which know every object logged before.
+    * @param kind class of the object, e.g. <code>Assignment.class</code>.
+    * @param into object to read the state into, e.g. the assignment an
+    *    update names, or <code>null</code> to create a new object.
+    * @param in stream to read from.
+    * @return <code>into</code>, or the new object.
+    * @throws IOException if the stream cannot be read.
+
+      pre:
+         kind != null && in != null
+      post:
+         return != null && (into == null || return == into)
+    */
+   protected abstract <T extends GraderObject> T readObject(Class<T> kind,
+         T into, DataInput in) throws IOException;
+
+   /**
+    * Attaches the log every later change is appended to.
+    * @param log log to append to, or <code>null</code> to stop logging.
+    */
+   public void setMutationLog(MutationLog log) {
+      this.log = log;
+   }
+
+   /**
+    * Accessor for the log changes are appended to.
+    * @return attached <code>MutationLog</code>, or <code>null</code>.
+    */
+   public MutationLog getMutationLog() {
+      return log;
+   }
+
+   /**
+    * Rebuilds this course from the last checkpoint and every later record
+    * of a log, then attaches the log. Records are replayed through the same
+    * methods that wrote them, so the course ends as it was when the last
+    * intact record was written. Students and assignments that were deleted
+    * but not discarded are then discarded, and logged so: the commands that
+    * could have restored them did not outlive the course that made them,
+    * and their rows and columns would otherwise never be reclaimed.
+    * @param logFile file of the log.
+    * @param checkpointFile file of the checkpoint.
+    * @param groupCommitBytes pending bytes that force a sync.
+    * @param groupCommitMillis longest time a record may wait for a sync.
+    * @return the opened log, now attached to this course.
+    * @throws IOException if the files cannot be read, or do not describe a
+    *    course this one can rebuild.
+
+      pre:
+         getStudentRecords().isEmpty() && getAssignments().isEmpty() &&
+         getAssignmentCategories().isEmpty()
+      post:
+         getMutationLog() == return
+    */
+   public MutationLog openMutationLog(Path logFile, Path checkpointFile,
+         int groupCommitBytes, long groupCommitMillis) throws IOException {
+      log = null;
+      MutationLog opened = MutationLog.open(logFile, checkpointFile,
+            new CourseReplayer(this), groupCommitBytes, groupCommitMillis);
+      log = opened;
+      for (Integer row : new ArrayList<Integer>(deletedStudents.keySet())) {
+         discardStudent(row);
+      }
+      for (int c = 0; c < grades.getAssignmentCount(); c++) {
+         if (grades.isAssignmentDeleted(c) &&
+               !grades.isAssignmentDiscarded(c)) {
+            discardAssignment(c);
+         }
+      }
+      return opened;
+   }
+
+   /**
+    * Saves the whole course, tombstones included, to the checkpoint of the
+    * attached log and empties the log.
+    * @throws IOException if the checkpoint cannot be written.
+
+      pre:
+         getMutationLog() != null
+      post:
+         getMutationLog().getLogBytes() == 0
+    */
+   public void checkpoint() throws IOException {
+      log.checkpoint(grades, saveState());
+   }
+
+   /**
+    * Sets the registrar roster <code>updateStudentRoster()</code> reads.
+    * @param source registrar roster, or <code>null</code>.
+    */
+   public void setRosterSource(RosterSource source) {
+      rosterSource = source;
+   }
+
+   /**
+    * Accessor for the hash summary of the students of this course.
+    * @return <code>RosterDigest</code> kept current as students change.
+    */
+   public RosterDigest getRosterDigest() {
+      return rosterDigest;
+   }
+
+   /**
+    * Accessor for the grade store backing this course.
+    * @return <code>GradeMatrix</code> of this course.
+    */
+   public GradeMatrix getGradeMatrix() {
+      return grades;
+   }
+
+   /**
+    * Accessor for the dense id of a student.
+    * @param student student <code>User</code>.
+    * @return row of the student in the <code>GradeMatrix</code>, or -1.
+    */
+   public int getStudentId(User student) {
+      Integer id = studentIds.get(student);
+      return id == null ? -1 : id;
+   }
+
+   /**
+    * Accessor for the dense id of an assignment.
+    * @param assignment <code>Assignment</code> of this course.
+    * @return column of the assignment in the <code>GradeMatrix</code>, or -1.
+    */
+   public int getAssignmentId(Assignment assignment) {
+      Integer id = assignmentIds.get(assignment);
+      return id == null ? -1 : id;
+   }
+
+   /**
+    * Accessor for the student in a row.
+    * @param row dense student id.
+    * @return student <code>User</code>, or <code>null</code> if the row has
+    *    no enrolled student.
+    */
+   public User getStudent(int row) {
+      return row < 0 || row >= studentsById.size() ? null :
+            studentsById.get(row);
+   }
+
+   /**
+    * Accessor for the assignment in a column.
+    * @param column dense assignment id.
+    * @return <code>Assignment</code>, or <code>null</code> if the column has
+    *    no live assignment.
+    */
+   public Assignment getAssignment(int column) {
+      return column < 0 || column >= assignmentsById.size() ? null :
+            assignmentsById.get(column);
+   }
+
+   /**
+    * Accessor for the id of a category: its position in the order the
+    * categories were added.
+    * @param category <code>AssignmentCategory</code> of this course.
+    * @return id of the category, or -1.
+    */
+   public int getCategoryId(AssignmentCategory category) {
+      return ((List<AssignmentCategory>) assignmentCategories)
+            .indexOf(category);
+   }
+
+   /**
+    * Accessor for a category by id.
+    * @param id id from <code>getCategoryId()</code>.
+    * @return <code>AssignmentCategory</code>, or <code>null</code>.
+    */
+   public AssignmentCategory getCategory(int id) {
+      List<AssignmentCategory> categories =
+            (List<AssignmentCategory>) assignmentCategories;
+      return id < 0 || id >= categories.size() ? null : categories.get(id);
+   }
+
+   /**
+    * Accessor for the lookup index of this course.
+    * @return <code>GradebookIndex</code> of this course.
+    */
+   public GradebookIndex getIndex() {
+      return index;
+   }
+
+   /**
+    * Accessor for the prefix index of student and assignment names, kept
+    * current by every roster and assignment change.
+    * @return search index of this course.
+    */
+   public StudentSearchIndex getSearchIndex() {
+      return searchIndex;
+   }
+
+   /**
+    * Accessor for the histogram of student percentages, kept current by
+    * every grade change.
+    * @return <code>ScoreHistogram</code> of this course.
+    */
+   public ScoreHistogram getScoreHistogram() {
+      return histogram;
+   }
+
+   /**
+    * Accessor for the running statistics of an assignment column.
+    * @param assignment assignment of this course.
+    * @return statistics of the raw scores, or <code>null</code>.
+    */
+   public ColumnStatistics getAssignmentStatistics(Assignment assignment) {
+      int column = getAssignmentId(assignment);
+      return column < 0 ? null : assignmentStatistics.get(column);
+   }
+
+   /**
+    * Accessor for the running statistics of a category. Only students graded
+    * under the category are counted.
+    * @param category category of this course.
+    * @return statistics of the category percentages, or <code>null</code>.
+    */
+   public ColumnStatistics getCategoryStatistics(AssignmentCategory category) {
+      return categoryStatistics.get(category);
+   }
+
+   /**
+    * Accessor for the running statistics of the raw percentage of every
+    * student.
+    * @return statistics of the raw percentages.
+    */
+   public ColumnStatistics getPercentageStatistics() {
+      return percentageStatistics;
+   }
+
+   @Override
+   public String getName() {
+      return name;
+   }
+
+   @Override
+   public void setName(String n) {
+      log(MutationType.SET_NAME, -1, -1, n == null ? 1 : 0, n);
+      name = n;
+   }
+
+   @Override
+   public GradeSchema getGradeSchema() {
+      return gradeSchema;
+   }
+
+   @Override
+   public void setGradeSchema(GradeSchema g) {
+      logData(MutationType.SET_GRADE_SCHEMA, -1, -1, 0, encode(g));
+      gradeSchema = g;
+   }
+
+   @Override
+   public LatePolicy getLatePolicy() {
+      return latePolicy;
+   }
+
+   @Override
+   public void setLatePolicy(LatePolicy l) {
+      logData(MutationType.SET_LATE_POLICY, -1, -1, 0, encode(l));
+      latePolicy = l;
+   }
+
+   @Override
+   public Collection<AssignmentCategory> getAssignmentCategories() {
+      return new ArrayList<AssignmentCategory>(assignmentCategories);
+   }
+
+   /**
+    * Adds a category, after checking it is not already in the course.
+    */
+   @Override
+   public void addAssignmentCategory(AssignmentCategory assignmentCategory) {
+      if (assignmentCategory == null ||
+            assignmentCategories.contains(assignmentCategory)) {
+         throw new IllegalArgumentException(
+               "category is missing or already in this course");
+      }
+      logData(MutationType.ADD_ASSIGNMENT_CATEGORY, -1, -1,
+            assignmentCategories.size(), encode(assignmentCategory));
+      assignmentCategories.add(assignmentCategory);
+      categoryParents.put(assignmentCategory, assignmentCategory.getParent());
+   }
+
+   @Override
+   public Collection<StudentRecord> getStudentRecords() {
+      return index.getStudentRecords();
+   }
+
+   @Override
+   public StudentRecord getStudentRecord(User student) {
+      return index.getStudentRecord(student);
+   }
+
+   @Override
+   public Collection<AssignmentSubmission> getAssignmentSubmissions(
+         Assignment assignment) {
+      return index.getSubmissions(assignment);
+   }
+
+   @Override
+   public AssignmentSubmission getAssignmentSubmission(Assignment assignment,
+         User student) {
+      return index.getSubmission(assignment, student);
+   }
+
+   @Override
+   public Collection<Assignment> getAssignments() {
+      Collection<Assignment> assignments = new ArrayList<Assignment>();
+      for (Assignment assignment : assignmentsById) {
+         if (assignment != null) {
+            assignments.add(assignment);
+         }
+      }
+      return assignments;
+   }
+
+   /**
+    * Returns a view for every graded cell in the column of
+    * <code>assignment</code>. Views are created while iterating.
+    */
+   @Override
+   public Collection<AssignmentGrade> getAssignmentGrades(
+         final Assignment assignment) {
+      final int column = getAssignmentId(assignment);
+      if (column < 0) {
+         return new ArrayList<AssignmentGrade>();
+      }
+
+      return new AbstractCollection<AssignmentGrade>() {
+         public Iterator<AssignmentGrade> iterator() {
+            return new Iterator<AssignmentGrade>() {
+               int next = advance(0);
+
+               int advance(int from) {
+                  while (from < grades.getStudentCount() &&
+                        (grades.get(from, column) == GradeMatrix.NO_SCORE ||
+                        grades.isStudentDeleted(from))) {
+                     from++;
+                  }
+                  return from;
+               }
+
+               public boolean hasNext() {
+                  return next < grades.getStudentCount();
+               }
+
+               public AssignmentGrade next() {
+                  if (!hasNext()) {
+                     throw new NoSuchElementException();
+                  }
+                  AssignmentGrade view = new CellView(grades,
+                        studentsById.get(next), next, assignment, column);
+                  next = advance(next + 1);
+                  return view;
+               }
+
+               public void remove() {
+                  throw new UnsupportedOperationException();
+               }
+            };
+         }
+
+         public int size() {
+            int size = 0;
+            for (int s = 0; s < grades.getStudentCount(); s++) {
+               if (grades.get(s, column) != GradeMatrix.NO_SCORE &&
+                     !grades.isStudentDeleted(s)) {
+                  size++;
+               }
+            }
+            return size;
+         }
+      };
+   }
+
+   /**
+    * Returns a view of the matrix cell, or <code>null</code> if the student
+    * has not been graded on the assignment.
+    */
+   @Override
+   public AssignmentGrade getAssignmentGrade(Assignment assignment,
+         User student) {
+      int row = getStudentId(student);
+      int column = getAssignmentId(assignment);
+      if (row < 0 || column < 0 ||
+            grades.get(row, column) == GradeMatrix.NO_SCORE) {
+         return null;
+      }
+      return new CellView(grades, student, row, assignment, column);
+   }
+
+   /**
+    * Allocates a column for the assignment.
+    */
+   @Override
+   public void addAssignment(Assignment assignment) {
+      checkAssignment(assignment);
+      if (!assignmentIds.containsKey(assignment)) {
+         logData(MutationType.ADD_ASSIGNMENT, -1, grades.getAssignmentCount(),
+               assignment.getMaxPoints(), encode(assignment));
+         ownRoster();
+         int column = grades.addAssignment();
+         assignmentIds.put(assignment, column);
+         assignmentsById.add(assignment);
+         if (column == maxPoints.length) {
+            maxPoints = Arrays.copyOf(maxPoints, column * 2);
+         }
+         maxPoints[column] = assignment.getMaxPoints();
+         assignmentStatistics.add(new ColumnStatistics());
+      }
+      index.putAssignment(assignment);
+      searchIndex.putAssignment(assignment);
+   }
+
+   /**
+    * Re-indexes the assignment under its current category. If its category
+    * or maximum points changed, the subtotals of every graded student are
+    * moved over. Deleted students are left alone; their subtotals are
+    * summed again if they are restored.
+    */
+   @Override
+   public void updateAssignment(Assignment assignment) {
+      int column = getAssignmentId(assignment);
+      if (column < 0) {
+         return;
+      }
+      checkAssignment(assignment);
+      logData(MutationType.UPDATE_ASSIGNMENT, -1, column,
+            assignment.getMaxPoints(), encode(assignment));
+      AssignmentCategory oldCategory = index.categoryOf.get(assignment);
+      int oldMax = maxPoints[column];
+      if (oldCategory != assignment.getCategory() ||
+            oldMax != assignment.getMaxPoints()) {
+         for (int s = 0; s < grades.getStudentCount(); s++) {
+            int score = grades.get(s, column);
+            if (score != GradeMatrix.NO_SCORE && !grades.isStudentDeleted(s)) {
+               StudentRecord record =
+                     index.getStudentRecord(studentsById.get(s));
+               double oldPercentage = record.getRawPercentageGrade();
+               record.adjustSubtotals(oldCategory, -score, -oldMax);
+               record.adjustSubtotals(assignment.getCategory(), score,
+                     assignment.getMaxPoints());
+               histogram.move(oldPercentage, record.getRawPercentageGrade());
+            }
+         }
+         maxPoints[column] = assignment.getMaxPoints();
+         index.putAssignment(assignment);
+         rebuildRecordStatistics();
+      }
+      else {
+         index.putAssignment(assignment);
+      }
+      searchIndex.putAssignment(assignment);
+   }
+
+   /**
+    * Marks the raw percentage of every student for recalculation, since the
+    * weight of the category may have changed. If its parent changed, the
+    * subtotals of the category are moved from its old ancestors to its new
+    * ones.
+    */
+   @Override
+   public void updateAssignmentCategory(AssignmentCategory assignmentCategory) {
+      int id = getCategoryId(assignmentCategory);
+      if (id < 0) {
+         throw new IllegalArgumentException(
+               "category does not belong to this course");
+      }
+      logData(MutationType.UPDATE_ASSIGNMENT_CATEGORY, -1, -1, id,
+            encode(assignmentCategory));
+      AssignmentCategory oldParent = categoryParents.put(assignmentCategory,
+            assignmentCategory.getParent());
+      boolean moved = oldParent != assignmentCategory.getParent();
+      histogram.clear();
+      for (StudentRecord record : index.byUser.values()) {
+         if (moved) {
+            record.categoryMoved(assignmentCategory, oldParent);
+         }
+         record.weightsChanged();
+         histogram.add(record.getRawPercentageGrade());
+      }
+      rebuildRecordStatistics();
+   }
+
+   @Override
+   public void addAssignmentSubmission(AssignmentSubmission submission) {
+      checkSubmission(submission);
+      logSubmission(MutationType.ADD_ASSIGNMENT_SUBMISSION, submission);
+      index.putSubmission(submission);
+   }
+
+   /**
+    * Writes one log record holding every submission, then indexes them.
+    */
+   @Override
+   public void addAssignmentSubmissions(
+         Collection<AssignmentSubmission> submissions) {
+      for (AssignmentSubmission submission : submissions) {
+         checkSubmission(submission);
+      }
+      if (!submissions.isEmpty()) {
+         logData(MutationType.ADD_ASSIGNMENT_SUBMISSIONS, -1, -1,
+               submissions.size(), encodeAll(submissions));
+      }
+      for (AssignmentSubmission submission : submissions) {
+         index.putSubmission(submission);
+      }
+   }
+
+   @Override
+   public void updateAssignmentSubmission(AssignmentSubmission submission) {
+      checkSubmission(submission);
+      logSubmission(MutationType.UPDATE_ASSIGNMENT_SUBMISSION, submission);
+      index.putSubmission(submission);
+   }
+
+   /**
+    * Copies the raw score of <code>assignmentGrade</code> into its cell and
+    * updates the cached subtotals of the student.
+    */
+   @Override
+   public void updateAssignmentGrade(AssignmentGrade assignmentGrade) {
+      User student = assignmentGrade.getStudent();
+      Assignment assignment = assignmentGrade.getAssignment();
+      int row = getStudentId(student);
+      int column = getAssignmentId(assignment);
+      if (row < 0 || column < 0) {
+         throw new IllegalArgumentException(
+               "grade does not belong to this course");
+      }
+      setGrade(row, column, assignmentGrade.getRawScore());
+   }
+
+   /**
+    * Applies every grade, then refreshes the histogram, the percentage
+    * statistics and the category statistics once per affected student
+    * rather than once per cell. Every grade is checked before any is
+    * applied, and the batch is logged first as one record holding the row,
+    * column and raw score of each cell.
+    */
+   @Override
+   public void updateAssignmentGrades(
+         Collection<AssignmentGrade> assignmentGrades) {
+      int count = assignmentGrades.size();
+      int[] cells = new int[3 * count];
+      int at = 0;
+      for (AssignmentGrade grade : assignmentGrades) {
+         int row = getStudentId(grade.getStudent());
+         int column = getAssignmentId(grade.getAssignment());
+         if (row < 0 || column < 0) {
+            throw new IllegalArgumentException(
+                  "grade does not belong to this course");
+         }
+         cells[at++] = row;
+         cells[at++] = column;
+         cells[at++] = grade.getRawScore();
+      }
+      setGrades(cells, count);
+   }
+
+   /**
+    * Sets many cells by dense ids as one batch. See
+    * <code>updateAssignmentGrades()</code>.
+    * @param cells row, column and raw score of each cell, packed.
+    * @param count number of cells.
+    * @throws IllegalArgumentException if a cell names a row or column that
+    *    is not live, or a score outside <code>0..MAX_RAW_SCORE</code>;
+    *    every cell is checked first, so nothing is changed.
+
+      pre:
+         cells.length >= 3 * count &&
+         forall (int i; 0 <= i && i < count;
+            studentsById.get(cells[3 * i]) != null &&
+            0 <= cells[3 * i + 1] &&
+            cells[3 * i + 1] < grades.getAssignmentCount())
+      post:
+         forall (int i; 0 <= i && i < count &&
+            no later cell has the same row and column;
+            grades.get(cells[3 * i], cells[3 * i + 1]) == cells[3 * i + 2])
+    */
+   public void setGrades(int[] cells, int count) {
+      checkCells(cells, count);
+      if (count > 0) {
+         ByteBuffer data = ByteBuffer.allocate(12 * count);
+         data.asIntBuffer().put(cells, 0, 3 * count);
+         logData(MutationType.UPDATE_ASSIGNMENT_GRADES, -1, -1, count,
+               data.array());
+      }
+      for (int i = 0; i < count; i++) {
+         AssignmentCategory category = categoryOf(cells[3 * i + 1]);
+         for (AssignmentCategory c = category; c != null; c = c.getParent()) {
+            categoryStatisticsOf(c);
+         }
+      }
+      List<AssignmentCategory> categories =
+            new ArrayList<AssignmentCategory>(categoryStatistics.keySet());
+
+      // Before-images of each affected student, taken on first touch.
+      Map<Integer, Integer> slotOf = new HashMap<Integer, Integer>();
+      List<StudentRecord> records = new ArrayList<StudentRecord>();
+      double[] oldPercentages = new double[count];
+      int[] oldCategoryValues = new int[count * categories.size()];
+      for (int i = 0; i < count; i++) {
+         int row = cells[3 * i];
+         if (!slotOf.containsKey(row)) {
+            int slot = records.size();
+            slotOf.put(row, slot);
+            StudentRecord record =
+                  index.getStudentRecord(studentsById.get(row));
+            records.add(record);
+            oldPercentages[slot] = record.getRawPercentageGrade();
+            for (int c = 0; c < categories.size(); c++) {
+               oldCategoryValues[slot * categories.size() + c] =
+                     categoryValue(record, categories.get(c));
+            }
+         }
+      }
+
+      for (int i = 0; i < count; i++) {
+         int row = cells[3 * i];
+         int column = cells[3 * i + 1];
+         int newScore = cells[3 * i + 2];
+         int oldScore = grades.set(row, column, newScore);
+         records.get(slotOf.get(row)).gradeChanged(categoryOf(column),
+               maxPoints[column], oldScore, newScore);
+         assignmentStatistics.get(column).update(oldScore, newScore);
+      }
+
+      for (int slot = 0; slot < records.size(); slot++) {
+         StudentRecord record = records.get(slot);
+         double newPercentage = record.getRawPercentageGrade();
+         histogram.move(oldPercentages[slot], newPercentage);
+         percentageStatistics.update(hundredths(oldPercentages[slot]),
+               hundredths(newPercentage));
+         for (int c = 0; c < categories.size(); c++) {
+            categoryStatistics.get(categories.get(c)).update(
+                  oldCategoryValues[slot * categories.size() + c],
+                  categoryValue(record, categories.get(c)));
+         }
+      }
+   }
+
+   /**
+    * Sets one cell by dense ids, keeping every cache, index and statistic
+    * current, and logs the change. Used by
+    * <code>updateAssignmentGrade()</code>, when replaying a log, and by the
+    * commands of the <code>edit</code> package.
+    * @param row dense student id.
+    * @param column dense assignment id.
+    * @param newScore raw score, or <code>GradeMatrix.NO_SCORE</code>.
+    * @throws IllegalArgumentException if the row or column is not live, or
+    *    the score is outside <code>0..MAX_RAW_SCORE</code>; nothing is
+    *    logged or changed.
+
+      pre:
+         studentsById.get(row) != null &&
+         0 <= column && column < grades.getAssignmentCount()
+      post:
+         grades.get(row, column) == newScore
+    */
+   public void setGrade(int row, int column, int newScore) {
+      checkCell(row, column, newScore);
+      log(MutationType.UPDATE_ASSIGNMENT_GRADE, row, column, newScore, null);
+      AssignmentCategory category = categoryOf(column);
+      int oldScore = grades.set(row, column, newScore);
+      StudentRecord record = index.getStudentRecord(studentsById.get(row));
+      double oldPercentage = record.getRawPercentageGrade();
+      int depth = 0;
+      for (AssignmentCategory c = category; c != null;
+            c = c.getParent()) {
+         depth++;
+      }
+      int[] oldCategoryValues = new int[depth];
+      int level = 0;
+      for (AssignmentCategory c = category; c != null;
+            c = c.getParent()) {
+         oldCategoryValues[level++] = categoryValue(record, c);
+      }
+
+      record.gradeChanged(category, maxPoints[column], oldScore, newScore);
+
+      double newPercentage = record.getRawPercentageGrade();
+      histogram.move(oldPercentage, newPercentage);
+      assignmentStatistics.get(column).update(oldScore, newScore);
+      percentageStatistics.update(hundredths(oldPercentage),
+            hundredths(newPercentage));
+      level = 0;
+      for (AssignmentCategory c = category; c != null;
+            c = c.getParent()) {
+         categoryStatisticsOf(c).update(oldCategoryValues[level++],
+               categoryValue(record, c));
+      }
+   }
+
+   /**
+    * Allocates a row for the student and records a new
+    * <code>StudentRecord</code> for them, unless they are already enrolled.
+    */
+   @Override
+   public void addStudent(User student) {
+      checkStudent(student);
+      if (isEnrolled(student)) {
+         return;
+      }
+      logData(MutationType.ADD_STUDENT, -1, -1, 0, encode(student));
+      ownRoster();
+      enroll(student);
+   }
+
+   /**
+    * Enrolls every new student under one roster copy and one log record,
+    * which holds each of them. Students already enrolled, and repeats
+    * within <code>students</code>, are skipped, so a roster can be
+    * imported again to pick up the students added since.
+    */
+   @Override
+   public void addStudents(Collection<User> students) {
+      List<User> added = new ArrayList<User>();
+      Set<User> seen = new HashSet<User>();
+      Set<String> seenIds = new HashSet<String>();
+      for (User student : students) {
+         checkStudent(student);
+         if (!isEnrolled(student) && seen.add(student) &&
+               (student.getId() == null || seenIds.add(student.getId()))) {
+            added.add(student);
+         }
+      }
+      if (added.isEmpty()) {
+         return;
+      }
+      logData(MutationType.ADD_STUDENTS, -1, -1, added.size(),
+            encodeAll(added));
+      ownRoster();
+      for (User student : added) {
+         enroll(student);
+      }
+   }
+
+   /**
+    * Checks whether a student is enrolled. Students are matched by EMPL ID,
+    * since a roster import creates a new <code>User</code> for a student
+    * every time, and by identity if they have none. A deleted student whose
+    * row was not discarded still counts, since an undo may restore them.
+    */
+   private boolean isEnrolled(User student) {
+      if (studentIds.containsKey(student)) {
+         return true;
+      }
+      String id = student.getId();
+      if (id == null) {
+         return deletedStudents.containsValue(student);
+      }
+      return index.findByEmplId(id) != null || deletedEmplIds.containsKey(id);
+   }
+
+   /**
+    * Remembers the student of a deleted row until it is restored or
+    * discarded.
+    */
+   private void keepDeleted(int row, User student) {
+      deletedStudents.put(row, student);
+      if (student.getId() != null) {
+         deletedEmplIds.put(student.getId(), row);
+      }
+   }
+
+   /**
+    * Forgets the student of a deleted row, once it is restored or
+    * discarded.
+    */
+   private void forgetDeleted(int row) {
+      User student = deletedStudents.remove(row);
+      if (student != null && student.getId() != null) {
+         deletedEmplIds.remove(student.getId());
+      }
+   }
+
+   /**
+    * Allocates a row and a new record for a student not yet enrolled.
+    * The caller owns the roster and logs the change.
+    */
+   private int enroll(User student) {
+      int row = grades.addStudent();
+      studentIds.put(student, row);
+      if (row < studentsById.size()) {
+         studentsById.set(row, student);
+         namesById.set(row, namesOf(student));
+      }
+      else {
+         studentsById.add(student);
+         namesById.add(namesOf(student));
+      }
+      StudentRecord record = createStudentRecord(student);
+      index.addStudentRecord(record);
+      searchIndex.addStudent(record);
+      if (student.getId() != null) {
+         rosterDigest.put(student);
+      }
+      histogram.add(record.getRawPercentageGrade());
+      percentageStatistics.add(hundredths(record.getRawPercentageGrade()));
+      return row;
+   }
+
+   /**
+    * Deletes the student and discards their row at once, since a
+    * <code>CourseModifier</code> removal is not undone. The ids of other
+    * students do not move.
+    */
+   @Override
+   public boolean removeStudent(User student) {
+      int row = getStudentId(student);
+      if (deleteStudent(student) == null) {
+         return false;
+      }
+      discardStudent(row);
+      return true;
+   }
+
+   /**
+    * Brings the roster in line with the attached <code>RosterSource</code>.
+    * The root hashes are compared first; if they differ, the walk goes down
+    * the Merkle tree of <code>RosterDigest</code> into every child whose
+    * hash differs, and only the students of the buckets it reaches are
+    * fetched and compared. The cost grows with the number of changes,
+    * about <code>2 log2(BUCKETS)</code> node hashes and one bucket each,
+    * rather than the size of the roster. Dropped students are removed,
+    * renamed students keep their rows, and added students are added as one
+    * batch; students deleted but not discarded count as enrolled, so they
+    * are not added again.
+    */
+   @Override
+   public void updateStudentRoster() {
+      if (rosterSource == null ||
+            rosterSource.getRootHash() == rosterDigest.getRootHash()) {
+         return;
+      }
+      List<User> added = new ArrayList<User>();
+      List<User> renamed = new ArrayList<User>();
+      List<User> dropped = new ArrayList<User>();
+      Deque<Integer> differing = new ArrayDeque<Integer>();
+      differing.push(RosterDigest.ROOT);
+      while (!differing.isEmpty()) {
+         int node = differing.pop();
+         if (!RosterDigest.isLeaf(node)) {
+            for (int child = 2 * node; child <= 2 * node + 1; child++) {
+               if (rosterSource.getNodeHash(child) !=
+                     rosterDigest.getNodeHash(child)) {
+                  differing.push(child);
+               }
+            }
+            continue;
+         }
+         int b = node - RosterDigest.BUCKETS;
+         Map<String, Long> local = rosterDigest.getBucket(b);
+         Set<String> seen = new HashSet<String>();
+         for (User student : rosterSource.getStudents(b)) {
+            seen.add(student.getId());
+            Long hash = local.get(student.getId());
+            if (hash == null) {
+               added.add(student);
+            }
+            else if (hash.longValue() != RosterDigest.hash(student)) {
+               renamed.add(student);
+            }
+         }
+         for (String id : local.keySet()) {
+            if (!seen.contains(id)) {
+               dropped.add(index.findByEmplId(id).getUserInfo());
+            }
+         }
+      }
+
+      for (User student : dropped) {
+         removeStudent(student);
+      }
+      for (User registrarInfo : renamed) {
+         renameStudent(registrarInfo);
+      }
+      if (!added.isEmpty()) {
+         addStudents(added);
+      }
+   }
+
+   /**
+    * Gives an enrolled student the names the registrar has for them.
+    */
+   void renameStudent(User registrarInfo) {
+      StudentRecord record = registrarInfo == null ||
+            registrarInfo.getId() == null ? null :
+            index.findByEmplId(registrarInfo.getId());
+      if (record == null) {
+         throw new IllegalArgumentException("no enrolled student has the " +
+               "EMPL ID of the registrar's record");
+      }
+      User student = record.getUserInfo();
+      logData(MutationType.UPDATE_STUDENT_INFO, getStudentId(student), -1, 0,
+            encode(registrarInfo));
+      String oldFirstName = student.getFirstName();
+      String oldLastName = student.getLastName();
+      ownRoster();
+      updateStudentInfo(student, registrarInfo);
+      namesById.set(getStudentId(student), namesOf(student));
+      index.renameStudent(record, oldFirstName, oldLastName);
+      searchIndex.removeStudent(student);
+      searchIndex.addStudent(record);
+      rosterDigest.put(student);
+   }
+
+   /**
+    * Deletes a student by tombstone. Their cells stay in the grade matrix so
+    * that <code>restoreStudent()</code> can bring them back; their scores
+    * leave every index and statistic. The tombstone is one flag, but taking
+    * the scores out costs a pass over the assignments and one over the
+    * category statistics.
+    * @param student student to delete.
+    * @return record of the student, or <code>null</code> if not enrolled.
+
+      pre:
+         student != null
+      post:
+         getStudentRecord(student) == null &&
+         return != null ==> grades.isStudentDeleted(getStudentId(student))
+    */
+   public StudentRecord deleteStudent(User student) {
+      if (!studentIds.containsKey(student)) {
+         return null;
+      }
+      log(MutationType.REMOVE_STUDENT, getStudentId(student), -1, 0, null);
+      ownRoster();
+      int row = studentIds.remove(student);
+      studentsById.set(row, null);
+      namesById.set(row, null);
+      keepDeleted(row, student);
+      for (int a = 0; a < grades.getAssignmentCount(); a++) {
+         if (!grades.isAssignmentDeleted(a)) {
+            assignmentStatistics.get(a).update(grades.get(row, a),
+                  GradeMatrix.NO_SCORE);
+         }
+      }
+      grades.deleteStudent(row);
+      StudentRecord record = index.removeStudent(student);
+      searchIndex.removeStudent(student);
+      if (student.getId() != null) {
+         rosterDigest.remove(student.getId());
+      }
+      histogram.remove(record.getRawPercentageGrade());
+      percentageStatistics.remove(hundredths(record.getRawPercentageGrade()));
+      for (Map.Entry<AssignmentCategory, ColumnStatistics> entry :
+            categoryStatistics.entrySet()) {
+         entry.getValue().update(categoryValue(record, entry.getKey()),
+               GradeMatrix.NO_SCORE);
+      }
+      return record;
+   }
+
+   /**
+    * Undoes <code>deleteStudent()</code>, putting the student back in their
+    * old row with their old cells. The subtotals of the record are summed
+    * again from the row, since assignments may have moved or been deleted
+    * while the student was away; like the delete, this costs a pass over
+    * the assignments and one over the category statistics.
+    * @param record record returned by <code>deleteStudent()</code>.
+    * @param row row the student had.
+    * @param submissions submissions the student had.
+    * @throws IllegalArgumentException if the row is not a deleted row that
+    *    can still be restored, or the student, or a student with their EMPL
+    *    ID, is enrolled; nothing is logged or changed.
+
+      pre:
+         record != null && grades.isStudentDeleted(row) &&
+         the row was not discarded
+      post:
+         getStudentRecord(record.getUserInfo()) == record &&
+         getStudentId(record.getUserInfo()) == row
+    */
+   public void restoreStudent(StudentRecord record, int row,
+         Collection<AssignmentSubmission> submissions) {
+      User student = record.getUserInfo();
+      checkStudent(student);
+      checkRestorableRow(row);
+      if (studentIds.containsKey(student) || student.getId() != null &&
+            index.findByEmplId(student.getId()) != null) {
+         throw new IllegalArgumentException("student with EMPL ID " +
+               student.getId() + " is enrolled");
+      }
+      for (AssignmentSubmission submission : submissions) {
+         if (submission.getStudent() != student ||
+               getAssignmentId(submission.getAssignment()) < 0) {
+            throw new IllegalArgumentException(
+                  "submission does not belong to the student");
+         }
+      }
+      if (log != null) {
+         List<GraderObject> objects = new ArrayList<GraderObject>();
+         objects.add(student);
+         objects.addAll(submissions);
+         logData(MutationType.RESTORE_STUDENT, row, -1, submissions.size(),
+               encodeAll(objects));
+      }
+      ownRoster();
+      grades.restoreStudent(row);
+      forgetDeleted(row);
+      studentIds.put(student, row);
+      studentsById.set(row, student);
+      namesById.set(row, namesOf(student));
+      record.clearSubtotals();
+      addSubtotals(record, row);
+      for (int a = 0; a < grades.getAssignmentCount(); a++) {
+         if (!grades.isAssignmentDeleted(a)) {
+            assignmentStatistics.get(a).update(GradeMatrix.NO_SCORE,
+                  grades.get(row, a));
+         }
+      }
+      index.addStudentRecord(record);
+      for (AssignmentSubmission submission : submissions) {
+         index.putSubmission(submission);
+      }
+      searchIndex.addStudent(record);
+      if (student.getId() != null) {
+         rosterDigest.put(student);
+      }
+      histogram.add(record.getRawPercentageGrade());
+      percentageStatistics.add(hundredths(record.getRawPercentageGrade()));
+      for (Map.Entry<AssignmentCategory, ColumnStatistics> entry :
+            categoryStatistics.entrySet()) {
+         entry.getValue().update(GradeMatrix.NO_SCORE,
+               categoryValue(record, entry.getKey()));
+      }
+   }
+
+   /**
+    * Gives up the row of a deleted student for good, once the deletion can
+    * no longer be undone. <code>compact()</code> later clears the row for
+    * reuse.
+    * @param row row of the deleted student.
+    * @throws IllegalArgumentException if the row is not deleted or was
+    *    already discarded.
+
+      pre:
+         grades.isStudentDeleted(row)
+      post:
+         // none
+    */
+   public void discardStudent(int row) {
+      checkRestorableRow(row);
+      log(MutationType.DISCARD_STUDENT, row, -1, 0, null);
+      grades.discardStudent(row);
+      forgetDeleted(row);
+   }
+
+   /**
+    * Deletes assignments by tombstone. Their columns stay in the grade
+    * matrix so that <code>restoreAssignments()</code> can bring them back;
+    * their scores leave every subtotal, index and statistic. The tombstones
+    * are one flag each, but every deleted assignment costs a pass over the
+    * students to move their subtotals, and the percentage and category
+    * statistics are then rebuilt over every student once.
+    * @param assignments assignments to delete.
+    * @return column each assignment had, or -1 if it was not in the course.
+
+      pre:
+         assignments != null
+      post:
+         forall (int i; return[i] >= 0 ==>
+            grades.isAssignmentDeleted(return[i]) &&
+            getAssignmentId(assignments.get(i)) == -1)
+    */
+   public int[] deleteAssignments(List<Assignment> assignments) {
+      int[] columns = new int[assignments.size()];
+      ownRoster();
+      for (int i = 0; i < columns.length; i++) {
+         Assignment assignment = assignments.get(i);
+         int column = getAssignmentId(assignment);
+         columns[i] = column;
+         if (column < 0) {
+            continue;
+         }
+         log(MutationType.REMOVE_ASSIGNMENT, -1, column, 0, null);
+         moveSubtotals(column, -1);
+         assignmentStatistics.get(column).clear();
+         grades.deleteAssignment(column);
+         assignmentIds.remove(assignment);
+         assignmentsById.set(column, null);
+         index.removeAssignment(assignment);
+         searchIndex.removeAssignment(assignment);
+      }
+      rebuildRecordStatistics();
+      return columns;
+   }
+
+   /**
+    * Undoes <code>deleteAssignments()</code>, putting each assignment back
+    * in its old column with its old cells, at the cost of the delete.
+    * @param assignments assignments to restore.
+    * @param columns columns returned by <code>deleteAssignments()</code>.
+    * @throws IllegalArgumentException if a column is not a deleted column
+    *    that can still be restored, or its assignment is in the course;
+    *    every column is checked first, so nothing is logged or changed.
+
+      pre:
+         assignments.size() == columns.length &&
+         forall (int i; columns[i] < 0 || (grades.isAssignmentDeleted(
+            columns[i]) && the column was not discarded))
+      post:
+         forall (int i; columns[i] >= 0 ==>
+            getAssignmentId(assignments.get(i)) == columns[i])
+    */
+   public void restoreAssignments(List<Assignment> assignments,
+         int[] columns) {
+      if (assignments.size() != columns.length) {
+         throw new IllegalArgumentException("restoring " +
+               assignments.size() + " assignments to " + columns.length +
+               " columns");
+      }
+      for (int i = 0; i < columns.length; i++) {
+         if (columns[i] >= 0) {
+            checkRestorableColumn(columns[i]);
+            checkAssignment(assignments.get(i));
+            if (assignmentIds.containsKey(assignments.get(i))) {
+               throw new IllegalArgumentException("assignment " +
+                     assignments.get(i).getName() + " is in the course");
+            }
+         }
+      }
+      ownRoster();
+      for (int i = 0; i < columns.length; i++) {
+         int column = columns[i];
+         if (column < 0) {
+            continue;
+         }
+         Assignment assignment = assignments.get(i);
+         logData(MutationType.RESTORE_ASSIGNMENT, -1, column, 0,
+               encode(assignment));
+         grades.restoreAssignment(column);
+         assignmentIds.put(assignment, column);
+         assignmentsById.set(column, assignment);
+         index.putAssignment(assignment);
+         searchIndex.putAssignment(assignment);
+         ColumnStatistics statistics = assignmentStatistics.get(column);
+         for (int s = 0; s < grades.getStudentCount(); s++) {
+            if (!grades.isStudentDeleted(s)) {
+               statistics.update(GradeMatrix.NO_SCORE, grades.get(s, column));
+            }
+         }
+         moveSubtotals(column, 1);
+      }
+      rebuildRecordStatistics();
+   }
+
+   /**
+    * Gives up the column of a deleted assignment for good, once the deletion
+    * can no longer be undone. <code>compact()</code> later frees it.
+    * @param column column of the deleted assignment.
+    * @throws IllegalArgumentException if the column is not deleted or was
+    *    already discarded.
+
+      pre:
+         grades.isAssignmentDeleted(column)
+      post:
+         // none
+    */
+   public void discardAssignment(int column) {
+      checkRestorableColumn(column);
+      log(MutationType.DISCARD_ASSIGNMENT, -1, column, 0, null);
+      grades.discardAssignment(column);
+   }
+
+   /**
+    * Reclaims the rows and columns of discarded deletions. Cheap to call
+    * often; meant to be run while the grade book is idle.
+    */
+   public void compact() {
+      if (grades.needsCompaction()) {
+         log(MutationType.COMPACT, -1, -1, 0, null);
+         grades.compact();
+      }
+   }
+
+   /**
+    * Adds (<code>sign</code> 1) or takes away (<code>sign</code> -1) the
+    * scores of one column from the subtotals of every enrolled student.
+    */
+   private void moveSubtotals(int column, int sign) {
+      int max = maxPoints[column];
+      for (int s = 0; s < grades.getStudentCount(); s++) {
+         int score = grades.get(s, column);
+         if (score != GradeMatrix.NO_SCORE && !grades.isStudentDeleted(s)) {
+            StudentRecord record =
+                  index.getStudentRecord(studentsById.get(s));
+            double oldPercentage = record.getRawPercentageGrade();
+            record.adjustSubtotals(categoryOf(column), sign * score,
+                  sign * max);
+            histogram.move(oldPercentage, record.getRawPercentageGrade());
+         }
+      }
+   }
+
+   /**
+    * Freezes the grades and roster of this course in constant time. The
+    * course copies a grade column or the roster only when it next changes
+    * them.
+    */
+   @Override
+   public void createSnapshot() {
+      snapshot = newSnapshot();
+      snapShot = snapshot;
+   }
+
+   @Override
+   public AbstractCourseSnapshot getSnapshot() {
+      return snapshot;
+   }
+
+   /**
+    * Appends a record to the attached log, if any.
+    * @param text payload written as UTF-8, or <code>null</code>.
+    */
+   void log(MutationType type, int student, int assignment, int value,
+         String text) {
+      logData(type, student, assignment, value,
+            text == null ? null : text.getBytes(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Appends a record with a binary payload to the attached log, if any.
+    * @param data payload, or <code>null</code>.
+    */
+   void logData(MutationType type, int student, int assignment, int value,
+         byte[] data) {
+      if (log == null) {
+         return;
+      }
+      try {
+         if (data == null) {
+            log.append(type, student, assignment, value);
+         }
+         else {
+            log.append(type, student, assignment, value, data);
+         }
+      }
+      catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private void logSubmission(MutationType type,
+         AssignmentSubmission submission) {
+      logData(type, getStudentId(submission.getStudent()),
+            getAssignmentId(submission.getAssignment()), 0,
+            encode(submission));
+   }
+
+   /**
+    * Encodes an object, or its absence, for a log record.
+    * @return payload, or <code>null</code> if no log is attached.
+    */
+   private byte[] encode(GraderObject object) {
+      return encodeAll(Collections.singletonList(object));
+   }
+
+   /**
+    * Encodes objects one after another for a log record.
+    * @return payload, or <code>null</code> if no log is attached.
+    */
+   private byte[] encodeAll(Collection<? extends GraderObject> objects) {
+      if (log == null) {
+         return null;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      try {
+         for (GraderObject object : objects) {
+            writeOptional(object, out);
+         }
+         out.flush();
+      }
+      catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Writes an object with <code>writeObject()</code>, preceded by whether
+    * there is one.
+    */
+   void writeOptional(GraderObject object, DataOutput out)
+         throws IOException {
+      out.writeBoolean(object != null);
+      if (object != null) {
+         writeObject(object, out);
+      }
+   }
+
+   /**
+    * Reads an object written by <code>writeOptional()</code>.
+    * @return the object, or <code>null</code> if none was written.
+    */
+   <T extends GraderObject> T readOptional(Class<T> kind, T into,
+         DataInput in) throws IOException {
+      return in.readBoolean() ? readObject(kind, into, in) : null;
+   }
+
+   /**
+    * Encodes everything about this course but its grade matrix, for a
+    * checkpoint: the name, grade schema and late policy, the categories in
+    * id order, the assignment and maximum points of every column, the
+    * student of every row with whether it is deleted, every submission, and
+    * the rows and columns the grade matrix will free or hand out again. A
+    * deleted row keeps its student until it is discarded.
+    */
+   byte[] saveState() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeBoolean(name != null);
+      if (name != null) {
+         out.writeUTF(name);
+      }
+      writeOptional(gradeSchema, out);
+      writeOptional(latePolicy, out);
+      out.writeInt(assignmentCategories.size());
+      for (AssignmentCategory category : assignmentCategories) {
+         writeOptional(category, out);
+      }
+      List<AssignmentSubmission> submissions =
+            new ArrayList<AssignmentSubmission>();
+      out.writeInt(grades.getAssignmentCount());
+      for (int c = 0; c < grades.getAssignmentCount(); c++) {
+         Assignment assignment = getAssignment(c);
+         out.writeInt(maxPoints[c]);
+         writeOptional(assignment, out);
+         if (assignment != null) {
+            submissions.addAll(index.getSubmissions(assignment));
+         }
+      }
+      out.writeInt(grades.getStudentCount());
+      for (int s = 0; s < grades.getStudentCount(); s++) {
+         boolean deleted = grades.isStudentDeleted(s);
+         out.writeBoolean(deleted);
+         writeOptional(deleted ? deletedStudents.get(s) : getStudent(s), out);
+      }
+      out.writeInt(submissions.size());
+      for (AssignmentSubmission submission : submissions) {
+         writeOptional(submission, out);
+      }
+      writeIds(out, grades.discardedRows, grades.discardedRowCount);
+      writeIds(out, grades.discardedColumns, grades.discardedColumnCount);
+      writeIds(out, grades.freeRows, grades.freeRowCount);
+      out.flush();
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Rebuilds this empty course from a checkpoint: the grade matrix and the
+    * state written by <code>saveState()</code>. Records, subtotals, indexes
+    * and statistics are rebuilt from the cells.
+    * @throws IOException if the state does not match the grade matrix.
+    */
+   void restore(GradeMatrix restored, byte[] state) throws IOException {
+      DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(state));
+      name = in.readBoolean() ? in.readUTF() : null;
+      gradeSchema = readOptional(GradeSchema.class, null, in);
+      latePolicy = readOptional(LatePolicy.class, null, in);
+      for (int i = in.readInt(); i > 0; i--) {
+         AssignmentCategory category =
+               readOptional(AssignmentCategory.class, null, in);
+         assignmentCategories.add(category);
+         if (category != null) {
+            categoryParents.put(category, category.getParent());
+         }
+      }
+      grades = restored;
+
+      int columns = in.readInt();
+      if (columns != grades.getAssignmentCount()) {
+         throw new IOException("checkpoint has " + columns +
+               " assignments but " + grades.getAssignmentCount() + " columns");
+      }
+      maxPoints = new int[Math.max(GradeMatrix.INITIAL_CAPACITY, columns)];
+      for (int c = 0; c < columns; c++) {
+         maxPoints[c] = in.readInt();
+         Assignment assignment = readOptional(Assignment.class, null, in);
+         assignmentsById.add(assignment);
+         assignmentStatistics.add(new ColumnStatistics());
+         if (assignment != null) {
+            assignmentIds.put(assignment, c);
+            index.putAssignment(assignment);
+            searchIndex.putAssignment(assignment);
+         }
+      }
+
+      int rows = in.readInt();
+      if (rows != grades.getStudentCount()) {
+         throw new IOException("checkpoint has " + rows +
+               " students but " + grades.getStudentCount() + " rows");
+      }
+      for (int s = 0; s < rows; s++) {
+         boolean deleted = in.readBoolean();
+         User student = readOptional(User.class, null, in);
+         if (deleted != grades.isStudentDeleted(s) ||
+               !deleted && student == null) {
+            throw new IOException("checkpoint does not match the " +
+                  "tombstone of row " + s);
+         }
+         if (deleted) {
+            studentsById.add(null);
+            namesById.add(null);
+            if (student != null) {
+               keepDeleted(s, student);
+            }
+            continue;
+         }
+         studentsById.add(student);
+         namesById.add(namesOf(student));
+         studentIds.put(student, s);
+         StudentRecord record = createRecordFromRow(student, s);
+         index.addStudentRecord(record);
+         searchIndex.addStudent(record);
+         if (student.getId() != null) {
+            rosterDigest.put(student);
+         }
+         histogram.add(record.getRawPercentageGrade());
+         for (int c = 0; c < columns; c++) {
+            if (assignmentsById.get(c) != null) {
+               assignmentStatistics.get(c).update(GradeMatrix.NO_SCORE,
+                     grades.get(s, c));
+            }
+         }
+      }
+
+      for (int i = in.readInt(); i > 0; i--) {
+         index.putSubmission(
+               readOptional(AssignmentSubmission.class, null, in));
+      }
+      grades.discardedRowCount = in.readInt();
+      grades.discardedRows = readIds(in, grades.discardedRowCount);
+      grades.discardedColumnCount = in.readInt();
+      grades.discardedColumns = readIds(in, grades.discardedColumnCount);
+      grades.freeRowCount = in.readInt();
+      grades.freeRows = readIds(in, grades.freeRowCount);
+      rebuildRecordStatistics();
+   }
+
+   /**
+    * Creates the record of a student whose row already holds scores, with
+    * the subtotals of every live column, e.g. for a row restored from a
+    * checkpoint or a log.
+    */
+   StudentRecord createRecordFromRow(User student, int row) {
+      StudentRecord record = createStudentRecord(student);
+      addSubtotals(record, row);
+      return record;
+   }
+
+   /**
+    * Adds the score in every live column of a row to the subtotals of a
+    * record.
+    */
+   private void addSubtotals(StudentRecord record, int row) {
+      for (int c = 0; c < grades.getAssignmentCount(); c++) {
+         Assignment assignment = getAssignment(c);
+         int score = grades.get(row, c);
+         if (assignment != null && score != GradeMatrix.NO_SCORE) {
+            record.adjustSubtotals(categoryOf(c), score, maxPoints[c]);
+         }
+      }
+   }
+
+   /**
+    * Returns the category the course files the assignment of a column
+    * under, as of its last add or update. The subtotals of every record
+    * were summed under it, whatever the assignment holds now.
+    */
+   private AssignmentCategory categoryOf(int column) {
+      return index.categoryOf.get(assignmentsById.get(column));
+   }
+
+   private static void writeIds(DataOutput out, int[] ids, int count)
+         throws IOException {
+      out.writeInt(count);
+      for (int i = 0; i < count; i++) {
+         out.writeInt(ids[i]);
+      }
+   }
+
+   /**
+    * Reads ids written by <code>writeIds()</code> into an array with room
+    * to grow.
+    */
+   private static int[] readIds(DataInput in, int count) throws IOException {
+      int[] ids = new int[Math.max(GradeMatrix.INITIAL_CAPACITY, count)];
+      for (int i = 0; i < count; i++) {
+         ids[i] = in.readInt();
+      }
+      return ids;
+   }
+
+
+   private static String[] namesOf(User student) {
+      return new String[] {student.getFirstName(), student.getLastName()};
+   }
+
+   /**
+    * Stops sharing the id maps and lists with the latest snapshot.
+    */
+   void ownRoster() {
+      if (rosterShared) {
+         studentIds = new HashMap<User, Integer>(studentIds);
+         studentsById = new ArrayList<User>(studentsById);
+         namesById = new ArrayList<String[]>(namesById);
+         assignmentIds = new HashMap<Assignment, Integer>(assignmentIds);
+         assignmentsById = new ArrayList<Assignment>(assignmentsById);
+         rosterShared = false;
+      }
+   }
+
+   /**
+    * Recomputes the percentage and category statistics from the cached
+    * subtotals of every record, after a change that moves many of them.
+    */
+   void rebuildRecordStatistics() {
+      for (AssignmentCategory category : index.byCategory.keySet()) {
+         for (AssignmentCategory c = category; c != null; c = c.getParent()) {
+            categoryStatisticsOf(c);
+         }
+      }
+      percentageStatistics.clear();
+      for (ColumnStatistics statistics : categoryStatistics.values()) {
+         statistics.clear();
+      }
+      for (StudentRecord record : index.byUser.values()) {
+         percentageStatistics.add(hundredths(record.getRawPercentageGrade()));
+         for (Map.Entry<AssignmentCategory, ColumnStatistics> entry :
+               categoryStatistics.entrySet()) {
+            entry.getValue().update(GradeMatrix.NO_SCORE,
+                  categoryValue(record, entry.getKey()));
+         }
+      }
+   }
+
+   private ColumnStatistics categoryStatisticsOf(AssignmentCategory category) {
+      ColumnStatistics statistics = categoryStatistics.get(category);
+      if (statistics == null) {
+         statistics = new ColumnStatistics(HUNDREDTHS);
+         categoryStatistics.put(category, statistics);
+      }
+      return statistics;
+   }
+
+   private static int categoryValue(StudentRecord record,
+         AssignmentCategory category) {
+      return record.isGraded(category) ?
+            hundredths(record.getCategoryPercentage(category)) :
+            GradeMatrix.NO_SCORE;
+   }
+
+   private static int hundredths(double percentage) {
+      return percentage <= 0 ? 0 : (int) Math.min(Integer.MAX_VALUE,
+            Math.round(percentage * HUNDREDTHS));
+   }
+
+   /**
+    * Checks every cell of a batch, so that a bad cell fails the batch
+    * before any cell is set.
+    */
+   private void checkCells(int[] cells, int count) {
+      if (count < 0 || cells.length < 3 * count) {
+         throw new IllegalArgumentException("batch holds fewer than " +
+               count + " cells");
+      }
+      for (int i = 0; i < count; i++) {
+         checkCell(cells[3 * i], cells[3 * i + 1], cells[3 * i + 2]);
+      }
+   }
+
+   /**
+    * Checks that a cell lies in a live row and a live column and that its
+    * score fits, before anything is logged or changed.
+    */
+   private void checkCell(int row, int column, int score) {
+      if (row < 0 || row >= grades.getStudentCount() ||
+            row >= studentsById.size() || studentsById.get(row) == null ||
+            grades.isStudentDeleted(row)) {
+         throw new IllegalArgumentException("no student in row " + row);
+      }
+      if (column < 0 || column >= grades.getAssignmentCount() ||
+            grades.isAssignmentDeleted(column)) {
+         throw new IllegalArgumentException("no assignment in column " +
+               column);
+      }
+      checkScore(score);
+   }
+
+   /**
+    * Checks that a row holds a deleted student whose row was not discarded.
+    */
+   private void checkRestorableRow(int row) {
+      if (row < 0 || row >= grades.getStudentCount() ||
+            !grades.isStudentDeleted(row) || grades.isStudentDiscarded(row)) {
+         throw new IllegalArgumentException("row " + row +
+               " is not a deleted student");
+      }
+   }
+
+   /**
+    * Checks that a column holds a deleted assignment whose column was not
+    * discarded.
+    */
+   private void checkRestorableColumn(int column) {
+      if (column < 0 || column >= grades.getAssignmentCount() ||
+            !grades.isAssignmentDeleted(column) ||
+            grades.isAssignmentDiscarded(column)) {
+         throw new IllegalArgumentException("column " + column +
+               " is not a deleted assignment");
+      }
+   }
+
+   private static void checkStudent(User student) {
+      if (student == null) {
+         throw new IllegalArgumentException("student is missing");
+      }
+   }
+
+   /**
+    * Checks that an assignment is given and that its maximum points fit
+    * the raw scores.
+    */
+   private static void checkAssignment(Assignment assignment) {
+      if (assignment == null) {
+         throw new IllegalArgumentException("assignment is missing");
+      }
+      if (assignment.getMaxPoints() < 0 ||
+            assignment.getMaxPoints() > MAX_RAW_SCORE) {
+         throw new IllegalArgumentException("maximum points " +
+               assignment.getMaxPoints() + " are outside 0.." +
+               MAX_RAW_SCORE);
+      }
+   }
+
+   private void checkSubmission(AssignmentSubmission submission) {
+      if (submission == null || getStudentId(submission.getStudent()) < 0 ||
+            getAssignmentId(submission.getAssignment()) < 0) {
+         throw new IllegalArgumentException(
+               "submission does not belong to this course");
+      }
+   }
+
+   /**
+    * Rejects a raw score the statistics cannot hold, before anything is
+    * changed.
+    */
+   static void checkScore(int score) {
+      if (score != GradeMatrix.NO_SCORE &&
+            (score < 0 || score > MAX_RAW_SCORE)) {
+         throw new IllegalArgumentException("raw score " + score +
+               " is outside 0.." + MAX_RAW_SCORE);
+      }
+   }
+
+   /**
+    * Read-through view of a single <code>GradeMatrix</code> cell.
+    */
+   static class CellView extends AssignmentGrade {
+      final GradeMatrix matrix;
+      final User student;
+      final int row;
+      final Assignment assignment;
+      final int column;
+
+      CellView(GradeMatrix matrix, User student, int row,
+            Assignment assignment, int column) {
+         this.matrix = matrix;
+         this.student = student;
+         this.row = row;
+         this.assignment = assignment;
+         this.column = column;
+      }
+
+      public Assignment getAssignment() {
+         return assignment;
+      }
+
+      public User getStudent() {
+         return student;
+      }
+
+      public int getRawScore() {
+         return matrix.get(row, column);
+      }
+   }
+}
@@ -0,0 +1,383 @@
+package course;
+
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import assignment.AssignmentGrade;
+import assignment.AssignmentSubmission;
+import user.student.StudentRecord;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A read only version of a <code>ColumnarCourse</code>.
+ *                                                                           <p>
+ * Taking the snapshot costs constant time and memory, apart from a copy of
+ * the short list of categories: it shares the grade columns and the roster
+ * of the course, and the course copies whatever it changes afterwards.
+ * Every <code>CourseModifier</code> operation throws
+ * <code>UnsupportedOperationException</code>.
+ *                                                                           <p>
+ * The <code>User</code>s, assignments and categories are the course's own
+ * objects, not copies, and the course goes on changing some of them in
+ * place: a rename changes the names of a <code>User</code>, and a category
+ * update its weight or parent. The snapshot freezes what it answers for
+ * itself, i.e. the cells, which students and assignments are live, the
+ * category list, and each student's names through <code>getFirstName()</code>
+ * and <code>getLastName()</code>; read names there rather than from the
+ * <code>User</code>. EMPL IDs never change. A <code>StudentRecord</code> is
+ * only ever current, so <code>studentRecords</code> is left
+ * <code>null</code> and <code>getStudentRecord()</code> and
+ * <code>getStudentRecords()</code> throw, and are final so that a subclass
+ * cannot hand out live records; a frozen grade is read with
+ * <code>getAssignmentGrade()</code>.
+ */
+public abstract class ColumnarCourseSnapshot extends AbstractCourseSnapshot {
+   /**
+    * Frozen raw scores of the course.
+    */
+   final GradeMatrix grades;
+
+   /**
+    * Dense id of every student, shared with the course until it changes.
+    */
+   final Map<User, Integer> studentIds;
+
+   /**
+    * Students by dense id, shared with the course until it changes.
+    */
+   final List<User> studentsById;
+
+   /**
+    * First and last name of every student by dense id, shared with the
+    * course until it changes.
+    */
+   final List<String[]> namesById;
+
+   /**
+    * Dense id of every assignment, shared with the course until it changes.
+    */
+   final Map<Assignment, Integer> assignmentIds;
+
+   /**
+    * Assignments by dense id, shared with the course until it changes.
+    */
+   final List<Assignment> assignmentsById;
+
+   /**
+    * Creates a snapshot of the current state of a course.
+    * @param course course to freeze.
+
+      pre:
+         course != null
+      post:
+         forall (Assignment a, User s;
+            getAssignmentGrade(a, s) == null ?
+               course.getAssignmentGrade(a, s) == null :
+               getAssignmentGrade(a, s).getRawScore() ==
+                  course.getAssignmentGrade(a, s).getRawScore())
+    */
+   protected ColumnarCourseSnapshot(ColumnarCourse course) {
+      grades = course.grades.snapshot();
+      studentIds = course.studentIds;
+      studentsById = course.studentsById;
+      namesById = course.namesById;
+      assignmentIds = course.assignmentIds;
+      assignmentsById = course.assignmentsById;
+      course.rosterShared = true;
+      name = course.name;
+      gradeSchema = course.gradeSchema;
+      latePolicy = course.latePolicy;
+      roleManager = course.roleManager;
+      assignmentCategories = new ArrayList<AssignmentCategory>(
+            course.assignmentCategories);
+   }
+
+   /**
+    * Accessor for the frozen grade store of this snapshot.
+    * @return read-only <code>GradeMatrix</code>.
+    */
+   public GradeMatrix getGradeMatrix() {
+      return grades;
+   }
+
+   /**
+    * Accessor for the dense id of a student in this snapshot.
+    * @param student student <code>User</code>.
+    * @return row of the student, or -1.
+    */
+   public int getStudentId(User student) {
+      Integer id = studentIds.get(student);
+      return id == null ? -1 : id;
+   }
+
+   /**
+    * Accessor for the dense id of an assignment in this snapshot.
+    * @param assignment <code>Assignment</code>.
+    * @return column of the assignment, or -1.
+    */
+   public int getAssignmentId(Assignment assignment) {
+      Integer id = assignmentIds.get(assignment);
+      return id == null ? -1 : id;
+   }
+
+   /**
+    * Accessor for the student in a row of this snapshot.
+    * @param row row of the <code>GradeMatrix</code>.
+    * @return student in the row, or <code>null</code> if it is deleted.
+
+      pre:
+         row >= 0 && row < grades.getStudentCount()
+    */
+   public User getStudent(int row) {
+      return row < studentsById.size() && !grades.isStudentDeleted(row) ?
+            studentsById.get(row) : null;
+   }
+
+   /**
+    * Accessor for the first name a student had when this snapshot was
+    * taken.
+    * @param row row of the <code>GradeMatrix</code>.
+    * @return first name, or <code>null</code> if the row is deleted.
+
+      pre:
+         row >= 0 && row < grades.getStudentCount()
+    */
+   public String getFirstName(int row) {
+      return getStudent(row) == null ? null : namesById.get(row)[0];
+   }
+
+   /**
+    * Accessor for the last name a student had when this snapshot was taken.
+    * @param row row of the <code>GradeMatrix</code>.
+    * @return last name, or <code>null</code> if the row is deleted.
+
+      pre:
+         row >= 0 && row < grades.getStudentCount()
+    */
+   public String getLastName(int row) {
+      return getStudent(row) == null ? null : namesById.get(row)[1];
+   }
+
+   /**
+    * Accessor for the assignment in a column of this snapshot.
+    * @param column column of the <code>GradeMatrix</code>.
+    * @return assignment in the column, or <code>null</code> if it is
+    *    deleted.
+
+      pre:
+         column >= 0 && column < grades.getAssignmentCount()
+    */
+   public Assignment getAssignment(int column) {
+      return column < assignmentsById.size() &&
+            !grades.isAssignmentDeleted(column) ?
+            assignmentsById.get(column) : null;
+   }
+
+   @Override
+   public Collection<Assignment> getAssignments() {
+      Collection<Assignment> assignments = new ArrayList<Assignment>();
+      for (Assignment assignment : assignmentsById) {
+         if (assignment != null) {
+            assignments.add(assignment);
+         }
+      }
+      return assignments;
+   }
+
+   /**
+    * Accessor for the categories of the course when this snapshot was
+    * taken.
+    * @return copy of the category list.
+    */
+   @Override
+   public final Collection<AssignmentCategory> getAssignmentCategories() {
+      return new ArrayList<AssignmentCategory>(assignmentCategories);
+   }
+
+   /**
+    * Not supported: a record holds the current grades of a student, not the
+    * ones of this snapshot.
+    * @throws UnsupportedOperationException always.
+    */
+   @Override
+   public final Collection<StudentRecord> getStudentRecords() {
+      throw liveRecords();
+   }
+
+   /**
+    * Not supported: a record holds the current grades of a student, not the
+    * ones of this snapshot.
+    * @throws UnsupportedOperationException always.
+    */
+   @Override
+   public final StudentRecord getStudentRecord(User student) {
+      throw liveRecords();
+   }
+
+   @Override
+   public Collection<AssignmentGrade> getAssignmentGrades(
+         final Assignment assignment) {
+      final int column = getAssignmentId(assignment);
+      if (column < 0) {
+         return new ArrayList<AssignmentGrade>();
+      }
+
+      return new AbstractCollection<AssignmentGrade>() {
+         public Iterator<AssignmentGrade> iterator() {
+            return new Iterator<AssignmentGrade>() {
+               int next = advance(0);
+
+               int advance(int from) {
+                  while (from < grades.getStudentCount() &&
+                        (grades.get(from, column) == GradeMatrix.NO_SCORE ||
+                        grades.isStudentDeleted(from))) {
+                     from++;
+                  }
+                  return from;
+               }
+
+               public boolean hasNext() {
+                  return next < grades.getStudentCount();
+               }
+
+               public AssignmentGrade next() {
+                  if (!hasNext()) {
+                     throw new NoSuchElementException();
+                  }
+                  AssignmentGrade view = new ColumnarCourse.CellView(grades,
+                        studentsById.get(next), next, assignment, column);
+                  next = advance(next + 1);
+                  return view;
+               }
+
+               public void remove() {
+                  throw new UnsupportedOperationException();
+               }
+            };
+         }
+
+         public int size() {
+            int size = 0;
+            for (int s = 0; s < grades.getStudentCount(); s++) {
+               if (grades.get(s, column) != GradeMatrix.NO_SCORE &&
+                     !grades.isStudentDeleted(s)) {
+                  size++;
+               }
+            }
+            return size;
+         }
+      };
+   }
+
+   @Override
+   public AssignmentGrade getAssignmentGrade(Assignment assignment,
+         User student) {
+      int row = getStudentId(student);
+      int column = getAssignmentId(assignment);
+      if (row < 0 || column < 0 ||
+            grades.get(row, column) == GradeMatrix.NO_SCORE) {
+         return null;
+      }
+      return new ColumnarCourse.CellView(grades, student, row, assignment,
+            column);
+   }
+
+   @Override
+   public void setName(String n) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setGradeSchema(GradeSchema g) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setLatePolicy(LatePolicy l) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addAssignment(Assignment assignment) {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateAssignment(Assignment assignment) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addAssignmentCategory(AssignmentCategory assignmentCategory) {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateAssignmentCategory(
+         AssignmentCategory assignmentCategory) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addAssignmentSubmission(AssignmentSubmission submission) {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateAssignmentSubmission(AssignmentSubmission submission) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addAssignmentSubmissions(
+         Collection<AssignmentSubmission> submissions) {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateAssignmentGrade(AssignmentGrade assignmentGrade) {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateAssignmentGrades(
+         Collection<AssignmentGrade> assignmentGrades) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addStudent(User student) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addStudents(Collection<User> students) {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean removeStudent(User student) {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateStudentRoster() {
+      throw readOnly();
+   }
+
+   private static UnsupportedOperationException readOnly() {
+      return new UnsupportedOperationException("course snapshot is read-only");
+   }
+
+   private static UnsupportedOperationException liveRecords() {
+      return new UnsupportedOperationException("student records are not " +
+            "frozen by a snapshot; read its cells instead");
+   }
+}
@@ -6,6 +6,8 @@ import assignment.AssignmentGrade;
 import assignment.AssignmentSubmission;
 import util.GraderObject;
 
+import java.util.Collection;
+
 /**
  * Changes course data.
  */
@@ -22,7 +24,9 @@ public interface CourseModifier extends GraderObject {
    void updateAssignmentCategory(AssignmentCategory assignmentCategory);
 
    void addAssignmentSubmission(AssignmentSubmission submission);
+   void addAssignmentSubmissions(Collection<AssignmentSubmission> submissions);
    void updateAssignmentSubmission(AssignmentSubmission submission);
 
    void  updateAssignmentGrade(AssignmentGrade assignmentGrade);
+   void updateAssignmentGrades(Collection<AssignmentGrade> assignmentGrades);
 }
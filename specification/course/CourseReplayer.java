@@ -0,0 +1,215 @@
+package course;
+
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import assignment.AssignmentSubmission;
+import persistence.MutationLog;
+import persistence.MutationType;
+import user.student.StudentRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rebuilds a <code>ColumnarCourse</code> from its <code>MutationLog</code>,
+ * for <code>ColumnarCourse.openMutationLog()</code>.
+ *                                                                           <p>
+ * Every record is replayed through the method of the course that wrote it,
+ * while no log is attached, so indexes, subtotals and statistics come out
+ * as they were. Rows and columns are not forced to the ids in the records:
+ * the course hands them out again in the same order, since every change
+ * that frees or reuses one is logged too. A record naming a column other
+ * than the one the course hands out means the log does not belong to the
+ * checkpoint, and fails the replay.
+ *                                                                           <p>
+ * A record the course rejects, e.g. one naming a row without a student,
+ * fails the replay with an <code>IOException</code> that says which record
+ * it was; the course checks every change before applying it, so nothing
+ * of a rejected record has been applied.
+ */
+class CourseReplayer implements MutationLog.Replayer {
+   private final ColumnarCourse course;
+
+   CourseReplayer(ColumnarCourse course) {
+      this.course = course;
+   }
+
+   public void restore(GradeMatrix grades, byte[] courseState)
+         throws IOException {
+      course.restore(grades, courseState);
+   }
+
+   public void replay(MutationType type, int student, int assignment,
+         int value, byte[] data) throws IOException {
+      try {
+         apply(type, student, assignment, value, data);
+      }
+      catch (IllegalArgumentException e) {
+         throw new IOException("log record " + type + " (student " +
+               student + ", assignment " + assignment + ", value " + value +
+               ") does not fit the course: " + e.getMessage(), e);
+      }
+   }
+
+   private void apply(MutationType type, int student, int assignment,
+         int value, byte[] data) throws IOException {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+      switch (type) {
+         case SET_NAME:
+            course.setName(value == 1 ? null :
+                  new String(data, StandardCharsets.UTF_8));
+            break;
+         case SET_GRADE_SCHEMA:
+            course.setGradeSchema(
+                  course.readOptional(GradeSchema.class, null, in));
+            break;
+         case SET_LATE_POLICY:
+            course.setLatePolicy(
+                  course.readOptional(LatePolicy.class, null, in));
+            break;
+         case ADD_ASSIGNMENT_CATEGORY:
+            course.addAssignmentCategory(
+                  course.readOptional(AssignmentCategory.class, null, in));
+            break;
+         case UPDATE_ASSIGNMENT_CATEGORY:
+            course.updateAssignmentCategory(course.readOptional(
+                  AssignmentCategory.class, course.getCategory(value), in));
+            break;
+         case ADD_ASSIGNMENT:
+            expectColumn(assignment);
+            course.addAssignment(
+                  course.readOptional(Assignment.class, null, in));
+            break;
+         case UPDATE_ASSIGNMENT:
+            course.updateAssignment(course.readOptional(Assignment.class,
+                  liveAssignment(assignment), in));
+            break;
+         case ADD_ASSIGNMENT_SUBMISSION:
+            course.addAssignmentSubmission(
+                  course.readOptional(AssignmentSubmission.class, null, in));
+            break;
+         case UPDATE_ASSIGNMENT_SUBMISSION:
+            course.updateAssignmentSubmission(
+                  course.readOptional(AssignmentSubmission.class, null, in));
+            break;
+         case ADD_ASSIGNMENT_SUBMISSIONS:
+            List<AssignmentSubmission> submissions =
+                  new ArrayList<AssignmentSubmission>(value);
+            for (int i = 0; i < value; i++) {
+               submissions.add(course.readOptional(
+                     AssignmentSubmission.class, null, in));
+            }
+            course.addAssignmentSubmissions(submissions);
+            break;
+         case UPDATE_ASSIGNMENT_GRADE:
+            course.setGrade(student, assignment, value);
+            break;
+         case UPDATE_ASSIGNMENT_GRADES:
+            if (value < 0 || data.length != 12L * value) {
+               throw new IOException("log record holds " + data.length +
+                     " bytes for " + value + " cells");
+            }
+            int[] cells = new int[3 * value];
+            ByteBuffer.wrap(data).asIntBuffer().get(cells);
+            course.setGrades(cells, value);
+            break;
+         case ADD_STUDENT:
+            course.addStudent(course.readOptional(User.class, null, in));
+            break;
+         case ADD_STUDENTS:
+            List<User> students = new ArrayList<User>(value);
+            for (int i = 0; i < value; i++) {
+               students.add(course.readOptional(User.class, null, in));
+            }
+            course.addStudents(students);
+            break;
+         case UPDATE_STUDENT_INFO:
+            course.renameStudent(course.readOptional(User.class, null, in));
+            break;
+         case REMOVE_STUDENT:
+            course.deleteStudent(liveStudent(student));
+            break;
+         case RESTORE_STUDENT:
+            restoreStudent(student, value, in);
+            break;
+         case REMOVE_ASSIGNMENT:
+            course.deleteAssignments(
+                  Collections.singletonList(liveAssignment(assignment)));
+            break;
+         case RESTORE_ASSIGNMENT:
+            course.restoreAssignments(Collections.singletonList(
+                  course.readOptional(Assignment.class, null, in)),
+                  new int[] {assignment});
+            break;
+         case DISCARD_STUDENT:
+            course.discardStudent(student);
+            break;
+         case DISCARD_ASSIGNMENT:
+            course.discardAssignment(assignment);
+            break;
+         case COMPACT:
+            course.compact();
+            break;
+      }
+   }
+
+   /**
+    * Puts a deleted student back in their row with a new record, whose
+    * subtotals <code>restoreStudent()</code> sums from the row, then their
+    * submissions, which name the student by row and so can only be read
+    * once the row is live again.
+    */
+   private void restoreStudent(int row, int submissions, DataInputStream in)
+         throws IOException {
+      User student = course.readOptional(User.class, null, in);
+      if (student == null) {
+         throw new IOException("log restores row " + row + " to no student");
+      }
+      StudentRecord record = course.createStudentRecord(student);
+      course.restoreStudent(record, row,
+            Collections.<AssignmentSubmission>emptyList());
+      for (int i = 0; i < submissions; i++) {
+         AssignmentSubmission submission =
+               course.readOptional(AssignmentSubmission.class, null, in);
+         if (submission == null || submission.getStudent() != student ||
+               course.getAssignmentId(submission.getAssignment()) < 0) {
+            throw new IOException("restored submission does not belong " +
+                  "to the student in row " + row);
+         }
+         course.index.putSubmission(submission);
+      }
+   }
+
+   private void expectColumn(int column) throws IOException {
+      if (column != course.getGradeMatrix().getAssignmentCount()) {
+         throw new IOException("log adds column " + column + " but the " +
+               "course would add column " +
+               course.getGradeMatrix().getAssignmentCount());
+      }
+   }
+
+   private Assignment liveAssignment(int column) throws IOException {
+      Assignment assignment = course.getAssignment(column);
+      if (assignment == null) {
+         throw new IOException("log names column " + column +
+               ", which has no assignment");
+      }
+      return assignment;
+   }
+
+   private User liveStudent(int row) throws IOException {
+      User student = course.getStudent(row);
+      if (student == null) {
+         throw new IOException("log names row " + row +
+               ", which has no student");
+      }
+      return student;
+   }
+}
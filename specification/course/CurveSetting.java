@@ -2,6 +2,10 @@ package course;
 
 /**
  * Grading curve setting for a <code>Course</code>.
+ *                                                                           <p>
+ * Every change to a borderline bumps the version of the curve, and
+ * <code>getGradeTable()</code> recompiles its lookup table only when the
+ * version has moved.
  */
 public abstract class CurveSetting {
    /**
@@ -29,6 +33,43 @@ public abstract class CurveSetting {
     */
    int fLine;
 
+   /**
+    * Number of borderline changes made to this curve.
+    */
+   int version;
+
+   /**
+    * Lookup table last compiled from this curve.
+    */
+   GradeTable table;
+
+   /**
+    * Accessor for the version of this curve.
+    * @return number of borderline changes made so far.
+    */
+   public int getVersion() {
+      return version;
+   }
+
+   /**
+    * Returns the lookup table for the current borderlines, compiling it if a
+    * borderline changed since the last call.
+    * @return <code>GradeTable</code> for this curve.
+
+      pre:
+         // none
+      post:
+         return.getVersion() == getVersion()
+    */
+   public GradeTable getGradeTable() {
+      GradeTable current = table;
+      if (current == null || current.getVersion() != version) {
+         current = new GradeTable(this);
+         table = current;
+      }
+      return current;
+   }
+
    /**
     * Accessor for raw score borderline for a letter grade of A.
     * @return raw score borderline for an A.
@@ -43,6 +84,7 @@ public abstract class CurveSetting {
     */
    public void setALine(int aBorderLine) {
       this.aLine = aBorderLine;
+      version++;
    }
 
    /**
@@ -59,6 +101,7 @@ public abstract class CurveSetting {
     */
    public void setBLine(int bBorderLine) {
       this.bLine = bBorderLine;
+      version++;
    }
 
    /**
@@ -75,6 +118,7 @@ public abstract class CurveSetting {
     */
    public void setCLine(int cBorderLine) {
       this.cLine = cBorderLine;
+      version++;
    }
 
    /**
@@ -91,6 +135,7 @@ public abstract class CurveSetting {
     */
    public void setDLine(int dBorderLine) {
       this.dLine = dBorderLine;
+      version++;
    }
 
    /**
@@ -107,5 +152,6 @@ public abstract class CurveSetting {
     */
    public void setFLine(int fBorderLine) {
       this.fLine = fBorderLine;
+      version++;
    }
 }
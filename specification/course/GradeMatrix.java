@@ -0,0 +1,550 @@
+package course;
+
+import java.util.Arrays;
+
+/**
+ * Dense student-by-assignment store of raw scores.
+ *                                                                           <p>
+ * Students and assignments are identified by dense integer ids handed out by
+ * <code>addStudent()</code> and <code>addAssignment()</code>. Each assignment
+ * owns one primitive <code>int[]</code> column indexed by student id, so a
+ * cell costs four bytes and a full-column scan walks contiguous memory.
+ * Cells that have not been graded hold <code>NO_SCORE</code>.
+ *                                                                           <p>
+ * <code>snapshot()</code> freezes the matrix in constant time by sharing its
+ * columns with a read-only copy. Afterwards the live matrix copies a column
+ * the first time it writes to it, so a snapshot costs memory only for the
+ * columns changed since it was taken.
+ *                                                                           <p>
+ * Students and assignments are deleted by tombstone: deleting flips one flag
+ * and leaves the cells in place, so it costs constant time and a restore
+ * only flips the flag back. Once a deletion can no longer be undone the
+ * caller discards the tombstone, and <code>compact()</code> later frees
+ * discarded columns and clears discarded rows for reuse by
+ * <code>addStudent()</code>. Ids are never renumbered.
+ */
+public class GradeMatrix {
+   /**
+    * Marker for a cell that has not been graded.
+    */
+   public static final int NO_SCORE = Integer.MIN_VALUE;
+
+   /**
+    * Initial number of student rows allocated per column.
+    */
+   static final int INITIAL_CAPACITY = 16;
+
+   /**
+    * Score columns, indexed by assignment id then student id.
+    */
+   int[][] columns;
+
+   /**
+    * Number of student ids handed out.
+    */
+   int studentCount;
+
+   /**
+    * Number of assignment ids handed out.
+    */
+   int assignmentCount;
+
+   /**
+    * Number of student rows allocated in every column.
+    */
+   int studentCapacity;
+
+   /**
+    * Epoch in which every column of <code>columns</code> was created or
+    * last copied. A column whose epoch differs from <code>epoch</code> may be
+    * shared with a snapshot.
+    */
+   int[] columnEpochs;
+
+   /**
+    * Current epoch of this matrix; advanced by every snapshot.
+    */
+   int epoch;
+
+   /**
+    * Whether <code>columns</code> and <code>columnEpochs</code> themselves
+    * are shared with a snapshot.
+    */
+   boolean arraysShared;
+
+   /**
+    * Tombstone of every student row; shared with snapshots like
+    * <code>columns</code>.
+    */
+   boolean[] studentDeleted;
+
+   /**
+    * Tombstone of every assignment column; shared with snapshots like
+    * <code>columns</code>.
+    */
+   boolean[] assignmentDeleted;
+
+   /**
+    * Discarded rows and columns waiting for <code>compact()</code>.
+    */
+   int[] discardedRows = new int[INITIAL_CAPACITY];
+   int discardedRowCount;
+   int[] discardedColumns = new int[INITIAL_CAPACITY];
+   int discardedColumnCount;
+
+   /**
+    * Cleared rows that <code>addStudent()</code> hands out again.
+    */
+   int[] freeRows = new int[INITIAL_CAPACITY];
+   int freeRowCount;
+
+   /**
+    * Whether this matrix is a snapshot and may not be changed.
+    */
+   final boolean readOnly;
+
+   /**
+    * Creates an empty <code>GradeMatrix</code>.
+    */
+   public GradeMatrix() {
+      columns = new int[INITIAL_CAPACITY][];
+      columnEpochs = new int[INITIAL_CAPACITY];
+      studentDeleted = new boolean[INITIAL_CAPACITY];
+      assignmentDeleted = new boolean[INITIAL_CAPACITY];
+      studentCapacity = INITIAL_CAPACITY;
+      readOnly = false;
+   }
+
+   /**
+    * Creates a read-only matrix sharing the columns of another.
+    * @param source matrix to share with.
+    */
+   private GradeMatrix(GradeMatrix source) {
+      columns = source.columns;
+      columnEpochs = source.columnEpochs;
+      studentDeleted = source.studentDeleted;
+      assignmentDeleted = source.assignmentDeleted;
+      studentCount = source.studentCount;
+      assignmentCount = source.assignmentCount;
+      studentCapacity = source.studentCapacity;
+      epoch = -1;
+      readOnly = true;
+   }
+
+   /**
+    * Freezes the current contents of this matrix in constant time.
+    * @return read-only matrix equal to this one.
+
+      pre:
+         // none
+      post:
+         return.getStudentCount() == getStudentCount() &&
+         return.getAssignmentCount() == getAssignmentCount() &&
+         forall (int s, a; get(s, a) == return.get(s, a))
+    */
+   public GradeMatrix snapshot() {
+      if (readOnly) {
+         return this;
+      }
+      GradeMatrix frozen = new GradeMatrix(this);
+      arraysShared = true;
+      epoch++;
+      return frozen;
+   }
+
+   /**
+    * Accessor for whether this matrix is a read-only snapshot.
+    * @return <code>true</code> if this matrix cannot be changed.
+    */
+   public boolean isReadOnly() {
+      return readOnly;
+   }
+
+   /**
+    * Returns whether a column of this matrix is still the very same array as
+    * the column of another matrix, i.e. neither has written to it since one
+    * was snapshotted from the other.
+    * @param other matrix to compare with.
+    * @param assignment dense assignment id present in both matrices.
+    * @return <code>true</code> if the column is shared.
+    */
+   public boolean sharesColumn(GradeMatrix other, int assignment) {
+      return columns[assignment] == other.columns[assignment];
+   }
+
+   /**
+    * Accessor for the number of student ids handed out.
+    * @return number of student rows.
+    */
+   public int getStudentCount() {
+      return studentCount;
+   }
+
+   /**
+    * Accessor for the number of assignment ids handed out.
+    * @return number of assignment columns.
+    */
+   public int getAssignmentCount() {
+      return assignmentCount;
+   }
+
+   /**
+    * Allocates a student row with every cell ungraded, reusing a row freed
+    * by <code>compact()</code> if there is one.
+    * @return dense id of the new student.
+
+      pre:
+         // none
+      post:
+         !isStudentDeleted(return) &&
+         forall (int a; get(return, a) == NO_SCORE) &&
+         (return == studentCount ?
+            studentCount' == studentCount + 1 : studentCount' == studentCount)
+    */
+   public int addStudent() {
+      checkWritable();
+      if (freeRowCount > 0) {
+         int row = freeRows[--freeRowCount];
+         ownArrays();
+         studentDeleted[row] = false;
+         return row;
+      }
+      if (studentCount == studentCapacity) {
+         ownArrays();
+         studentCapacity *= 2;
+         studentDeleted = Arrays.copyOf(studentDeleted, studentCapacity);
+         for (int a = 0; a < assignmentCount; a++) {
+            if (columns[a] == null) {
+               continue;
+            }
+            int[] grown = Arrays.copyOf(columns[a], studentCapacity);
+            Arrays.fill(grown, studentCount, studentCapacity, NO_SCORE);
+            columns[a] = grown;
+            columnEpochs[a] = epoch;
+         }
+      }
+      return studentCount++;
+   }
+
+   /**
+    * Allocates a new assignment column with every cell ungraded.
+    * @return dense id of the new assignment.
+
+      pre:
+         // none
+      post:
+         return == assignmentCount &&
+         assignmentCount' == assignmentCount + 1
+    */
+   public int addAssignment() {
+      checkWritable();
+      ownArrays();
+      if (assignmentCount == columns.length) {
+         columns = Arrays.copyOf(columns, columns.length * 2);
+         columnEpochs = Arrays.copyOf(columnEpochs, columns.length);
+         assignmentDeleted = Arrays.copyOf(assignmentDeleted, columns.length);
+      }
+      int[] column = new int[studentCapacity];
+      Arrays.fill(column, NO_SCORE);
+      columns[assignmentCount] = column;
+      columnEpochs[assignmentCount] = epoch;
+      return assignmentCount++;
+   }
+
+   /**
+    * Accessor for a single cell.
+    * @param student dense student id.
+    * @param assignment dense assignment id.
+    * @return raw score, or <code>NO_SCORE</code> if ungraded.
+
+      pre:
+         0 <= student && student < studentCount &&
+         0 <= assignment && assignment < assignmentCount
+      post:
+         // none
+    */
+   public int get(int student, int assignment) {
+      return columns[assignment][student];
+   }
+
+   /**
+    * Sets a single cell.
+    * @param student dense student id.
+    * @param assignment dense assignment id.
+    * @param rawScore raw score, or <code>NO_SCORE</code> to clear the cell.
+    * @return previous value of the cell.
+
+      pre:
+         0 <= student && student < studentCount &&
+         0 <= assignment && assignment < assignmentCount
+      post:
+         get(student, assignment) == rawScore
+    */
+   public int set(int student, int assignment, int rawScore) {
+      int[] column = writableColumn(assignment);
+      int old = column[student];
+      column[student] = rawScore;
+      return old;
+   }
+
+   /**
+    * Copies one assignment column into the given array.
+    * @param assignment dense assignment id.
+    * @param dest array of at least <code>studentCount</code> elements.
+
+      pre:
+         0 <= assignment && assignment < assignmentCount &&
+         dest.length >= studentCount
+      post:
+         forall (int s; 0 <= s && s < studentCount;
+            dest[s] == get(s, assignment))
+    */
+   public void copyColumn(int assignment, int[] dest) {
+      if (columns[assignment] == null) {
+         Arrays.fill(dest, 0, studentCount, NO_SCORE);
+      }
+      else {
+         System.arraycopy(columns[assignment], 0, dest, 0, studentCount);
+      }
+   }
+
+   /**
+    * Accessor for the tombstone of a student.
+    * @param student dense student id.
+    * @return <code>true</code> if the student is deleted.
+    */
+   public boolean isStudentDeleted(int student) {
+      return studentDeleted[student];
+   }
+
+   /**
+    * Accessor for the tombstone of an assignment.
+    * @param assignment dense assignment id.
+    * @return <code>true</code> if the assignment is deleted.
+    */
+   public boolean isAssignmentDeleted(int assignment) {
+      return assignmentDeleted[assignment];
+   }
+
+   /**
+    * Accessor for whether a deleted row was given up by
+    * <code>discardStudent()</code>, and so can no longer be restored.
+    * Looks through the rows waiting for <code>compact()</code> and those
+    * it freed.
+    * @param student dense student id.
+    * @return <code>true</code> if the row was discarded.
+    */
+   public boolean isStudentDiscarded(int student) {
+      for (int i = 0; i < discardedRowCount; i++) {
+         if (discardedRows[i] == student) {
+            return true;
+         }
+      }
+      for (int i = 0; i < freeRowCount; i++) {
+         if (freeRows[i] == student) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Accessor for whether a deleted column was given up by
+    * <code>discardAssignment()</code>, and so can no longer be restored.
+    * @param assignment dense assignment id.
+    * @return <code>true</code> if the column was discarded.
+    */
+   public boolean isAssignmentDiscarded(int assignment) {
+      if (columns[assignment] == null) {
+         return true;
+      }
+      for (int i = 0; i < discardedColumnCount; i++) {
+         if (discardedColumns[i] == assignment) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Deletes a student row in constant time, leaving its cells in place.
+    * @param student dense student id.
+
+      pre:
+         !isStudentDeleted(student)
+      post:
+         isStudentDeleted(student)
+    */
+   public void deleteStudent(int student) {
+      checkWritable();
+      ownArrays();
+      studentDeleted[student] = true;
+   }
+
+   /**
+    * Undoes <code>deleteStudent()</code>; the row keeps its old cells.
+    * @param student dense student id.
+
+      pre:
+         isStudentDeleted(student) && the row was not discarded
+      post:
+         !isStudentDeleted(student)
+    */
+   public void restoreStudent(int student) {
+      checkWritable();
+      ownArrays();
+      studentDeleted[student] = false;
+   }
+
+   /**
+    * Deletes an assignment column in constant time, leaving its cells in
+    * place.
+    * @param assignment dense assignment id.
+
+      pre:
+         !isAssignmentDeleted(assignment)
+      post:
+         isAssignmentDeleted(assignment)
+    */
+   public void deleteAssignment(int assignment) {
+      checkWritable();
+      ownArrays();
+      assignmentDeleted[assignment] = true;
+   }
+
+   /**
+    * Undoes <code>deleteAssignment()</code>; the column keeps its old cells.
+    * @param assignment dense assignment id.
+
+      pre:
+         isAssignmentDeleted(assignment) && the column was not discarded
+      post:
+         !isAssignmentDeleted(assignment)
+    */
+   public void restoreAssignment(int assignment) {
+      checkWritable();
+      ownArrays();
+      assignmentDeleted[assignment] = false;
+   }
+
+   /**
+    * Gives up a deleted row for good; <code>compact()</code> will clear it
+    * and hand it out again.
+    * @param student dense student id.
+
+      pre:
+         isStudentDeleted(student)
+      post:
+         // the row may be reused after the next compact()
+    */
+   public void discardStudent(int student) {
+      checkWritable();
+      if (discardedRowCount == discardedRows.length) {
+         discardedRows = Arrays.copyOf(discardedRows, discardedRowCount * 2);
+      }
+      discardedRows[discardedRowCount++] = student;
+   }
+
+   /**
+    * Gives up a deleted column for good; <code>compact()</code> will free
+    * it. Its id is never reused.
+    * @param assignment dense assignment id.
+
+      pre:
+         isAssignmentDeleted(assignment)
+      post:
+         // the column is freed by the next compact()
+    */
+   public void discardAssignment(int assignment) {
+      checkWritable();
+      if (discardedColumnCount == discardedColumns.length) {
+         discardedColumns = Arrays.copyOf(discardedColumns,
+               discardedColumnCount * 2);
+      }
+      discardedColumns[discardedColumnCount++] = assignment;
+   }
+
+   /**
+    * Accessor for whether <code>compact()</code> has anything to do.
+    * @return <code>true</code> if rows or columns are waiting.
+    */
+   public boolean needsCompaction() {
+      return discardedRowCount > 0 || discardedColumnCount > 0;
+   }
+
+   /**
+    * Frees every discarded column and clears every discarded row for reuse.
+    * Meant to run when the grade book is idle, not in the middle of an
+    * edit. Columns shared with a snapshot are left to the snapshot.
+
+      pre:
+         // none
+      post:
+         !needsCompaction() &&
+         forall (discarded column a; columns[a] == null) &&
+         forall (discarded row s, live column a; get(s, a) == NO_SCORE)
+    */
+   public void compact() {
+      checkWritable();
+      if (!needsCompaction()) {
+         return;
+      }
+      ownArrays();
+      for (int i = 0; i < discardedColumnCount; i++) {
+         columns[discardedColumns[i]] = null;
+      }
+      discardedColumnCount = 0;
+
+      for (int a = 0; a < assignmentCount && discardedRowCount > 0; a++) {
+         if (columns[a] == null) {
+            continue;
+         }
+         int[] column = writableColumn(a);
+         for (int i = 0; i < discardedRowCount; i++) {
+            column[discardedRows[i]] = NO_SCORE;
+         }
+      }
+      if (freeRowCount + discardedRowCount > freeRows.length) {
+         freeRows = Arrays.copyOf(freeRows,
+               Math.max(freeRows.length * 2, freeRowCount + discardedRowCount));
+      }
+      System.arraycopy(discardedRows, 0, freeRows, freeRowCount,
+            discardedRowCount);
+      freeRowCount += discardedRowCount;
+      discardedRowCount = 0;
+   }
+
+   private void checkWritable() {
+      if (readOnly) {
+         throw new UnsupportedOperationException("grade snapshot is read-only");
+      }
+   }
+
+   /**
+    * Stops sharing the column and tombstone arrays with any snapshot. The
+    * columns themselves stay shared.
+    */
+   private void ownArrays() {
+      if (arraysShared) {
+         columns = columns.clone();
+         columnEpochs = columnEpochs.clone();
+         studentDeleted = studentDeleted.clone();
+         assignmentDeleted = assignmentDeleted.clone();
+         arraysShared = false;
+      }
+   }
+
+   /**
+    * Returns a column that may be written to, copying it first if it may be
+    * shared with a snapshot.
+    */
+   private int[] writableColumn(int assignment) {
+      checkWritable();
+      if (columnEpochs[assignment] != epoch) {
+         ownArrays();
+         columns[assignment] = columns[assignment].clone();
+         columnEpochs[assignment] = epoch;
+      }
+      return columns[assignment];
+   }
+}
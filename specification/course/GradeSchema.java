@@ -10,5 +10,39 @@ import util.GraderObject;
  */
 
 public abstract class GradeSchema implements GraderObject {
-   public abstract LetterGrade convertRawScore(int raw);
+   /**
+    * Curve whose compiled <code>GradeTable</code> converts raw scores.
+    */
+   CurveSetting curve;
+
+   /**
+    * Accessor for the curve of this schema.
+    * @return <code>CurveSetting</code> of this schema.
+    */
+   public CurveSetting getCurveSetting() {
+      return curve;
+   }
+
+   /**
+    * Sets the curve of this schema.
+    * @param curve new <code>CurveSetting</code>.
+    */
+   public void setCurveSetting(CurveSetting curve) {
+      this.curve = curve;
+   }
+
+   /**
+    * Converts a raw percentage score to a letter grade through the compiled
+    * table of the curve.
+    * @param raw raw percentage score.
+    * @return shared <code>LetterGrade</code> for the score.
+
+      pre:
+         curve != null
+      post:
+         return == curve.getGradeTable().lookup(raw)
+    */
+   public LetterGrade convertRawScore(int raw) {
+      return curve.getGradeTable().lookup(raw);
+   }
 }
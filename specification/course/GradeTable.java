@@ -0,0 +1,124 @@
+package course;
+
+/**
+ * Immutable lookup table from percentage to <code>LetterGrade</code>,
+ * compiled from a <code>CurveSetting</code>.
+ *                                                                           <p>
+ * Each whole percentage from 0 to 100 maps directly to a shared
+ * <code>LetterGrade</code>; lower percentages map to the 0 entry and higher
+ * ones to the 100 entry. The table remembers the version of the curve it was
+ * compiled from, so a curve only recompiles after one of its lines moved.
+ */
+public final class GradeTable {
+   /**
+    * Highest percentage with its own entry.
+    */
+   public static final int MAX_PERCENT = 100;
+
+   /**
+    * Letter grade of every whole percentage.
+    */
+   private final LetterGrade[] byPercent = new LetterGrade[MAX_PERCENT + 1];
+
+   /**
+    * Version of the <code>CurveSetting</code> this table was compiled from.
+    */
+   private final int version;
+
+   /**
+    * Compiles a table from the borderlines of a curve. A percentage at or
+    * above a borderline earns that letter; anything below the D line is an F.
+    * @param curve curve to compile.
+
+      pre:
+         curve != null
+      post:
+         getVersion() == curve.getVersion()
+    */
+   GradeTable(CurveSetting curve) {
+      version = curve.getVersion();
+      for (int p = 0; p <= MAX_PERCENT; p++) {
+         if (p >= curve.getALine()) {
+            byPercent[p] = LetterGrade.A;
+         }
+         else if (p >= curve.getBLine()) {
+            byPercent[p] = LetterGrade.B;
+         }
+         else if (p >= curve.getCLine()) {
+            byPercent[p] = LetterGrade.C;
+         }
+         else if (p >= curve.getDLine()) {
+            byPercent[p] = LetterGrade.D;
+         }
+         else {
+            byPercent[p] = LetterGrade.F;
+         }
+      }
+   }
+
+   /**
+    * Accessor for the curve version this table was compiled from.
+    * @return version of the source <code>CurveSetting</code>.
+    */
+   public int getVersion() {
+      return version;
+   }
+
+   /**
+    * Looks up the letter grade of a whole percentage.
+    * @param percent percentage to convert.
+    * @return shared <code>LetterGrade</code> for the percentage.
+    */
+   public LetterGrade lookup(int percent) {
+      return byPercent[bucketOf(percent)];
+   }
+
+   /**
+    * Looks up the letter grade of a percentage, rounding down.
+    * @param percentage percentage to convert.
+    * @return shared <code>LetterGrade</code> for the percentage.
+    */
+   public LetterGrade lookup(double percentage) {
+      return byPercent[bucketOf(percentage)];
+   }
+
+   /**
+    * Clamps a whole percentage into the range of the table.
+    * @param percent percentage to clamp.
+    * @return entry of the table that covers the percentage.
+    */
+   public static int bucketOf(int percent) {
+      if (percent <= 0) {
+         return 0;
+      }
+      return percent >= MAX_PERCENT ? MAX_PERCENT : percent;
+   }
+
+   /**
+    * Rounds a percentage down and clamps it into the range of the table.
+    * @param percentage percentage to clamp.
+    * @return entry of the table that covers the percentage.
+    */
+   public static int bucketOf(double percentage) {
+      return bucketOf((int) Math.floor(percentage));
+   }
+
+   /**
+    * Converts many percentages in one pass without allocating.
+    * @param percentages percentages to convert.
+    * @param count number of leading percentages to convert.
+    * @param letters receives the letter grade of each percentage.
+
+      pre:
+         percentages.length >= count && letters.length >= count
+      post:
+         forall (int i; 0 <= i && i < count;
+            letters[i] == lookup(percentages[i]))
+    */
+   public void lookupAll(double[] percentages, int count,
+         LetterGrade[] letters) {
+      for (int i = 0; i < count; i++) {
+         letters[i] = lookup(percentages[i]);
+      }
+   }
+}
@@ -0,0 +1,302 @@
+package course;
+
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import assignment.AssignmentSubmission;
+import user.student.StudentRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Multi-directional hash over the contents of a grade book.
+ *                                                                           <p>
+ * Student records can be looked up by <code>User</code>, EMPL ID, first name
+ * or last name, and walked serially in the order they were added. Assignments
+ * can be looked up by category, and submissions by assignment and student.
+ * Every lookup is a hash probe. The index does not check permissions; it is
+ * kept consistent by the <code>CourseModifier</code> operations of the course
+ * that owns it.
+ */
+public class GradebookIndex {
+   /**
+    * Student records by student, in the order they were added.
+    */
+   Map<User, StudentRecord> byUser = new LinkedHashMap<User, StudentRecord>();
+
+   /**
+    * Student records by EMPL ID.
+    */
+   Map<String, StudentRecord> byEmplId = new HashMap<String, StudentRecord>();
+
+   /**
+    * Student records by lower-cased first name.
+    */
+   Map<String, Collection<StudentRecord>> byFirstName =
+         new HashMap<String, Collection<StudentRecord>>();
+
+   /**
+    * Student records by lower-cased last name.
+    */
+   Map<String, Collection<StudentRecord>> byLastName =
+         new HashMap<String, Collection<StudentRecord>>();
+
+   /**
+    * Assignments by the category they fall under.
+    */
+   Map<AssignmentCategory, Collection<Assignment>> byCategory =
+         new HashMap<AssignmentCategory, Collection<Assignment>>();
+
+   /**
+    * Category each assignment was indexed under.
+    */
+   Map<Assignment, AssignmentCategory> categoryOf =
+         new HashMap<Assignment, AssignmentCategory>();
+
+   /**
+    * Submissions by assignment, then by student.
+    */
+   Map<Assignment, Map<User, AssignmentSubmission>> submissions =
+         new HashMap<Assignment, Map<User, AssignmentSubmission>>();
+
+   /**
+    * Adds a student record to every student key.
+    * @param record record to index.
+
+      pre:
+         record != null && record.getUserInfo() != null
+      post:
+         getStudentRecord(record.getUserInfo()) == record
+    */
+   public void addStudentRecord(StudentRecord record) {
+      User student = record.getUserInfo();
+      byUser.put(student, record);
+      if (student.getId() != null) {
+         byEmplId.put(student.getId(), record);
+      }
+      addTo(byFirstName, key(student.getFirstName()), record);
+      addTo(byLastName, key(student.getLastName()), record);
+   }
+
+   /**
+    * Removes a student from every student key, along with their submissions.
+    * @param student student to remove.
+    * @return removed record, or <code>null</code> if it was not indexed.
+
+      pre:
+         student != null
+      post:
+         getStudentRecord(student) == null
+    */
+   public StudentRecord removeStudent(User student) {
+      StudentRecord record = byUser.remove(student);
+      if (record == null) {
+         return null;
+      }
+      if (student.getId() != null) {
+         byEmplId.remove(student.getId());
+      }
+      removeFrom(byFirstName, key(student.getFirstName()), record);
+      removeFrom(byLastName, key(student.getLastName()), record);
+      for (Map<User, AssignmentSubmission> bucket : submissions.values()) {
+         bucket.remove(student);
+      }
+      return record;
+   }
+
+   /**
+    * Moves a student from the name keys they had to their current names.
+    * @param record record of the student.
+    * @param oldFirstName first name the student was indexed under.
+    * @param oldLastName last name the student was indexed under.
+
+      pre:
+         getStudentRecord(record.getUserInfo()) == record
+      post:
+         findByLastName(record.getUserInfo().getLastName()).contains(record)
+    */
+   public void renameStudent(StudentRecord record, String oldFirstName,
+         String oldLastName) {
+      User student = record.getUserInfo();
+      removeFrom(byFirstName, key(oldFirstName), record);
+      removeFrom(byLastName, key(oldLastName), record);
+      addTo(byFirstName, key(student.getFirstName()), record);
+      addTo(byLastName, key(student.getLastName()), record);
+   }
+
+   /**
+    * Indexes an assignment under its current category. Indexing an
+    * assignment again moves it to its current category.
+    * @param assignment assignment to index.
+
+      pre:
+         assignment != null
+      post:
+         getAssignments(assignment.getCategory()).contains(assignment)
+    */
+   public void putAssignment(Assignment assignment) {
+      AssignmentCategory old = categoryOf.get(assignment);
+      if (old != null) {
+         removeFrom(byCategory, old, assignment);
+      }
+      categoryOf.put(assignment, assignment.getCategory());
+      addTo(byCategory, assignment.getCategory(), assignment);
+   }
+
+   /**
+    * Drops an assignment from its category. Its submissions stay indexed.
+    * @param assignment assignment to drop.
+
+      pre:
+         assignment != null
+      post:
+         !getAssignments(assignment.getCategory()).contains(assignment)
+    */
+   public void removeAssignment(Assignment assignment) {
+      AssignmentCategory old = categoryOf.remove(assignment);
+      if (old != null) {
+         removeFrom(byCategory, old, assignment);
+      }
+   }
+
+   /**
+    * Adds or replaces the submission of a student for an assignment.
+    * @param submission submission to index.
+
+      pre:
+         submission != null &&
+         submission.getAssignment() != null &&
+         submission.getStudent() != null
+      post:
+         getSubmission(submission.getAssignment(),
+            submission.getStudent()) == submission
+    */
+   public void putSubmission(AssignmentSubmission submission) {
+      Map<User, AssignmentSubmission> bucket =
+            submissions.get(submission.getAssignment());
+      if (bucket == null) {
+         bucket = new LinkedHashMap<User, AssignmentSubmission>();
+         submissions.put(submission.getAssignment(), bucket);
+      }
+      bucket.put(submission.getStudent(), submission);
+   }
+
+   /**
+    * Looks up the record of a student.
+    * @param student student to look for.
+    * @return record of the student, or <code>null</code>.
+    */
+   public StudentRecord getStudentRecord(User student) {
+      return byUser.get(student);
+   }
+
+   /**
+    * Looks up the record of a student by EMPL ID.
+    * @param emplId EMPL ID to look for.
+    * @return record of the student, or <code>null</code>.
+    */
+   public StudentRecord findByEmplId(String emplId) {
+      return byEmplId.get(emplId);
+   }
+
+   /**
+    * Looks up the records of every student with the given first name.
+    * The match ignores case.
+    * @param firstName first name to look for.
+    * @return matching records; empty if none.
+    */
+   public Collection<StudentRecord> findByFirstName(String firstName) {
+      return lookup(byFirstName, key(firstName));
+   }
+
+   /**
+    * Looks up the records of every student with the given last name.
+    * The match ignores case.
+    * @param lastName last name to look for.
+    * @return matching records; empty if none.
+    */
+   public Collection<StudentRecord> findByLastName(String lastName) {
+      return lookup(byLastName, key(lastName));
+   }
+
+   /**
+    * Accessor for every indexed record, in the order they were added.
+    * @return every indexed record.
+    */
+   public Collection<StudentRecord> getStudentRecords() {
+      return new ArrayList<StudentRecord>(byUser.values());
+   }
+
+   /**
+    * Looks up every assignment under a category.
+    * @param category category to look for.
+    * @return assignments directly under the category; empty if none.
+    */
+   public Collection<Assignment> getAssignments(AssignmentCategory category) {
+      return lookup(byCategory, category);
+   }
+
+   /**
+    * Looks up every submission for an assignment.
+    * @param assignment assignment to look for.
+    * @return submissions for the assignment; empty if none.
+    */
+   public Collection<AssignmentSubmission> getSubmissions(
+         Assignment assignment) {
+      Map<User, AssignmentSubmission> bucket = submissions.get(assignment);
+      if (bucket == null) {
+         return new ArrayList<AssignmentSubmission>();
+      }
+      return new ArrayList<AssignmentSubmission>(bucket.values());
+   }
+
+   /**
+    * Looks up the submission of a student for an assignment.
+    * @param assignment assignment to look for.
+    * @param student student to look for.
+    * @return submission, or <code>null</code>.
+    */
+   public AssignmentSubmission getSubmission(Assignment assignment,
+         User student) {
+      Map<User, AssignmentSubmission> bucket = submissions.get(assignment);
+      return bucket == null ? null : bucket.get(student);
+   }
+
+   private static String key(String name) {
+      return name == null ? "" : name.toLowerCase();
+   }
+
+   private static <K, V> void addTo(Map<K, Collection<V>> map, K key,
+         V value) {
+      Collection<V> bucket = map.get(key);
+      if (bucket == null) {
+         bucket = new ArrayList<V>(1);
+         map.put(key, bucket);
+      }
+      bucket.add(value);
+   }
+
+   private static <K, V> void removeFrom(Map<K, Collection<V>> map, K key,
+         V value) {
+      Collection<V> bucket = map.get(key);
+      if (bucket != null) {
+         bucket.remove(value);
+         if (bucket.isEmpty()) {
+            map.remove(key);
+         }
+      }
+   }
+
+   private static <K, V> Collection<V> lookup(Map<K, Collection<V>> map,
+         K key) {
+      Collection<V> bucket = map.get(key);
+      if (bucket == null) {
+         return new ArrayList<V>();
+      }
+      return new ArrayList<V>(bucket);
+   }
+}
@@ -5,6 +5,38 @@ import util.GraderObject;
 /**
  * A LetterGrade implements GraderData to provide a letter grade to gradable items.
  *                                                                           <p>
+ * The standard letters are shared flyweights, so converting scores to letters
+ * never allocates.
  */
 public abstract class LetterGrade implements GraderObject {
+   public static final LetterGrade A = new Standard("A");
+   public static final LetterGrade B = new Standard("B");
+   public static final LetterGrade C = new Standard("C");
+   public static final LetterGrade D = new Standard("D");
+   public static final LetterGrade F = new Standard("F");
+
+   /**
+    * Accessor for the printable form of this letter grade.
+    * @return letter of this grade, e.g. "A".
+    */
+   public abstract String getSymbol();
+
+   public String toString() {
+      return getSymbol();
+   }
+
+   /**
+    * One of the shared standard letter grades.
+    */
+   private static final class Standard extends LetterGrade {
+      private final String symbol;
+
+      Standard(String symbol) {
+         this.symbol = symbol;
+      }
+
+      public String getSymbol() {
+         return symbol;
+      }
+   }
 }
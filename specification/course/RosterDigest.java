@@ -0,0 +1,228 @@
+package course;
+
+import admin.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merkle tree over a student roster, used to find what differs between the
+ * roster of a course and the registrar's without comparing every student.
+ *                                                                           <p>
+ * Every student has a content hash of their EMPL ID and names. Students are
+ * spread over a fixed number of buckets by EMPL ID, which are the leaves of
+ * a complete binary tree. The hash of a leaf is the wrapping sum of the
+ * content hashes in its bucket, which does not depend on the order the
+ * bucket is kept in; the hash of every inner node mixes the hashes of its
+ * two children in order. Adding, removing or renaming a student updates
+ * its leaf and the <code>log2(BUCKETS)</code> nodes above it. Two rosters
+ * with equal roots are taken to be equal; otherwise the comparison walks
+ * down from the root into the children whose hashes differ, so a few
+ * changes cost a few paths of node hashes and the students of the leaves
+ * they end in.
+ *                                                                           <p>
+ * The nodes are numbered as in a binary heap: the root is
+ * <code>ROOT</code>, the children of node <code>n</code> are
+ * <code>2n</code> and <code>2n + 1</code>, and the leaf of bucket
+ * <code>b</code> is <code>BUCKETS + b</code>.
+ *                                                                           <p>
+ * Both sides of a comparison must use this class, so that they agree on
+ * the hash and bucket of every student.
+ */
+public class RosterDigest {
+   /**
+    * Number of buckets, i.e. leaves of the tree; a power of two.
+    */
+   public static final int BUCKETS = 256;
+
+   /**
+    * Number of the root node.
+    */
+   public static final int ROOT = 1;
+
+   /**
+    * Content hash of every student in each bucket, by EMPL ID.
+    */
+   final List<Map<String, Long>> buckets =
+         new ArrayList<Map<String, Long>>(BUCKETS);
+
+   /**
+    * Hash of every node, by node number; element 0 is unused.
+    */
+   final long[] nodes = new long[2 * BUCKETS];
+
+   /**
+    * Number of students summarized.
+    */
+   int size;
+
+   /**
+    * Creates an empty digest.
+    */
+   public RosterDigest() {
+      for (int b = 0; b < BUCKETS; b++) {
+         buckets.add(new HashMap<String, Long>());
+      }
+   }
+
+   /**
+    * Computes the content hash of a student.
+    * @param student student to hash.
+    * @return 64-bit hash of their EMPL ID, first name and last name.
+
+      pre:
+         student != null && student.getId() != null
+    */
+   public static long hash(User student) {
+      long h = 0xcbf29ce484222325L;
+      h = hash(h, student.getId());
+      h = hash(h, student.getFirstName());
+      h = hash(h, student.getLastName());
+      return mix(h);
+   }
+
+   /**
+    * Accessor for the bucket a student belongs in.
+    * @param id EMPL ID of the student.
+    * @return bucket from 0 to <code>BUCKETS - 1</code>.
+    */
+   public static int bucketOf(String id) {
+      return (int) mix(id.hashCode()) & (BUCKETS - 1);
+   }
+
+   /**
+    * Accessor for whether a node is a leaf.
+    * @param node node number.
+    * @return <code>true</code> if the node is the leaf of a bucket.
+    */
+   public static boolean isLeaf(int node) {
+      return node >= BUCKETS;
+   }
+
+   /**
+    * Adds a student, or replaces the hash of one with the same EMPL ID.
+    * @param student student to add.
+
+      pre:
+         student != null && student.getId() != null
+      post:
+         getHash(student.getId()) == hash(student)
+    */
+   public void put(User student) {
+      String id = student.getId();
+      int b = bucketOf(id);
+      long h = hash(student);
+      Long old = buckets.get(b).put(id, h);
+      if (old == null) {
+         size++;
+      }
+      update(b, h - (old == null ? 0 : old));
+   }
+
+   /**
+    * Removes a student.
+    * @param id EMPL ID of the student.
+
+      pre:
+         id != null
+      post:
+         getHash(id) == null
+    */
+   public void remove(String id) {
+      int b = bucketOf(id);
+      Long old = buckets.get(b).remove(id);
+      if (old != null) {
+         size--;
+         update(b, -old);
+      }
+   }
+
+   /**
+    * Accessor for the content hash of a student.
+    * @param id EMPL ID of the student.
+    * @return content hash, or <code>null</code> if not summarized.
+    */
+   public Long getHash(String id) {
+      return buckets.get(bucketOf(id)).get(id);
+   }
+
+   /**
+    * Accessor for the root hash.
+    * @return hash summarizing every student.
+    */
+   public long getRootHash() {
+      return nodes[ROOT];
+   }
+
+   /**
+    * Accessor for the hash of a node.
+    * @param node node number, from <code>ROOT</code> to
+    *    <code>2 * BUCKETS - 1</code>.
+    * @return hash of the node.
+    */
+   public long getNodeHash(int node) {
+      return nodes[node];
+   }
+
+   /**
+    * Accessor for the students of one bucket.
+    * @param bucket bucket to read.
+    * @return content hash of each student in the bucket, by EMPL ID.
+    */
+   public Map<String, Long> getBucket(int bucket) {
+      return Collections.unmodifiableMap(buckets.get(bucket));
+   }
+
+   /**
+    * Accessor for the number of students summarized.
+    * @return number of students.
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Adds a change to the hash of a leaf and rehashes the path from it to
+    * the root.
+    */
+   private void update(int bucket, long change) {
+      int node = BUCKETS + bucket;
+      nodes[node] += change;
+      for (node /= 2; node >= ROOT; node /= 2) {
+         nodes[node] = combine(nodes[2 * node], nodes[2 * node + 1]);
+      }
+   }
+
+   /**
+    * Hashes the hashes of two children in order; two empty children hash
+    * to 0, like an empty leaf.
+    */
+   private static long combine(long left, long right) {
+      if (left == 0 && right == 0) {
+         return 0;
+      }
+      return mix(left * 0x9e3779b97f4a7c15L + mix(right + 0x1f));
+   }
+
+   private static long hash(long h, String text) {
+      if (text != null) {
+         for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001b3L;
+         }
+      }
+      // Separator, so "ab","c" and "a","bc" hash differently
+      return (h ^ 0x1f) * 0x100000001b3L;
+   }
+
+   /**
+    * Finalizer of SplitMix64, spreading every input bit over the result.
+    */
+   private static long mix(long h) {
+      h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+      h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+      return h ^ (h >>> 31);
+   }
+}
@@ -0,0 +1,45 @@
+package course;
+
+import admin.User;
+
+import java.util.Collection;
+
+/**
+ * The registrar's roster of a course, as read by
+ * <code>updateStudentRoster()</code>.
+ *                                                                           <p>
+ * The roster is summarized by the same Merkle tree as
+ * <code>RosterDigest</code>, so a course can ask for the root hash, walk
+ * down the nodes whose hashes differ from its own, and fetch only the
+ * students of the buckets it reaches.
+ */
+public interface RosterSource {
+   /**
+    * Accessor for the root hash of the roster.
+    * @return <code>RosterDigest.getRootHash()</code> of the roster.
+    */
+   long getRootHash();
+
+   /**
+    * Accessor for the hash of one node of the roster's tree.
+    * @param node node number.
+    * @return <code>RosterDigest.getNodeHash(node)</code> of the roster.
+
+      pre:
+         node >= RosterDigest.ROOT && node < 2 * RosterDigest.BUCKETS
+    */
+   long getNodeHash(int node);
+
+   /**
+    * Accessor for the students of one bucket of the roster.
+    * @param bucket bucket to read.
+    * @return every student whose EMPL ID is in the bucket.
+
+      pre:
+         bucket >= 0 && bucket < RosterDigest.BUCKETS
+      post:
+         forall (User s; return.contains(s);
+            RosterDigest.bucketOf(s.getId()) == bucket)
+    */
+   Collection<User> getStudents(int bucket);
+}
@@ -0,0 +1,163 @@
+package course;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of student percentages, bucketed by whole percentage the same
+ * way as <code>GradeTable</code>.
+ *                                                                           <p>
+ * Counts are updated one student at a time as grades change. Queries go
+ * through a prefix-sum array that is rebuilt at most once after a batch of
+ * updates; because the number of buckets is fixed, both the rebuild and
+ * every range count take constant time. This lets the histogram and pie
+ * chart recount every letter while a curve borderline is being dragged.
+ */
+public class ScoreHistogram {
+   /**
+    * Number of students in each bucket.
+    */
+   int[] counts = new int[GradeTable.MAX_PERCENT + 1];
+
+   /**
+    * <code>prefix[i]</code> is the number of students below bucket
+    * <code>i</code>. Valid while <code>prefixDirty</code> is false.
+    */
+   int[] prefix = new int[GradeTable.MAX_PERCENT + 2];
+
+   /**
+    * Whether <code>prefix</code> must be rebuilt before the next query.
+    */
+   boolean prefixDirty;
+
+   /**
+    * Adds a student with the given percentage.
+    * @param percentage percentage of the student.
+    */
+   public void add(double percentage) {
+      counts[GradeTable.bucketOf(percentage)]++;
+      prefixDirty = true;
+   }
+
+   /**
+    * Removes a student with the given percentage.
+    * @param percentage percentage the student was added with.
+
+      pre:
+         count(GradeTable.bucketOf(percentage)) > 0
+      post:
+         // none
+    */
+   public void remove(double percentage) {
+      counts[GradeTable.bucketOf(percentage)]--;
+      prefixDirty = true;
+   }
+
+   /**
+    * Moves a student from one percentage to another.
+    * @param oldPercentage percentage the student was added with.
+    * @param newPercentage new percentage of the student.
+    */
+   public void move(double oldPercentage, double newPercentage) {
+      int from = GradeTable.bucketOf(oldPercentage);
+      int to = GradeTable.bucketOf(newPercentage);
+      if (from != to) {
+         counts[from]--;
+         counts[to]++;
+         prefixDirty = true;
+      }
+   }
+
+   /**
+    * Removes every student.
+    */
+   public void clear() {
+      Arrays.fill(counts, 0);
+      prefixDirty = true;
+   }
+
+   /**
+    * Accessor for the number of students in one bucket.
+    * @param percent whole percentage of the bucket.
+    * @return number of students in the bucket.
+    */
+   public int count(int percent) {
+      return counts[GradeTable.bucketOf(percent)];
+   }
+
+   /**
+    * Accessor for the number of students in the histogram.
+    * @return number of students.
+    */
+   public int getTotal() {
+      return below(GradeTable.MAX_PERCENT + 1);
+   }
+
+   /**
+    * Counts the students whose bucket is in <code>[from, to)</code>.
+    * @param from lowest whole percentage counted.
+    * @param to whole percentage just above the last one counted.
+    * @return number of students in the range; 0 if the range is empty.
+    */
+   public int countBetween(int from, int to) {
+      int lo = clampBound(from);
+      int hi = clampBound(to);
+      return hi > lo ? below(hi) - below(lo) : 0;
+   }
+
+   /**
+    * Counts the students earning each letter under the given borderlines,
+    * with the same rules as a <code>GradeTable</code> compiled from them.
+    * @param aLine lowest percentage for an A.
+    * @param bLine lowest percentage for a B.
+    * @param cLine lowest percentage for a C.
+    * @param dLine lowest percentage for a D.
+    * @param letterCounts receives the counts of A, B, C, D and F, in order.
+
+      pre:
+         letterCounts.length >= 5
+      post:
+         letterCounts[0] + letterCounts[1] + letterCounts[2] +
+         letterCounts[3] + letterCounts[4] == getTotal()
+    */
+   public void countPerLetter(int aLine, int bLine, int cLine, int dLine,
+         int[] letterCounts) {
+      int top = GradeTable.MAX_PERCENT + 1;
+      letterCounts[0] = countBetween(aLine, top);
+      top = Math.min(top, aLine);
+      letterCounts[1] = countBetween(bLine, top);
+      top = Math.min(top, bLine);
+      letterCounts[2] = countBetween(cLine, top);
+      top = Math.min(top, cLine);
+      letterCounts[3] = countBetween(dLine, top);
+      top = Math.min(top, dLine);
+      letterCounts[4] = countBetween(0, top);
+   }
+
+   /**
+    * Counts the students earning each letter under a curve.
+    * @param curve curve to count under.
+    * @param letterCounts receives the counts of A, B, C, D and F, in order.
+    */
+   public void countPerLetter(CurveSetting curve, int[] letterCounts) {
+      countPerLetter(curve.getALine(), curve.getBLine(), curve.getCLine(),
+            curve.getDLine(), letterCounts);
+   }
+
+   private static int clampBound(int bound) {
+      if (bound <= 0) {
+         return 0;
+      }
+      return bound > GradeTable.MAX_PERCENT + 1 ?
+            GradeTable.MAX_PERCENT + 1 : bound;
+   }
+
+   private int below(int bucket) {
+      if (prefixDirty) {
+         for (int i = 0; i < counts.length; i++) {
+            prefix[i + 1] = prefix[i] + counts[i];
+         }
+         prefixDirty = false;
+      }
+      return prefix[bucket];
+   }
+}
@@ -0,0 +1,365 @@
+package course;
+
+import admin.User;
+import assignment.Assignment;
+import user.student.StudentRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Prefix index over the searchable words of a grade book, used to answer
+ * find-as-you-type queries.
+ *                                                                           <p>
+ * Each student is indexed under the words of their first name, last name
+ * and EMPL ID, plus any further terms such as a nickname or group given to
+ * <code>addStudentTerm()</code>; each assignment is indexed under the words
+ * of its name. Words are kept lower-cased in a sorted map, so the words
+ * starting with a typed prefix are one contiguous range of it. A query
+ * matches a student or assignment when every word of the query is a prefix
+ * of one of its words. Matches are ranked by which words they hit and how
+ * closely, then by the order they were indexed.
+ *                                                                           <p>
+ * Like <code>GradebookIndex</code>, this index does not check permissions;
+ * it is kept current by the <code>CourseModifier</code> operations of the
+ * course that owns it, and a user interface reaches it through
+ * <code>ColumnarCourse.getSearchIndex()</code>. The Swing prototype builds
+ * apart from these classes, so its Find and Manage Students dialogs search
+ * through its own <code>GradeBookSearchIndex</code>, which indexes and ranks
+ * the prototype's grade book the same way.
+ */
+public class StudentSearchIndex {
+   /**
+    * Rank of a match on an EMPL ID.
+    */
+   static final int EMPL_ID_WEIGHT = 4;
+
+   /**
+    * Rank of a match on a first name, last name or assignment name.
+    */
+   static final int NAME_WEIGHT = 3;
+
+   /**
+    * Rank of a match on a term given to <code>addStudentTerm()</code>.
+    */
+   static final int TERM_WEIGHT = 2;
+
+   /**
+    * Extra rank when a query word is a whole indexed word.
+    */
+   static final int EXACT_BONUS = 4;
+
+   /**
+    * Students by the words they are indexed under.
+    */
+   final Terms<StudentRecord> students = new Terms<StudentRecord>();
+
+   /**
+    * Assignments by the words they are indexed under.
+    */
+   final Terms<Assignment> assignments = new Terms<Assignment>();
+
+   /**
+    * Records of indexed students, for <code>addStudentTerm()</code>.
+    */
+   final Map<User, StudentRecord> records = new HashMap<User, StudentRecord>();
+
+   /**
+    * Indexes a student under their names and EMPL ID.
+    * @param record record of the student.
+
+      pre:
+         record != null && record.getUserInfo() != null
+      post:
+         findStudents(record.getUserInfo().getLastName(), Integer.MAX_VALUE)
+            .contains(record)
+    */
+   public void addStudent(StudentRecord record) {
+      User student = record.getUserInfo();
+      records.put(student, record);
+      students.add(record, student.getFirstName(), NAME_WEIGHT);
+      students.add(record, student.getLastName(), NAME_WEIGHT);
+      students.add(record, student.getId(), EMPL_ID_WEIGHT);
+   }
+
+   /**
+    * Indexes an indexed student under a further term, e.g. a nickname or the
+    * name of their group.
+    * @param student student to index.
+    * @param term term to index them under.
+
+      pre:
+         records.containsKey(student) && term != null
+      post:
+         findStudents(term, Integer.MAX_VALUE)
+            .contains(records.get(student))
+    */
+   public void addStudentTerm(User student, String term) {
+      StudentRecord record = records.get(student);
+      if (record != null) {
+         students.add(record, term, TERM_WEIGHT);
+      }
+   }
+
+   /**
+    * Drops a student and every term they are indexed under.
+    * @param student student to drop.
+
+      pre:
+         student != null
+      post:
+         !records.containsKey(student)
+    */
+   public void removeStudent(User student) {
+      StudentRecord record = records.remove(student);
+      if (record != null) {
+         students.remove(record);
+      }
+   }
+
+   /**
+    * Indexes an assignment under its current name, replacing any name it was
+    * indexed under before.
+    * @param assignment assignment to index.
+
+      pre:
+         assignment != null
+      post:
+         findAssignments(assignment.getName(), Integer.MAX_VALUE)
+            .contains(assignment)
+    */
+   public void putAssignment(Assignment assignment) {
+      assignments.remove(assignment);
+      assignments.add(assignment, assignment.getName(), NAME_WEIGHT);
+   }
+
+   /**
+    * Drops an assignment and every word it is indexed under.
+    * @param assignment assignment to drop.
+
+      pre:
+         assignment != null
+      post:
+         !findAssignments(assignment.getName(), Integer.MAX_VALUE)
+            .contains(assignment)
+    */
+   public void removeAssignment(Assignment assignment) {
+      assignments.remove(assignment);
+   }
+
+   /**
+    * Finds the best-ranked students matching a query.
+    * @param query words typed so far.
+    * @param limit most matches to return.
+    * @return matching records, best first; empty for a blank query.
+    */
+   public List<StudentRecord> findStudents(String query, int limit) {
+      return students.find(query, limit);
+   }
+
+   /**
+    * Finds the best-ranked assignments matching a query.
+    * @param query words typed so far.
+    * @param limit most matches to return.
+    * @return matching assignments, best first; empty for a blank query.
+    */
+   public List<Assignment> findAssignments(String query, int limit) {
+      return assignments.find(query, limit);
+   }
+
+   /**
+    * Splits text into lower-cased words of letters and digits.
+    */
+   static List<String> words(String text) {
+      List<String> words = new ArrayList<String>();
+      if (text == null) {
+         return words;
+      }
+      int start = -1;
+      for (int i = 0; i <= text.length(); i++) {
+         boolean inWord = i < text.length() &&
+               Character.isLetterOrDigit(text.charAt(i));
+         if (inWord && start < 0) {
+            start = i;
+         }
+         else if (!inWord && start >= 0) {
+            words.add(text.substring(start, i).toLowerCase());
+            start = -1;
+         }
+      }
+      return words;
+   }
+
+   /**
+    * One indexed word of one target.
+    */
+   static class Posting<T> {
+      final T target;
+      final String word;
+      final int weight;
+      final long order;
+
+      Posting(T target, String word, int weight, long order) {
+         this.target = target;
+         this.word = word;
+         this.weight = weight;
+         this.order = order;
+      }
+   }
+
+   /**
+    * Rank of a target for the query words matched so far.
+    */
+   static class Match<T> {
+      final T target;
+      final long order;
+      int score;
+      int matchedWords;
+      int lastRank;
+
+      Match(T target, long order) {
+         this.target = target;
+         this.order = order;
+      }
+
+      boolean betterThan(Match<T> other) {
+         return score != other.score ? score > other.score :
+               order < other.order;
+      }
+   }
+
+   /**
+    * Sorted word index over one kind of target.
+    */
+   static class Terms<T> {
+      final TreeMap<String, List<Posting<T>>> byWord =
+            new TreeMap<String, List<Posting<T>>>();
+      final Map<T, List<Posting<T>>> byTarget =
+            new HashMap<T, List<Posting<T>>>();
+      final Map<T, Long> orderOf = new HashMap<T, Long>();
+      long nextOrder;
+
+      void add(T target, String text, int weight) {
+         Long order = orderOf.get(target);
+         if (order == null) {
+            order = nextOrder++;
+            orderOf.put(target, order);
+         }
+         List<Posting<T>> own = byTarget.get(target);
+         if (own == null) {
+            own = new ArrayList<Posting<T>>(4);
+            byTarget.put(target, own);
+         }
+         for (String word : words(text)) {
+            Posting<T> posting = new Posting<T>(target, word, weight, order);
+            own.add(posting);
+            List<Posting<T>> bucket = byWord.get(word);
+            if (bucket == null) {
+               bucket = new ArrayList<Posting<T>>(1);
+               byWord.put(word, bucket);
+            }
+            bucket.add(posting);
+         }
+      }
+
+      void remove(T target) {
+         orderOf.remove(target);
+         List<Posting<T>> own = byTarget.remove(target);
+         if (own == null) {
+            return;
+         }
+         for (Posting<T> posting : own) {
+            List<Posting<T>> bucket = byWord.get(posting.word);
+            bucket.remove(posting);
+            if (bucket.isEmpty()) {
+               byWord.remove(posting.word);
+            }
+         }
+      }
+
+      List<T> find(String query, int limit) {
+         List<String> queryWords = words(query);
+         if (queryWords.isEmpty() || limit <= 0) {
+            return new ArrayList<T>();
+         }
+
+         // Rarest-looking (longest) word first keeps the candidate set small.
+         Collections.sort(queryWords, new Comparator<String>() {
+            public int compare(String a, String b) {
+               return b.length() - a.length();
+            }
+         });
+         Map<T, Match<T>> matches = null;
+         for (int w = 0; w < queryWords.size(); w++) {
+            String word = queryWords.get(w);
+            Map<T, Match<T>> next = new HashMap<T, Match<T>>();
+            for (List<Posting<T>> bucket : byWord.subMap(word, true,
+                  word + Character.MAX_VALUE, true).values()) {
+               for (Posting<T> posting : bucket) {
+                  Match<T> match = matches == null ? null :
+                        matches.get(posting.target);
+                  if (matches != null && match == null) {
+                     continue;
+                  }
+                  if (match == null) {
+                     match = next.get(posting.target);
+                     if (match == null) {
+                        match = new Match<T>(posting.target, posting.order);
+                     }
+                  }
+                  int rank = rank(posting, word);
+                  if (match.matchedWords == w) {
+                     match.matchedWords = w + 1;
+                     match.score += rank;
+                     match.lastRank = rank;
+                  }
+                  else if (rank > match.lastRank) {
+                     match.score += rank - match.lastRank;
+                     match.lastRank = rank;
+                  }
+                  next.put(posting.target, match);
+               }
+            }
+            matches = next;
+            if (matches.isEmpty()) {
+               break;
+            }
+         }
+
+         // Worst of the best kept at the head, so it is the one evicted.
+         PriorityQueue<Match<T>> best = new PriorityQueue<Match<T>>(
+               Math.min(limit, matches.size()) + 1,
+               new Comparator<Match<T>>() {
+                  public int compare(Match<T> a, Match<T> b) {
+                     return a.betterThan(b) ? 1 : b.betterThan(a) ? -1 : 0;
+                  }
+               });
+         for (Match<T> match : matches.values()) {
+            if (best.size() < limit) {
+               best.add(match);
+            }
+            else if (match.betterThan(best.peek())) {
+               best.poll();
+               best.add(match);
+            }
+         }
+         List<T> found = new ArrayList<T>(best.size());
+         while (!best.isEmpty()) {
+            found.add(best.poll().target);
+         }
+         Collections.reverse(found);
+         return found;
+      }
+
+      private static int rank(Posting<?> posting, String word) {
+         return posting.weight +
+               (posting.word.length() == word.length() ? EXACT_BONUS : 0);
+      }
+   }
+}
@@ -0,0 +1,127 @@
+package edit;
+
+import admin.User;
+import course.ColumnarCourse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Change of many raw scores that undoes as one step, e.g. clearing every
+ * score of a category.
+ *                                                                           <p>
+ * The cells are packed four ints each (student, assignment, old score, new
+ * score) into one array, so a bulk edit costs 16 bytes per cell. The
+ * student of each row is kept once per row, and cells whose row no longer
+ * holds that student are skipped, as in <code>CellEdit</code>.
+ */
+public class BulkCellEdit extends Command {
+   private static final int INTS_PER_CELL = 4;
+
+   private final ColumnarCourse course;
+   private int[] cells = new int[INTS_PER_CELL * 16];
+   private int count;
+
+   /**
+    * Student of every row in the edit when the row was first added.
+    */
+   private final Map<Integer, User> owners = new HashMap<Integer, User>();
+
+   /**
+    * Creates an empty bulk edit.
+    * @param course course holding the cells.
+    */
+   public BulkCellEdit(ColumnarCourse course) {
+      this.course = course;
+   }
+
+   /**
+    * Adds one cell to the edit, reading its current score as the old one.
+    * Nothing changes until the edit is applied.
+    * @param student dense student id.
+    * @param assignment dense assignment id.
+    * @param newScore raw score to set.
+
+      pre:
+         the edit has not been applied
+      post:
+         getCellCount()' == getCellCount() + 1
+    */
+   public void add(int student, int assignment, int newScore) {
+      if (INTS_PER_CELL * (count + 1) > cells.length) {
+         cells = Arrays.copyOf(cells, cells.length * 2);
+      }
+      if (!owners.containsKey(student)) {
+         owners.put(student, course.getStudent(student));
+      }
+      int at = INTS_PER_CELL * count++;
+      cells[at] = student;
+      cells[at + 1] = assignment;
+      cells[at + 2] = course.getGradeMatrix().get(student, assignment);
+      cells[at + 3] = newScore;
+   }
+
+   /**
+    * Accessor for the number of cells changed.
+    * @return cells in this edit.
+    */
+   public int getCellCount() {
+      return count;
+   }
+
+   /**
+    * Sets the new scores as one <code>setGrades()</code> batch, so the
+    * statistics are refreshed and the change is logged once.
+    */
+   @Override
+   public void apply() {
+      int[] batch = new int[3 * count];
+      int cellsKept = 0;
+      for (int i = 0; i < count; i++) {
+         int at = INTS_PER_CELL * i;
+         if (isOwned(cells[at])) {
+            batch[3 * cellsKept] = cells[at];
+            batch[3 * cellsKept + 1] = cells[at + 1];
+            batch[3 * cellsKept++ + 2] = cells[at + 3];
+         }
+      }
+      course.setGrades(batch, cellsKept);
+   }
+
+   /**
+    * Restores the old scores as one batch. The cells are packed in reverse,
+    * and the last of a repeated cell wins, so a cell added twice ends at its
+    * first old score.
+    */
+   @Override
+   public void revert() {
+      int[] batch = new int[3 * count];
+      int cellsKept = 0;
+      for (int i = 0; i < count; i++) {
+         int at = INTS_PER_CELL * (count - 1 - i);
+         if (isOwned(cells[at])) {
+            batch[3 * cellsKept] = cells[at];
+            batch[3 * cellsKept + 1] = cells[at + 1];
+            batch[3 * cellsKept++ + 2] = cells[at + 2];
+         }
+      }
+      course.setGrades(batch, cellsKept);
+   }
+
+   /**
+    * Accessor for the size estimate; each row adds a map entry.
+    */
+   @Override
+   public long getSize() {
+      return 32 + 4L * cells.length + 48L * owners.size();
+   }
+
+   /**
+    * Returns whether a row still holds the student it held when it was
+    * added to the edit.
+    */
+   private boolean isOwned(int student) {
+      return course.getStudent(student) == owners.get(student);
+   }
+}
@@ -0,0 +1,97 @@
+package edit;
+
+import admin.User;
+import course.ColumnarCourse;
+
+/**
+ * Change of one raw score, stored as its dense cell ids and the scores
+ * before and after.
+ *                                                                           <p>
+ * The edit also holds the student whose row it changed. A student removed
+ * by roster synchronization gives up their row without going through the
+ * <code>CommandLog</code>, and after <code>compact()</code> the row may be
+ * handed to another student; an edit whose row no longer holds its
+ * student does nothing, rather than change someone else's score.
+ */
+public class CellEdit extends Command {
+   /**
+    * Approximate size of a cell edit: the object header, two references
+    * and four ints.
+    */
+   static final int SIZE = 16 + 2 * 8 + 4 * 4;
+
+   private final ColumnarCourse course;
+   private final User owner;
+   private final int student;
+   private final int assignment;
+   private final int oldScore;
+   private int newScore;
+
+   /**
+    * Creates an edit of one cell.
+    * @param course course holding the cell.
+    * @param student dense student id.
+    * @param assignment dense assignment id.
+    * @param oldScore raw score before the edit.
+    * @param newScore raw score after the edit.
+    */
+   public CellEdit(ColumnarCourse course, int student, int assignment,
+         int oldScore, int newScore) {
+      this.course = course;
+      this.owner = course.getStudent(student);
+      this.student = student;
+      this.assignment = assignment;
+      this.oldScore = oldScore;
+      this.newScore = newScore;
+   }
+
+   /**
+    * Creates an edit of one cell from its current score.
+    * @param course course holding the cell.
+    * @param student dense student id.
+    * @param assignment dense assignment id.
+    * @param newScore raw score to set.
+    * @return edit that sets the cell to <code>newScore</code>.
+    */
+   public static CellEdit of(ColumnarCourse course, int student,
+         int assignment, int newScore) {
+      return new CellEdit(course, student, assignment,
+            course.getGradeMatrix().get(student, assignment), newScore);
+   }
+
+   @Override
+   public void apply() {
+      if (course.getStudent(student) == owner) {
+         course.setGrade(student, assignment, newScore);
+      }
+   }
+
+   @Override
+   public void revert() {
+      if (course.getStudent(student) == owner) {
+         course.setGrade(student, assignment, oldScore);
+      }
+   }
+
+   @Override
+   public long getSize() {
+      return SIZE;
+   }
+
+   /**
+    * Absorbs a later edit of the same cell, keeping this edit's old score.
+    */
+   @Override
+   public boolean absorb(Command next) {
+      if (!(next instanceof CellEdit)) {
+         return false;
+      }
+      CellEdit edit = (CellEdit) next;
+      if (edit.course != course || edit.owner != owner ||
+            edit.student != student || edit.assignment != assignment) {
+         return false;
+      }
+      newScore = edit.newScore;
+      return true;
+   }
+}
@@ -0,0 +1,50 @@
+package edit;
+
+/**
+ * A reversible change to a course, kept in a <code>CommandLog</code>.
+ *                                                                           <p>
+ * A command stores only what it needs to go back and forth, e.g. the old
+ * and new values of the cells it changed, never a copy of the course.
+ */
+public abstract class Command {
+   /**
+    * Makes the change, or makes it again after <code>revert()</code>.
+    */
+   public abstract void apply();
+
+   /**
+    * Undoes the change made by <code>apply()</code>.
+    */
+   public abstract void revert();
+
+   /**
+    * Estimates the memory this command holds, for the budget of the log.
+    * @return approximate size in bytes.
+    */
+   public abstract long getSize();
+
+   /**
+    * Folds a command made right after this one into it, so that both undo
+    * as one step. Commands that cannot be merged return false.
+    * @param next command applied right after this one.
+    * @return true if <code>next</code> was folded into this command.
+
+      pre:
+         next != null
+      post:
+         return == false ||
+            (this.apply() has the effect of this.apply(); next.apply())
+    */
+   public boolean absorb(Command next) {
+      return false;
+   }
+
+   /**
+    * Called once when the log forgets this command, so it can give up
+    * anything it held for undo.
+    * @param applied whether the change is in effect, i.e. the command was
+    *    forgotten from the undo side of the log rather than the redo side.
+    */
+   public void dispose(boolean applied) {
+   }
+}
@@ -0,0 +1,164 @@
+package edit;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Multi-level history of the <code>Command</code>s made to a course.
+ *                                                                           <p>
+ * Applied commands sit on an undo stack and undone ones on a redo stack, so
+ * undo and redo each move one command between them in constant time. A new
+ * command clears the redo stack and, when it edits the same cell as the
+ * command before it, is folded into that command. The log holds at most
+ * <code>budget</code> bytes of commands; past that the oldest ones are
+ * forgotten, and told so through <code>Command.dispose()</code>.
+ */
+public class CommandLog extends UndoRedo {
+   private final Deque<Command> undoStack = new ArrayDeque<Command>();
+   private final Deque<Command> redoStack = new ArrayDeque<Command>();
+   private final long budget;
+   private long size;
+
+   /**
+    * Whether the next command may be folded into the last one.
+    */
+   private boolean mergeable;
+
+   /**
+    * Creates an empty log.
+    * @param budget most bytes of commands to keep.
+
+      pre:
+         budget > 0
+      post:
+         !canUndo() && !canRedo()
+    */
+   public CommandLog(long budget) {
+      this.budget = budget;
+   }
+
+   /**
+    * Applies a command and records it for undo.
+    * @param command command to make.
+
+      pre:
+         command != null
+      post:
+         canUndo() && !canRedo()
+    */
+   public void execute(Command command) {
+      command.apply();
+      clearRedo();
+      Command last = undoStack.peekLast();
+      if (mergeable && last != null) {
+         long before = last.getSize();
+         if (last.absorb(command)) {
+            size += last.getSize() - before;
+            return;
+         }
+      }
+      undoStack.addLast(command);
+      size += command.getSize();
+      mergeable = true;
+      while (size > budget && undoStack.size() > 1) {
+         Command oldest = undoStack.pollFirst();
+         size -= oldest.getSize();
+         oldest.dispose(true);
+      }
+   }
+
+   /**
+    * Stops the next command from being folded into the last one, e.g. when
+    * the user leaves the cell they were editing.
+    */
+   public void seal() {
+      mergeable = false;
+   }
+
+   /**
+    * Undoes the latest applied command, if any.
+
+      pre:
+         canUndo()
+      post:
+         canRedo()
+    */
+   @Override
+   public void undo() {
+      Command command = undoStack.pollLast();
+      if (command != null) {
+         command.revert();
+         redoStack.addLast(command);
+         mergeable = false;
+      }
+   }
+
+   /**
+    * Re-applies the latest undone command, if any.
+
+      pre:
+         canRedo()
+      post:
+         canUndo()
+    */
+   @Override
+   public void redo() {
+      Command command = redoStack.pollLast();
+      if (command != null) {
+         command.apply();
+         undoStack.addLast(command);
+         mergeable = false;
+      }
+   }
+
+   /**
+    * Accessor for whether there is a command to undo.
+    * @return true if <code>undo()</code> would do something.
+    */
+   public boolean canUndo() {
+      return !undoStack.isEmpty();
+   }
+
+   /**
+    * Accessor for whether there is a command to redo.
+    * @return true if <code>redo()</code> would do something.
+    */
+   public boolean canRedo() {
+      return !redoStack.isEmpty();
+   }
+
+   /**
+    * Accessor for the memory held by the log.
+    * @return approximate bytes of every kept command.
+    */
+   public long getSize() {
+      return size;
+   }
+
+   /**
+    * Forgets every command.
+
+      post:
+         !canUndo() && !canRedo() && getSize() == 0
+    */
+   public void clear() {
+      for (Command command : undoStack) {
+         command.dispose(true);
+      }
+      for (Command command : redoStack) {
+         command.dispose(false);
+      }
+      undoStack.clear();
+      redoStack.clear();
+      size = 0;
+      mergeable = false;
+   }
+
+   private void clearRedo() {
+      for (Command command : redoStack) {
+         size -= command.getSize();
+         command.dispose(false);
+      }
+      redoStack.clear();
+   }
+}
@@ -1,8 +1,152 @@
 package edit;
 
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import assignment.AssignmentSubmission;
+import course.ColumnarCourse;
+import user.student.StudentRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Encapsulates delete operations done in the Grader.
+ *                                                                           <p>
+ * Deleting students or assignments sets their tombstones in the
+ * <code>GradeMatrix</code> of the course, so a delete of any size leaves
+ * every cell where it was, and undo clears the tombstones again. When the
+ * log forgets an applied delete, its rows and columns are discarded and
+ * reclaimed by the next <code>ColumnarCourse.compact()</code>.
+ *                                                                           <p>
+ * The tombstones cost one flag each, but a delete is not constant time:
+ * the course takes the deleted scores out of its statistics and subtotals
+ * as it goes. Each student costs a pass over the assignments, to collect
+ * their submissions here and to update the assignment statistics in
+ * <code>deleteStudent()</code>, and a pass over the category statistics.
+ * The assignments cost a pass over the students for each one deleted,
+ * plus one rebuild of the percentage and category statistics over every
+ * student. Undo costs the same.
  */
-public class DeleteCommand {
-   
+public class DeleteCommand extends Command {
+   private final ColumnarCourse course;
+   private final List<User> students;
+   private final List<Assignment> assignments;
+
+   /**
+    * State saved by the last <code>apply()</code> for <code>revert()</code>.
+    */
+   private final StudentRecord[] records;
+   private final int[] rows;
+   private final List<Collection<AssignmentSubmission>> submissions =
+         new ArrayList<Collection<AssignmentSubmission>>();
+   private int[] columns = new int[0];
+
+   /**
+    * Creates a delete of students and assignments.
+    * @param course course to delete from.
+    * @param students students to delete.
+    * @param assignments assignments to delete.
+
+      pre:
+         course != null && students != null && assignments != null
+      post:
+         // nothing is deleted until apply()
+    */
+   public DeleteCommand(ColumnarCourse course, Collection<User> students,
+         Collection<Assignment> assignments) {
+      this.course = course;
+      this.students = new ArrayList<User>(students);
+      this.assignments = new ArrayList<Assignment>(assignments);
+      records = new StudentRecord[this.students.size()];
+      rows = new int[this.students.size()];
+   }
+
+   /**
+    * Creates a delete of every assignment under a category and its
+    * subcategories.
+    * @param course course to delete from.
+    * @param category category to empty.
+    * @return command deleting the assignments of the category.
+    */
+   public static DeleteCommand forCategory(ColumnarCourse course,
+         AssignmentCategory category) {
+      List<Assignment> assignments = new ArrayList<Assignment>();
+      collect(course, category, assignments);
+      return new DeleteCommand(course, new ArrayList<User>(), assignments);
+   }
+
+   private static void collect(ColumnarCourse course,
+         AssignmentCategory category, List<Assignment> into) {
+      into.addAll(course.getIndex().getAssignments(category));
+      if (category.getSubcategories() != null) {
+         for (AssignmentCategory sub : category.getSubcategories()) {
+            collect(course, sub, into);
+         }
+      }
+   }
+
+   /**
+    * Tombstones the students, then the assignments.
+    */
+   @Override
+   public void apply() {
+      submissions.clear();
+      for (int i = 0; i < rows.length; i++) {
+         User student = students.get(i);
+         Collection<AssignmentSubmission> own =
+               new ArrayList<AssignmentSubmission>();
+         for (Assignment assignment : course.getAssignments()) {
+            AssignmentSubmission submission =
+                  course.getAssignmentSubmission(assignment, student);
+            if (submission != null) {
+               own.add(submission);
+            }
+         }
+         submissions.add(own);
+         rows[i] = course.getStudentId(student);
+         records[i] = course.deleteStudent(student);
+      }
+      columns = course.deleteAssignments(assignments);
+   }
+
+   /**
+    * Clears the tombstones, in the reverse order they were set.
+    */
+   @Override
+   public void revert() {
+      course.restoreAssignments(assignments, columns);
+      for (int i = rows.length - 1; i >= 0; i--) {
+         if (records[i] != null) {
+            course.restoreStudent(records[i], rows[i], submissions.get(i));
+         }
+      }
+   }
+
+   @Override
+   public long getSize() {
+      return 64 + 24L * rows.length + 8L * columns.length;
+   }
+
+   /**
+    * Discards the rows and columns of an applied delete, since it can no
+    * longer be undone.
+    */
+   @Override
+   public void dispose(boolean applied) {
+      if (!applied) {
+         return;
+      }
+      for (int i = 0; i < rows.length; i++) {
+         if (records[i] != null) {
+            course.discardStudent(rows[i]);
+         }
+      }
+      for (int column : columns) {
+         if (column >= 0) {
+            course.discardAssignment(column);
+         }
+      }
+   }
 }
@@ -0,0 +1,286 @@
+package export;
+
+import assignment.Assignment;
+import course.ColumnarCourseSnapshot;
+import course.GradeMatrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Exports the students and raw scores of a course snapshot to CSV, TSV or
+ * JSON.
+ *                                                                           <p>
+ * Rows are read straight from the snapshot's <code>GradeMatrix</code>. The
+ * rows are cut into ranges that are encoded on several threads at once,
+ * each into a byte array recycled from range to range. One thread copies
+ * the encoded ranges, in order, into a reusable direct buffer and writes it
+ * to the file channel. Only a few ranges are in flight at a time, so memory
+ * use does not depend on the number of students and the export runs as
+ * fast as the file can be written.
+ *                                                                           <p>
+ * Every format has one row per student: EMPL ID, first name, last name,
+ * then the raw score of each assignment in column order. Ungraded scores
+ * are empty fields in CSV and TSV and <code>null</code> in JSON.
+ */
+public class GradeExporter {
+   /**
+    * File formats the exporter writes.
+    */
+   public enum Format {
+      CSV((byte) ','),
+      TSV((byte) '\t'),
+      JSON((byte) ',');
+
+      /**
+       * Byte between the fields of a row.
+       */
+      final byte separator;
+
+      Format(byte separator) {
+         this.separator = separator;
+      }
+   }
+
+   /**
+    * Grade matrix rows encoded by one task.
+    */
+   public static final int DEFAULT_CHUNK_ROWS = 2048;
+
+   /**
+    * Size of the direct buffer written to the file channel.
+    */
+   static final int BUFFER_BYTES = 256 * 1024;
+
+   private final ExecutorService encoders;
+   private final int chunkRows;
+   private final int maxInFlight;
+   private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+   /**
+    * Encoders not in use, kept for the next range.
+    */
+   private final ArrayDeque<RowEncoder> idle = new ArrayDeque<RowEncoder>();
+
+   /**
+    * Creates an exporter that encodes on the common fork-join pool.
+    */
+   public GradeExporter() {
+      this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_ROWS);
+   }
+
+   /**
+    * Creates an exporter.
+    * @param encoders threads that encode rows; not shut down here.
+    * @param chunkRows grade matrix rows encoded by one task.
+
+      pre:
+         encoders != null && chunkRows > 0
+    */
+   public GradeExporter(ExecutorService encoders, int chunkRows) {
+      this.encoders = encoders;
+      this.chunkRows = chunkRows;
+      maxInFlight = 2 * Math.max(1,
+            Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Writes a snapshot to a file, replacing anything already in it. An
+    * exporter writes one file at a time.
+    * @param snapshot snapshot of the course to export.
+    * @param format format to write.
+    * @param file file to write.
+    * @return number of students written.
+    * @throws IOException if the file cannot be written.
+
+      pre:
+         snapshot != null && format != null && file != null
+      post:
+         return == number of students in the snapshot
+    */
+   public synchronized int export(ColumnarCourseSnapshot snapshot,
+         Format format, Path file) throws IOException {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+         return export(snapshot, format, channel);
+      }
+      finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Writes a snapshot to a channel at its current position.
+    * @param snapshot snapshot of the course to export.
+    * @param format format to write.
+    * @param channel channel to write; left open.
+    * @return number of students written.
+    * @throws IOException if the channel cannot be written.
+    */
+   public synchronized int export(final ColumnarCourseSnapshot snapshot,
+         final Format format, FileChannel channel) throws IOException {
+      GradeMatrix grades = snapshot.getGradeMatrix();
+      final int[] columns = liveColumns(snapshot);
+      buffer.clear();
+
+      RowEncoder header = takeEncoder();
+      writeHeader(header, snapshot, columns, format);
+      write(channel, header);
+      idle.push(header);
+
+      int students = 0;
+      ArrayDeque<Future<RowEncoder>> inFlight =
+            new ArrayDeque<Future<RowEncoder>>();
+      try {
+         int rowCount = grades.getStudentCount();
+         for (int start = 0; start < rowCount; start += chunkRows) {
+            if (inFlight.size() == maxInFlight) {
+               students += writeRows(channel, inFlight.poll().get(), format,
+                     students);
+            }
+            final RowEncoder encoder = takeEncoder();
+            final int from = start;
+            final int to = Math.min(rowCount, start + chunkRows);
+            inFlight.add(encoders.submit(new Callable<RowEncoder>() {
+               public RowEncoder call() {
+                  encoder.encodeRows(snapshot, columns, format, from, to);
+                  return encoder;
+               }
+            }));
+         }
+         while (!inFlight.isEmpty()) {
+            students += writeRows(channel, inFlight.poll().get(), format,
+                  students);
+         }
+      }
+      catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         throw new IllegalStateException(cause);
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("export interrupted", e);
+      }
+      finally {
+         for (Future<RowEncoder> pending : inFlight) {
+            pending.cancel(false);
+         }
+      }
+
+      RowEncoder footer = takeEncoder();
+      footer.length = 0;
+      if (format == Format.JSON) {
+         footer.ascii("\n]}\n");
+      }
+      write(channel, footer);
+      idle.push(footer);
+      flush(channel);
+      return students;
+   }
+
+   /**
+    * Columns of the snapshot that hold an assignment, in order.
+    */
+   private static int[] liveColumns(ColumnarCourseSnapshot snapshot) {
+      int count = snapshot.getGradeMatrix().getAssignmentCount();
+      int[] columns = new int[count];
+      int live = 0;
+      for (int c = 0; c < count; c++) {
+         if (snapshot.getAssignment(c) != null) {
+            columns[live++] = c;
+         }
+      }
+      return Arrays.copyOf(columns, live);
+   }
+
+   private static void writeHeader(RowEncoder out,
+         ColumnarCourseSnapshot snapshot, int[] columns, Format format) {
+      out.length = 0;
+      if (format == Format.JSON) {
+         out.ascii("{\"assignments\":[");
+         for (int c = 0; c < columns.length; c++) {
+            if (c > 0) {
+               out.put((byte) ',');
+            }
+            out.text(snapshot.getAssignment(columns[c]).getName(), format);
+         }
+         out.ascii("],\n\"students\":[\n");
+         return;
+      }
+      out.ascii("EMPL ID");
+      out.put(format.separator);
+      out.ascii("First Name");
+      out.put(format.separator);
+      out.ascii("Last Name");
+      for (int c = 0; c < columns.length; c++) {
+         Assignment assignment = snapshot.getAssignment(columns[c]);
+         out.put(format.separator);
+         out.text(assignment.getName(), format);
+      }
+      out.put((byte) '\n');
+   }
+
+   /**
+    * Writes one encoded range, with the comma JSON needs between it and
+    * the rows before it, and recycles its encoder.
+    * @return number of rows in the range.
+    */
+   private int writeRows(FileChannel channel, RowEncoder encoder,
+         Format format, int rowsBefore) throws IOException {
+      int rows = encoder.rows;
+      if (format == Format.JSON && rows > 0 && rowsBefore > 0) {
+         put(channel, (byte) ',');
+         put(channel, (byte) '\n');
+      }
+      write(channel, encoder);
+      idle.push(encoder);
+      return rows;
+   }
+
+   private RowEncoder takeEncoder() {
+      RowEncoder encoder = idle.poll();
+      return encoder == null ? new RowEncoder() : encoder;
+   }
+
+   private void write(FileChannel channel, RowEncoder encoder)
+         throws IOException {
+      int offset = 0;
+      while (offset < encoder.length) {
+         if (!buffer.hasRemaining()) {
+            flush(channel);
+         }
+         int count = Math.min(buffer.remaining(), encoder.length - offset);
+         buffer.put(encoder.bytes, offset, count);
+         offset += count;
+      }
+   }
+
+   private void put(FileChannel channel, byte b) throws IOException {
+      if (!buffer.hasRemaining()) {
+         flush(channel);
+      }
+      buffer.put(b);
+   }
+
+   private void flush(FileChannel channel) throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+      buffer.clear();
+   }
+}
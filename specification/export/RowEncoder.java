@@ -0,0 +1,228 @@
+package export;
+
+import admin.User;
+import course.ColumnarCourseSnapshot;
+import course.GradeMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Encodes a range of grade book rows as UTF-8 bytes in one of the
+ * <code>GradeExporter</code> formats.
+ *                                                                           <p>
+ * Text and numbers are written byte by byte into a growable array that is
+ * kept between ranges, so encoding a row builds no <code>String</code>s.
+ */
+class RowEncoder {
+   private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+   private static final byte[] HEX = {
+      '0', '1', '2', '3', '4', '5', '6', '7',
+      '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+   };
+
+   byte[] bytes = new byte[64 * 1024];
+   int length;
+
+   /**
+    * Number of rows in the last range encoded.
+    */
+   int rows;
+
+   /**
+    * Encodes the live rows in <code>[from, to)</code>. JSON rows are
+    * separated by commas within the range; the caller separates ranges.
+    */
+   void encodeRows(ColumnarCourseSnapshot snapshot, int[] columns,
+         GradeExporter.Format format, int from, int to) {
+      length = 0;
+      rows = 0;
+      GradeMatrix grades = snapshot.getGradeMatrix();
+      for (int row = from; row < to; row++) {
+         User student = snapshot.getStudent(row);
+         if (student == null) {
+            continue;
+         }
+         if (format == GradeExporter.Format.JSON) {
+            if (rows > 0) {
+               ascii(",\n");
+            }
+            ascii("{\"id\":");
+            text(student.getId(), format);
+            ascii(",\"firstName\":");
+            text(snapshot.getFirstName(row), format);
+            ascii(",\"lastName\":");
+            text(snapshot.getLastName(row), format);
+            ascii(",\"scores\":[");
+            for (int c = 0; c < columns.length; c++) {
+               if (c > 0) {
+                  put((byte) ',');
+               }
+               score(grades.get(row, columns[c]), format);
+            }
+            ascii("]}");
+         }
+         else {
+            byte separator = format.separator;
+            text(student.getId(), format);
+            put(separator);
+            text(snapshot.getFirstName(row), format);
+            put(separator);
+            text(snapshot.getLastName(row), format);
+            for (int c = 0; c < columns.length; c++) {
+               put(separator);
+               score(grades.get(row, columns[c]), format);
+            }
+            put((byte) '\n');
+         }
+         rows++;
+      }
+   }
+
+   /**
+    * Writes one field of text, quoted or escaped as the format needs.
+    */
+   void text(String value, GradeExporter.Format format) {
+      if (value == null) {
+         if (format == GradeExporter.Format.JSON) {
+            put(NULL);
+         }
+         return;
+      }
+      if (format == GradeExporter.Format.JSON) {
+         put((byte) '"');
+         for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+               put((byte) '\\');
+               put((byte) c);
+            }
+            else if (c < 0x20) {
+               ascii("\\u00");
+               put(HEX[c >> 4]);
+               put(HEX[c & 0xF]);
+            }
+            else {
+               i += utf8(value, i) - 1;
+            }
+         }
+         put((byte) '"');
+      }
+      else if (format == GradeExporter.Format.CSV) {
+         boolean quote = false;
+         for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+         }
+         if (quote) {
+            put((byte) '"');
+         }
+         for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+               put((byte) '"');
+            }
+            i += utf8(value, i) - 1;
+         }
+         if (quote) {
+            put((byte) '"');
+         }
+      }
+      else {
+         // TSV has no quoting, so tabs and line breaks become spaces
+         for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\t' || c == '\n' || c == '\r') {
+               put((byte) ' ');
+            }
+            else {
+               i += utf8(value, i) - 1;
+            }
+         }
+      }
+   }
+
+   /**
+    * Writes a score in decimal, or an empty field or JSON null if ungraded.
+    */
+   void score(int score, GradeExporter.Format format) {
+      if (score == GradeMatrix.NO_SCORE) {
+         if (format == GradeExporter.Format.JSON) {
+            put(NULL);
+         }
+         return;
+      }
+      ensure(11);
+      long value = score;
+      if (value < 0) {
+         bytes[length++] = '-';
+         value = -value;
+      }
+      int digits = 1;
+      for (long v = value; v >= 10; v /= 10) {
+         digits++;
+      }
+      for (int i = length + digits - 1; i >= length; i--) {
+         bytes[i] = (byte) ('0' + value % 10);
+         value /= 10;
+      }
+      length += digits;
+   }
+
+   void ascii(String text) {
+      ensure(text.length());
+      for (int i = 0; i < text.length(); i++) {
+         bytes[length++] = (byte) text.charAt(i);
+      }
+   }
+
+   void put(byte b) {
+      ensure(1);
+      bytes[length++] = b;
+   }
+
+   void put(byte[] b) {
+      ensure(b.length);
+      System.arraycopy(b, 0, bytes, length, b.length);
+      length += b.length;
+   }
+
+   /**
+    * Writes the code point at <code>i</code> as UTF-8. An unpaired
+    * surrogate is written as '?'.
+    * @return number of chars consumed.
+    */
+   private int utf8(String value, int i) {
+      ensure(4);
+      int c = value.codePointAt(i);
+      if (c < 0x80) {
+         bytes[length++] = (byte) c;
+      }
+      else if (c < 0x800) {
+         bytes[length++] = (byte) (0xC0 | c >> 6);
+         bytes[length++] = (byte) (0x80 | c & 0x3F);
+      }
+      else if (c < 0x10000) {
+         if (Character.isSurrogate((char) c)) {
+            bytes[length++] = '?';
+            return 1;
+         }
+         bytes[length++] = (byte) (0xE0 | c >> 12);
+         bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+         bytes[length++] = (byte) (0x80 | c & 0x3F);
+      }
+      else {
+         bytes[length++] = (byte) (0xF0 | c >> 18);
+         bytes[length++] = (byte) (0x80 | c >> 12 & 0x3F);
+         bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+         bytes[length++] = (byte) (0x80 | c & 0x3F);
+      }
+      return Character.charCount(c);
+   }
+
+   private void ensure(int extra) {
+      if (length + extra > bytes.length) {
+         bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2,
+               length + extra));
+      }
+   }
+}
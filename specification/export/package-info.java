@@ -0,0 +1,4 @@
+/**
+ * Provides classes for exporting course data to files.
+ */
+package export;
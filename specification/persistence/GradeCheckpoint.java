@@ -0,0 +1,206 @@
+package persistence;
+
+import course.GradeMatrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compacted image of a course taken by <code>MutationLog.checkpoint()</code>.
+ *                                                                           <p>
+ * The file holds the sequence number of the last record it includes, the
+ * tombstone of every student and assignment, the grade matrix column by
+ * column, and an opaque block of course state, followed by a CRC-32 of
+ * everything before it. Cells of deleted students and assignments are
+ * saved with the rest, so a deletion can still be undone after a restart.
+ */
+public class GradeCheckpoint {
+   /**
+    * First four bytes of every checkpoint file.
+    */
+   static final int MAGIC = 0x47524450;
+
+   /**
+    * Format of the checkpoint, written after <code>MAGIC</code>.
+    */
+   static final int FORMAT = 2;
+
+   private final long sequence;
+   private final GradeMatrix grades;
+   private final byte[] courseState;
+
+   private GradeCheckpoint(long sequence, GradeMatrix grades,
+         byte[] courseState) {
+      this.sequence = sequence;
+      this.grades = grades;
+      this.courseState = courseState;
+   }
+
+   /**
+    * Accessor for the sequence number of the last record included.
+    * @return sequence number, or -1 if no record was included.
+    */
+   public long getSequence() {
+      return sequence;
+   }
+
+   /**
+    * Accessor for the saved raw scores.
+    * @return grade matrix as of the checkpoint.
+    */
+   public GradeMatrix getGrades() {
+      return grades;
+   }
+
+   /**
+    * Accessor for the saved course state.
+    * @return course state as of the checkpoint.
+    */
+   public byte[] getCourseState() {
+      return courseState;
+   }
+
+   /**
+    * Writes a checkpoint file and forces it to disk.
+    * @param file file to write.
+    * @param sequence sequence number of the last record included.
+    * @param grades raw scores to save.
+    * @param courseState course state to save.
+    * @throws IOException if the file cannot be written.
+    */
+   static void write(Path file, long sequence, GradeMatrix grades,
+         byte[] courseState) throws IOException {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+         CRC32 crc = new CRC32();
+         int students = grades.getStudentCount();
+         int assignments = grades.getAssignmentCount();
+         ByteBuffer buffer = ByteBuffer.allocate(
+               Math.max(24, Math.max(4 * students, assignments)) + 4);
+
+         buffer.putInt(MAGIC);
+         buffer.putInt(FORMAT);
+         buffer.putLong(sequence);
+         buffer.putInt(students);
+         buffer.putInt(assignments);
+         writeAll(channel, buffer, crc);
+
+         for (int s = 0; s < students; s++) {
+            buffer.put((byte) (grades.isStudentDeleted(s) ? 1 : 0));
+         }
+         writeAll(channel, buffer, crc);
+         for (int a = 0; a < assignments; a++) {
+            buffer.put((byte) (grades.isAssignmentDeleted(a) ? 1 : 0));
+         }
+         writeAll(channel, buffer, crc);
+
+         int[] column = new int[students];
+         for (int a = 0; a < assignments; a++) {
+            grades.copyColumn(a, column);
+            buffer.asIntBuffer().put(column);
+            buffer.position(4 * students);
+            writeAll(channel, buffer, crc);
+         }
+
+         buffer.putInt(courseState.length);
+         writeAll(channel, buffer, crc);
+         ByteBuffer state = ByteBuffer.wrap(courseState);
+         state.position(courseState.length);
+         writeAll(channel, state, crc);
+
+         buffer.putInt((int) crc.getValue());
+         writeAll(channel, buffer, null);
+         channel.force(true);
+      }
+      finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Reads a checkpoint file.
+    * @param file file to read.
+    * @return checkpoint read from the file.
+    * @throws IOException if the file cannot be read or is corrupt.
+    */
+   static GradeCheckpoint read(Path file) throws IOException {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+      try {
+         CRC32 crc = new CRC32();
+         ByteBuffer header = readFully(channel, 24, crc);
+         if (header.getInt() != MAGIC || header.getInt() != FORMAT) {
+            throw new IOException("not a grade checkpoint: " + file);
+         }
+         long sequence = header.getLong();
+         int students = header.getInt();
+         int assignments = header.getInt();
+         ByteBuffer studentDeleted = readFully(channel, students, crc);
+         ByteBuffer assignmentDeleted = readFully(channel, assignments, crc);
+
+         GradeMatrix grades = new GradeMatrix();
+         for (int s = 0; s < students; s++) {
+            grades.addStudent();
+         }
+         for (int a = 0; a < assignments; a++) {
+            grades.addAssignment();
+            ByteBuffer column = readFully(channel, 4 * students, crc);
+            for (int s = 0; s < students; s++) {
+               grades.set(s, a, column.getInt());
+            }
+            if (assignmentDeleted.get(a) != 0) {
+               grades.deleteAssignment(a);
+            }
+         }
+         for (int s = 0; s < students; s++) {
+            if (studentDeleted.get(s) != 0) {
+               grades.deleteStudent(s);
+            }
+         }
+
+         int stateLength = readFully(channel, 4, crc).getInt();
+         byte[] courseState = new byte[stateLength];
+         readFully(channel, stateLength, crc).get(courseState);
+
+         int expected = readFully(channel, 4, null).getInt();
+         if (expected != (int) crc.getValue()) {
+            throw new IOException("corrupt grade checkpoint: " + file);
+         }
+         return new GradeCheckpoint(sequence, grades, courseState);
+      }
+      finally {
+         channel.close();
+      }
+   }
+
+   private static void writeAll(FileChannel channel, ByteBuffer buffer,
+         CRC32 crc) throws IOException {
+      buffer.flip();
+      if (crc != null) {
+         crc.update(buffer.duplicate());
+      }
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+      buffer.clear();
+   }
+
+   private static ByteBuffer readFully(FileChannel channel, int length,
+         CRC32 crc) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+         if (channel.read(buffer) < 0) {
+            throw new IOException("truncated grade checkpoint");
+         }
+      }
+      buffer.flip();
+      if (crc != null) {
+         crc.update(buffer.duplicate());
+      }
+      return buffer;
+   }
+}
@@ -0,0 +1,439 @@
+package persistence;
+
+import course.GradeMatrix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only binary log of <code>CourseModifier</code> operations.
+ *                                                                           <p>
+ * Each operation is one small record appended to the end of the log file:
+ * <pre>
+ *    int length, int crc32, long sequence, byte type,
+ *    int student, int assignment, int value, int dataLength, byte[] data
+ * </pre>
+ * where <code>length</code> and <code>crc32</code> cover everything after
+ * them. Records are buffered and forced to disk together (group commit) once
+ * enough bytes are pending or the oldest pending record has waited
+ * <code>groupCommitMillis</code>, so a burst of edits costs one sync.
+ *                                                                           <p>
+ * <code>checkpoint()</code> writes the whole grade matrix to a separate file
+ * and empties the log. <code>open()</code> recovers by loading the last
+ * checkpoint and replaying every later record, stopping at the first torn or
+ * corrupt record.
+ *                                                                           <p>
+ * A failed write or sync, including one made by the timer, is kept and
+ * thrown by every later <code>append()</code>, <code>sync()</code> and
+ * <code>close()</code>: once a sync has failed, records appended before it
+ * may be lost even if a later sync succeeds, so the log must not go on
+ * accepting changes as if nothing happened.
+ */
+public class MutationLog implements Closeable {
+   /**
+    * Receives the recovered state of a course while a log is opened.
+    */
+   public interface Replayer {
+      /**
+       * Restores the state saved by the last checkpoint.
+       * @param grades raw scores at the checkpoint.
+       * @param courseState state the course saved with the checkpoint.
+       * @throws IOException if the state cannot be decoded.
+       */
+      void restore(GradeMatrix grades, byte[] courseState) throws IOException;
+
+      /**
+       * Re-applies one logged operation.
+       * @param type kind of operation.
+       * @param student dense student id, or -1.
+       * @param assignment dense assignment id, or -1.
+       * @param value operation-specific value, e.g. a raw score.
+       * @param data operation-specific payload; never <code>null</code>.
+       * @throws IOException if the payload cannot be decoded.
+       */
+      void replay(MutationType type, int student, int assignment, int value,
+            byte[] data) throws IOException;
+   }
+
+   /**
+    * Size of a record before its payload.
+    */
+   static final int HEADER_BYTES = 4 + 4 + 8 + 1 + 4 + 4 + 4 + 4;
+
+   /**
+    * Size of the append buffer.
+    */
+   static final int BUFFER_BYTES = 64 * 1024;
+
+   private static final byte[] NO_DATA = new byte[0];
+
+   private final FileChannel channel;
+   private final Path checkpointFile;
+   private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+   private final CRC32 crc = new CRC32();
+   private final int groupCommitBytes;
+   private final long groupCommitMillis;
+   private final Timer syncTimer;
+
+   /**
+    * Sequence number of the next record.
+    */
+   private long nextSequence;
+
+   /**
+    * Bytes appended since the last sync.
+    */
+   private int pendingBytes;
+
+   /**
+    * Time of the oldest record appended since the last sync.
+    */
+   private long pendingSince;
+
+   /**
+    * Bytes in the log file since the last checkpoint.
+    */
+   private long logBytes;
+
+   /**
+    * First failure to write or sync the log, or <code>null</code>.
+    */
+   private IOException failure;
+
+   private MutationLog(FileChannel channel, Path checkpointFile,
+         long nextSequence, long logBytes, int groupCommitBytes,
+         long groupCommitMillis) {
+      this.channel = channel;
+      this.checkpointFile = checkpointFile;
+      this.nextSequence = nextSequence;
+      this.logBytes = logBytes;
+      this.groupCommitBytes = groupCommitBytes;
+      this.groupCommitMillis = groupCommitMillis;
+
+      syncTimer = new Timer("mutation-log-sync", true);
+      syncTimer.schedule(new TimerTask() {
+         public void run() {
+            try {
+               syncIfDue();
+            }
+            catch (IOException e) {
+               // kept in failure and thrown by the next append or sync
+               cancel();
+            }
+         }
+      }, groupCommitMillis, groupCommitMillis);
+   }
+
+   /**
+    * Opens a log, replaying its checkpoint and records into
+    * <code>replayer</code>, and positions it for appending. A torn record at
+    * the end of the file is cut off.
+    * @param logFile file of the log.
+    * @param checkpointFile file of the checkpoint.
+    * @param replayer receives the recovered state.
+    * @param groupCommitBytes pending bytes that force a sync.
+    * @param groupCommitMillis longest time a record may wait for a sync.
+    * @return log ready for appending.
+    * @throws IOException if the files cannot be read or written, or the
+    *    replayer rejects a record; the log file is closed again.
+
+      pre:
+         logFile != null && checkpointFile != null && replayer != null &&
+         groupCommitBytes > 0 && groupCommitMillis > 0
+      post:
+         // none
+    */
+   public static MutationLog open(Path logFile, Path checkpointFile,
+         Replayer replayer, int groupCommitBytes, long groupCommitMillis)
+         throws IOException {
+      long checkpointSequence = -1;
+      if (Files.exists(checkpointFile)) {
+         GradeCheckpoint checkpoint = GradeCheckpoint.read(checkpointFile);
+         checkpointSequence = checkpoint.getSequence();
+         replayer.restore(checkpoint.getGrades(), checkpoint.getCourseState());
+      }
+
+      FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+         return open(channel, checkpointFile, checkpointSequence, replayer,
+               groupCommitBytes, groupCommitMillis);
+      }
+      catch (IOException | RuntimeException e) {
+         try {
+            channel.close();
+         }
+         catch (IOException suppressed) {
+            e.addSuppressed(suppressed);
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * Replays the records of an open log file after the checkpoint, cuts off
+    * a torn end, and wraps the file for appending. The caller closes the
+    * channel if this throws.
+    */
+   private static MutationLog open(FileChannel channel, Path checkpointFile,
+         long checkpointSequence, Replayer replayer, int groupCommitBytes,
+         long groupCommitMillis) throws IOException {
+      long nextSequence = checkpointSequence + 1;
+      long valid = 0;
+      ByteBuffer header = ByteBuffer.allocate(8);
+      CRC32 check = new CRC32();
+      while (true) {
+         header.clear();
+         if (channel.read(header, valid) < 8) {
+            break;
+         }
+         header.flip();
+         int length = header.getInt();
+         int expected = header.getInt();
+         if (length < HEADER_BYTES - 8 ||
+               valid + 8 + length > channel.size()) {
+            break;
+         }
+         ByteBuffer body = ByteBuffer.allocate(length);
+         channel.read(body, valid + 8);
+         check.reset();
+         check.update(body.array(), 0, length);
+         if ((int) check.getValue() != expected) {
+            break;
+         }
+         body.flip();
+         long sequence = body.getLong();
+         int ordinal = body.get();
+         if (ordinal < 0 || ordinal >= MutationType.values().length) {
+            throw new IOException("log record " + sequence +
+                  " has unknown type " + ordinal);
+         }
+         MutationType type = MutationType.values()[ordinal];
+         int student = body.getInt();
+         int assignment = body.getInt();
+         int value = body.getInt();
+         byte[] data = new byte[body.getInt()];
+         body.get(data);
+         if (sequence > checkpointSequence) {
+            replayer.replay(type, student, assignment, value, data);
+            nextSequence = sequence + 1;
+         }
+         valid += 8 + length;
+      }
+      channel.truncate(valid);
+      channel.position(valid);
+
+      return new MutationLog(channel, checkpointFile, nextSequence, valid,
+            groupCommitBytes, groupCommitMillis);
+   }
+
+   /**
+    * Appends a record without a payload.
+    * @param type kind of operation.
+    * @param student dense student id, or -1.
+    * @param assignment dense assignment id, or -1.
+    * @param value operation-specific value.
+    * @throws IOException if the log cannot be written.
+    */
+   public void append(MutationType type, int student, int assignment,
+         int value) throws IOException {
+      append(type, student, assignment, value, NO_DATA);
+   }
+
+   /**
+    * Appends a record. The record is durable after the next sync.
+    * @param type kind of operation.
+    * @param student dense student id, or -1.
+    * @param assignment dense assignment id, or -1.
+    * @param value operation-specific value.
+    * @param data operation-specific payload.
+    * @throws IOException if the log cannot be written.
+
+      pre:
+         type != null && data != null
+      post:
+         getNextSequence()' == getNextSequence() + 1
+    */
+   public synchronized void append(MutationType type, int student,
+         int assignment, int value, byte[] data) throws IOException {
+      checkFailure();
+      try {
+         write(type, student, assignment, value, data);
+      }
+      catch (IOException e) {
+         failure = e;
+         throw e;
+      }
+   }
+
+   private void write(MutationType type, int student, int assignment,
+         int value, byte[] data) throws IOException {
+      int length = HEADER_BYTES - 8 + data.length;
+      ByteBuffer record = buffer;
+      if (8 + length > buffer.capacity()) {
+         flushBuffer();
+         record = ByteBuffer.allocate(8 + length);
+      }
+      else if (8 + length > buffer.remaining()) {
+         flushBuffer();
+      }
+
+      int start = record.position();
+      record.putInt(length);
+      record.putInt(0);
+      int body = record.position();
+      record.putLong(nextSequence++);
+      record.put((byte) type.ordinal());
+      record.putInt(student);
+      record.putInt(assignment);
+      record.putInt(value);
+      record.putInt(data.length);
+      record.put(data);
+
+      ByteBuffer covered = record.duplicate();
+      covered.position(body);
+      covered.limit(record.position());
+      crc.reset();
+      crc.update(covered);
+      record.putInt(start + 4, (int) crc.getValue());
+
+      if (record != buffer) {
+         record.flip();
+         while (record.hasRemaining()) {
+            channel.write(record);
+         }
+      }
+
+      if (pendingBytes == 0) {
+         pendingSince = System.currentTimeMillis();
+      }
+      pendingBytes += 8 + length;
+      logBytes += 8 + length;
+      if (pendingBytes >= groupCommitBytes) {
+         sync();
+      }
+   }
+
+   /**
+    * Forces every appended record to disk.
+    * @throws IOException if the log cannot be written.
+    */
+   public synchronized void sync() throws IOException {
+      checkFailure();
+      try {
+         flushBuffer();
+         if (pendingBytes > 0) {
+            channel.force(false);
+            pendingBytes = 0;
+         }
+      }
+      catch (IOException e) {
+         failure = e;
+         throw e;
+      }
+   }
+
+   /**
+    * Forces pending records to disk if the oldest has waited long enough.
+    * @throws IOException if the log cannot be written.
+    */
+   synchronized void syncIfDue() throws IOException {
+      if (pendingBytes > 0 && System.currentTimeMillis() - pendingSince >=
+            groupCommitMillis) {
+         sync();
+      }
+   }
+
+   /**
+    * Accessor for the first failure to write or sync the log, e.g. for a
+    * status display.
+    * @return failure, or <code>null</code> if the log is healthy.
+    */
+   public synchronized IOException getFailure() {
+      return failure;
+   }
+
+   /**
+    * Accessor for the number of bytes logged since the last checkpoint,
+    * which callers use to decide when to checkpoint.
+    * @return bytes in the log file.
+    */
+   public synchronized long getLogBytes() {
+      return logBytes;
+   }
+
+   /**
+    * Accessor for the sequence number of the next record.
+    * @return next sequence number.
+    */
+   public synchronized long getNextSequence() {
+      return nextSequence;
+   }
+
+   /**
+    * Saves the whole grade matrix with the state of the course, then empties
+    * the log. The checkpoint replaces the previous one atomically.
+    * @param grades raw scores of the course.
+    * @param courseState any further state the course needs on recovery.
+    * @throws IOException if the files cannot be written.
+
+      pre:
+         grades != null && courseState != null
+      post:
+         getLogBytes() == 0
+    */
+   public synchronized void checkpoint(GradeMatrix grades, byte[] courseState)
+         throws IOException {
+      sync();
+      Path temp = checkpointFile.resolveSibling(
+            checkpointFile.getFileName() + ".tmp");
+      GradeCheckpoint.write(temp, nextSequence - 1, grades, courseState);
+      Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      channel.truncate(0);
+      channel.position(0);
+      channel.force(true);
+      logBytes = 0;
+   }
+
+   /**
+    * Syncs and closes the log.
+    * @throws IOException if the log cannot be written.
+    */
+   public synchronized void close() throws IOException {
+      syncTimer.cancel();
+      try {
+         sync();
+      }
+      finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Refuses to go on after an earlier write or sync failed.
+    */
+   private void checkFailure() throws IOException {
+      if (failure != null) {
+         throw new IOException("mutation log failed; records appended " +
+               "since the last sync may be lost", failure);
+      }
+   }
+
+   private void flushBuffer() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+      buffer.clear();
+   }
+}
@@ -0,0 +1,32 @@
+package persistence;
+
+/**
+ * Kinds of <code>CourseModifier</code> operations recorded in a
+ * <code>MutationLog</code>. The ordinal is written to the log, so new kinds
+ * must only ever be added at the end.
+ */
+public enum MutationType
+{
+   SET_NAME,
+   SET_GRADE_SCHEMA,
+   SET_LATE_POLICY,
+   ADD_ASSIGNMENT,
+   UPDATE_ASSIGNMENT,
+   ADD_ASSIGNMENT_CATEGORY,
+   UPDATE_ASSIGNMENT_CATEGORY,
+   ADD_ASSIGNMENT_SUBMISSION,
+   UPDATE_ASSIGNMENT_SUBMISSION,
+   UPDATE_ASSIGNMENT_GRADE,
+   ADD_STUDENT,
+   REMOVE_STUDENT,
+   RESTORE_STUDENT,
+   REMOVE_ASSIGNMENT,
+   RESTORE_ASSIGNMENT,
+   UPDATE_ASSIGNMENT_GRADES,
+   ADD_ASSIGNMENT_SUBMISSIONS,
+   ADD_STUDENTS,
+   UPDATE_STUDENT_INFO,
+   DISCARD_STUDENT,
+   DISCARD_ASSIGNMENT,
+   COMPACT
+}
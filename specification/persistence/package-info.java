@@ -0,0 +1,4 @@
+/**
+ * Provides classes for saving course changes as they are made.
+ */
+package persistence;
@@ -0,0 +1,308 @@
+package publish;
+
+import admin.User;
+import assignment.Assignment;
+import course.ColumnStatistics;
+import course.ColumnarCourse;
+import course.ColumnarCourseSnapshot;
+import course.GradeMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Publishes a course to student clients as a series of versioned deltas.
+ *                                                                           <p>
+ * The publisher keeps the snapshot it published last. Publishing a new
+ * snapshot compares the two and sends only what changed. The comparison
+ * rides on the copy-on-write columns of <code>GradeMatrix</code>: a column
+ * that is still the very same array in both snapshots cannot have changed,
+ * so it is skipped without reading a cell. When a republish touches one
+ * assignment, only that column is compared and its statistics recomputed.
+ *                                                                           <p>
+ * Students and assignments are compared by the EMPL ID, names and points
+ * they had when they were last published, since a <code>User</code> may be
+ * renamed in place. Rows and columns past the end of the last version are
+ * new, and those deleted since are sent as removed.
+ */
+public class DeltaPublisher {
+   /**
+    * What clients hold of the last published version.
+    */
+   private Published published = new Published();
+
+   /**
+    * Creates a publisher that has published nothing; its first delta holds
+    * the whole course.
+    */
+   public DeltaPublisher() {
+   }
+
+   /**
+    * Accessor for the last published version.
+    * @return version, or 0 if nothing has been published.
+    */
+   public synchronized long getVersion() {
+      return published.version;
+   }
+
+   /**
+    * Snapshots a course and publishes the changes since the last version.
+    * Must be called on the thread that changes the course.
+    * @param course course to publish.
+    * @return delta from the last version to the new one.
+
+      pre:
+         course != null
+      post:
+         return.getBaseVersion() == getVersion()' &&
+         return.getVersion() == getVersion()' + 1
+    */
+   public SnapshotDelta publish(ColumnarCourse course) {
+      course.createSnapshot();
+      return publish((ColumnarCourseSnapshot) course.getSnapshot());
+   }
+
+   /**
+    * Publishes the changes between the last version and a snapshot.
+    * @param snapshot snapshot to publish.
+    * @return delta from the last version to the new one.
+    */
+   public synchronized SnapshotDelta publish(ColumnarCourseSnapshot snapshot) {
+      Published next = new Published(snapshot, published.version + 1);
+      SnapshotDelta delta = diff(published, next);
+      published = next;
+      return delta;
+   }
+
+   /**
+    * Builds the whole last published version as a delta based on version 0,
+    * for a client with no cache or one too far behind.
+    * @return delta holding the whole course.
+    */
+   public synchronized SnapshotDelta getFullDelta() {
+      Published empty = new Published();
+      return diff(empty, published);
+   }
+
+   private static SnapshotDelta diff(Published from, Published to) {
+      SnapshotDelta delta = new SnapshotDelta(from.version, to.version);
+      int rows = to.ids.length;
+      int columns = to.names.length;
+      delta.studentCount = rows;
+      delta.assignmentCount = columns;
+      GradeMatrix grades = to.snapshot == null ? null :
+            to.snapshot.getGradeMatrix();
+      GradeMatrix previous = from.snapshot == null ? null :
+            from.snapshot.getGradeMatrix();
+
+      // rows the client clears, and columns whose statistics change
+      boolean[] resetRows = new boolean[rows];
+      boolean[] changed = new boolean[columns];
+      int[] students = new int[rows];
+      int studentCount = 0;
+      int[] resets = new int[rows];
+      int resetCount = 0;
+      int[] removed = new int[Math.max(rows, from.ids.length)];
+      int removedCount = 0;
+      for (int r = 0; r < removed.length; r++) {
+         String id = r < rows ? to.ids[r] : null;
+         String old = r < from.ids.length ? from.ids[r] : null;
+         if (old != null && !old.equals(id)) {
+            // the scores of the old student leave the statistics
+            for (int c = 0; c < columns; c++) {
+               if (c < from.names.length && from.names[c] != null &&
+                     previous.get(r, c) != GradeMatrix.NO_SCORE) {
+                  changed[c] = true;
+               }
+            }
+         }
+         if (id == null) {
+            if (old != null) {
+               removed[removedCount++] = r;
+            }
+         }
+         else if (!id.equals(old)) {
+            resetRows[r] = true;
+            resets[resetCount++] = r;
+            students[studentCount++] = r;
+         }
+         else if (!same(to.firstNames[r], from.firstNames[r]) ||
+               !same(to.lastNames[r], from.lastNames[r])) {
+            students[studentCount++] = r;
+         }
+      }
+      delta.studentRows = Arrays.copyOf(students, studentCount);
+      delta.studentIds = new String[studentCount];
+      delta.firstNames = new String[studentCount];
+      delta.lastNames = new String[studentCount];
+      for (int i = 0; i < studentCount; i++) {
+         int r = students[i];
+         delta.studentIds[i] = to.ids[r];
+         delta.firstNames[i] = to.firstNames[r];
+         delta.lastNames[i] = to.lastNames[r];
+      }
+      delta.removedRows = Arrays.copyOf(removed, removedCount);
+
+      int[] assignments = new int[columns];
+      int assignmentCount = 0;
+      removed = new int[Math.max(columns, from.names.length)];
+      removedCount = 0;
+      delta.cells = new int[0];
+      for (int c = 0; c < removed.length; c++) {
+         String name = c < columns ? to.names[c] : null;
+         String old = c < from.names.length ? from.names[c] : null;
+         if (name == null) {
+            if (old != null) {
+               removed[removedCount++] = c;
+            }
+            continue;
+         }
+         boolean reset = old == null;
+         if (reset || !name.equals(old) ||
+               to.maxPoints[c] != from.maxPoints[c]) {
+            assignments[assignmentCount++] = c;
+         }
+         int before = delta.cellCount;
+         if (!reset && grades.sharesColumn(previous, c)) {
+            // unchanged, except for the rows the client clears
+            for (int i = 0; i < resetCount; i++) {
+               int score = grades.get(resets[i], c);
+               if (score != GradeMatrix.NO_SCORE) {
+                  delta.addCell(resets[i], c, score);
+               }
+            }
+         }
+         else {
+            for (int r = 0; r < rows; r++) {
+               if (to.ids[r] == null) {
+                  continue;
+               }
+               int score = grades.get(r, c);
+               int base = reset || resetRows[r] ? GradeMatrix.NO_SCORE :
+                     previous.get(r, c);
+               if (score != base) {
+                  delta.addCell(r, c, score);
+               }
+            }
+         }
+         changed[c] |= reset || delta.cellCount > before;
+      }
+      delta.assignmentColumns = Arrays.copyOf(assignments, assignmentCount);
+      delta.assignmentNames = new String[assignmentCount];
+      delta.maxPoints = new int[assignmentCount];
+      for (int i = 0; i < assignmentCount; i++) {
+         delta.assignmentNames[i] = to.names[assignments[i]];
+         delta.maxPoints[i] = to.maxPoints[assignments[i]];
+      }
+      delta.removedColumns = Arrays.copyOf(removed, removedCount);
+
+      statistics(delta, to, changed);
+      return delta;
+   }
+
+   /**
+    * Recomputes the statistics of the changed live columns. Negative scores,
+    * which <code>ColumnStatistics</code> cannot hold, are left out.
+    */
+   private static void statistics(SnapshotDelta delta, Published to,
+         boolean[] changed) {
+      int count = 0;
+      for (int c = 0; c < changed.length; c++) {
+         if (changed[c] && to.names[c] != null) {
+            count++;
+         }
+      }
+      delta.statisticColumns = new int[count];
+      delta.counts = new int[count];
+      delta.means = new double[count];
+      delta.medians = new double[count];
+      delta.mins = new double[count];
+      delta.maxes = new double[count];
+      GradeMatrix grades = count == 0 ? null :
+            to.snapshot.getGradeMatrix();
+      ColumnStatistics statistics = new ColumnStatistics();
+      int i = 0;
+      for (int c = 0; c < changed.length; c++) {
+         if (!changed[c] || to.names[c] == null) {
+            continue;
+         }
+         statistics.clear();
+         for (int r = 0; r < to.ids.length; r++) {
+            int score = grades.get(r, c);
+            if (to.ids[r] != null && score != GradeMatrix.NO_SCORE &&
+                  score >= 0) {
+               statistics.add(score);
+            }
+         }
+         delta.statisticColumns[i] = c;
+         delta.counts[i] = statistics.getCount();
+         delta.means[i] = statistics.getMean();
+         delta.medians[i] = statistics.getMedian();
+         delta.mins[i] = statistics.getMin();
+         delta.maxes[i] = statistics.getMax();
+         i++;
+      }
+   }
+
+   private static boolean same(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+   }
+
+   /**
+    * A published version: its snapshot, and the EMPL ID and names of every
+    * live row and the name and points of every live column as they were
+    * published; <code>null</code> where the row or column is deleted.
+    */
+   private static class Published {
+      final long version;
+      final ColumnarCourseSnapshot snapshot;
+      final String[] ids;
+      final String[] firstNames;
+      final String[] lastNames;
+      final String[] names;
+      final int[] maxPoints;
+
+      Published() {
+         version = 0;
+         snapshot = null;
+         ids = firstNames = lastNames = names = new String[0];
+         maxPoints = new int[0];
+      }
+
+      Published(ColumnarCourseSnapshot snapshot, long version) {
+         this.version = version;
+         this.snapshot = snapshot;
+         GradeMatrix grades = snapshot.getGradeMatrix();
+         int rows = grades.getStudentCount();
+         ids = new String[rows];
+         firstNames = new String[rows];
+         lastNames = new String[rows];
+         for (int r = 0; r < rows; r++) {
+            User student = snapshot.getStudent(r);
+            if (student != null) {
+               ids[r] = text(student.getId());
+               firstNames[r] = snapshot.getFirstName(r);
+               lastNames[r] = snapshot.getLastName(r);
+            }
+         }
+         int columns = grades.getAssignmentCount();
+         names = new String[columns];
+         maxPoints = new int[columns];
+         for (int c = 0; c < columns; c++) {
+            Assignment assignment = snapshot.getAssignment(c);
+            if (assignment != null) {
+               names[c] = text(assignment.getName());
+               maxPoints[c] = assignment.getMaxPoints();
+            }
+         }
+      }
+
+      /**
+       * Keeps a live row or column with no EMPL ID or name apart from a
+       * deleted one.
+       */
+      private static String text(String value) {
+         return value == null ? "" : value;
+      }
+   }
+}
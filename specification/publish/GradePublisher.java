@@ -0,0 +1,332 @@
+package publish;
+
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import course.ColumnarCourse;
+import course.ColumnarCourseSnapshot;
+import course.GradeMatrix;
+import user.student.CategorySubtotals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the grades of a course for its students to view.
+ *                                                                           <p>
+ * Publishing runs in stages. The course is snapshotted on the caller's
+ * thread, which takes constant time, and everything after that runs on a
+ * publishing thread, so the caller is never blocked. The view of each
+ * student is computed from the snapshot on several threads, one batch of
+ * rows per task, and the batches are staged on the <code>PublishTarget</code>
+ * in order as they complete. When every batch is staged, the publication
+ * is committed and all of it becomes visible to students at once.
+ *                                                                           <p>
+ * Cancelling is all or nothing. A publication cancelled before it starts to
+ * commit is aborted on the target, and students keep seeing the previous
+ * publication; once committing has started, <code>cancel()</code> returns
+ * false and the publication completes. A failure is handled like a cancel.
+ *                                                                           <p>
+ * The percentage in each view is weighted by category through the same
+ * <code>CategorySubtotals</code> as
+ * <code>StudentRecord.getRawPercentageGrade()</code>, but is computed from
+ * the snapshot's scores and not read from the live record, which the course
+ * goes on changing while the views are computed.
+ */
+public class GradePublisher {
+   /**
+    * States of a publication. A publication starts <code>RUNNING</code> and
+    * ends <code>COMMITTED</code>, <code>CANCELLED</code> or
+    * <code>FAILED</code>.
+    */
+   public enum State {
+      RUNNING,
+      COMMITTING,
+      COMMITTED,
+      CANCELLED,
+      FAILED
+   }
+
+   /**
+    * Grade matrix rows computed and staged together.
+    */
+   public static final int DEFAULT_BATCH_SIZE = 250;
+
+   private final ExecutorService workers;
+   private final int batchSize;
+   private final int maxInFlight;
+
+   /**
+    * Creates a publisher that computes views on the common fork-join pool.
+    */
+   public GradePublisher() {
+      this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+   }
+
+   /**
+    * Creates a publisher.
+    * @param workers threads that compute views; not shut down here.
+    * @param batchSize grade matrix rows computed and staged together.
+
+      pre:
+         workers != null && batchSize > 0
+    */
+   public GradePublisher(ExecutorService workers, int batchSize) {
+      this.workers = workers;
+      this.batchSize = batchSize;
+      maxInFlight = 2 * Math.max(1,
+            Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Snapshots a course and starts publishing it. Must be called on the
+    * thread that changes the course.
+    * @param course course to publish.
+    * @param target where to publish it.
+    * @param listener told of progress and the outcome, or <code>null</code>.
+    * @return the running publication.
+
+      pre:
+         course != null && target != null
+      post:
+         return.getState() != null
+    */
+   public Publication publish(ColumnarCourse course, PublishTarget target,
+         PublishListener listener) {
+      course.createSnapshot();
+      return publish((ColumnarCourseSnapshot) course.getSnapshot(), target,
+            listener);
+   }
+
+   /**
+    * Starts publishing a snapshot of a course.
+    * @param snapshot snapshot to publish.
+    * @param target where to publish it.
+    * @param listener told of progress and the outcome, or <code>null</code>.
+    * @return the running publication.
+    */
+   public Publication publish(ColumnarCourseSnapshot snapshot,
+         PublishTarget target, PublishListener listener) {
+      Publication publication = new Publication(snapshot, target, listener);
+      Thread thread = new Thread(publication, "grade-publisher");
+      thread.setDaemon(true);
+      thread.start();
+      return publication;
+   }
+
+   /**
+    * One run of publishing a snapshot.
+    */
+   public class Publication implements Runnable {
+      private final ColumnarCourseSnapshot snapshot;
+      private final PublishTarget target;
+      private final PublishListener listener;
+
+      private final AtomicReference<State> state =
+            new AtomicReference<State>(State.RUNNING);
+      private final CountDownLatch done = new CountDownLatch(1);
+
+      /**
+       * Columns published, and the assignment, points and category of each.
+       */
+      private final int[] columns;
+      private final List<Assignment> assignments;
+      private final int[] maxPoints;
+      private final AssignmentCategory[] categories;
+
+      private volatile int total = -1;
+      private volatile int staged;
+      private volatile Exception failure;
+
+      Publication(ColumnarCourseSnapshot snapshot, PublishTarget target,
+            PublishListener listener) {
+         this.snapshot = snapshot;
+         this.target = target;
+         this.listener = listener;
+         GradeMatrix grades = snapshot.getGradeMatrix();
+
+         int[] live = new int[grades.getAssignmentCount()];
+         List<Assignment> published = new ArrayList<Assignment>();
+         int count = 0;
+         for (int c = 0; c < live.length; c++) {
+            Assignment assignment = snapshot.getAssignment(c);
+            if (assignment != null) {
+               live[count++] = c;
+               published.add(assignment);
+            }
+         }
+         columns = new int[count];
+         maxPoints = new int[count];
+         categories = new AssignmentCategory[count];
+         for (int i = 0; i < count; i++) {
+            columns[i] = live[i];
+            maxPoints[i] = published.get(i).getMaxPoints();
+            categories[i] = published.get(i).getCategory();
+         }
+         assignments = Collections.unmodifiableList(published);
+      }
+
+      /**
+       * Cancels the publication unless it has started to commit.
+       * @return true if the publication is cancelled, and students keep
+       *    seeing the previous one; false if it had already started to
+       *    commit or had failed.
+       */
+      public boolean cancel() {
+         return state.compareAndSet(State.RUNNING, State.CANCELLED) ||
+               state.get() == State.CANCELLED;
+      }
+
+      public State getState() {
+         return state.get();
+      }
+
+      /**
+       * Accessor for why the publication failed.
+       * @return failure, or <code>null</code> unless the state is
+       *    <code>FAILED</code>.
+       */
+      public Exception getFailure() {
+         return failure;
+      }
+
+      public List<Assignment> getAssignments() {
+         return assignments;
+      }
+
+      /**
+       * Accessor for the number of views staged so far.
+       * @return views staged.
+       */
+      public int getStaged() {
+         return staged;
+      }
+
+      /**
+       * Accessor for the number of views in the publication.
+       * @return number of students in the snapshot, or -1 until counted.
+       */
+      public int getTotal() {
+         return total;
+      }
+
+      /**
+       * Waits for the publication to finish.
+       * @return final state.
+       * @throws InterruptedException if interrupted while waiting.
+       */
+      public State await() throws InterruptedException {
+         done.await();
+         return state.get();
+      }
+
+      public void run() {
+         String id = null;
+         ArrayDeque<Future<List<StudentView>>> inFlight =
+               new ArrayDeque<Future<List<StudentView>>>();
+         try {
+            int rowCount = snapshot.getGradeMatrix().getStudentCount();
+            int students = 0;
+            for (int row = 0; row < rowCount; row++) {
+               if (snapshot.getStudent(row) != null) {
+                  students++;
+               }
+            }
+            total = students;
+            id = target.begin(assignments, total);
+            int next = 0;
+            while ((next < rowCount || !inFlight.isEmpty()) &&
+                  state.get() == State.RUNNING) {
+               while (next < rowCount && inFlight.size() < maxInFlight) {
+                  inFlight.add(workers.submit(views(next,
+                        Math.min(rowCount, next + batchSize))));
+                  next += batchSize;
+               }
+               List<StudentView> batch = inFlight.poll().get();
+               if (state.get() != State.RUNNING) {
+                  break;
+               }
+               if (!batch.isEmpty()) {
+                  target.stage(id, batch);
+                  staged += batch.size();
+                  if (listener != null) {
+                     listener.progress(staged, total);
+                  }
+               }
+            }
+
+            if (state.compareAndSet(State.RUNNING, State.COMMITTING)) {
+               target.commit(id);
+               state.set(State.COMMITTED);
+            }
+            else {
+               target.abort(id);
+            }
+         }
+         catch (Exception e) {
+            if (e instanceof InterruptedException) {
+               Thread.currentThread().interrupt();
+            }
+            failure = e;
+            boolean committing = state.get() == State.COMMITTING;
+            state.set(State.FAILED);
+            if (id != null && !committing) {
+               try {
+                  target.abort(id);
+               }
+               catch (Exception ignored) {
+                  // the target drops unfinished publications itself
+               }
+            }
+         }
+         finally {
+            for (Future<List<StudentView>> pending : inFlight) {
+               pending.cancel(false);
+            }
+            done.countDown();
+            if (listener != null) {
+               listener.finished(this);
+            }
+         }
+      }
+
+      /**
+       * Task computing the views of the live rows in <code>[from, to)</code>.
+       */
+      private Callable<List<StudentView>> views(final int from,
+            final int to) {
+         return new Callable<List<StudentView>>() {
+            public List<StudentView> call() {
+               GradeMatrix grades = snapshot.getGradeMatrix();
+               List<StudentView> views = new ArrayList<StudentView>(to - from);
+               for (int row = from; row < to; row++) {
+                  User student = snapshot.getStudent(row);
+                  if (student == null) {
+                     continue;
+                  }
+                  int[] scores = new int[columns.length];
+                  CategorySubtotals subtotals = new CategorySubtotals();
+                  for (int i = 0; i < columns.length; i++) {
+                     scores[i] = grades.get(row, columns[i]);
+                     if (scores[i] != GradeMatrix.NO_SCORE) {
+                        subtotals.add(categories[i], scores[i],
+                              maxPoints[i]);
+                     }
+                  }
+                  views.add(new StudentView(student, scores,
+                        subtotals.getWeightedPercentage()));
+               }
+               return views;
+            }
+         };
+      }
+   }
+}
@@ -0,0 +1,20 @@
+package publish;
+
+/**
+ * Told how a publication is going. Calls come from the publishing thread,
+ * so a user interface must hand them to its own thread.
+ */
+public interface PublishListener {
+   /**
+    * Called after each batch of views is staged.
+    * @param staged number of views staged so far.
+    * @param total number of views in the publication.
+    */
+   void progress(int staged, int total);
+
+   /**
+    * Called once, when the publication is committed, cancelled or failed.
+    * @param publication the publication.
+    */
+   void finished(GradePublisher.Publication publication);
+}
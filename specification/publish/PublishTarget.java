@@ -0,0 +1,50 @@
+package publish;
+
+import assignment.Assignment;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where published grades are sent, e.g. the service the student client
+ * reads from.
+ *                                                                           <p>
+ * A publication is sent in stages. Views staged under a publication stay
+ * invisible to students until <code>commit()</code> makes all of them
+ * visible at once, replacing the previous publication; <code>abort()</code>
+ * throws them away and leaves the previous publication as it was.
+ */
+public interface PublishTarget {
+   /**
+    * Starts a publication.
+    * @param assignments assignments the views have scores for, in order.
+    * @param students number of views that will be staged.
+    * @return id of the new publication.
+    * @throws IOException if the target cannot be reached.
+    */
+   String begin(List<Assignment> assignments, int students)
+         throws IOException;
+
+   /**
+    * Sends a batch of views without making them visible.
+    * @param publication id returned by <code>begin()</code>.
+    * @param views views to stage.
+    * @throws IOException if the batch cannot be sent.
+    */
+   void stage(String publication, List<StudentView> views) throws IOException;
+
+   /**
+    * Makes every staged view of a publication visible at once.
+    * @param publication id returned by <code>begin()</code>.
+    * @throws IOException if the target cannot be reached; the previous
+    *    publication is then still the visible one.
+    */
+   void commit(String publication) throws IOException;
+
+   /**
+    * Throws away the staged views of a publication.
+    * @param publication id returned by <code>begin()</code>.
+    * @throws IOException if the target cannot be reached.
+    */
+   void abort(String publication) throws IOException;
+}
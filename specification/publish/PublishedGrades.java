@@ -0,0 +1,236 @@
+package publish;
+
+import course.GradeMatrix;
+
+import java.util.Arrays;
+
+/**
+ * A student client's cached copy of the published grades of a course, kept
+ * current by applying each <code>SnapshotDelta</code> in turn.
+ *                                                                           <p>
+ * The copy is laid out like the course's <code>GradeMatrix</code>, one
+ * column of scores per assignment, so applying a delta writes only the rows,
+ * columns and cells it names. A client that misses a version cannot apply
+ * the deltas after it; it asks for a full delta instead, which replaces the
+ * whole copy.
+ */
+public class PublishedGrades {
+   private long version;
+   private int studentCount;
+   private int assignmentCount;
+
+   /**
+    * EMPL ID and names by row; <code>null</code> ids mark removed rows.
+    */
+   private String[] ids = new String[0];
+   private String[] firstNames = new String[0];
+   private String[] lastNames = new String[0];
+
+   /**
+    * Name and points by column; <code>null</code> names mark removed
+    * columns.
+    */
+   private String[] names = new String[0];
+   private int[] maxPoints = new int[0];
+
+   /**
+    * Scores by column, then row; <code>null</code> for removed columns.
+    */
+   private int[][] scores = new int[0][];
+
+   /**
+    * Statistics by column, as of the last delta that changed the column.
+    */
+   private int[] counts = new int[0];
+   private double[] means = new double[0];
+   private double[] medians = new double[0];
+   private double[] mins = new double[0];
+   private double[] maxes = new double[0];
+
+   /**
+    * Accessor for the version this copy is at.
+    * @return version, or 0 if no delta has been applied.
+    */
+   public long getVersion() {
+      return version;
+   }
+
+   /**
+    * Applies a delta to this copy.
+    * @param delta delta based on the version of this copy, or on version 0.
+    * @throws IllegalStateException if the delta is based on another version;
+    *    the copy is left unchanged.
+
+      pre:
+         delta != null
+      post:
+         getVersion() == delta.getVersion()
+    */
+   public void apply(SnapshotDelta delta) {
+      if (delta.baseVersion == 0) {
+         clear();
+      }
+      else if (delta.baseVersion != version) {
+         throw new IllegalStateException("delta is based on version " +
+               delta.baseVersion + " but the cache is at version " + version);
+      }
+      resize(delta.studentCount, delta.assignmentCount);
+
+      for (int r : delta.removedRows) {
+         ids[r] = firstNames[r] = lastNames[r] = null;
+      }
+      for (int c : delta.removedColumns) {
+         names[c] = null;
+         scores[c] = null;
+      }
+      for (int i = 0; i < delta.studentRows.length; i++) {
+         int r = delta.studentRows[i];
+         if (!delta.studentIds[i].equals(ids[r])) {
+            // a different student, so none of the scores in the row are theirs
+            for (int c = 0; c < assignmentCount; c++) {
+               if (scores[c] != null) {
+                  scores[c][r] = GradeMatrix.NO_SCORE;
+               }
+            }
+         }
+         ids[r] = delta.studentIds[i];
+         firstNames[r] = delta.firstNames[i];
+         lastNames[r] = delta.lastNames[i];
+      }
+      for (int i = 0; i < delta.assignmentColumns.length; i++) {
+         int c = delta.assignmentColumns[i];
+         if (names[c] == null) {
+            scores[c] = new int[ids.length];
+            Arrays.fill(scores[c], GradeMatrix.NO_SCORE);
+         }
+         names[c] = delta.assignmentNames[i];
+         maxPoints[c] = delta.maxPoints[i];
+      }
+      int[] cells = delta.cells;
+      for (int i = 0; i < delta.cellCount; i++) {
+         scores[cells[3 * i + 1]][cells[3 * i]] = cells[3 * i + 2];
+      }
+      for (int i = 0; i < delta.statisticColumns.length; i++) {
+         int c = delta.statisticColumns[i];
+         counts[c] = delta.counts[i];
+         means[c] = delta.means[i];
+         medians[c] = delta.medians[i];
+         mins[c] = delta.mins[i];
+         maxes[c] = delta.maxes[i];
+      }
+      version = delta.version;
+   }
+
+   public int getStudentCount() {
+      return studentCount;
+   }
+
+   public int getAssignmentCount() {
+      return assignmentCount;
+   }
+
+   /**
+    * Accessor for the EMPL ID of the student in a row.
+    * @param row row of the grade matrix.
+    * @return EMPL ID, or <code>null</code> if the row has no student.
+    */
+   public String getStudentId(int row) {
+      return ids[row];
+   }
+
+   public String getFirstName(int row) {
+      return firstNames[row];
+   }
+
+   public String getLastName(int row) {
+      return lastNames[row];
+   }
+
+   /**
+    * Accessor for the name of the assignment in a column.
+    * @param column column of the grade matrix.
+    * @return name, or <code>null</code> if the column has no assignment.
+    */
+   public String getAssignmentName(int column) {
+      return names[column];
+   }
+
+   public int getMaxPoints(int column) {
+      return maxPoints[column];
+   }
+
+   /**
+    * Accessor for a score.
+    * @param row row of the student.
+    * @param column column of the assignment.
+    * @return raw score, or <code>GradeMatrix.NO_SCORE</code> if ungraded.
+
+      pre:
+         getStudentId(row) != null && getAssignmentName(column) != null
+    */
+   public int getScore(int row, int column) {
+      return scores[column][row];
+   }
+
+   public int getCount(int column) {
+      return counts[column];
+   }
+
+   public double getMean(int column) {
+      return means[column];
+   }
+
+   public double getMedian(int column) {
+      return medians[column];
+   }
+
+   public double getMin(int column) {
+      return mins[column];
+   }
+
+   public double getMax(int column) {
+      return maxes[column];
+   }
+
+   private void clear() {
+      version = 0;
+      studentCount = 0;
+      assignmentCount = 0;
+      Arrays.fill(ids, null);
+      Arrays.fill(names, null);
+      Arrays.fill(scores, null);
+   }
+
+   /**
+    * Grows the copy to the size of the grade matrix; new cells are
+    * ungraded.
+    */
+   private void resize(int students, int assignments) {
+      if (students > ids.length) {
+         int capacity = Math.max(students, 2 * ids.length);
+         ids = Arrays.copyOf(ids, capacity);
+         firstNames = Arrays.copyOf(firstNames, capacity);
+         lastNames = Arrays.copyOf(lastNames, capacity);
+         for (int c = 0; c < assignmentCount; c++) {
+            if (scores[c] != null) {
+               int[] grown = Arrays.copyOf(scores[c], capacity);
+               Arrays.fill(grown, studentCount, capacity, GradeMatrix.NO_SCORE);
+               scores[c] = grown;
+            }
+         }
+      }
+      if (assignments > names.length) {
+         int capacity = Math.max(assignments, 2 * names.length);
+         names = Arrays.copyOf(names, capacity);
+         maxPoints = Arrays.copyOf(maxPoints, capacity);
+         scores = Arrays.copyOf(scores, capacity);
+         counts = Arrays.copyOf(counts, capacity);
+         means = Arrays.copyOf(means, capacity);
+         medians = Arrays.copyOf(medians, capacity);
+         mins = Arrays.copyOf(mins, capacity);
+         maxes = Arrays.copyOf(maxes, capacity);
+      }
+      studentCount = Math.max(studentCount, students);
+      assignmentCount = Math.max(assignmentCount, assignments);
+   }
+}
@@ -0,0 +1,290 @@
+package publish;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The changes between two published versions of a course, as sent to
+ * student clients.
+ *                                                                           <p>
+ * A delta holds only what changed: students and assignments that were added,
+ * renamed or removed, the cells whose score changed, and the statistics of
+ * the columns those cells are in. A client applies it to its cached copy of
+ * the version the delta is based on, see <code>PublishedGrades</code>. A
+ * delta based on version 0 holds the whole course and replaces whatever the
+ * client had.
+ *                                                                           <p>
+ * Rows and columns are the dense ids of the course's <code>GradeMatrix</code>.
+ * When a row gets a student with a different EMPL ID, or a column gets an
+ * assignment where there was none, the client first clears every score in
+ * it, so the delta only has to carry the scores that are graded.
+ */
+public class SnapshotDelta {
+   /**
+    * Format written by <code>write()</code>.
+    */
+   static final int FORMAT = 1;
+
+   final long baseVersion;
+   final long version;
+
+   /**
+    * Size of the grade matrix in the new version.
+    */
+   int studentCount;
+   int assignmentCount;
+
+   /**
+    * Students added or renamed, by row.
+    */
+   int[] studentRows;
+   String[] studentIds;
+   String[] firstNames;
+   String[] lastNames;
+
+   /**
+    * Rows whose student was removed.
+    */
+   int[] removedRows;
+
+   /**
+    * Assignments added or changed, by column.
+    */
+   int[] assignmentColumns;
+   String[] assignmentNames;
+   int[] maxPoints;
+
+   /**
+    * Columns whose assignment was removed.
+    */
+   int[] removedColumns;
+
+   /**
+    * Changed cells as (row, column, score) triples, column by column.
+    */
+   int[] cells;
+   int cellCount;
+
+   /**
+    * Statistics of every column with a changed cell.
+    */
+   int[] statisticColumns;
+   int[] counts;
+   double[] means;
+   double[] medians;
+   double[] mins;
+   double[] maxes;
+
+   SnapshotDelta(long baseVersion, long version) {
+      this.baseVersion = baseVersion;
+      this.version = version;
+   }
+
+   /**
+    * Accessor for the version a client must have to apply this delta.
+    * @return base version, or 0 if this delta holds the whole course.
+    */
+   public long getBaseVersion() {
+      return baseVersion;
+   }
+
+   /**
+    * Accessor for the version a client has after applying this delta.
+    * @return new version.
+    */
+   public long getVersion() {
+      return version;
+   }
+
+   /**
+    * Accessor for the number of scores this delta changes.
+    * @return changed cells.
+    */
+   public int getCellCount() {
+      return cellCount;
+   }
+
+   /**
+    * Accessor for whether the delta changes anything but the version.
+    * @return <code>true</code> if nothing changed.
+    */
+   public boolean isEmpty() {
+      return studentRows.length == 0 && removedRows.length == 0 &&
+            assignmentColumns.length == 0 && removedColumns.length == 0 &&
+            cellCount == 0 && statisticColumns.length == 0;
+   }
+
+   /**
+    * Writes the delta in its compact binary form. Cells are written as runs
+    * of (row, score) pairs, one run per column.
+    * @param out where to write.
+    * @throws IOException if <code>out</code> cannot be written.
+    */
+   public void write(DataOutput out) throws IOException {
+      out.writeByte(FORMAT);
+      out.writeLong(baseVersion);
+      out.writeLong(version);
+      out.writeInt(studentCount);
+      out.writeInt(assignmentCount);
+
+      out.writeInt(studentRows.length);
+      for (int i = 0; i < studentRows.length; i++) {
+         out.writeInt(studentRows[i]);
+         writeText(out, studentIds[i]);
+         writeText(out, firstNames[i]);
+         writeText(out, lastNames[i]);
+      }
+      writeInts(out, removedRows);
+
+      out.writeInt(assignmentColumns.length);
+      for (int i = 0; i < assignmentColumns.length; i++) {
+         out.writeInt(assignmentColumns[i]);
+         writeText(out, assignmentNames[i]);
+         out.writeInt(maxPoints[i]);
+      }
+      writeInts(out, removedColumns);
+
+      int runs = 0;
+      for (int i = 0; i < cellCount; i++) {
+         if (i == 0 || cells[3 * i + 1] != cells[3 * i - 2]) {
+            runs++;
+         }
+      }
+      out.writeInt(runs);
+      for (int start = 0; start < cellCount; ) {
+         int column = cells[3 * start + 1];
+         int end = start;
+         while (end < cellCount && cells[3 * end + 1] == column) {
+            end++;
+         }
+         out.writeInt(column);
+         out.writeInt(end - start);
+         for (int i = start; i < end; i++) {
+            out.writeInt(cells[3 * i]);
+            out.writeInt(cells[3 * i + 2]);
+         }
+         start = end;
+      }
+
+      out.writeInt(statisticColumns.length);
+      for (int i = 0; i < statisticColumns.length; i++) {
+         out.writeInt(statisticColumns[i]);
+         out.writeInt(counts[i]);
+         out.writeDouble(means[i]);
+         out.writeDouble(medians[i]);
+         out.writeDouble(mins[i]);
+         out.writeDouble(maxes[i]);
+      }
+   }
+
+   /**
+    * Reads a delta written by <code>write()</code>.
+    * @param in where to read.
+    * @return the delta.
+    * @throws IOException if <code>in</code> cannot be read or does not hold
+    *    a delta.
+    */
+   public static SnapshotDelta read(DataInput in) throws IOException {
+      int format = in.readUnsignedByte();
+      if (format != FORMAT) {
+         throw new IOException("unknown delta format " + format);
+      }
+      SnapshotDelta delta = new SnapshotDelta(in.readLong(), in.readLong());
+      delta.studentCount = in.readInt();
+      delta.assignmentCount = in.readInt();
+
+      int students = in.readInt();
+      delta.studentRows = new int[students];
+      delta.studentIds = new String[students];
+      delta.firstNames = new String[students];
+      delta.lastNames = new String[students];
+      for (int i = 0; i < students; i++) {
+         delta.studentRows[i] = in.readInt();
+         delta.studentIds[i] = readText(in);
+         delta.firstNames[i] = readText(in);
+         delta.lastNames[i] = readText(in);
+      }
+      delta.removedRows = readInts(in);
+
+      int assignments = in.readInt();
+      delta.assignmentColumns = new int[assignments];
+      delta.assignmentNames = new String[assignments];
+      delta.maxPoints = new int[assignments];
+      for (int i = 0; i < assignments; i++) {
+         delta.assignmentColumns[i] = in.readInt();
+         delta.assignmentNames[i] = readText(in);
+         delta.maxPoints[i] = in.readInt();
+      }
+      delta.removedColumns = readInts(in);
+
+      int runs = in.readInt();
+      delta.cells = new int[0];
+      for (int run = 0; run < runs; run++) {
+         int column = in.readInt();
+         int length = in.readInt();
+         for (int i = 0; i < length; i++) {
+            delta.addCell(in.readInt(), column, in.readInt());
+         }
+      }
+
+      int statistics = in.readInt();
+      delta.statisticColumns = new int[statistics];
+      delta.counts = new int[statistics];
+      delta.means = new double[statistics];
+      delta.medians = new double[statistics];
+      delta.mins = new double[statistics];
+      delta.maxes = new double[statistics];
+      for (int i = 0; i < statistics; i++) {
+         delta.statisticColumns[i] = in.readInt();
+         delta.counts[i] = in.readInt();
+         delta.means[i] = in.readDouble();
+         delta.medians[i] = in.readDouble();
+         delta.mins[i] = in.readDouble();
+         delta.maxes[i] = in.readDouble();
+      }
+      return delta;
+   }
+
+   /**
+    * Appends a changed cell.
+    */
+   void addCell(int row, int column, int score) {
+      if (3 * cellCount == cells.length) {
+         cells = Arrays.copyOf(cells, Math.max(48, 2 * cells.length));
+      }
+      cells[3 * cellCount] = row;
+      cells[3 * cellCount + 1] = column;
+      cells[3 * cellCount + 2] = score;
+      cellCount++;
+   }
+
+   private static void writeInts(DataOutput out, int[] values)
+         throws IOException {
+      out.writeInt(values.length);
+      for (int value : values) {
+         out.writeInt(value);
+      }
+   }
+
+   private static int[] readInts(DataInput in) throws IOException {
+      int[] values = new int[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+         values[i] = in.readInt();
+      }
+      return values;
+   }
+
+   private static void writeText(DataOutput out, String text)
+         throws IOException {
+      out.writeBoolean(text != null);
+      if (text != null) {
+         out.writeUTF(text);
+      }
+   }
+
+   private static String readText(DataInput in) throws IOException {
+      return in.readBoolean() ? in.readUTF() : null;
+   }
+}
@@ -0,0 +1,43 @@
+package publish;
+
+import admin.User;
+
+/**
+ * What one student sees of their grades once they are published.
+ */
+public class StudentView {
+   private final User student;
+   private final int[] scores;
+   private final double percentage;
+
+   /**
+    * Creates a view.
+    * @param student student the view is for.
+    * @param scores raw score on each published assignment, in the order of
+    *    <code>GradePublisher.Publication.getAssignments()</code>, or
+    *    <code>GradeMatrix.NO_SCORE</code> if ungraded.
+    * @param percentage raw percentage grade, weighted by category as in
+    *    <code>StudentRecord.getRawPercentageGrade()</code>.
+    */
+   public StudentView(User student, int[] scores, double percentage) {
+      this.student = student;
+      this.scores = scores;
+      this.percentage = percentage;
+   }
+
+   public User getStudent() {
+      return student;
+   }
+
+   /**
+    * Accessor for the scores; the array must not be changed.
+    * @return raw score on each published assignment.
+    */
+   public int[] getScores() {
+      return scores;
+   }
+
+   public double getPercentage() {
+      return percentage;
+   }
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides classes for publishing grades for students to view.
+ */
+package publish;
@@ -0,0 +1,30 @@
+package registrar;
+
+/**
+ * The final grade of one student, as submitted to the registrar.
+ */
+public class FinalGrade {
+   private final String studentId;
+   private final String grade;
+
+   /**
+    * Creates a final grade.
+    * @param studentId EMPL ID of the student.
+    * @param grade grade as the registrar records it, e.g. "A" or "B+".
+
+      pre:
+         studentId != null && grade != null
+    */
+   public FinalGrade(String studentId, String grade) {
+      this.studentId = studentId;
+      this.grade = grade;
+   }
+
+   public String getStudentId() {
+      return studentId;
+   }
+
+   public String getGrade() {
+      return grade;
+   }
+}
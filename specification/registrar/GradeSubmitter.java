@@ -0,0 +1,289 @@
+package registrar;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Submits the final grades of a course to the registrar, e.g. for "Commit
+ * Final Grades".
+ *                                                                           <p>
+ * The grades are cut into batches, and each batch is sent with its own
+ * idempotency key. Several batches are in flight at once, each on its own
+ * thread, since the time goes into waiting on the registrar. A batch that
+ * fails is retried with a growing delay. It is safe to send a batch again
+ * because the registrar ignores a key it has already accepted.
+ *                                                                           <p>
+ * The key of every acknowledged batch is written to a checkpoint file. If
+ * the submission stops halfway, e.g. because the connection dropped, then
+ * submitting the same grades with the same checkpoint sends only the batches
+ * that were not acknowledged. A key is made from the submission id, the
+ * position of the batch and a hash of its grades, so a batch whose grades
+ * have changed since is sent again.
+ */
+public class GradeSubmitter {
+   /**
+    * Grades sent in one request.
+    */
+   public static final int DEFAULT_BATCH_SIZE = 500;
+
+   /**
+    * Requests sent at once.
+    */
+   public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+   /**
+    * Times a batch is sent before the submission fails.
+    */
+   public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+   /**
+    * Delay before the first retry of a batch; doubled for each later one.
+    */
+   public static final long DEFAULT_RETRY_DELAY_MILLIS = 250;
+
+   private final Registrar registrar;
+   private final int batchSize;
+   private final int maxInFlight;
+   private final int maxAttempts;
+   private final long retryDelayMillis;
+
+   /**
+    * Creates a submitter with the default batch size, concurrency and
+    * retries.
+    * @param registrar registrar to submit to.
+    */
+   public GradeSubmitter(Registrar registrar) {
+      this(registrar, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT,
+            DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY_MILLIS);
+   }
+
+   /**
+    * Creates a submitter.
+    * @param registrar registrar to submit to.
+    * @param batchSize grades sent in one request.
+    * @param maxInFlight requests sent at once.
+    * @param maxAttempts times a batch is sent before the submission fails.
+    * @param retryDelayMillis delay before the first retry of a batch.
+
+      pre:
+         registrar != null && batchSize > 0 && maxInFlight > 0 &&
+         maxAttempts > 0 && retryDelayMillis >= 0
+    */
+   public GradeSubmitter(Registrar registrar, int batchSize, int maxInFlight,
+         int maxAttempts, long retryDelayMillis) {
+      this.registrar = registrar;
+      this.batchSize = batchSize;
+      this.maxInFlight = maxInFlight;
+      this.maxAttempts = maxAttempts;
+      this.retryDelayMillis = retryDelayMillis;
+   }
+
+   /**
+    * Submits final grades, skipping the batches the checkpoint says were
+    * already acknowledged. Returns when every batch is acknowledged, or
+    * throws once the batches in flight have finished after one has failed
+    * for good; the checkpoint then holds every batch acknowledged so far.
+    * @param submissionId id of the submission, the same on every attempt,
+    *    e.g. the course and term.
+    * @param grades grades to submit, in the same order on every attempt.
+    * @param checkpoint checkpoint file, created if it does not exist.
+    * @return what was sent.
+    * @throws IOException if a batch fails on every attempt, the checkpoint
+    *    cannot be written, or the submission is interrupted.
+
+      pre:
+         submissionId != null && grades != null && checkpoint != null
+      post:
+         return.getSent() + return.getSkipped() == return.getBatches()
+    */
+   public Report submit(String submissionId, List<FinalGrade> grades,
+         Path checkpoint) throws IOException {
+      SubmissionCheckpoint acknowledged = SubmissionCheckpoint.open(checkpoint);
+      ExecutorService senders = Executors.newFixedThreadPool(maxInFlight,
+            new ThreadFactory() {
+               public Thread newThread(Runnable runnable) {
+                  Thread thread = new Thread(runnable, "grade-submitter");
+                  thread.setDaemon(true);
+                  return thread;
+               }
+            });
+      try {
+         return submit(submissionId, grades, acknowledged, senders);
+      }
+      finally {
+         senders.shutdownNow();
+         acknowledged.close();
+      }
+   }
+
+   private Report submit(String submissionId, List<FinalGrade> grades,
+         SubmissionCheckpoint acknowledged, ExecutorService senders)
+         throws IOException {
+      Report report = new Report();
+      ExecutorCompletionService<Void> completions =
+            new ExecutorCompletionService<Void>(senders);
+      int inFlight = 0;
+      Exception failure = null;
+      try {
+         for (int start = 0; start < grades.size(); start += batchSize) {
+            List<FinalGrade> batch = grades.subList(start,
+                  Math.min(grades.size(), start + batchSize));
+            String key = key(submissionId, start / batchSize, batch);
+            report.batches++;
+            if (acknowledged.contains(key)) {
+               report.skipped++;
+               continue;
+            }
+            if (inFlight == maxInFlight) {
+               failure = await(completions.take(), report, failure);
+               inFlight--;
+               if (failure != null) {
+                  break;
+               }
+            }
+            completions.submit(send(key, batch, acknowledged, report));
+            inFlight++;
+         }
+         for (; inFlight > 0; inFlight--) {
+            failure = await(completions.take(), report, failure);
+         }
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("grade submission interrupted");
+      }
+      if (failure instanceof IOException) {
+         throw (IOException) failure;
+      }
+      if (failure != null) {
+         throw new IOException("grade submission failed", failure);
+      }
+      return report;
+   }
+
+   /**
+    * Waits for a sent batch and counts it.
+    * @return the first failure of the submission, or <code>null</code>.
+    */
+   private static Exception await(Future<Void> sent, Report report,
+         Exception failure) throws InterruptedException {
+      try {
+         sent.get();
+         report.sent++;
+         return failure;
+      }
+      catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (failure != null) {
+            return failure;
+         }
+         return cause instanceof Exception ? (Exception) cause :
+               new IOException(cause);
+      }
+   }
+
+   /**
+    * Task sending one batch until it is acknowledged or out of attempts.
+    */
+   private Callable<Void> send(final String key, final List<FinalGrade> batch,
+         final SubmissionCheckpoint acknowledged, final Report report) {
+      return new Callable<Void>() {
+         public Void call() throws IOException, InterruptedException {
+            long delay = retryDelayMillis;
+            for (int attempt = 1; ; attempt++) {
+               try {
+                  registrar.submit(key, batch);
+                  break;
+               }
+               catch (IOException e) {
+                  if (attempt == maxAttempts) {
+                     throw new IOException("batch " + key + " failed " +
+                           attempt + " times", e);
+                  }
+               }
+               report.retries.incrementAndGet();
+               Thread.sleep(delay);
+               delay *= 2;
+            }
+            acknowledged.add(key);
+            return null;
+         }
+      };
+   }
+
+   /**
+    * Builds the idempotency key of a batch from the submission id, the
+    * position of the batch and an FNV-1a hash of its grades.
+    */
+   static String key(String submissionId, int index, List<FinalGrade> batch) {
+      long hash = 0xcbf29ce484222325L;
+      for (FinalGrade grade : batch) {
+         hash = hash(hash, grade.getStudentId());
+         hash = hash(hash, grade.getGrade());
+      }
+      return submissionId + "-" + index + "-" + Long.toHexString(hash);
+   }
+
+   private static long hash(long hash, String text) {
+      for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+         hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+      }
+      // a separator, so ("ab", "c") and ("a", "bc") hash differently
+      return (hash ^ 0xFF) * 0x100000001b3L;
+   }
+
+   /**
+    * What a submission sent.
+    */
+   public static class Report {
+      int batches;
+      int skipped;
+      int sent;
+      final AtomicInteger retries = new AtomicInteger();
+
+      /**
+       * Accessor for the number of batches the grades were cut into.
+       * @return batches.
+       */
+      public int getBatches() {
+         return batches;
+      }
+
+      /**
+       * Accessor for the number of batches already acknowledged before this
+       * submission, according to the checkpoint.
+       * @return batches not sent.
+       */
+      public int getSkipped() {
+         return skipped;
+      }
+
+      /**
+       * Accessor for the number of batches acknowledged by this submission.
+       * @return batches sent.
+       */
+      public int getSent() {
+         return sent;
+      }
+
+      /**
+       * Accessor for the number of times a batch was sent again after a
+       * failure.
+       * @return retries.
+       */
+      public int getRetries() {
+         return retries.get();
+      }
+   }
+}
@@ -0,0 +1,88 @@
+package registrar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A registrar reached over HTTP.
+ *                                                                           <p>
+ * Each batch is one <code>POST</code> with the idempotency key in the
+ * <code>Idempotency-Key</code> header and one grade per line of the body,
+ * the EMPL ID and the grade separated by a tab. Any reply but 200 fails the
+ * batch.
+ */
+public class HttpRegistrar implements Registrar {
+   /**
+    * Header carrying the idempotency key of a batch.
+    */
+   public static final String KEY_HEADER = "Idempotency-Key";
+
+   private final URL url;
+   private final int timeoutMillis;
+
+   /**
+    * Creates a registrar client.
+    * @param url URL the batches are posted to.
+    * @param timeoutMillis connect and read timeout of each request.
+
+      pre:
+         url != null && timeoutMillis > 0
+    */
+   public HttpRegistrar(URL url, int timeoutMillis) {
+      this.url = url;
+      this.timeoutMillis = timeoutMillis;
+   }
+
+   public void submit(String key, List<FinalGrade> grades) throws IOException {
+      StringBuilder body = new StringBuilder(grades.size() * 16);
+      for (FinalGrade grade : grades) {
+         body.append(grade.getStudentId()).append('\t')
+               .append(grade.getGrade()).append('\n');
+      }
+      byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      try {
+         connection.setConnectTimeout(timeoutMillis);
+         connection.setReadTimeout(timeoutMillis);
+         connection.setRequestMethod("POST");
+         connection.setDoOutput(true);
+         connection.setFixedLengthStreamingMode(bytes.length);
+         connection.setRequestProperty(KEY_HEADER, key);
+         connection.setRequestProperty("Content-Type",
+               "text/tab-separated-values; charset=utf-8");
+         OutputStream out = connection.getOutputStream();
+         try {
+            out.write(bytes);
+         }
+         finally {
+            out.close();
+         }
+         int status = connection.getResponseCode();
+         if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("registrar replied " + status +
+                  " to batch " + key);
+         }
+         // read the reply to the end so the connection can be reused
+         InputStream in = connection.getInputStream();
+         try {
+            byte[] skip = new byte[512];
+            while (in.read(skip) >= 0) {
+               // the reply has no body worth reading
+            }
+         }
+         finally {
+            in.close();
+         }
+      }
+      catch (IOException e) {
+         connection.disconnect();
+         throw e;
+      }
+   }
+}
@@ -0,0 +1,181 @@
+package registrar;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A stand-in registrar on the loopback interface, for trying out and timing
+ * <code>GradeSubmitter</code> through <code>HttpRegistrar</code>.
+ *                                                                           <p>
+ * It records the grades of every batch whose idempotency key it has not
+ * seen, and acknowledges a repeated key without recording anything. It can
+ * be told to fail requests, to see a submission retry and resume, and it
+ * can wait before replying, to stand in for a slow registrar.
+ */
+public class LocalRegistrarServer {
+   private final HttpServer server;
+   private final ExecutorService handlers;
+
+   private final Set<String> keys = new HashSet<String>();
+   private final Map<String, String> grades = new HashMap<String, String>();
+   private int requests;
+   private int duplicates;
+   private int failures;
+   private long delayMillis;
+
+   /**
+    * Starts a registrar on a free loopback port.
+    * @throws IOException if the server cannot be started.
+    */
+   public LocalRegistrarServer() throws IOException {
+      server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      handlers = Executors.newCachedThreadPool();
+      server.setExecutor(handlers);
+      server.createContext("/grades", new HttpHandler() {
+         public void handle(HttpExchange exchange) throws IOException {
+            try {
+               exchange.sendResponseHeaders(receive(exchange), -1);
+            }
+            finally {
+               exchange.close();
+            }
+         }
+      });
+      server.start();
+   }
+
+   /**
+    * Accessor for the URL batches are posted to.
+    * @return URL of the registrar.
+    * @throws IOException if the URL cannot be formed.
+    */
+   public URL getUrl() throws IOException {
+      return new URL("http", server.getAddress().getHostString(),
+            server.getAddress().getPort(), "/grades");
+   }
+
+   /**
+    * Fails the next requests with 503 without recording them.
+    * @param count number of requests to fail.
+    */
+   public synchronized void failNext(int count) {
+      failures = count;
+   }
+
+   /**
+    * Waits before answering each request.
+    * @param delayMillis delay of each reply.
+    */
+   public synchronized void setDelay(long delayMillis) {
+      this.delayMillis = delayMillis;
+   }
+
+   /**
+    * Accessor for the recorded grades.
+    * @return grade of every student, by EMPL ID.
+    */
+   public synchronized Map<String, String> getGrades() {
+      return new HashMap<String, String>(grades);
+   }
+
+   /**
+    * Accessor for the number of requests received, including failed ones.
+    * @return requests.
+    */
+   public synchronized int getRequestCount() {
+      return requests;
+   }
+
+   /**
+    * Accessor for the number of batches received with a key already
+    * accepted.
+    * @return repeated batches.
+    */
+   public synchronized int getDuplicateCount() {
+      return duplicates;
+   }
+
+   /**
+    * Stops the registrar.
+    */
+   public void stop() {
+      server.stop(0);
+      handlers.shutdownNow();
+   }
+
+   /**
+    * Records one batch.
+    * @return HTTP status of the reply.
+    */
+   private int receive(HttpExchange exchange) throws IOException {
+      String key = exchange.getRequestHeaders()
+            .getFirst(HttpRegistrar.KEY_HEADER);
+      if (!"POST".equals(exchange.getRequestMethod())) {
+         return 405;
+      }
+      String body = read(exchange.getRequestBody());
+      long delay;
+      synchronized (this) {
+         requests++;
+         delay = delayMillis;
+      }
+      if (delay > 0) {
+         try {
+            Thread.sleep(delay);
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 503;
+         }
+      }
+      synchronized (this) {
+         if (failures > 0) {
+            failures--;
+            return 503;
+         }
+         if (key == null) {
+            return 400;
+         }
+         if (!keys.add(key)) {
+            duplicates++;
+            return 200;
+         }
+         int start = 0;
+         for (int end = body.indexOf('\n'); end >= 0;
+               end = body.indexOf('\n', start)) {
+            int tab = body.indexOf('\t', start);
+            if (tab > start && tab < end) {
+               grades.put(body.substring(start, tab),
+                     body.substring(tab + 1, end));
+            }
+            start = end + 1;
+         }
+         return 200;
+      }
+   }
+
+   private static String read(InputStream in) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int n; (n = in.read(buffer)) >= 0; ) {
+         bytes.write(buffer, 0, n);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+   }
+}
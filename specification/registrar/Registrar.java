@@ -0,0 +1,27 @@
+package registrar;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The registrar service that final grades are submitted to.
+ *                                                                           <p>
+ * Every batch carries an idempotency key. A batch sent again with a key the
+ * registrar has already accepted, because the reply to the first attempt
+ * was lost, is acknowledged without being recorded twice.
+ */
+public interface Registrar {
+   /**
+    * Submits a batch of final grades.
+    * @param key idempotency key of the batch.
+    * @param grades grades in the batch.
+    * @throws IOException if the registrar cannot be reached or refuses the
+    *    batch; the batch may or may not have been recorded.
+
+      pre:
+         key != null && grades != null
+      post:
+         // every grade of the batch is recorded exactly once
+    */
+   void submit(String key, List<FinalGrade> grades) throws IOException;
+}
@@ -0,0 +1,89 @@
+package registrar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The idempotency keys of the batches the registrar has acknowledged, kept
+ * in a file so an interrupted submission can resume where it stopped.
+ *                                                                           <p>
+ * The file has one key per line and is only appended to. Each key is forced
+ * to the disk before <code>add()</code> returns. A line torn by a crash
+ * is dropped when the file is opened, so at worst its batch is sent again,
+ * which the registrar ignores.
+ */
+class SubmissionCheckpoint {
+   private final Set<String> keys = new HashSet<String>();
+   private final FileChannel channel;
+
+   private SubmissionCheckpoint(FileChannel channel) {
+      this.channel = channel;
+   }
+
+   /**
+    * Opens a checkpoint file, creating it if it does not exist.
+    * @param file checkpoint file.
+    * @return checkpoint holding the keys already in the file.
+    * @throws IOException if the file cannot be read or created.
+    */
+   static SubmissionCheckpoint open(Path file) throws IOException {
+      SubmissionCheckpoint checkpoint = new SubmissionCheckpoint(
+            FileChannel.open(file, StandardOpenOption.CREATE,
+                  StandardOpenOption.READ, StandardOpenOption.WRITE));
+      try {
+         String text = new String(Files.readAllBytes(file),
+               StandardCharsets.UTF_8);
+         int start = 0;
+         for (int end = text.indexOf('\n'); end >= 0;
+               end = text.indexOf('\n', start)) {
+            checkpoint.keys.add(text.substring(start, end));
+            start = end + 1;
+         }
+         checkpoint.channel.position(checkpoint.channel.size());
+         if (start < text.length()) {
+            // end the torn line so the next key starts a line of its own
+            checkpoint.write("\n");
+         }
+      }
+      catch (IOException e) {
+         checkpoint.close();
+         throw e;
+      }
+      return checkpoint;
+   }
+
+   synchronized boolean contains(String key) {
+      return keys.contains(key);
+   }
+
+   /**
+    * Records that the registrar acknowledged a batch.
+    * @param key idempotency key of the batch.
+    * @throws IOException if the key cannot be written.
+    */
+   synchronized void add(String key) throws IOException {
+      if (!keys.add(key)) {
+         return;
+      }
+      write(key + "\n");
+   }
+
+   private void write(String text) throws IOException {
+      ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+      while (bytes.hasRemaining()) {
+         channel.write(bytes);
+      }
+      channel.force(false);
+   }
+
+   void close() throws IOException {
+      channel.close();
+   }
+}
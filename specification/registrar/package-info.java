@@ -0,0 +1,5 @@
+/**
+ * Provides classes for submitting final grades to the registrar, and a local
+ * stand-in registrar to submit them to.
+ */
+package registrar;
@@ -0,0 +1,96 @@
+package roster;
+
+import admin.User;
+import course.RosterDigest;
+import course.RosterSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registrar roster held in memory, standing in for the registrar when
+ * trying out or timing <code>updateStudentRoster()</code>.
+ *                                                                           <p>
+ * It keeps its own <code>RosterDigest</code> current as students are put
+ * and removed, and counts the node hashes and students it hands out, so a
+ * caller can check that a synchronization only walked the paths that
+ * changed.
+ */
+public class InMemoryRosterSource implements RosterSource {
+   private final RosterDigest digest = new RosterDigest();
+
+   /**
+    * Students of each bucket, by EMPL ID.
+    */
+   private final List<Map<String, User>> buckets =
+         new ArrayList<Map<String, User>>(RosterDigest.BUCKETS);
+
+   private long studentsSent;
+   private long nodesSent;
+
+   /**
+    * Creates an empty roster.
+    */
+   public InMemoryRosterSource() {
+      for (int b = 0; b < RosterDigest.BUCKETS; b++) {
+         buckets.add(new HashMap<String, User>());
+      }
+   }
+
+   /**
+    * Adds a student, or replaces the one with the same EMPL ID.
+    * @param student student to put on the roster.
+
+      pre:
+         student != null && student.getId() != null
+    */
+   public synchronized void put(User student) {
+      buckets.get(RosterDigest.bucketOf(student.getId()))
+            .put(student.getId(), student);
+      digest.put(student);
+   }
+
+   /**
+    * Drops a student from the roster.
+    * @param id EMPL ID of the student.
+    */
+   public synchronized void remove(String id) {
+      buckets.get(RosterDigest.bucketOf(id)).remove(id);
+      digest.remove(id);
+   }
+
+   /**
+    * Accessor for the number of students handed out by
+    * <code>getStudents()</code> so far.
+    * @return students sent.
+    */
+   public synchronized long getStudentsSent() {
+      return studentsSent;
+   }
+
+   /**
+    * Accessor for the number of node hashes handed out by
+    * <code>getNodeHash()</code> so far.
+    * @return node hashes sent.
+    */
+   public synchronized long getNodesSent() {
+      return nodesSent;
+   }
+
+   public synchronized long getRootHash() {
+      return digest.getRootHash();
+   }
+
+   public synchronized long getNodeHash(int node) {
+      nodesSent++;
+      return digest.getNodeHash(node);
+   }
+
+   public synchronized Collection<User> getStudents(int bucket) {
+      studentsSent += buckets.get(bucket).size();
+      return new ArrayList<User>(buckets.get(bucket).values());
+   }
+}
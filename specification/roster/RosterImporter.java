@@ -0,0 +1,389 @@
+package roster;
+
+import admin.User;
+import course.AbstractCourse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Imports a CSV roster of students into a course, e.g. for "Synchronize
+ * Roster" or to add a whole class at once.
+ *                                                                           <p>
+ * The first record of the file names its columns; the EMPL ID, first name
+ * and last name columns are found by name and any others are ignored. The
+ * file is read in batches of rows. While one batch is validated and turned
+ * into <code>User</code>s by several threads, the next is read, and then the
+ * first is added to the course with one <code>addStudents()</code> call. At
+ * most two batches are held at a time, so memory use depends on the batch
+ * size and not on the size of the roster.
+ *                                                                           <p>
+ * Rows with a missing or non-numeric EMPL ID, a missing name, or an EMPL ID
+ * already seen earlier in the file are rejected and reported; the other
+ * rows are still imported.
+ */
+public class RosterImporter {
+   /**
+    * Rows read, validated and added to the course together.
+    */
+   public static final int DEFAULT_BATCH_SIZE = 4096;
+
+   /**
+    * Header names of the EMPL ID, first name and last name columns, lower
+    * cased with everything but letters and digits removed.
+    */
+   static final String[][] HEADERS = {
+      {"emplid", "id", "studentid", "studentnumber"},
+      {"firstname", "first", "givenname"},
+      {"lastname", "last", "surname", "familyname"}
+   };
+
+   private static final int ID = 0;
+   private static final int FIRST_NAME = 1;
+   private static final int LAST_NAME = 2;
+
+   /**
+    * Most columns a roster is read with; later columns are skipped.
+    */
+   private static final int MAX_COLUMNS = 64;
+
+   private final StudentFactory factory;
+   private final int batchSize;
+   private final ExecutorService validators;
+   private final int slices;
+
+   /**
+    * Creates an importer that validates on the common fork-join pool.
+    * @param factory creates the <code>User</code> of each student.
+    */
+   public RosterImporter(StudentFactory factory) {
+      this(factory, DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Creates an importer.
+    * @param factory creates the <code>User</code> of each student.
+    * @param batchSize rows added to the course at a time.
+    * @param validators threads that validate rows; not shut down here.
+
+      pre:
+         factory != null && batchSize > 0 && validators != null
+    */
+   public RosterImporter(StudentFactory factory, int batchSize,
+         ExecutorService validators) {
+      this.factory = factory;
+      this.batchSize = batchSize;
+      this.validators = validators;
+      slices = Math.max(1, Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Imports every valid row of a roster file. Students are added through
+    * <code>course.addStudents()</code>; a <code>ColumnarCourse</code> skips
+    * the students already enrolled, matched by EMPL ID, so importing the
+    * same roster again adds only the new students. A student deleted from
+    * the course counts as enrolled until their deletion is discarded, so
+    * an import does not give them a second row that an undo of the delete
+    * would collide with. No permission is checked
+    * here: the caller must hold <code>ADD_STUDENT</code>, as
+    * <code>addStudents()</code> requires.
+    * @param file CSV roster to read.
+    * @param course course to add the students to.
+    * @return how many rows were imported, and why any were rejected.
+    * @throws IOException if the file cannot be read or has no EMPL ID,
+    *    first name or last name column.
+
+      pre:
+         file != null && course != null
+      post:
+         return.getImported() + return.getRejections().size() ==
+            rows of the file after its header
+    */
+   public Report importRoster(Path file, AbstractCourse course)
+         throws IOException {
+      RosterReader reader = RosterReader.open(file);
+      try {
+         return importRoster(reader, course);
+      }
+      finally {
+         reader.close();
+      }
+   }
+
+   /**
+    * Imports every valid row read by a roster reader, starting with its
+    * header record.
+    * @param reader reader at the header of the roster.
+    * @param course course to add the students to.
+    * @return how many rows were imported, and why any were rejected.
+    * @throws IOException if the roster cannot be read or has no EMPL ID,
+    *    first name or last name column.
+    */
+   public Report importRoster(RosterReader reader, AbstractCourse course)
+         throws IOException {
+      String[] fields = new String[MAX_COLUMNS];
+      if (reader.next(fields) < 0) {
+         throw new IOException("roster is empty");
+      }
+      int[] columns = findColumns(fields);
+
+      Report report = new Report();
+      Set<String> seenIds = new HashSet<String>();
+      // The batch being validated is pending; the other is read into
+      Batch pending = null;
+      List<Future<Void>> validatingPending = null;
+      Batch batch = new Batch(batchSize);
+      try {
+         while (true) {
+            batch.clear();
+            while (batch.count < batchSize && reader.next(fields) >= 0) {
+               batch.add(reader.getLine(), fields[columns[ID]],
+                     fields[columns[FIRST_NAME]],
+                     fields[columns[LAST_NAME]]);
+            }
+            List<Future<Void>> validating = batch.count == 0 ? null :
+                  validate(batch);
+            if (pending != null) {
+               await(validatingPending);
+               add(pending, course, seenIds, report);
+            }
+            if (validating == null) {
+               break;
+            }
+            Batch read = batch;
+            batch = pending == null ? new Batch(batchSize) : pending;
+            pending = read;
+            validatingPending = validating;
+         }
+      }
+      catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         throw new IllegalStateException(cause);
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("roster import interrupted", e);
+      }
+      return report;
+   }
+
+   /**
+    * Finds the EMPL ID, first name and last name columns of a header.
+    */
+   static int[] findColumns(String[] header) throws IOException {
+      int[] columns = {-1, -1, -1};
+      for (int c = 0; c < header.length && header[c] != null; c++) {
+         String name = normalize(header[c]);
+         for (int k = 0; k < HEADERS.length; k++) {
+            if (columns[k] < 0 && Arrays.asList(HEADERS[k]).contains(name)) {
+               columns[k] = c;
+            }
+         }
+      }
+      for (int k = 0; k < HEADERS.length; k++) {
+         if (columns[k] < 0) {
+            throw new IOException("roster has no " + HEADERS[k][0] +
+                  " column");
+         }
+      }
+      return columns;
+   }
+
+   private static String normalize(String header) {
+      StringBuilder name = new StringBuilder(header.length());
+      for (int i = 0; i < header.length(); i++) {
+         char c = header.charAt(i);
+         if (Character.isLetterOrDigit(c)) {
+            name.append(Character.toLowerCase(c));
+         }
+      }
+      return name.toString();
+   }
+
+   /**
+    * Checks the fields of one row.
+    * @return why the row is rejected, or null if it is valid.
+    */
+   static String check(String id, String firstName, String lastName) {
+      if (id == null || id.isEmpty()) {
+         return "missing EMPL ID";
+      }
+      for (int i = 0; i < id.length(); i++) {
+         if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+            return "EMPL ID is not a number";
+         }
+      }
+      if (firstName == null || firstName.isEmpty()) {
+         return "missing first name";
+      }
+      if (lastName == null || lastName.isEmpty()) {
+         return "missing last name";
+      }
+      return null;
+   }
+
+   /**
+    * Validates slices of a batch on the validator threads.
+    */
+   private List<Future<Void>> validate(final Batch batch) {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(slices);
+      int sliceSize = (batch.count + slices - 1) / slices;
+      for (int start = 0; start < batch.count; start += sliceSize) {
+         final int from = start;
+         final int to = Math.min(batch.count, start + sliceSize);
+         futures.add(validators.submit(new Callable<Void>() {
+            public Void call() {
+               for (int i = from; i < to; i++) {
+                  String reason = check(batch.ids[i], batch.firstNames[i],
+                        batch.lastNames[i]);
+                  batch.reasons[i] = reason;
+                  if (reason == null) {
+                     batch.students[i] = factory.createStudent(batch.ids[i],
+                           batch.firstNames[i], batch.lastNames[i]);
+                  }
+               }
+               return null;
+            }
+         }));
+      }
+      return futures;
+   }
+
+   private static void await(List<Future<Void>> futures)
+         throws InterruptedException, ExecutionException {
+      for (Future<Void> future : futures) {
+         future.get();
+      }
+   }
+
+   /**
+    * Adds the valid rows of a validated batch to the course. Duplicate EMPL
+    * IDs are caught here, in file order, rather than by the validators.
+    */
+   private static void add(Batch batch, AbstractCourse course,
+         Set<String> seenIds, Report report) {
+      List<User> students = new ArrayList<User>(batch.count);
+      for (int i = 0; i < batch.count; i++) {
+         String reason = batch.reasons[i];
+         if (reason == null && !seenIds.add(batch.ids[i])) {
+            reason = "EMPL ID appears earlier in the roster";
+         }
+         if (reason == null) {
+            students.add(batch.students[i]);
+         }
+         else {
+            report.rejections.add(new Rejection(batch.lines[i], batch.ids[i],
+                  reason));
+         }
+      }
+      if (!students.isEmpty()) {
+         course.addStudents(students);
+         report.imported += students.size();
+      }
+   }
+
+   /**
+    * Rows read from the roster and, once validated, their students.
+    */
+   static class Batch {
+      final long[] lines;
+      final String[] ids;
+      final String[] firstNames;
+      final String[] lastNames;
+      final String[] reasons;
+      final User[] students;
+      int count;
+
+      Batch(int size) {
+         lines = new long[size];
+         ids = new String[size];
+         firstNames = new String[size];
+         lastNames = new String[size];
+         reasons = new String[size];
+         students = new User[size];
+      }
+
+      void add(long line, String id, String firstName, String lastName) {
+         lines[count] = line;
+         ids[count] = id;
+         firstNames[count] = firstName;
+         lastNames[count] = lastName;
+         count++;
+      }
+
+      void clear() {
+         Arrays.fill(students, 0, count, null);
+         Arrays.fill(reasons, 0, count, null);
+         count = 0;
+      }
+   }
+
+   /**
+    * Outcome of one import.
+    */
+   public static class Report {
+      int imported;
+      final List<Rejection> rejections = new ArrayList<Rejection>();
+
+      /**
+       * Accessor for the number of rows passed to the course.
+       * @return rows imported; students already enrolled are included.
+       */
+      public int getImported() {
+         return imported;
+      }
+
+      /**
+       * Accessor for the rows that were not imported.
+       * @return rejected rows, in file order.
+       */
+      public List<Rejection> getRejections() {
+         return Collections.unmodifiableList(rejections);
+      }
+   }
+
+   /**
+    * A roster row that was not imported, and why.
+    */
+   public static class Rejection {
+      private final long line;
+      private final String id;
+      private final String reason;
+
+      Rejection(long line, String id, String reason) {
+         this.line = line;
+         this.id = id;
+         this.reason = reason;
+      }
+
+      public long getLine() {
+         return line;
+      }
+
+      public String getId() {
+         return id;
+      }
+
+      public String getReason() {
+         return reason;
+      }
+
+      public String toString() {
+         return "line " + line + ": " + reason;
+      }
+   }
+}
@@ -0,0 +1,219 @@
+package roster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming reader of CSV roster files.
+ *                                                                           <p>
+ * The file is read through one direct buffer of a fixed size, and records
+ * are scanned byte by byte: commas, quotes and line breaks are ASCII and
+ * never occur inside a UTF-8 sequence, so a field is only decoded into a
+ * <code>String</code> once its end is found, and only if the caller asked
+ * for it. Quoted fields may hold commas, doubled quotes and line breaks.
+ * Memory use does not depend on the size of the file.
+ */
+public class RosterReader implements Closeable {
+   /**
+    * Size of the read buffer.
+    */
+   static final int BUFFER_BYTES = 64 * 1024;
+
+   private static final byte QUOTE = '"';
+   private static final byte COMMA = ',';
+   private static final byte CR = '\r';
+   private static final byte LF = '\n';
+
+   private final FileChannel channel;
+   private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+   private boolean endOfFile;
+
+   /**
+    * Bytes of the field being read.
+    */
+   private byte[] field = new byte[256];
+   private int fieldLength;
+
+   /**
+    * Line the last record returned by <code>next()</code> started on.
+    */
+   private long line;
+   private long nextLine = 1;
+
+   /**
+    * Creates a reader over an open channel, positioned at its start.
+    * @param channel channel to read; closed by <code>close()</code>.
+    */
+   public RosterReader(FileChannel channel) {
+      this.channel = channel;
+      buffer.flip();
+   }
+
+   /**
+    * Opens a roster file for reading.
+    * @param file CSV file to read.
+    * @return reader at the first record of the file.
+    * @throws IOException if the file cannot be opened.
+    */
+   public static RosterReader open(Path file) throws IOException {
+      return new RosterReader(FileChannel.open(file, StandardOpenOption.READ));
+   }
+
+   /**
+    * Accessor for the line the last record read started on.
+    * @return line number, counting from 1.
+    */
+   public long getLine() {
+      return line;
+   }
+
+   /**
+    * Reads the next record. Fields past the end of <code>fields</code> are
+    * counted but not decoded; fields the record does not have are set to
+    * null. Blank lines are skipped.
+    * @param fields array to fill with the fields of the record.
+    * @return number of fields in the record, or -1 at the end of the file.
+    * @throws IOException if the file cannot be read.
+
+      pre:
+         fields != null
+      post:
+         return == -1 || return >= 1
+    */
+   public int next(String[] fields) throws IOException {
+      Arrays.fill(fields, null);
+      int count = 0;
+      boolean quoted = false;
+      boolean inQuotes = false;
+      boolean started = false;
+      fieldLength = 0;
+      line = nextLine;
+
+      int b;
+      while ((b = read()) >= 0) {
+         if (inQuotes) {
+            if (b == QUOTE) {
+               if (peek() == QUOTE) {
+                  read();
+                  append(QUOTE);
+               }
+               else {
+                  inQuotes = false;
+               }
+            }
+            else {
+               if (b == LF) {
+                  nextLine++;
+               }
+               append((byte) b);
+            }
+            continue;
+         }
+         if (b == COMMA) {
+            endField(fields, count++, quoted);
+            quoted = false;
+            started = true;
+         }
+         else if (b == LF || b == CR) {
+            if (b == CR && peek() == LF) {
+               read();
+            }
+            nextLine++;
+            if (!started && fieldLength == 0 && !quoted) {
+               line = nextLine;
+               continue;
+            }
+            endField(fields, count++, quoted);
+            return count;
+         }
+         else if (b == QUOTE && fieldLength == 0 && !quoted) {
+            quoted = true;
+            inQuotes = true;
+            started = true;
+         }
+         else {
+            append((byte) b);
+            started = true;
+         }
+      }
+      if (!started && fieldLength == 0) {
+         return -1;
+      }
+      endField(fields, count++, quoted);
+      return count;
+   }
+
+   public void close() throws IOException {
+      channel.close();
+   }
+
+   private void endField(String[] fields, int index, boolean quoted) {
+      if (index < fields.length) {
+         int start = 0;
+         int end = fieldLength;
+         if (!quoted) {
+            // Unquoted fields lose the spaces around them
+            while (start < end && field[start] == ' ') {
+               start++;
+            }
+            while (end > start && field[end - 1] == ' ') {
+               end--;
+            }
+         }
+         fields[index] = new String(field, start, end - start,
+               StandardCharsets.UTF_8);
+      }
+      fieldLength = 0;
+   }
+
+   private void append(byte b) {
+      if (fieldLength == field.length) {
+         field = Arrays.copyOf(field, fieldLength * 2);
+      }
+      field[fieldLength++] = b;
+   }
+
+   private int read() throws IOException {
+      if (!buffer.hasRemaining() && !fill()) {
+         return -1;
+      }
+      return buffer.get() & 0xFF;
+   }
+
+   private int peek() throws IOException {
+      if (!buffer.hasRemaining() && !fill()) {
+         return -1;
+      }
+      return buffer.get(buffer.position()) & 0xFF;
+   }
+
+   private boolean fill() throws IOException {
+      if (endOfFile) {
+         return false;
+      }
+      boolean first = channel.position() == 0;
+      buffer.clear();
+      int read;
+      do {
+         read = channel.read(buffer);
+      } while (read == 0);
+      buffer.flip();
+      if (read < 0) {
+         endOfFile = true;
+         return false;
+      }
+      // Skip a UTF-8 byte order mark, as written by spreadsheet exports
+      if (first && buffer.remaining() >= 3 &&
+            (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB &&
+            (buffer.get(2) & 0xFF) == 0xBF) {
+         buffer.position(3);
+      }
+      return buffer.hasRemaining() || fill();
+   }
+}
@@ -0,0 +1,25 @@
+package roster;
+
+import admin.User;
+
+/**
+ * Creates the <code>User</code> of a student read from a roster.
+ *                                                                           <p>
+ * <code>RosterImporter</code> calls the factory from several threads at
+ * once, so implementations must be thread-safe.
+ */
+public interface StudentFactory {
+   /**
+    * Creates a student.
+    * @param id EMPL ID of the student.
+    * @param firstName first name of the student.
+    * @param lastName last name of the student.
+    * @return new student <code>User</code>.
+
+      pre:
+         id != null && firstName != null && lastName != null
+      post:
+         return != null && return.getId().equals(id)
+    */
+   User createStudent(String id, String firstName, String lastName);
+}
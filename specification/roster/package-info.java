@@ -0,0 +1,5 @@
+/**
+ * Provides classes for importing student rosters into a course and standing
+ * in for the registrar roster it is synchronized with.
+ */
+package roster;
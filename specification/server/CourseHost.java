@@ -0,0 +1,365 @@
+package server;
+
+import admin.Permission;
+import admin.Session;
+import admin.User;
+import assignment.Assignment;
+import course.ColumnarCourse;
+import course.ColumnarCourseSnapshot;
+import course.GradeMatrix;
+import publish.DeltaPublisher;
+import publish.SnapshotDelta;
+import user.student.StudentRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One course served by a <code>GradebookServer</code>, shared by every
+ * request for it.
+ *                                                                           <p>
+ * Changes take the write lock and go to the course itself, one at a time,
+ * as <code>ColumnarCourse</code> expects. Reads are answered from a snapshot,
+ * which never changes, so any number of them run at once and none holds a
+ * lock while it builds its reply. The snapshot is retaken, in constant time,
+ * by the first read after a change; a burst of changes with no read between
+ * them costs no snapshots. The locks are <code>java.util.concurrent</code>
+ * locks, which a virtual thread can wait on without pinning its carrier.
+ *                                                                           <p>
+ * Every request is checked against the course's <code>RoleManager</code>
+ * with the session of its sender. The course is listed to users with
+ * <code>ACCESS_COURSE_NAME</code>. A student may read their own scores;
+ * reading anyone else's, a whole assignment or the deltas, which hold every
+ * score, takes <code>ACCESS_STUDENT_GRADE</code>, and setting grades takes
+ * <code>UPDATE_ASSIGNMENT_GRADE</code>.
+ */
+class CourseHost {
+   private final ColumnarCourse course;
+   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+   private volatile ColumnarCourseSnapshot snapshot;
+   private volatile boolean changed = true;
+
+   /**
+    * Deltas for student clients, guarded by <code>deltaLock</code>.
+    */
+   private final ReentrantLock deltaLock = new ReentrantLock();
+   private final DeltaPublisher publisher = new DeltaPublisher();
+   private ColumnarCourseSnapshot published;
+   private long lastBaseVersion = -1;
+   private byte[] lastDelta;
+   private byte[] fullDelta;
+
+   CourseHost(ColumnarCourse course) {
+      this.course = course;
+   }
+
+   /**
+    * Returns whether a user may see that the course exists, i.e. have its
+    * name listed.
+    */
+   boolean isVisibleTo(Session session) {
+      return course.roleManager.hasPermission(session,
+            Permission.ACCESS_COURSE_NAME);
+   }
+
+   /**
+    * Describes the course and its live assignments as JSON.
+    * @throws GradebookServer.Failure 403 if the user may not see the
+    *    assignments.
+    */
+   String describe(Session session) throws GradebookServer.Failure {
+      check(session, Permission.ACCESS_ASSIGNMENT);
+      ColumnarCourseSnapshot current = snapshot();
+      GradeMatrix grades = current.getGradeMatrix();
+      int students = 0;
+      for (int row = 0; row < grades.getStudentCount(); row++) {
+         if (current.getStudent(row) != null) {
+            students++;
+         }
+      }
+      StringBuilder json = new StringBuilder();
+      json.append("{\"name\":");
+      GradebookServer.quote(json, current.getName());
+      json.append(",\"students\":").append(students);
+      json.append(",\"assignments\":[");
+      boolean first = true;
+      for (int c = 0; c < grades.getAssignmentCount(); c++) {
+         Assignment assignment = current.getAssignment(c);
+         if (assignment == null) {
+            continue;
+         }
+         json.append(first ? "" : ",").append("{\"column\":").append(c);
+         json.append(",\"name\":");
+         GradebookServer.quote(json, assignment.getName());
+         json.append(",\"maxPoints\":").append(assignment.getMaxPoints());
+         json.append('}');
+         first = false;
+      }
+      return json.append("]}").toString();
+   }
+
+   /**
+    * Builds what one student sees of their grades as JSON: their names and
+    * the score of every live assignment, by column.
+    * @throws GradebookServer.Failure 403 if the student is not the user and
+    *    the user may not see other students' grades, or 404 if the course
+    *    has no such student.
+    */
+   String student(Session session, String emplId)
+         throws GradebookServer.Failure {
+      if (!emplId.equals(session.currentUser.getId())) {
+         check(session, Permission.ACCESS_STUDENT_GRADE);
+      }
+      User student = find(emplId);
+      ColumnarCourseSnapshot current = snapshot();
+      int row = current.getStudentId(student);
+      if (row < 0 || current.getStudent(row) == null) {
+         throw new GradebookServer.Failure(404, "no student " + emplId);
+      }
+      GradeMatrix grades = current.getGradeMatrix();
+      StringBuilder json = new StringBuilder();
+      json.append("{\"id\":");
+      GradebookServer.quote(json, student.getId());
+      json.append(",\"firstName\":");
+      GradebookServer.quote(json, current.getFirstName(row));
+      json.append(",\"lastName\":");
+      GradebookServer.quote(json, current.getLastName(row));
+      json.append(",\"scores\":{");
+      boolean first = true;
+      for (int c = 0; c < grades.getAssignmentCount(); c++) {
+         if (current.getAssignment(c) == null) {
+            continue;
+         }
+         json.append(first ? "\"" : ",\"").append(c).append("\":");
+         score(json, grades.get(row, c));
+         first = false;
+      }
+      return json.append("}}").toString();
+   }
+
+   /**
+    * Lists the score of every student on one assignment as JSON.
+    * @throws GradebookServer.Failure 403 if the user may not see other
+    *    students' grades, or 404 if the column has no assignment.
+    */
+   String grades(Session session, int column)
+         throws GradebookServer.Failure {
+      check(session, Permission.ACCESS_STUDENT_GRADE);
+      ColumnarCourseSnapshot current = snapshot();
+      GradeMatrix grades = current.getGradeMatrix();
+      if (column < 0 || column >= grades.getAssignmentCount() ||
+            current.getAssignment(column) == null) {
+         throw new GradebookServer.Failure(404, "no assignment " + column);
+      }
+      StringBuilder json = new StringBuilder("[");
+      boolean first = true;
+      for (int row = 0; row < grades.getStudentCount(); row++) {
+         User student = current.getStudent(row);
+         if (student == null) {
+            continue;
+         }
+         json.append(first ? "{\"id\":" : ",\n{\"id\":");
+         GradebookServer.quote(json, student.getId());
+         json.append(",\"score\":");
+         score(json, grades.get(row, column));
+         json.append('}');
+         first = false;
+      }
+      return json.append("]").toString();
+   }
+
+   /**
+    * Sets grades from lines of EMPL ID, column and score separated by tabs;
+    * an empty score clears the cell. Every line is checked before any grade
+    * is set, and then all of them are set as one batch. The columns and
+    * scores are checked against a snapshot before the write lock is taken,
+    * so a bad request never holds up the readers.
+    * @return number of grades set.
+    * @throws GradebookServer.Failure 403 if the user may not set grades, 400
+    *    if a line is malformed or its score is not within
+    *    <code>0..maxPoints</code> of the assignment, or 404 if it names a
+    *    student or assignment the course does not have.
+    */
+   int setGrades(Session session, String body)
+         throws GradebookServer.Failure {
+      check(session, Permission.UPDATE_ASSIGNMENT_GRADE);
+      String[] lines = body.split("\n");
+      String[] emplIds = new String[lines.length];
+      int[] cells = new int[3 * lines.length];
+      int count = 0;
+      ColumnarCourseSnapshot current = snapshot();
+      GradeMatrix published = current.getGradeMatrix();
+      for (String line : lines) {
+         if (line.trim().isEmpty()) {
+            continue;
+         }
+         String[] fields = line.split("\t", -1);
+         if (fields.length != 3) {
+            throw new GradebookServer.Failure(400, "bad line: " + line);
+         }
+         int column = parse(fields[1]);
+         Assignment assignment = column < 0 ||
+               column >= published.getAssignmentCount() ? null :
+               current.getAssignment(column);
+         if (assignment == null) {
+            throw new GradebookServer.Failure(404,
+                  "no assignment " + fields[1]);
+         }
+         String score = fields[2].trim();
+         int points = score.isEmpty() ? GradeMatrix.NO_SCORE : parse(score);
+         if (points != GradeMatrix.NO_SCORE &&
+               (points < 0 || points > assignment.getMaxPoints())) {
+            throw new GradebookServer.Failure(400, "score " + points +
+                  " is not within 0.." + assignment.getMaxPoints());
+         }
+         emplIds[count] = fields[0].trim();
+         cells[3 * count + 1] = column;
+         cells[3 * count + 2] = points;
+         count++;
+      }
+      if (count == 0) {
+         return 0;
+      }
+      lock.writeLock().lock();
+      try {
+         GradeMatrix grades = course.getGradeMatrix();
+         for (int i = 0; i < count; i++) {
+            int row = course.getStudentId(findLocked(emplIds[i]));
+            if (row < 0 || grades.isStudentDeleted(row)) {
+               throw new GradebookServer.Failure(404,
+                     "no student " + emplIds[i]);
+            }
+            // the assignment may have been removed since the snapshot
+            if (grades.isAssignmentDeleted(cells[3 * i + 1])) {
+               throw new GradebookServer.Failure(404,
+                     "no assignment " + cells[3 * i + 1]);
+            }
+            cells[3 * i] = row;
+         }
+         course.setGrades(cells, count);
+         changed = true;
+         return count;
+      }
+      finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Encodes the delta that brings a client's cached copy to the current
+    * version: the last published delta if the client is one version behind,
+    * or the whole course if it is further behind or has nothing.
+    * @param version version of the client's copy, or 0.
+    * @return encoded <code>SnapshotDelta</code>, or <code>null</code> if the
+    *    client is current.
+    * @throws GradebookServer.Failure 403 if the user may not see other
+    *    students' grades.
+    */
+   byte[] delta(Session session, long version)
+         throws IOException, GradebookServer.Failure {
+      check(session, Permission.ACCESS_STUDENT_GRADE);
+      ColumnarCourseSnapshot current = snapshot();
+      deltaLock.lock();
+      try {
+         if (current != published) {
+            SnapshotDelta delta = publisher.publish(current);
+            lastBaseVersion = delta.getBaseVersion();
+            lastDelta = encode(delta);
+            fullDelta = lastBaseVersion == 0 ? lastDelta : null;
+            published = current;
+         }
+         if (version == publisher.getVersion()) {
+            return null;
+         }
+         if (version == lastBaseVersion) {
+            return lastDelta;
+         }
+         if (fullDelta == null) {
+            fullDelta = encode(publisher.getFullDelta());
+         }
+         return fullDelta;
+      }
+      finally {
+         deltaLock.unlock();
+      }
+   }
+
+   /**
+    * Returns a snapshot holding every change made so far.
+    */
+   private ColumnarCourseSnapshot snapshot() {
+      if (!changed) {
+         return snapshot;
+      }
+      lock.writeLock().lock();
+      try {
+         if (changed) {
+            course.createSnapshot();
+            snapshot = (ColumnarCourseSnapshot) course.getSnapshot();
+            changed = false;
+         }
+         return snapshot;
+      }
+      finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Refuses a request whose user lacks a permission in the course.
+    */
+   private void check(Session session, Permission perm)
+         throws GradebookServer.Failure {
+      if (!course.roleManager.hasPermission(session, perm)) {
+         throw new GradebookServer.Failure(403, "not permitted: " + perm);
+      }
+   }
+
+   private User find(String emplId) throws GradebookServer.Failure {
+      lock.readLock().lock();
+      try {
+         return findLocked(emplId);
+      }
+      finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   private User findLocked(String emplId) throws GradebookServer.Failure {
+      StudentRecord record = course.getIndex().findByEmplId(emplId);
+      if (record == null) {
+         throw new GradebookServer.Failure(404, "no student " + emplId);
+      }
+      return record.getUserInfo();
+   }
+
+   private static int parse(String number) throws GradebookServer.Failure {
+      try {
+         return Integer.parseInt(number.trim());
+      }
+      catch (NumberFormatException e) {
+         throw new GradebookServer.Failure(400, "not a number: " + number);
+      }
+   }
+
+   private static void score(StringBuilder json, int score) {
+      if (score == GradeMatrix.NO_SCORE) {
+         json.append("null");
+      }
+      else {
+         json.append(score);
+      }
+   }
+
+   private static byte[] encode(SnapshotDelta delta) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      delta.write(out);
+      out.flush();
+      return bytes.toByteArray();
+   }
+}
@@ -0,0 +1,321 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import admin.Session;
+import course.ColumnarCourse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves the courses of a grade book to remote clients over HTTP, without a
+ * user interface.
+ *                                                                           <p>
+ * Every request runs on its own thread and is written as plain blocking
+ * code. On a Java runtime with virtual threads each request gets a virtual
+ * one, so thousands of clients waiting on the network cost a few carrier
+ * threads and not a thread stack each; on older runtimes a cached pool of
+ * platform threads is used instead.
+ *                                                                           <p>
+ * The API, with JSON replies unless noted:
+ * <pre>
+ *    GET  /courses                                names of the courses the
+ *                                                 user may see
+ *    GET  /courses/{course}                       name, students, assignments
+ *    GET  /courses/{course}/students/{emplId}     a student's scores
+ *    GET  /courses/{course}/assignments/{column}  every score of an assignment
+ *    POST /courses/{course}/grades                set grades; the body has
+ *                                                 one EMPL ID, column and score
+ *                                                 per line, separated by tabs
+ *    GET  /courses/{course}/delta?version={v}     binary SnapshotDelta from
+ *                                                 version v; 204 if current
+ * </pre>
+ * Every request must carry <code>Authorization: Bearer {token}</code>; the
+ * server's <code>RequestAuthenticator</code> resolves the token to a session,
+ * and a request without a valid one is replied 401. What the session's user
+ * may read and change is decided per course, see <code>CourseHost</code>.
+ * Errors are replied with their status and a one-line message.
+ */
+public class GradebookServer {
+   private final HttpServer server;
+   private final ExecutorService requests;
+   private final RequestAuthenticator authenticator;
+   private final Map<String, CourseHost> courses =
+         new ConcurrentHashMap<String, CourseHost>();
+
+   /**
+    * Creates a server; it accepts requests once <code>start()</code> is
+    * called.
+    * @param address address to listen on, e.g. the loopback interface; port
+    *    0 picks a free port.
+    * @param authenticator resolves the token of each request to a session.
+    * @throws IOException if the address cannot be bound.
+
+      pre:
+         authenticator != null
+    */
+   public GradebookServer(InetSocketAddress address,
+         RequestAuthenticator authenticator) throws IOException {
+      this.authenticator = authenticator;
+      server = HttpServer.create(address, 0);
+      requests = newRequestExecutor();
+      server.setExecutor(requests);
+      server.createContext("/courses", new HttpHandler() {
+         public void handle(HttpExchange exchange) throws IOException {
+            try {
+               route(exchange);
+            }
+            finally {
+               exchange.close();
+            }
+         }
+      });
+   }
+
+   /**
+    * Starts a thread per task on virtual threads if the runtime has them.
+    * The factory method is looked up by name so the server still builds
+    * and runs on runtimes without it.
+    */
+   static ExecutorService newRequestExecutor() {
+      try {
+         return (ExecutorService) Executors.class
+               .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      }
+      catch (ReflectiveOperationException e) {
+         return Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+               Thread thread = new Thread(runnable, "gradebook-request");
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+      }
+   }
+
+   /**
+    * Serves a course under its name, replacing any course of the same
+    * name. From then on the course must only be changed through this
+    * server.
+    * @param course course to serve.
+
+      pre:
+         course != null && course.getName() != null &&
+         course.roleManager != null
+    */
+   public void addCourse(ColumnarCourse course) {
+      courses.put(course.getName(), new CourseHost(course));
+   }
+
+   /**
+    * Stops serving a course.
+    * @param name name of the course.
+    */
+   public void removeCourse(String name) {
+      courses.remove(name);
+   }
+
+   /**
+    * Accessor for the address the server listens on.
+    * @return bound address, with the port that was picked.
+    */
+   public InetSocketAddress getAddress() {
+      return server.getAddress();
+   }
+
+   public void start() {
+      server.start();
+   }
+
+   /**
+    * Stops accepting requests, waits for the ones running to finish, and
+    * releases the threads.
+    * @param delaySeconds longest time to wait for running requests.
+    */
+   public void stop(int delaySeconds) {
+      server.stop(delaySeconds);
+      requests.shutdown();
+   }
+
+   private void route(HttpExchange exchange) throws IOException {
+      String method = exchange.getRequestMethod();
+      String[] path = exchange.getRequestURI().getPath().split("/");
+      try {
+         Session session = authenticate(exchange);
+         if (path.length <= 2) {
+            require(method, "GET");
+            StringBuilder json = new StringBuilder("[");
+            for (Map.Entry<String, CourseHost> course : courses.entrySet()) {
+               if (course.getValue().isVisibleTo(session)) {
+                  json.append(json.length() > 1 ? "," : "");
+                  quote(json, course.getKey());
+               }
+            }
+            reply(exchange, 200, json.append("]").toString());
+            return;
+         }
+         CourseHost course = courses.get(path[2]);
+         if (course == null) {
+            throw new Failure(404, "no course " + path[2]);
+         }
+         String resource = path.length > 3 ? path[3] : "";
+         if (path.length == 3) {
+            require(method, "GET");
+            reply(exchange, 200, course.describe(session));
+         }
+         else if (resource.equals("students") && path.length == 5) {
+            require(method, "GET");
+            reply(exchange, 200, course.student(session, path[4]));
+         }
+         else if (resource.equals("assignments") && path.length == 5) {
+            require(method, "GET");
+            reply(exchange, 200, course.grades(session,
+                  number(path[4])));
+         }
+         else if (resource.equals("grades") && path.length == 4) {
+            require(method, "POST");
+            int count = course.setGrades(session,
+                  read(exchange.getRequestBody()));
+            reply(exchange, 200, "{\"updated\":" + count + "}");
+         }
+         else if (resource.equals("delta") && path.length == 4) {
+            require(method, "GET");
+            String query = exchange.getRequestURI().getQuery();
+            long version = 0;
+            if (query != null && query.startsWith("version=")) {
+               try {
+                  version = Long.parseLong(query.substring(8));
+               }
+               catch (NumberFormatException e) {
+                  throw new Failure(400, "bad version: " + query);
+               }
+            }
+            byte[] delta = course.delta(session, version);
+            if (delta == null) {
+               exchange.sendResponseHeaders(204, -1);
+            }
+            else {
+               exchange.getResponseHeaders().set("Content-Type",
+                     "application/octet-stream");
+               send(exchange, 200, delta);
+            }
+         }
+         else {
+            throw new Failure(404, "no such resource");
+         }
+      }
+      catch (Failure e) {
+         reply(exchange, e.status, e.getMessage());
+      }
+      catch (RuntimeException e) {
+         // a fault of the server, not of the request
+         reply(exchange, 500, "internal error: " + e);
+      }
+   }
+
+   /**
+    * Resolves the bearer token of a request to its sender's session.
+    */
+   private Session authenticate(HttpExchange exchange) throws Failure {
+      String header = exchange.getRequestHeaders().getFirst("Authorization");
+      Session session = null;
+      if (header != null && header.startsWith("Bearer ")) {
+         session = authenticator.authenticate(header.substring(7).trim());
+      }
+      if (session == null || session.currentUser == null) {
+         exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+         throw new Failure(401, "not authenticated");
+      }
+      return session;
+   }
+
+   private static void require(String method, String expected)
+         throws Failure {
+      if (!method.equals(expected)) {
+         throw new Failure(405, method + " is not allowed here");
+      }
+   }
+
+   private static int number(String text) throws Failure {
+      try {
+         return Integer.parseInt(text);
+      }
+      catch (NumberFormatException e) {
+         throw new Failure(400, "not a number: " + text);
+      }
+   }
+
+   private static void reply(HttpExchange exchange, int status, String body)
+         throws IOException {
+      exchange.getResponseHeaders().set("Content-Type", status == 200 ?
+            "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+      send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static void send(HttpExchange exchange, int status, byte[] body)
+         throws IOException {
+      exchange.sendResponseHeaders(status, body.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+   }
+
+   private static String read(InputStream in) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int n; (n = in.read(buffer)) >= 0; ) {
+         bytes.write(buffer, 0, n);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Appends a string as a JSON string literal.
+    */
+   static void quote(StringBuilder json, String text) {
+      if (text == null) {
+         json.append("null");
+         return;
+      }
+      json.append('"');
+      for (int i = 0; i < text.length(); i++) {
+         char c = text.charAt(i);
+         if (c == '"' || c == '\\') {
+            json.append('\\').append(c);
+         }
+         else if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+         }
+         else {
+            json.append(c);
+         }
+      }
+      json.append('"');
+   }
+
+   /**
+    * A request that cannot be served, and the status to reply with.
+    */
+   static class Failure extends Exception {
+      private static final long serialVersionUID = 1L;
+
+      final int status;
+
+      Failure(int status, String message) {
+         super(message);
+         this.status = status;
+      }
+   }
+}
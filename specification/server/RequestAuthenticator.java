@@ -0,0 +1,26 @@
+package server;
+
+import admin.Session;
+
+/**
+ * Tells a <code>GradebookServer</code> who sent a request.
+ *                                                                           <p>
+ * Every request carries a token in its <code>Authorization</code> header,
+ * as <code>Bearer {token}</code>, e.g. one handed out when the user logged
+ * in. What the user may then read or change is decided by the
+ * <code>RoleManager</code> of the course.
+ */
+public interface RequestAuthenticator {
+   /**
+    * Looks up the session a token was issued for.
+    * @param token token of the request.
+    * @return session of the user, or <code>null</code> if the token is not
+    *    valid.
+
+      pre:
+         token != null
+      post:
+         return == null || return.currentUser != null
+    */
+   Session authenticate(String token);
+}
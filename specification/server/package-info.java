@@ -0,0 +1,5 @@
+/**
+ * Provides classes for serving courses to remote clients from a headless
+ * grade book server.
+ */
+package server;
@@ -0,0 +1,210 @@
+package user.student;
+
+import assignment.AssignmentCategory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Earned and possible points of one student in every category, and the raw
+ * percentage grade they add up to.
+ *                                                                           <p>
+ * The subtotal of a category counts every graded assignment under it,
+ * including those in its subcategories, and is kept current by
+ * <code>add()</code> in one step per ancestor. The raw percentage rolls the
+ * categories up by weight: a category's percentage is the weighted mean of
+ * the percentages of its graded subcategories, and the grade is the
+ * weighted mean of the top-level ones. A category without graded
+ * subcategories is worth its points earned over its points possible.
+ * Assignments directly under a category that also has weighted
+ * subcategories count as one more part, weighted by their points possible
+ * relative to those of the subcategories; if the weights of the
+ * subcategories match their points, a category is worth its plain points.
+ *                                                                           <p>
+ * The categories are linked by <code>AssignmentCategory.getParent()</code>
+ * as they were when their points were added; <code>move()</code> follows a
+ * change of parent.
+ */
+public class CategorySubtotals {
+   /**
+    * Earned and possible points by category.
+    */
+   private final Map<AssignmentCategory, double[]> points =
+         new HashMap<AssignmentCategory, double[]>();
+
+   /**
+    * Subcategories of every category that has points.
+    */
+   private final Map<AssignmentCategory, List<AssignmentCategory>> children =
+         new HashMap<AssignmentCategory, List<AssignmentCategory>>();
+
+   /**
+    * Top-level categories that have points.
+    */
+   private final List<AssignmentCategory> roots =
+         new ArrayList<AssignmentCategory>();
+
+   /**
+    * Adds earned and possible points to a category and all of its ancestors.
+    * @param category category the points fall under, or <code>null</code>.
+    * @param earned points earned to add; may be negative.
+    * @param possible points possible to add; may be negative.
+    */
+   public void add(AssignmentCategory category, double earned,
+         double possible) {
+      for (AssignmentCategory c = category; c != null; c = c.getParent()) {
+         double[] subtotal = points.get(c);
+         if (subtotal == null) {
+            subtotal = new double[2];
+            points.put(c, subtotal);
+            link(c, c.getParent());
+         }
+         subtotal[0] += earned;
+         subtotal[1] += possible;
+      }
+   }
+
+   /**
+    * Moves the points of a category from the ancestors it had to the ones it
+    * has now, after its parent changed.
+    * @param category category whose parent changed.
+    * @param oldParent parent it had, or <code>null</code>.
+    */
+   public void move(AssignmentCategory category,
+         AssignmentCategory oldParent) {
+      double[] subtotal = points.get(category);
+      if (subtotal == null || oldParent == category.getParent()) {
+         return;
+      }
+      for (AssignmentCategory c = oldParent; c != null; c = c.getParent()) {
+         double[] old = points.get(c);
+         if (old != null) {
+            old[0] -= subtotal[0];
+            old[1] -= subtotal[1];
+         }
+      }
+      unlink(category, oldParent);
+      link(category, category.getParent());
+      for (AssignmentCategory c = category.getParent(); c != null;
+            c = c.getParent()) {
+         double[] added = points.get(c);
+         if (added == null) {
+            added = new double[2];
+            points.put(c, added);
+            link(c, c.getParent());
+         }
+         added[0] += subtotal[0];
+         added[1] += subtotal[1];
+      }
+   }
+
+   /**
+    * Drops every subtotal.
+    */
+   public void clear() {
+      points.clear();
+      children.clear();
+      roots.clear();
+   }
+
+   /**
+    * Returns whether any assignment under a category has been graded.
+    * @param category category to check.
+    * @return <code>true</code> if the category has points possible.
+    */
+   public boolean isGraded(AssignmentCategory category) {
+      double[] subtotal = points.get(category);
+      return subtotal != null && subtotal[1] > 0;
+   }
+
+   /**
+    * Returns the points earned over the points possible in a category,
+    * without weights.
+    * @param category category to get the percentage of.
+    * @return percentage earned, or 0 if nothing under it was graded.
+    */
+   public double getPercentage(AssignmentCategory category) {
+      double[] subtotal = points.get(category);
+      if (subtotal == null || subtotal[1] <= 0) {
+         return 0;
+      }
+      return 100 * subtotal[0] / subtotal[1];
+   }
+
+   /**
+    * Computes the raw percentage grade, rolling every graded category up to
+    * the top level by weight. Visits each graded category once.
+    * @return weighted mean of the top-level category percentages, or 0 if
+    *    nothing has been graded.
+    */
+   public double getWeightedPercentage() {
+      double weighted = 0;
+      double totalWeight = 0;
+      for (AssignmentCategory category : roots) {
+         double[] subtotal = points.get(category);
+         if (subtotal[1] > 0) {
+            weighted += category.getWeight() * fraction(category, subtotal);
+            totalWeight += category.getWeight();
+         }
+      }
+      return totalWeight > 0 ? 100 * weighted / totalWeight : 0;
+   }
+
+   /**
+    * Returns the share of a graded category that was earned, with its
+    * subcategories weighted.
+    */
+   private double fraction(AssignmentCategory category, double[] subtotal) {
+      double weighted = 0;
+      double weights = 0;
+      double weightedPossible = 0;
+      double directEarned = subtotal[0];
+      double directPossible = subtotal[1];
+      List<AssignmentCategory> subcategories = children.get(category);
+      if (subcategories != null) {
+         for (AssignmentCategory sub : subcategories) {
+            double[] s = points.get(sub);
+            directEarned -= s[0];
+            directPossible -= s[1];
+            if (s[1] > 0 && sub.getWeight() > 0) {
+               weighted += sub.getWeight() * fraction(sub, s);
+               weights += sub.getWeight();
+               weightedPossible += s[1];
+            }
+         }
+      }
+      if (weights == 0) {
+         return subtotal[0] / subtotal[1];
+      }
+      if (directPossible > 0) {
+         double directWeight = weights * directPossible / weightedPossible;
+         weighted += directWeight * directEarned / directPossible;
+         weights += directWeight;
+      }
+      return weighted / weights;
+   }
+
+   private void link(AssignmentCategory category, AssignmentCategory parent) {
+      if (parent == null) {
+         roots.add(category);
+         return;
+      }
+      List<AssignmentCategory> siblings = children.get(parent);
+      if (siblings == null) {
+         siblings = new ArrayList<AssignmentCategory>();
+         children.put(parent, siblings);
+      }
+      siblings.add(category);
+   }
+
+   private void unlink(AssignmentCategory category,
+         AssignmentCategory parent) {
+      List<AssignmentCategory> siblings =
+            parent == null ? roots : children.get(parent);
+      if (siblings != null) {
+         siblings.remove(category);
+      }
+   }
+}
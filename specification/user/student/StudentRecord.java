@@ -1,8 +1,10 @@
 package user.student;
 
 import assignment.Assignment;
+import assignment.AssignmentCategory;
 import assignment.AssignmentGrade;
 import course.CurveSetting;
+import course.GradeMatrix;
 import course.LetterGrade;
 import admin.User;
 import util.GraderObject;
@@ -29,10 +31,22 @@ public abstract class StudentRecord implements GraderObject {
    Collection<AssignmentGrade> grades;
 
    /**
-    * Raw percentage grade of the student.
+    * Raw percentage grade of the student, valid while
+    * <code>percentageDirty</code> is false.
     */
    double rawPercentage;
 
+   /**
+    * Whether <code>rawPercentage</code> must be recalculated.
+    */
+   boolean percentageDirty = true;
+
+   /**
+    * Earned and possible points of every category, each summed over the
+    * category and all of its subcategories.
+    */
+   CategorySubtotals subtotals = new CategorySubtotals();
+
    /**
     * Letter grade of the student.
     */
@@ -100,19 +114,148 @@ public abstract class StudentRecord implements GraderObject {
    public abstract void setStudentComment(String studentComment);
 
    /**
-    * Calculates and returns the raw percentage grade of the student.
+    * Returns the raw percentage grade of the student. The grade is the
+    * weighted mean of the top-level category percentages, each rolled up
+    * from its subcategories by weight as described in
+    * <code>CategorySubtotals</code>. It is only recalculated after a grade,
+    * weight or parent has changed, and then in one step per graded
+    * category.
     * @return raw percentage grade.
     * <p/>
     *
       pre:
          student != null
       post:
+         !percentageDirty
+    */
+   public double getRawPercentageGrade() {
+      if (percentageDirty) {
+         rawPercentage = subtotals.getWeightedPercentage();
+         percentageDirty = false;
+      }
+      return rawPercentage;
+   }
+
+   /**
+    * Returns the percentage the student earned in a category, counting the
+    * points of every graded assignment under it.
+    * @param category category to get the percentage of.
+    * @return percentage earned, or 0 if nothing under it was graded.
+    * <p/>
+    *
+      pre:
+         category != null
+      post:
+         // none
+    */
+   public double getCategoryPercentage(AssignmentCategory category) {
+      return subtotals.getPercentage(category);
+   }
+
+   /**
+    * Returns whether any assignment under a category has been graded.
+    * @param category category to check.
+    * @return <code>true</code> if the category has points possible.
+    */
+   public boolean isGraded(AssignmentCategory category) {
+      return subtotals.isGraded(category);
+   }
+
+   /**
+    * Updates the cached subtotals after one of the student's grades changed.
+    * The category and maximum points are those the course has on record for
+    * the assignment, which the subtotals were summed with, not whatever the
+    * assignment holds now. Costs one step per ancestor of the category; the
+    * raw percentage is recalculated on its next read.
+    * @param category category the course files the assignment under.
+    * @param maxPoints maximum points the course has for the assignment.
+    * @param oldScore previous raw score, or <code>GradeMatrix.NO_SCORE</code>.
+    * @param newScore new raw score, or <code>GradeMatrix.NO_SCORE</code>.
+    * <p/>
+    *
+      pre:
+         // none
+      post:
+         percentageDirty
+    */
+   public void gradeChanged(AssignmentCategory category, int maxPoints,
+         int oldScore, int newScore) {
+      if (oldScore != GradeMatrix.NO_SCORE) {
+         adjustSubtotals(category, -oldScore, -maxPoints);
+      }
+      if (newScore != GradeMatrix.NO_SCORE) {
+         adjustSubtotals(category, newScore, maxPoints);
+      }
+   }
+
+   /**
+    * Adds earned and possible points to a category and all of its ancestors.
+    * @param category category the points fall under.
+    * @param earned points earned to add; may be negative.
+    * @param possible points possible to add; may be negative.
+    * <p/>
+    *
+      pre:
+         // none
+      post:
+         percentageDirty
+    */
+   public void adjustSubtotals(AssignmentCategory category, double earned,
+         double possible) {
+      subtotals.add(category, earned, possible);
+      percentageDirty = true;
+   }
+
+   /**
+    * Moves the subtotal of a category from its old ancestors to its new
+    * ones after its parent changed.
+    * @param category category whose parent changed.
+    * @param oldParent parent it had, or <code>null</code>.
+    * <p/>
+    *
+      pre:
+         category != null
+      post:
+         percentageDirty
+    */
+   public void categoryMoved(AssignmentCategory category,
+         AssignmentCategory oldParent) {
+      subtotals.move(category, oldParent);
+      percentageDirty = true;
+   }
+
+   /**
+    * Drops every cached subtotal, before they are summed again from the
+    * student's scores.
+    * <p/>
+    *
+      pre:
+         // none
+      post:
+         percentageDirty
+    */
+   public void clearSubtotals() {
+      subtotals.clear();
+      percentageDirty = true;
+   }
+
+   /**
+    * Marks the raw percentage for recalculation after a category weight
+    * changed. Subtotals are unaffected.
+    * <p/>
+    *
+      pre:
          // none
+      post:
+         percentageDirty
     */
-   public abstract double getRawPercentageGrade();
+   public void weightsChanged() {
+      percentageDirty = true;
+   }
 
    /**
-    * Calculates and returns the letter grade of the student.
+    * Returns the letter grade of the student through the compiled lookup
+    * table of the curve.
     * @param curve <code>CurveSetting</code> of the course a student is in.
     * @return letter grade.
     * <p/>
@@ -122,9 +265,12 @@ public abstract class StudentRecord implements GraderObject {
          student != null &&
          getRawPercentageGrade() >= 0
       post:
-         // none
+         return == curve.getGradeTable().lookup(getRawPercentageGrade())
     */
-   public abstract LetterGrade getLetterGrade(CurveSetting curve);
+   public LetterGrade getLetterGrade(CurveSetting curve) {
+      letterGrade = curve.getGradeTable().lookup(getRawPercentageGrade());
+      return letterGrade;
+   }
 
 
 }
@@ -0,0 +1,430 @@
+package persistence;
+
+import admin.Identity;
+import admin.User;
+import assignment.Assignment;
+import assignment.AssignmentCategory;
+import assignment.AssignmentGrade;
+import assignment.AssignmentSubmission;
+import course.ColumnarCourse;
+import course.ColumnarCourseSnapshot;
+import course.CourseAccessor;
+import course.GradeMatrix;
+import course.GradeSchema;
+import course.LatePolicy;
+import user.student.StudentRecord;
+import util.GraderObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Checks that a course rebuilt from its <code>MutationLog</code> and
+ * <code>GradeCheckpoint</code> matches the course that wrote them.
+ *                                                                           <p>
+ * A small concrete course makes changes of every kind, takes a checkpoint
+ * halfway, and leaves a deleted student and a deleted assignment behind.
+ * A second, empty course then opens the same files, and every name, id,
+ * cell, tombstone and percentage is compared; the deletions left behind
+ * must have been discarded, since no command can undo them any more. The
+ * second course then deletes a student and takes a checkpoint while the
+ * deletion is pending, and a third course must read the tombstone back.
+ *                                                                           <p>
+ * It lives outside the shipped packages. Compile it against the classes of
+ * the specification and run it with
+ * <code>java persistence.MutationLogReplayTest</code>; it throws an
+ * <code>AssertionError</code> on the first difference.
+ */
+public class MutationLogReplayTest {
+
+   public static void main(String[] args) throws IOException {
+      Path dir = Files.createTempDirectory("mutation-log");
+      Path logFile = dir.resolve("course.log");
+      Path checkpointFile = dir.resolve("course.checkpoint");
+
+      TestCourse written = new TestCourse();
+      MutationLog log = written.openMutationLog(logFile, checkpointFile,
+            4096, 50);
+      written.setName("CSC 308");
+      written.setGradeSchema(new TestSchema());
+      TestCategory labs = new TestCategory("Labs", 40, null);
+      TestCategory quizzes = new TestCategory("Quizzes", 60, null);
+      TestCategory pop = new TestCategory("Pop quizzes", 25, quizzes);
+      written.addAssignmentCategory(labs);
+      written.addAssignmentCategory(quizzes);
+      written.addAssignmentCategory(pop);
+
+      List<User> students = new ArrayList<User>();
+      for (int i = 0; i < 20; i++) {
+         students.add(new TestUser("100" + i, "First" + i, "Last" + i));
+      }
+      written.addStudents(students);
+      TestAssignment lab1 = new TestAssignment("Lab 1", labs, 10);
+      TestAssignment quiz1 = new TestAssignment("Quiz 1", quizzes, 20);
+      TestAssignment pop1 = new TestAssignment("Pop 1", pop, 5);
+      written.addAssignment(lab1);
+      written.addAssignment(quiz1);
+      written.addAssignment(pop1);
+
+      int[] cells = new int[3 * 20];
+      for (int s = 0; s < 20; s++) {
+         cells[3 * s] = s;
+         cells[3 * s + 1] = 0;
+         cells[3 * s + 2] = s % 11;
+      }
+      written.setGrades(cells, 20);
+      for (int s = 0; s < 20; s += 2) {
+         written.setGrade(s, 1, 20 - s);
+      }
+      written.addAssignmentSubmission(
+            new TestSubmission(students.get(3), lab1, 1000));
+
+      written.checkpoint();
+
+      for (int s = 1; s < 20; s += 3) {
+         written.setGrade(s, 2, s % 6);
+      }
+      quiz1.maxPoints = 25;
+      written.updateAssignment(quiz1);
+      labs.setWeight(50);
+      written.updateAssignmentCategory(labs);
+
+      // removed for good, and its row handed out again after compacting
+      written.removeStudent(students.get(5));
+      written.compact();
+      written.addStudent(new TestUser("2000", "New", "Student"));
+
+      // deleted and restored, as by undo
+      StudentRecord record = written.deleteStudent(students.get(7));
+      written.restoreStudent(record, 7,
+            Collections.<AssignmentSubmission>emptyList());
+
+      // left deleted, so they must come back as tombstones
+      written.deleteStudent(students.get(9));
+      written.deleteAssignments(Arrays.<Assignment>asList(pop1));
+      written.setName("CSC 308 Fall");
+      log.close();
+
+      TestCourse read = new TestCourse();
+      MutationLog reopened = read.openMutationLog(logFile, checkpointFile,
+            4096, 50);
+      compare(written, read);
+      check(read.getGradeMatrix().isStudentDiscarded(9) &&
+            read.getGradeMatrix().isAssignmentDiscarded(2),
+            "pending deletions discarded");
+
+      // deleted while the checkpoint is taken
+      read.deleteStudent(read.getStudent(11));
+      read.checkpoint();
+      reopened.close();
+      TestCourse reread = new TestCourse();
+      reread.openMutationLog(logFile, checkpointFile, 4096, 50).close();
+      check(reread.getGradeMatrix().isStudentDeleted(11) &&
+            reread.getStudent(11) == null &&
+            reread.getGradeMatrix().isStudentDiscarded(11),
+            "tombstone read from the checkpoint");
+      check(reread.getStudentRecords().size() ==
+            read.getStudentRecords().size(), "students after the checkpoint");
+      System.out.println("replayed course matches the original");
+   }
+
+   /**
+    * Compares everything the log and checkpoint must carry.
+    */
+   static void compare(TestCourse expected, TestCourse actual) {
+      check(expected.getName().equals(actual.getName()), "name");
+      check(actual.getGradeSchema() != null, "grade schema");
+      check(expected.getAssignmentCategories().size() ==
+            actual.getAssignmentCategories().size(), "category count");
+      for (int id = 0; id < expected.getAssignmentCategories().size(); id++) {
+         TestCategory e = (TestCategory) expected.getCategory(id);
+         TestCategory a = (TestCategory) actual.getCategory(id);
+         check(e.name.equals(a.name) && e.getWeight() == a.getWeight() &&
+               expected.getCategoryId(e.getParent()) ==
+               actual.getCategoryId(a.getParent()), "category " + id);
+      }
+
+      GradeMatrix e = expected.getGradeMatrix();
+      GradeMatrix a = actual.getGradeMatrix();
+      check(e.getStudentCount() == a.getStudentCount(), "student count");
+      check(e.getAssignmentCount() == a.getAssignmentCount(),
+            "assignment count");
+      for (int c = 0; c < e.getAssignmentCount(); c++) {
+         check(e.isAssignmentDeleted(c) == a.isAssignmentDeleted(c),
+               "tombstone of column " + c);
+         TestAssignment ea = (TestAssignment) expected.getAssignment(c);
+         TestAssignment aa = (TestAssignment) actual.getAssignment(c);
+         check(ea == null ? aa == null : aa != null &&
+               ea.name.equals(aa.name) && ea.maxPoints == aa.maxPoints,
+               "assignment in column " + c);
+      }
+      for (int s = 0; s < e.getStudentCount(); s++) {
+         check(e.isStudentDeleted(s) == a.isStudentDeleted(s),
+               "tombstone of row " + s);
+         User es = expected.getStudent(s);
+         User as = actual.getStudent(s);
+         check(es == null ? as == null : as != null &&
+               es.getId().equals(as.getId()), "student in row " + s);
+         for (int c = 0; c < e.getAssignmentCount(); c++) {
+            check(e.get(s, c) == a.get(s, c), "cell " + s + "," + c);
+         }
+         if (es != null) {
+            check(expected.getStudentRecord(es).getRawPercentageGrade() ==
+                  actual.getStudentRecord(as).getRawPercentageGrade(),
+                  "percentage of row " + s);
+         }
+      }
+      check(expected.getPercentageStatistics().getCount() ==
+            actual.getPercentageStatistics().getCount(),
+            "percentage statistics");
+      Assignment lab = actual.getAssignment(0);
+      check(actual.getAssignmentSubmissions(lab).size() == 1, "submissions");
+   }
+
+   static void check(boolean condition, String what) {
+      if (!condition) {
+         throw new AssertionError("replayed course differs: " + what);
+      }
+   }
+
+   /**
+    * Course whose objects write themselves as their few fields.
+    */
+   static class TestCourse extends ColumnarCourse {
+      protected StudentRecord createStudentRecord(User student) {
+         return new TestRecord(student);
+      }
+
+      protected void updateStudentInfo(User student, User registrarInfo) {
+         ((TestUser) student).firstName = registrarInfo.getFirstName();
+         ((TestUser) student).lastName = registrarInfo.getLastName();
+      }
+
+      protected ColumnarCourseSnapshot newSnapshot() {
+         return null;
+      }
+
+      protected void writeObject(GraderObject object, DataOutput out)
+            throws IOException {
+         if (object instanceof TestUser) {
+            TestUser user = (TestUser) object;
+            out.writeUTF(user.id);
+            out.writeUTF(user.firstName);
+            out.writeUTF(user.lastName);
+         }
+         else if (object instanceof TestCategory) {
+            TestCategory category = (TestCategory) object;
+            out.writeUTF(category.name);
+            out.writeDouble(category.getWeight());
+            out.writeInt(getCategoryId(category.getParent()));
+         }
+         else if (object instanceof TestAssignment) {
+            TestAssignment assignment = (TestAssignment) object;
+            out.writeUTF(assignment.name);
+            out.writeInt(getCategoryId(assignment.category));
+            out.writeInt(assignment.maxPoints);
+         }
+         else if (object instanceof TestSubmission) {
+            TestSubmission submission = (TestSubmission) object;
+            out.writeInt(getStudentId(submission.getStudent()));
+            out.writeInt(getAssignmentId(submission.getAssignment()));
+            out.writeLong(submission.getTimestamp().getTime());
+         }
+      }
+
+      protected <T extends GraderObject> T readObject(Class<T> kind, T into,
+            DataInput in) throws IOException {
+         if (kind == User.class) {
+            TestUser user = into == null ? new TestUser() : (TestUser) into;
+            user.id = in.readUTF();
+            user.firstName = in.readUTF();
+            user.lastName = in.readUTF();
+            return kind.cast(user);
+         }
+         if (kind == AssignmentCategory.class) {
+            TestCategory category = into == null ? new TestCategory() :
+                  (TestCategory) into;
+            category.name = in.readUTF();
+            category.setWeight(in.readDouble());
+            category.parent = getCategory(in.readInt());
+            return kind.cast(category);
+         }
+         if (kind == Assignment.class) {
+            TestAssignment assignment = into == null ?
+                  new TestAssignment() : (TestAssignment) into;
+            assignment.name = in.readUTF();
+            assignment.category = getCategory(in.readInt());
+            assignment.maxPoints = in.readInt();
+            return kind.cast(assignment);
+         }
+         if (kind == AssignmentSubmission.class) {
+            User student = getStudent(in.readInt());
+            Assignment assignment = getAssignment(in.readInt());
+            return kind.cast(new TestSubmission(student, assignment,
+                  in.readLong()));
+         }
+         if (kind == GradeSchema.class) {
+            return kind.cast(into == null ? new TestSchema() : into);
+         }
+         return kind.cast(into == null ? new TestLatePolicy() : into);
+      }
+
+      public void setCourseSnapshot(CourseAccessor snapshot) {
+      }
+
+      public CourseAccessor getCourseSnapshot() {
+         return null;
+      }
+   }
+
+   static class TestUser extends User {
+      String id;
+      String firstName;
+      String lastName;
+
+      TestUser() {
+      }
+
+      TestUser(String id, String firstName, String lastName) {
+         this.id = id;
+         this.firstName = firstName;
+         this.lastName = lastName;
+      }
+
+      public String getId() {
+         return id;
+      }
+
+      public Collection<Identity> getIdentities() {
+         return Collections.emptyList();
+      }
+
+      public String getFirstName() {
+         return firstName;
+      }
+
+      public String getLastName() {
+         return lastName;
+      }
+   }
+
+   static class TestRecord extends StudentRecord {
+      final User user;
+
+      TestRecord(User user) {
+         this.user = user;
+      }
+
+      public AssignmentGrade getAssignmentGrade(Assignment assignment) {
+         return null;
+      }
+
+      public Collection<AssignmentGrade> getAllAssignmentGrades() {
+         return Collections.emptyList();
+      }
+
+      public User getUserInfo() {
+         return user;
+      }
+
+      public String getStudentComment() {
+         return null;
+      }
+
+      public void setStudentComment(String comment) {
+      }
+   }
+
+   static class TestCategory extends AssignmentCategory {
+      String name;
+      AssignmentCategory parent;
+
+      TestCategory() {
+      }
+
+      TestCategory(String name, double weight, AssignmentCategory parent) {
+         this.name = name;
+         this.parent = parent;
+         setWeight(weight);
+      }
+
+      public AssignmentCategory getParent() {
+         return parent;
+      }
+   }
+
+   static class TestAssignment implements Assignment {
+      String name;
+      AssignmentCategory category;
+      int maxPoints;
+
+      TestAssignment() {
+      }
+
+      TestAssignment(String name, AssignmentCategory category,
+            int maxPoints) {
+         this.name = name;
+         this.category = category;
+         this.maxPoints = maxPoints;
+      }
+
+      public String getName() {
+         return name;
+      }
+
+      public AssignmentCategory getCategory() {
+         return category;
+      }
+
+      public Collection<AssignmentSubmission> getSubmissions() {
+         return Collections.emptyList();
+      }
+
+      public Collection<AssignmentGrade> getGrades() {
+         return Collections.emptyList();
+      }
+
+      public int getMaxPoints() {
+         return maxPoints;
+      }
+   }
+
+   static class TestSubmission extends AssignmentSubmission {
+      final User student;
+      final Assignment assignment;
+      final Date timestamp;
+
+      TestSubmission(User student, Assignment assignment, long time) {
+         this.student = student;
+         this.assignment = assignment;
+         this.timestamp = new Date(time);
+      }
+
+      public User getStudent() {
+         return student;
+      }
+
+      public Assignment getAssignment() {
+         return assignment;
+      }
+
+      public Date getTimestamp() {
+         return timestamp;
+      }
+   }
+
+   static class TestSchema extends GradeSchema {
+   }
+
+   static class TestLatePolicy extends LatePolicy {
+   }
+}